@@ -19,6 +19,8 @@ import com.brsanthu.googleanalytics.GoogleAnalytics;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.datavyu.controllers.BatchController;
+import org.datavyu.controllers.RunScriptController;
 import org.datavyu.controllers.project.ProjectController;
 import org.datavyu.models.db.TitleNotifier;
 import org.datavyu.models.db.UserWarningException;
@@ -35,6 +37,7 @@ import java.awt.*;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.File;
+import java.util.Arrays;
 import java.util.EventObject;
 
 /**
@@ -169,6 +172,12 @@ public final class Datavyu extends SingleFrameApplication implements KeyEventDis
      * @param args The command line arguments passed to Datavyu.
      */
     public static void main(final String[] args) {
+        // Process projects without a user interface when asked to
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            System.setProperty("java.awt.headless", "true");
+            System.exit(BatchController.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
         // If we are running on a MAC set system properties
         if (Datavyu.getPlatform() == Platform.MAC) {
             System.setProperty("Quaqua.jniIsPreloaded", "true");
@@ -915,6 +924,12 @@ public final class Datavyu extends SingleFrameApplication implements KeyEventDis
     @Override
     protected void ready() {
         readyToOpenFile = true;
+
+        // Boot the Ruby engine while the user is busy, so that the first script runs at once
+        if (ConfigProperties.getInstance().getPrepareScriptEngine()) {
+            RunScriptController.prepareRubyEngine();
+        }
+
         if (commandLineFile != null) {
             getView().openExternalFile(new File(commandLineFile));
             commandLineFile = null;
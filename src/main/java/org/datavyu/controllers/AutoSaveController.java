@@ -19,7 +19,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datavyu.Datavyu;
 import org.datavyu.controllers.project.ProjectController;
+import org.datavyu.models.db.DataStore;
 import org.datavyu.models.db.UserWarningException;
+import org.datavyu.util.ConfigProperties;
 import org.datavyu.util.FileFilters.OpfFilter;
 import org.datavyu.util.FileFilters.ShapaFilter;
 
@@ -28,29 +30,48 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class AutoSaveController implements ActionListener {
 
     /** Logger for this class */
     private static Logger logger = LogManager.getLogger(DeleteColumnController.class);
 
+    /** Interval in milliseconds between two checks of the auto save journal */
+    private static final int JOURNAL_CHECK_INTERVAL = 2000;
+
     /** Timer for this class */
     private static Timer timer;
 
     /** File to auto save */
     private static File file;
 
+    /** Journal of the edits since the auto save file was written, null when saving in full */
+    private static AutoSaveJournal journal;
+
+    /** Name of the auto save file that the journal belongs to */
+    private static String journalName;
+
+    /** Checkpoint of the journal that is being written, null if none */
+    private static Future<?> checkpoint;
+
+    /** File the checkpoint is written to */
+    private static File checkpointFile;
+
+    /** Name of the auto save file the checkpoint is written for */
+    private static String checkpointName;
+
     private AutoSaveController() {}
 
     public static void setInterval(int interval) {
         if (interval == 0) {
-            if (timer != null) {
-                timer.stop();
-                timer = null;
-            }
+            stop();
+            timer = null;
             return;
         }
-        interval *= 60000;
+        // With a journal the edits are written as they happen, the timer only checks whether a full save is due
+        interval = useJournal() ? JOURNAL_CHECK_INTERVAL : interval * 60000;
         if (timer == null) {
             timer = new Timer(interval, new AutoSaveController());
             timer.start();
@@ -63,41 +84,62 @@ public class AutoSaveController implements ActionListener {
         if (timer != null) {
             timer.stop();
         }
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private static boolean useJournal() {
+        return ConfigProperties.getInstance().getUseAutoSaveJournal();
+    }
+
+    /**
+     * @param projController The project controller.
+     * @return True if the auto save file contains the whole project; false if it contains only the data store.
+     */
+    private static boolean isSavedAsProject(final ProjectController projController) {
+        return projController.isNewProject() || (projController.getProjectName() == null)
+                || (projController.getLastSaveOption() instanceof ShapaFilter)
+                || (projController.getLastSaveOption() instanceof OpfFilter);
+    }
+
+    /**
+     * @param projController The project controller.
+     * @return The name of the auto save file without the random part added for the temporary file.
+     */
+    private static String getAutoSaveName(final ProjectController projController) {
+        if (projController.isNewProject() || (projController.getProjectName() == null)) {
+            return "~noname_.opf";
+        } else if (isSavedAsProject(projController)) {
+            return "~" + projController.getProjectName() + "_.opf";
+        } else {
+            String filename = "~" + projController.getDatabaseFileName();
+            return FilenameUtils.getBaseName(filename) + "_." + FilenameUtils.getExtension(filename);
+        }
     }
 
     @Override
     public void actionPerformed(ActionEvent evt) {
-        String baseName;
-        String ext;
+        if (journal != null || useJournal()) {
+            checkJournal();
+            return;
+        }
         try {
             if (file != null) {
                 file.delete();
             }
             ProjectController projController = Datavyu.getProjectController();
             SaveController saveController = new SaveController();
-            if (projController.isNewProject() || (projController.getProjectName() == null)) {
-                baseName = "~noname_";
-                ext = ".opf";
-                file = File.createTempFile(baseName, ext);
+            saveController.setCompressionLevel(ConfigProperties.getInstance().getAutoSaveCompressionLevel());
+            String name = getAutoSaveName(projController);
+            file = File.createTempFile(FilenameUtils.getBaseName(name), "." + FilenameUtils.getExtension(name));
+            if (isSavedAsProject(projController)) {
                 saveController.saveProject(file, projController.getProject(),
                         projController.getDataStore(), false);
             } else {
-                if ((projController.getLastSaveOption() instanceof ShapaFilter)
-                        || (projController.getLastSaveOption()
-                        instanceof OpfFilter)) {
-                    baseName = "~" + projController.getProjectName() + "_";
-                    ext = ".opf";
-                    file = File.createTempFile(baseName, ext);
-                    saveController.saveProject(file, projController.getProject(),
-                            projController.getDataStore(), false);
-                    // Save content just as a database.
-                } else {
-                    String filename = "~" + projController.getDatabaseFileName();
-                    baseName = FilenameUtils.getBaseName(filename) + "_";
-                    ext = "." + FilenameUtils.getExtension(filename);
-                    file = File.createTempFile(baseName, ext);
-                    saveController.saveDataStore(file, projController.getDataStore(), false);
-                }
+                // Save content just as a database.
+                saveController.saveDataStore(file, projController.getDataStore(), false);
             }
         } catch (UserWarningException lee) {
             logger.error("UserWarningException: Unable to autosave.", lee);
@@ -107,4 +149,67 @@ public class AutoSaveController implements ActionListener {
             file.deleteOnExit();
         }
     }
+
+    /**
+     * Attaches the journal to the current data store and starts writing a new auto save file when the journal can't
+     * be replayed on top of the current one. The file is written in the background, it replaces the current one on a
+     * later check once it is complete.
+     */
+    private void checkJournal() {
+        if (checkpoint != null) {
+            if (!checkpoint.isDone()) {
+                return;
+            }
+            finishCheckpoint();
+        }
+
+        ProjectController projController = Datavyu.getProjectController();
+        DataStore dataStore = projController.getDataStore();
+        String name = getAutoSaveName(projController);
+
+        if (journal == null || journal.getDataStore() != dataStore) {
+            if (journal != null) {
+                journal.close();
+            }
+            journal = new AutoSaveJournal(dataStore);
+            journal.setCompressionLevel(ConfigProperties.getInstance().getAutoSaveCompressionLevel());
+        }
+        if (!journal.isCheckpointDue() && name.equals(journalName)) {
+            return;
+        }
+
+        try {
+            checkpointFile = File.createTempFile(FilenameUtils.getBaseName(name),
+                    "." + FilenameUtils.getExtension(name));
+            checkpointFile.deleteOnExit();
+            AutoSaveJournal.getJournalFile(checkpointFile).deleteOnExit();
+            checkpointName = name;
+            checkpoint = journal.startCheckpoint(checkpointFile,
+                    isSavedAsProject(projController) ? projController.getProject() : null);
+        } catch (UserWarningException lee) {
+            logger.error("UserWarningException: Unable to autosave.", lee);
+        } catch (IOException ioe) {
+            logger.error("IOException: Unable to autosave.", ioe);
+        }
+    }
+
+    /**
+     * Makes the checkpoint that has been written the auto save file.
+     */
+    private static void finishCheckpoint() {
+        try {
+            checkpoint.get();
+            if (file != null && !file.equals(checkpointFile)) {
+                // Remove a file that was saved in full before the journal was used
+                file.delete();
+            }
+            file = checkpointFile;
+            journalName = checkpointName;
+        } catch (ExecutionException ee) {
+            logger.error("Unable to autosave.", ee.getCause());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint = null;
+    }
 }
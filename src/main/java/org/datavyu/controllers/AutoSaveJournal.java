@@ -0,0 +1,781 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datavyu.models.db.*;
+import org.datavyu.models.project.Project;
+import org.datavyu.models.project.ViewerSetting;
+import org.datavyu.util.ZipArchiveWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Append-only journal of the edits made to a data store since its last full save (the checkpoint).
+ *
+ * Every mutation reported by the data store is turned into one tab separated record that is queued in memory and
+ * appended to the journal file by a background thread every few hundred milliseconds. Records address cells by the
+ * name of their variable and the position of the cell in the checkpoint, cells inserted afterwards get the next free
+ * position of their variable. Renaming, hiding, showing, moving and removing a variable is journaled as well. Adding a
+ * variable or changing its arguments requests a new checkpoint instead, which is written once the variables were left
+ * alone for a few seconds, so that a burst of such changes is saved once. Checkpoints are written by the same
+ * background thread, the data store is only serialized to memory on the thread that edits it.
+ *
+ * The records are:
+ * <pre>
+ * I  variable  cell  onset  offset  value...   cell inserted with all its values
+ * D  variable  cell                            cell removed
+ * B  variable  cell  onset                     onset changed
+ * E  variable  cell  offset                    offset changed
+ * V  variable  cell  argument  value           value changed, argument is -1 for text and nominal cells
+ * R  variable  name                            variable renamed
+ * H  variable  hidden                          variable hidden or shown
+ * O  variable  position                        variable moved
+ * X  variable                                  variable removed
+ * </pre>
+ */
+public final class AutoSaveJournal implements DataStoreChangeListener {
+
+    /** The logger for this class */
+    private static Logger logger = LogManager.getLogger(AutoSaveJournal.class);
+
+    /** Extension appended to the name of the checkpoint file to get the name of the journal file */
+    private static final String JOURNAL_EXTENSION = ".journal";
+
+    /** Interval in milliseconds between two appends to the journal file */
+    private static final long FLUSH_INTERVAL = 250;
+
+    /** Number of journaled records after which the journal is compacted into a new checkpoint */
+    private static final int COMPACTION_THRESHOLD = 50000;
+
+    /** Time in milliseconds the variables are left alone before a checkpoint that their changes required is due */
+    private static final long CHECKPOINT_DELAY = 10000;
+
+    private static final String CELL_INSERTED = "I";
+
+    private static final String CELL_REMOVED = "D";
+
+    private static final String ONSET_CHANGED = "B";
+
+    private static final String OFFSET_CHANGED = "E";
+
+    private static final String VALUE_CHANGED = "V";
+
+    private static final String VARIABLE_RENAMED = "R";
+
+    private static final String VARIABLE_HIDDEN = "H";
+
+    private static final String VARIABLE_MOVED = "O";
+
+    private static final String VARIABLE_REMOVED = "X";
+
+    /** The data store that is journaled */
+    private final DataStore dataStore;
+
+    /** Position of each journaled cell within its variable */
+    private final Map<Cell, Integer> cellNumbers = new HashMap<>();
+
+    /** Next free cell position for each variable */
+    private final Map<Variable, Integer> nextCellNumbers = new HashMap<>();
+
+    /** The state of each variable as last journaled */
+    private final Map<Variable, VariableState> variableStates = new HashMap<>();
+
+    /** Records that have not yet been appended to the journal file */
+    private List<String> pendingRecords = new ArrayList<>();
+
+    /** Appends the pending records to the journal file */
+    private final ScheduledExecutorService flushService;
+
+    /** The last full save of the data store */
+    private File checkpointFile = null;
+
+    /** Writer for the journal file that belongs to the checkpoint */
+    private Writer journalWriter = null;
+
+    /** Number of records journaled since the last checkpoint */
+    private int recordCount = 0;
+
+    /** True when the journal can no longer be replayed on top of the checkpoint */
+    private boolean checkpointRequired = true;
+
+    /** True while a checkpoint is written, the records journaled meanwhile wait for its journal */
+    private boolean checkpointInProgress = false;
+
+    /** Time in milliseconds of the last variable change that required a checkpoint */
+    private long lastVariableChange = 0;
+
+    /** Compression level for checkpoints of projects */
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Creates a journal for the data store and starts listening to its changes. No records are kept until the first
+     * checkpoint has been written.
+     *
+     * @param dataStore The data store to journal.
+     */
+    public AutoSaveJournal(final DataStore dataStore) {
+        this.dataStore = dataStore;
+        flushService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AutoSaveJournal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushService.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        dataStore.addChangeListener(this);
+    }
+
+    /**
+     * @param checkpointFile The checkpoint file.
+     * @return The journal file that belongs to the checkpoint file.
+     */
+    public static File getJournalFile(final File checkpointFile) {
+        return new File(checkpointFile.getPath() + JOURNAL_EXTENSION);
+    }
+
+    /**
+     * Sets the compression level for checkpoints of projects.
+     *
+     * @param compressionLevel ZipArchiveWriter.STORED or one of the Deflater levels.
+     */
+    public void setCompressionLevel(final int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return The data store that is journaled.
+     */
+    public DataStore getDataStore() {
+        return dataStore;
+    }
+
+    /**
+     * @return The last full save of the data store, null if none has been written yet.
+     */
+    public synchronized File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * @return True if the data store should be saved in full, because the journal can't express the changes since
+     * the last checkpoint or it grew too large to be replayed quickly.
+     */
+    public synchronized boolean isCheckpointRequired() {
+        return checkpointRequired || recordCount >= COMPACTION_THRESHOLD;
+    }
+
+    /**
+     * @return True if the data store should be saved in full now. A checkpoint required by changes to the variables
+     * is only due once the variables were left alone for a while, and none is due while one is being written.
+     */
+    public synchronized boolean isCheckpointDue() {
+        return !checkpointInProgress && (recordCount >= COMPACTION_THRESHOLD
+                || (checkpointRequired && System.currentTimeMillis() - lastVariableChange >= CHECKPOINT_DELAY));
+    }
+
+    /**
+     * Notes a variable change the journal can't express.
+     */
+    private void requireCheckpoint() {
+        checkpointRequired = true;
+        lastVariableChange = System.currentTimeMillis();
+    }
+
+    /**
+     * @return True while a checkpoint is being written.
+     */
+    public synchronized boolean isCheckpointInProgress() {
+        return checkpointInProgress;
+    }
+
+    /**
+     * Saves the data store in full and starts an empty journal for it, waiting until the checkpoint is written.
+     *
+     * @param newCheckpointFile The file to save the data store to.
+     * @param project The project to save along with the data store, null to save the data store only.
+     * @throws UserWarningException If unable to save the data store.
+     * @throws IOException If unable to write the checkpoint or create the journal file.
+     */
+    public void checkpoint(final File newCheckpointFile, final Project project)
+            throws UserWarningException, IOException {
+        try {
+            startCheckpoint(newCheckpointFile, project).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing checkpoint " + newCheckpointFile);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to write checkpoint " + newCheckpointFile, e.getCause());
+        }
+    }
+
+    /**
+     * Starts saving the data store in full. The data store is serialized on the calling thread, which has to be the
+     * one that edits it, while the journal thread compresses and writes the checkpoint. Edits made in the meantime are
+     * journaled against the new checkpoint and appended to its journal once it has been written. The previous
+     * checkpoint and its journal stay in place until then, so that there is always one to recover from.
+     *
+     * @param newCheckpointFile The file to save the data store to.
+     * @param project The project to save along with the data store, null to save the data store only.
+     * @return The checkpoint being written.
+     * @throws UserWarningException If unable to serialize the data store.
+     */
+    public synchronized Future<?> startCheckpoint(final File newCheckpointFile, final Project project)
+            throws UserWarningException {
+        if (checkpointInProgress) {
+            throw new IllegalStateException("A checkpoint is already being written.");
+        }
+
+        ByteArrayOutputStream db = new ByteArrayOutputStream();
+        new SaveDataStoreFileController().saveAsCsv(db, dataStore);
+        Map<String, byte[]> entries = null;
+        if (project != null) {
+            entries = new LinkedHashMap<>();
+            ByteArrayOutputStream entry = new ByteArrayOutputStream();
+            new SaveProjectFileController().save(entry, project);
+            entries.put("project", entry.toByteArray());
+            entries.put("db", db.toByteArray());
+            // BugzID:1806
+            for (ViewerSetting vs : project.getViewerSettings()) {
+                entry = new ByteArrayOutputStream();
+                try {
+                    vs.writeSettings(entry);
+                } catch (IOException e) {
+                    throw new UserWarningException("Unable to save the settings of " + vs.getSettingsId(), e);
+                }
+                entries.put(vs.getSettingsId(), entry.toByteArray());
+            }
+        }
+
+        // The old journal ends with the edits the serialized data store holds
+        flush();
+        closeJournalWriter();
+        cellNumbers.clear();
+        nextCellNumbers.clear();
+        variableStates.clear();
+        for (Variable variable : dataStore.getAllVariables()) {
+            variableStates.put(variable, new VariableState(variable));
+            // Cells that are not loaded yet were saved as read, they are numbered once they are loaded
+            if (variable.getCellLoader() == null) {
+                numberCells(variable);
+            }
+        }
+        pendingRecords = new ArrayList<>();
+        recordCount = 0;
+        checkpointRequired = false;
+        checkpointInProgress = true;
+
+        byte[] data = db.toByteArray();
+        Map<String, byte[]> archiveEntries = entries;
+        return flushService.submit(() -> {
+            try {
+                writeCheckpoint(newCheckpointFile, data, archiveEntries);
+                finishCheckpoint(newCheckpointFile);
+            } catch (IOException | RuntimeException e) {
+                synchronized (AutoSaveJournal.this) {
+                    // The edits since the serialized data store are only kept by the next checkpoint
+                    checkpointInProgress = false;
+                    checkpointRequired = true;
+                    pendingRecords = new ArrayList<>();
+                }
+                throw e;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Writes a serialized data store to a checkpoint file.
+     *
+     * @param newCheckpointFile The file to write.
+     * @param data The data store as CSV.
+     * @param entries The entries of the project archive, null to write the data store only.
+     * @throws IOException If unable to write the file.
+     */
+    private void writeCheckpoint(final File newCheckpointFile, final byte[] data, final Map<String, byte[]> entries)
+            throws IOException {
+        if (entries == null) {
+            try (OutputStream out = new FileOutputStream(newCheckpointFile)) {
+                out.write(data);
+            }
+            return;
+        }
+        try (ZipArchiveWriter archive = new ZipArchiveWriter(new FileOutputStream(newCheckpointFile),
+                compressionLevel, false)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                archive.writeEntry(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Starts the journal of a checkpoint that has been written and removes the previous checkpoint.
+     *
+     * @param newCheckpointFile The checkpoint written.
+     * @throws IOException If unable to create the journal file.
+     */
+    private synchronized void finishCheckpoint(final File newCheckpointFile) throws IOException {
+        checkpointInProgress = false;
+        File oldCheckpointFile = checkpointFile;
+        checkpointFile = newCheckpointFile;
+        if (!flushService.isShutdown()) {
+            journalWriter = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(getJournalFile(newCheckpointFile)), StandardCharsets.UTF_8));
+            flush();
+        }
+
+        if (oldCheckpointFile != null && !oldCheckpointFile.equals(newCheckpointFile)) {
+            getJournalFile(oldCheckpointFile).delete();
+            oldCheckpointFile.delete();
+        }
+    }
+
+    /**
+     * Numbers the cells of the variable in the order they are saved to the checkpoint.
+     *
+     * @param variable The variable whose cells are numbered.
+     */
+    private void numberCells(final Variable variable) {
+        List<Cell> cells = variable.getCells();
+        for (int i = 0; i < cells.size(); i++) {
+            cellNumbers.put(cells.get(i), i);
+        }
+        nextCellNumbers.put(variable, cells.size());
+    }
+
+    /**
+     * Appends all pending records to the journal file.
+     */
+    public synchronized void flush() {
+        if (journalWriter == null || pendingRecords.isEmpty()) {
+            return;
+        }
+        try {
+            for (String record : pendingRecords) {
+                journalWriter.write(record);
+                journalWriter.write('\n');
+            }
+            journalWriter.flush();
+        } catch (IOException e) {
+            logger.error("Unable to append to auto save journal, falling back to a full save. Error: ", e);
+            checkpointRequired = true;
+        }
+        pendingRecords = new ArrayList<>();
+    }
+
+    /**
+     * Stops listening to the data store, appends the pending records and closes the journal file.
+     */
+    public synchronized void close() {
+        dataStore.removeChangeListener(this);
+        flushService.shutdown();
+        flush();
+        closeJournalWriter();
+    }
+
+    private void closeJournalWriter() {
+        if (journalWriter != null) {
+            try {
+                journalWriter.close();
+            } catch (IOException e) {
+                logger.error("Unable to close auto save journal. Error: ", e);
+            }
+            journalWriter = null;
+        }
+    }
+
+    /**
+     * Queues a record for the journal file, unless the next checkpoint will capture the change anyway.
+     *
+     * @param fields The fields of the record.
+     */
+    private void append(final String... fields) {
+        if (checkpointRequired) {
+            return;
+        }
+        StringBuilder record = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                record.append('\t');
+            }
+            escape(record, fields[i]);
+        }
+        pendingRecords.add(record.toString());
+        recordCount++;
+    }
+
+    /**
+     * @param cell The cell to find the position for.
+     * @return The position of the cell within its variable, null if the cell is not known to the journal.
+     */
+    private Integer getCellNumber(final Cell cell) {
+        Integer cellNumber = cellNumbers.get(cell);
+        if (cellNumber == null) {
+            // A cell that the journal can't address would be lost on recovery, so fall back to a full save.
+            checkpointRequired = true;
+        }
+        return cellNumber;
+    }
+
+    @Override
+    public synchronized void cellInserted(final Cell cell) {
+        Variable variable = cell.getVariable();
+        Integer cellNumber = nextCellNumbers.get(variable);
+        if (cellNumber == null) {
+            checkpointRequired = true;
+            return;
+        }
+        nextCellNumbers.put(variable, cellNumber + 1);
+        cellNumbers.put(cell, cellNumber);
+
+        List<String> fields = new ArrayList<>();
+        fields.add(CELL_INSERTED);
+        fields.add(variable.getName());
+        fields.add(String.valueOf(cellNumber));
+        fields.add(String.valueOf(cell.getOnset()));
+        fields.add(String.valueOf(cell.getOffset()));
+        CellValue cellValue = cell.getCellValue();
+        if (cellValue instanceof MatrixCellValue) {
+            for (CellValue argument : ((MatrixCellValue) cellValue).getArguments()) {
+                fields.add(argument.toString());
+            }
+        } else {
+            fields.add(cellValue.toString());
+        }
+        append(fields.toArray(new String[fields.size()]));
+    }
+
+    @Override
+    public synchronized void cellRemoved(final Cell cell) {
+        Integer cellNumber = cellNumbers.remove(cell);
+        if (cellNumber == null) {
+            checkpointRequired = true;
+            return;
+        }
+        append(CELL_REMOVED, cell.getVariable().getName(), String.valueOf(cellNumber));
+    }
+
+    @Override
+    public synchronized void onsetChanged(final Cell cell, final long oldOnset, final long newOnset) {
+        if (cellNumbers.containsKey(cell) || cell.getVariable().contains(cell)) {
+            Integer cellNumber = getCellNumber(cell);
+            if (cellNumber != null) {
+                append(ONSET_CHANGED, cell.getVariable().getName(), String.valueOf(cellNumber),
+                        String.valueOf(newOnset));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void offsetChanged(final Cell cell, final long oldOffset, final long newOffset) {
+        if (cellNumbers.containsKey(cell) || cell.getVariable().contains(cell)) {
+            Integer cellNumber = getCellNumber(cell);
+            if (cellNumber != null) {
+                append(OFFSET_CHANGED, cell.getVariable().getName(), String.valueOf(cellNumber),
+                        String.valueOf(newOffset));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void valueChanged(final Cell cell, final int argumentIndex, final String oldValue,
+                                          final String newValue) {
+        if (cellNumbers.containsKey(cell) || cell.getVariable().contains(cell)) {
+            Integer cellNumber = getCellNumber(cell);
+            if (cellNumber != null) {
+                append(VALUE_CHANGED, cell.getVariable().getName(), String.valueOf(cellNumber),
+                        String.valueOf(argumentIndex), newValue);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void cellsLoaded(final Variable variable) {
+        if (!checkpointRequired && !nextCellNumbers.containsKey(variable)) {
+            numberCells(variable);
+        }
+    }
+
+    @Override
+    public synchronized void argumentsChanging(final Variable variable) {
+        // The checkpoint that follows the change captures the new arguments
+        requireCheckpoint();
+    }
+
+    @Override
+    public synchronized void variableChanged(final Variable variable) {
+        VariableState state = variableStates.get(variable);
+        if (state == null || state.rootNode != variable.getRootNode()) {
+            // Added variables and new arguments are captured by the next checkpoint
+            requireCheckpoint();
+            return;
+        }
+
+        if (dataStore.getVariable(variable.getName()) != variable) {
+            append(VARIABLE_REMOVED, state.name);
+            variableStates.remove(variable);
+            nextCellNumbers.remove(variable);
+            return;
+        }
+        if (!state.name.equals(variable.getName())) {
+            append(VARIABLE_RENAMED, state.name, variable.getName());
+        }
+        if (state.hidden != variable.isHidden()) {
+            append(VARIABLE_HIDDEN, variable.getName(), String.valueOf(variable.isHidden()));
+        }
+        if (state.orderIndex != variable.getOrderIndex()) {
+            append(VARIABLE_MOVED, variable.getName(), String.valueOf(variable.getOrderIndex()));
+        }
+        variableStates.put(variable, new VariableState(variable));
+    }
+
+    /**
+     * Replays the journal that belongs to the checkpoint file on top of it and saves the result back to the
+     * checkpoint file. Does nothing when the checkpoint has no journal.
+     *
+     * @param checkpointFile The checkpoint file to recover.
+     * @return True if a journal was replayed; otherwise false.
+     */
+    public static boolean recover(final File checkpointFile) {
+        File journalFile = getJournalFile(checkpointFile);
+        if (!journalFile.isFile() || journalFile.length() == 0) {
+            return false;
+        }
+
+        try {
+            OpenController openController = new OpenController();
+            boolean isProject = checkpointFile.getName().endsWith(".opf");
+            if (isProject) {
+                openController.openProject(checkpointFile);
+            } else {
+                openController.openDataStore(checkpointFile);
+            }
+            DataStore recovered = openController.getDataStore();
+
+            Map<String, List<Cell>> cellsByVariable = new HashMap<>();
+            for (Variable variable : recovered.getAllVariables()) {
+                cellsByVariable.put(variable.getName(), new ArrayList<>(variable.getCells()));
+            }
+
+            int replayed = 0;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+                String record;
+                while ((record = reader.readLine()) != null) {
+                    if (replay(recovered, cellsByVariable, record)) {
+                        replayed++;
+                    } else {
+                        logger.warn("Skipping unreadable auto save journal record: " + record);
+                    }
+                }
+            }
+
+            SaveController saveController = new SaveController();
+            if (isProject) {
+                saveController.saveProject(checkpointFile, openController.getProject(), recovered, false);
+            } else {
+                saveController.saveDataStore(checkpointFile, recovered, false);
+            }
+            journalFile.delete();
+            logger.info("Replayed " + replayed + " auto save journal records on " + checkpointFile.getName());
+            return true;
+        } catch (Exception e) {
+            logger.error("Unable to replay auto save journal " + journalFile + ". Error: ", e);
+            return false;
+        }
+    }
+
+    /**
+     * Applies one journal record to the data store.
+     *
+     * @param dataStore The data store to change.
+     * @param cellsByVariable The cells of each variable by their journal position.
+     * @param record The journal record.
+     * @return True if the record was applied; otherwise false.
+     */
+    private static boolean replay(final DataStore dataStore, final Map<String, List<Cell>> cellsByVariable,
+                                  final String record) {
+        List<String> fields = unescape(record);
+        if (fields.size() < 2) {
+            return false;
+        }
+        if (VARIABLE_RENAMED.equals(fields.get(0)) || VARIABLE_HIDDEN.equals(fields.get(0))
+                || VARIABLE_MOVED.equals(fields.get(0)) || VARIABLE_REMOVED.equals(fields.get(0))) {
+            return replayVariableChange(dataStore, cellsByVariable, fields);
+        }
+        if (fields.size() < 3) {
+            return false;
+        }
+        Variable variable = dataStore.getVariable(fields.get(1));
+        List<Cell> cells = cellsByVariable.get(fields.get(1));
+        if (variable == null || cells == null) {
+            return false;
+        }
+
+        try {
+            int cellNumber = Integer.parseInt(fields.get(2));
+            String type = fields.get(0);
+            if (CELL_INSERTED.equals(type) && fields.size() >= 5) {
+                Cell cell = variable.createCell();
+                cell.setOnset(Long.parseLong(fields.get(3)));
+                cell.setOffset(Long.parseLong(fields.get(4)));
+                if (cell.getCellValue() instanceof MatrixCellValue) {
+                    for (int i = 5; i < fields.size(); i++) {
+                        setValue(cell, i - 5, fields.get(i));
+                    }
+                } else if (fields.size() > 5) {
+                    setValue(cell, -1, fields.get(5));
+                }
+                while (cells.size() < cellNumber) {
+                    cells.add(null);
+                }
+                cells.add(cellNumber, cell);
+                return true;
+            }
+
+            Cell cell = cellNumber < cells.size() ? cells.get(cellNumber) : null;
+            if (cell == null) {
+                return false;
+            }
+            if (CELL_REMOVED.equals(type)) {
+                variable.removeCell(cell);
+                cells.set(cellNumber, null);
+            } else if (ONSET_CHANGED.equals(type) && fields.size() == 4) {
+                cell.setOnset(Long.parseLong(fields.get(3)));
+            } else if (OFFSET_CHANGED.equals(type) && fields.size() == 4) {
+                cell.setOffset(Long.parseLong(fields.get(3)));
+            } else if (VALUE_CHANGED.equals(type) && fields.size() == 5) {
+                setValue(cell, Integer.parseInt(fields.get(3)), fields.get(4));
+            } else {
+                return false;
+            }
+            return true;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies one journal record of a variable change to the data store.
+     *
+     * @param dataStore The data store to change.
+     * @param cellsByVariable The cells of each variable by their journal position.
+     * @param fields The fields of the journal record.
+     * @return True if the record was applied; otherwise false.
+     */
+    private static boolean replayVariableChange(final DataStore dataStore,
+                                                final Map<String, List<Cell>> cellsByVariable,
+                                                final List<String> fields) {
+        String name = fields.get(1);
+        Variable variable = dataStore.getVariable(name);
+        if (variable == null) {
+            return false;
+        }
+
+        try {
+            String type = fields.get(0);
+            if (VARIABLE_REMOVED.equals(type) && fields.size() == 2) {
+                dataStore.removeVariable(variable);
+                cellsByVariable.remove(name);
+            } else if (VARIABLE_RENAMED.equals(type) && fields.size() == 3) {
+                variable.setName(fields.get(2));
+                cellsByVariable.put(fields.get(2), cellsByVariable.remove(name));
+            } else if (VARIABLE_HIDDEN.equals(type) && fields.size() == 3) {
+                variable.setHidden(Boolean.parseBoolean(fields.get(2)));
+            } else if (VARIABLE_MOVED.equals(type) && fields.size() == 3) {
+                variable.setOrderIndex(Integer.parseInt(fields.get(2)));
+            } else {
+                return false;
+            }
+            return true;
+        } catch (UserWarningException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void setValue(final Cell cell, final int argumentIndex, final String value) {
+        if (argumentIndex < 0) {
+            if (value.isEmpty()) {
+                cell.getCellValue().clear();
+            } else {
+                cell.getCellValue().set(value);
+            }
+        } else if (value.isEmpty()) {
+            cell.clearMatrixValue(argumentIndex);
+        } else {
+            cell.setMatrixValue(argumentIndex, value);
+        }
+    }
+
+    private static void escape(final StringBuilder builder, final String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\': builder.append("\\\\"); break;
+                case '\t': builder.append("\\t"); break;
+                case '\n': builder.append("\\n"); break;
+                case '\r': builder.append("\\r"); break;
+                default: builder.append(c);
+            }
+        }
+    }
+
+    private static List<String> unescape(final String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < record.length()) {
+                char escaped = record.charAt(++i);
+                field.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * The name, visibility, position and arguments of a variable as last journaled.
+     */
+    private static final class VariableState {
+        final String name;
+        final boolean hidden;
+        final int orderIndex;
+        final Argument rootNode;
+
+        VariableState(final Variable variable) {
+            name = variable.getName();
+            hidden = variable.isHidden();
+            orderIndex = variable.getOrderIndex();
+            rootNode = variable.getRootNode();
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datavyu.models.db.DataStore;
+import org.datavyu.models.project.Project;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a script or an export over many projects without a user interface, started with
+ * <pre>
+ * java -cp datavyu.jar org.datavyu.Datavyu --batch ACTION [OPTIONS] FILE...
+ * </pre>
+ * where ACTION is one of
+ * <ul>
+ * <li>script: run the Ruby script given by --script against each project</li>
+ * <li>frames: export each project frame by frame as CSV, at the frame rate given by --frame-rate (default 30)</li>
+ * <li>cells: export each project as CSV with a row per cell ordinal, to NAME_cells.csv</li>
+ * <li>json: export each project as JSON</li>
+ * </ul>
+ * FILE is a project (.opf) or spreadsheet (.csv), or a glob such as studies/*.opf. Exports are written next to each
+ * project, or into the directory given by --out. --threads sets the number of projects processed at once, --save
+ * saves each project after the script ran.
+ *
+ * Every project is opened into its own data store on a worker pool. Scripts are parsed once and run in an isolated
+ * Ruby runtime per worker, with $db and $pj set to the project being processed. Per project timings and failures are
+ * printed.
+ */
+public final class BatchController {
+
+    /** Logger for this class */
+    private static Logger logger = LogManager.getLogger(BatchController.class);
+
+    /** Frame rate used for frame exports unless given */
+    private static final double DEFAULT_FRAME_RATE = 30.0;
+
+    /** The actions that can be applied to each project */
+    private enum Action {
+        SCRIPT, FRAMES, CELLS, JSON
+    }
+
+    /** The action to apply */
+    private Action action;
+
+    /** The Ruby script to run for the script action */
+    private File script;
+
+    /** The directory exports are written to; null to write them next to each project */
+    private File outputDirectory;
+
+    /** The frame rate of frame exports */
+    private double frameRate = DEFAULT_FRAME_RATE;
+
+    /** The number of projects processed at once */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /** True if projects are saved after the script ran */
+    private boolean save = false;
+
+    /** The projects to process */
+    private final List<File> files = new ArrayList<>();
+
+    /** The source of the script */
+    private String scriptSource;
+
+    /**
+     * Outcome of processing a project.
+     */
+    private static final class Result {
+        final File file;
+        final long nanos;
+        final String output;
+        final Throwable failure;
+
+        Result(final File file, final long nanos, final String output, final Throwable failure) {
+            this.file = file;
+            this.nanos = nanos;
+            this.output = output;
+            this.failure = failure;
+        }
+    }
+
+    private BatchController() {}
+
+    /**
+     * Runs a batch from command line arguments.
+     *
+     * @param args The arguments following --batch.
+     * @return The exit status: 0 if every project was processed, 1 if any failed and 2 for invalid arguments.
+     */
+    public static int run(final String[] args) {
+        BatchController batch = new BatchController();
+        try {
+            batch.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: --batch script|frames|cells|json [--script FILE.rb] [--out DIRECTORY] "
+                    + "[--frame-rate FPS] [--threads N] [--save] FILE|GLOB...");
+            return 2;
+        }
+        return batch.process(System.out);
+    }
+
+    /**
+     * Parses the action, options and files.
+     *
+     * @param args The arguments following --batch.
+     * @throws IllegalArgumentException If the arguments are invalid.
+     */
+    private void parseArguments(final String[] args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Missing action");
+        }
+        try {
+            action = Action.valueOf(args[0].toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown action: " + args[0]);
+        }
+
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            try {
+                switch (arg) {
+                    case "--script":
+                        script = new File(args[++i]);
+                        break;
+                    case "--out":
+                        outputDirectory = new File(args[++i]);
+                        break;
+                    case "--frame-rate":
+                        frameRate = Double.parseDouble(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--save":
+                        save = true;
+                        break;
+                    default:
+                        files.addAll(expand(arg));
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for " + arg + ": " + args[i]);
+            }
+        }
+
+        if (action == Action.SCRIPT) {
+            if (script == null || !script.isFile()) {
+                throw new IllegalArgumentException("The script action needs an existing --script");
+            }
+            try {
+                scriptSource = new String(Files.readAllBytes(script.toPath()), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Unable to read " + script + ": " + e.getMessage());
+            }
+        }
+        if (frameRate <= 0 || threads < 1) {
+            throw new IllegalArgumentException("The frame rate and the number of threads must be positive");
+        }
+        if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create output directory: " + outputDirectory);
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No projects to process");
+        }
+    }
+
+    /**
+     * Expands a glob in the file name of a path, such as studies/*.opf, to the matching files.
+     *
+     * @param path A path, possibly with a glob in its file name.
+     * @return The matching files in name order, or the path itself if it has no glob.
+     */
+    private static List<File> expand(final String path) {
+        List<File> matches = new ArrayList<>();
+        File file = new File(path);
+        if (!path.contains("*") && !path.contains("?") && !path.contains("[") && !path.contains("{")) {
+            matches.add(file);
+            return matches;
+        }
+
+        Path directory = file.getParentFile() == null ? Paths.get(".") : file.getParentFile().toPath();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, file.getName())) {
+            for (Path match : stream) {
+                matches.add(match.toFile());
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to list " + directory + ": " + e.getMessage());
+        }
+        matches.sort(null);
+        return matches;
+    }
+
+    /**
+     * Processes every project on the worker pool and prints a line per project as they finish, in order.
+     *
+     * @param out The stream to print to.
+     * @return The exit status.
+     */
+    private int process(final PrintStream out) {
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        List<Future<Result>> results = new ArrayList<>();
+        for (File file : files) {
+            results.add(workers.submit(() -> process(file)));
+        }
+
+        int failures = 0;
+        for (Future<Result> future : results) {
+            Result result;
+            try {
+                result = future.get();
+            } catch (Exception e) {
+                // Results carry their failures; this is only reached if the worker itself failed
+                logger.error("Batch worker failed", e);
+                failures++;
+                continue;
+            }
+
+            if (!result.output.isEmpty()) {
+                out.print(result.output);
+            }
+            if (result.failure == null) {
+                out.printf("OK     %8.2f s  %s%n", result.nanos / 1e9, result.file);
+            } else {
+                failures++;
+                out.printf("FAILED %8.2f s  %s: %s%n", result.nanos / 1e9, result.file, result.failure);
+            }
+        }
+        workers.shutdown();
+
+        out.printf("%d of %d projects processed in %.2f s%n", files.size() - failures, files.size(),
+                (System.nanoTime() - start) / 1e9);
+        return failures == 0 ? 0 : 1;
+    }
+
+    /**
+     * Opens a project into its own data store and applies the action to it.
+     *
+     * @param file The project.
+     * @return The outcome.
+     */
+    private Result process(final File file) {
+        long start = System.nanoTime();
+        StringWriter output = new StringWriter();
+        DataStore dataStore = null;
+        try {
+            if (!file.isFile()) {
+                throw new FileNotFoundException(file.getPath());
+            }
+
+            OpenController openController = new OpenController();
+            boolean isProject = file.getName().endsWith(".opf");
+            if (isProject) {
+                openController.openProject(file);
+            } else {
+                openController.openDataStore(file);
+            }
+            dataStore = openController.getDataStore();
+            if (dataStore == null) {
+                throw new IOException("Unable to open " + file);
+            }
+            Project project = openController.getProject();
+
+            String baseName = FilenameUtils.getBaseName(file.getName());
+            File directory = outputDirectory != null ? outputDirectory : file.getAbsoluteFile().getParentFile();
+            ExportDatabaseFileController exporter = new ExportDatabaseFileController();
+            switch (action) {
+                case SCRIPT:
+                    runScript(dataStore, project, output);
+                    if (save) {
+                        if (isProject) {
+                            new SaveController().saveProject(file, project, dataStore, false);
+                        } else {
+                            new SaveController().saveDataStore(file, dataStore, false);
+                        }
+                    }
+                    break;
+                case FRAMES:
+                    exporter.exportByFrame(getExportFile(file, directory, baseName + "_by_frame.csv").getPath(),
+                            dataStore, frameRate);
+                    break;
+                case CELLS:
+                    exporter.exportAsCells(getExportFile(file, directory, baseName + "_cells.csv").getPath(),
+                            dataStore);
+                    break;
+                case JSON:
+                    exporter.setParallel(true);
+                    exporter.exportAsJSON(getExportFile(file, directory, baseName + ".json").getPath(), dataStore);
+                    break;
+            }
+            return new Result(file, System.nanoTime() - start, output.toString(), null);
+        } catch (Exception | LinkageError e) {
+            logger.error("Batch processing of " + file + " failed", e);
+            return new Result(file, System.nanoTime() - start, output.toString(), e);
+        } finally {
+            // The listener registries are shared by every data store; release this project's entries
+            if (dataStore != null) {
+                dataStore.clearListeners();
+            }
+        }
+    }
+
+    /**
+     * @param file The project exported.
+     * @param directory The directory to export to.
+     * @param name The name of the export.
+     * @return The file to export to.
+     * @throws IOException If the export would overwrite the project.
+     */
+    private static File getExportFile(final File file, final File directory, final String name) throws IOException {
+        File exportFile = new File(directory, name);
+        if (exportFile.getCanonicalFile().equals(file.getCanonicalFile())) {
+            throw new IOException("Refusing to overwrite " + file + " with its export");
+        }
+        return exportFile;
+    }
+
+    /**
+     * Runs the script against a project in an isolated Ruby runtime.
+     *
+     * @param dataStore The data store of the project, becomes $db.
+     * @param project The project, becomes $pj.
+     * @param output Receives what the script prints.
+     * @throws IOException If unable to write the output.
+     */
+    private void runScript(final DataStore dataStore, final Project project, final Writer output)
+            throws IOException {
+        IsolatedRubyRuntime runtime = IsolatedRubyRuntime.take();
+        try {
+            runtime.run(scriptSource, script.getAbsolutePath(), dataStore, project, output);
+        } finally {
+            runtime.release();
+            output.flush();
+        }
+    }
+}
@@ -18,7 +18,6 @@ import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import javax.swing.JOptionPane;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -33,9 +32,12 @@ import org.jdesktop.application.ResourceMap;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 /**
@@ -47,6 +49,12 @@ public final class ExportDatabaseFileController {
     /** Logger for this class */
     private static Logger logger = LogManager.getLogger(ExportDatabaseFileController.class);
 
+    /** True if JSON exports are indented for reading */
+    private boolean prettyPrint = true;
+
+    /** True if the passes of JSON exports are generated on all cores */
+    private boolean parallel = false;
+
     /**
      * Saves the database to the specified destination in a CSV format.
      *
@@ -56,276 +64,202 @@ public final class ExportDatabaseFileController {
      *                              disk (usually because of permissions errors).
      */
     public void exportByFrame(final String outFile, final DataStore dataStore) throws UserWarningException {
-        try {
-            FileOutputStream fos = new FileOutputStream(outFile);
-            PrintStream ps = new PrintStream(fos);
-
-            List<Variable> variables = dataStore.getAllVariables();
-
-            ArrayList<List<Cell>> cellCache = new ArrayList<>();
-            int[] currentIndex = new int[variables.size()];
-
-            // Get all of the cells from the DB and store them locally
-            for (Variable v : variables) {
-                cellCache.add(v.getCellsTemporally());
-            }
+        double frameRate = getExportFrameRate();
+        if (frameRate <= 0) {
+            return;
+        }
+        exportByFrame(outFile, dataStore, frameRate);
+    }
 
-            // Get first and last time point by sweeping over the cells
-            long firstTime = Long.MAX_VALUE;
-            long lastTime = 0;
+    /**
+     * Saves the database frame by frame to the specified destination in a CSV format, at the given frame rate rather
+     * than the one of the playback model.
+     *
+     * @param outFile The path of the file to use when writing to disk.
+     * @param dataStore The data store to save as a CSV file.
+     * @param frameRate The number of frames per second.
+     * @throws UserWarningException When unable to save the database as a CSV to
+     *                              disk (usually because of permissions errors).
+     */
+    public void exportByFrame(final String outFile, final DataStore dataStore, final double frameRate)
+            throws UserWarningException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile)), 1 << 16)) {
+            new FrameExporter(dataStore.getAllVariables(), frameRate).write(out);
+        } catch (IOException ie) {
+            logger.error("Export failed. Error: ", ie);
+            ResourceMap rMap = Application.getInstance(Datavyu.class).getContext().getResourceMap(Datavyu.class);
+            throw new UserWarningException(rMap.getString("UnableToSave.message", outFile), ie);
+        }
+    }
 
-            for (int i = 0; i < variables.size(); i++) {
-                List<Cell> cells = cellCache.get(i);
-                if (cells.isEmpty()) {
-                    continue;
-                }
-                if (cells.get(0).getOnset() < firstTime) {
-                    firstTime = cells.get(0).getOnset();
-                }
-                if (cells.get(0).getOffset() < firstTime) {
-                    firstTime = cells.get(0).getOffset();
-                }
+    /**
+     * Saves the database frame by frame to the specified destination as an Apache Arrow stream, with the same
+     * columns as the CSV export but typed, so that analysis tools load it without parsing.
+     *
+     * @param outFile The path of the file to use when writing to disk.
+     * @param dataStore The data store to save as an Arrow stream.
+     * @throws UserWarningException When unable to save the database as an Arrow stream to
+     *                              disk (usually because of permissions errors).
+     */
+    public void exportByFrameAsArrow(final String outFile, final DataStore dataStore) throws UserWarningException {
+        double frameRate = getExportFrameRate();
+        if (frameRate <= 0) {
+            return;
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile), 1 << 16)) {
+            new FrameExporter(dataStore.getAllVariables(), frameRate).writeArrow(out);
+        } catch (IOException ie) {
+            logger.error("Export failed. Error: ", ie);
+            ResourceMap rMap = Application.getInstance(Datavyu.class).getContext().getResourceMap(Datavyu.class);
+            throw new UserWarningException(rMap.getString("UnableToSave.message", outFile), ie);
+        }
+    }
 
-                if (cells.get(cells.size() - 1).getOnset() > lastTime) {
-                    lastTime = cells.get(cells.size() - 1).getOnset();
-                }
-                if (cells.get(cells.size() - 1).getOffset() > lastTime) {
-                    lastTime = cells.get(cells.size() - 1).getOffset();
-                }
+    /**
+     * Gets the frame rate to export by: the playback model's frameRate. Fallback is 30.0, if the user agrees.
+     *
+     * @return The frame rate, or -1 if the user cancelled the export.
+     */
+    private double getExportFrameRate() {
+        double frameRate;
+        try{
+            frameRate = Datavyu.getVideoController().getFrameRateController().getFrameRate();
+            if (frameRate <= 1.0) {
+                throw new IllegalArgumentException("Invalid frame rate");
             }
+        } catch(IllegalArgumentException e) {
+            frameRate = 30.0;
+            String defaultOption = "Cancel";
+            String alternativeOption = "OK";
+            String[] options = Datavyu.getPlatform() == Platform.MAC ? MacOS
+                .getOptions(defaultOption, alternativeOption) :
+                WindowsOS.getOptions(defaultOption, alternativeOption);
+            int selectedOption = JOptionPane.showOptionDialog(Datavyu.getView().getComponent(),
+                "Unable to get frame rate. Would you like to export with a 30 frame per second?",
+                e.getMessage(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE,
+                null, options, defaultOption);
+            boolean confirmation = (Datavyu.getPlatform() == Platform.MAC) ? (selectedOption == 1) : (selectedOption == 0);
+            if (!confirmation) { return -1; }
+            logger.error("Unable to get frame rate. Assuming value: " + frameRate);
+        }
+        return frameRate;
+    }
 
-            // Now that we have the first and last time, we loop over it using
-            // playback model's frameRate as step size. Fallback is 30.0
-            double frameRate;
-            try{
-                frameRate = Datavyu.getVideoController().getFrameRateController().getFrameRate();
-                if (frameRate <= 1.0) {
-                    throw new IllegalArgumentException("Invalid frame rate");
-                }
-            } catch(IllegalArgumentException e) {
-                frameRate = 30.0;
-                String defaultOption = "Cancel";
-                String alternativeOption = "OK";
-                String[] options = Datavyu.getPlatform() == Platform.MAC ? MacOS
-                    .getOptions(defaultOption, alternativeOption) :
-                    WindowsOS.getOptions(defaultOption, alternativeOption);
-                int selectedOption = JOptionPane.showOptionDialog(Datavyu.getView().getComponent(),
-                    "Unable to get frame rate. Would you like to export with a 30 frame per second?",
-                    e.getMessage(),
-                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE,
-                    null, options, defaultOption);
-                boolean confirmation = (Datavyu.getPlatform() == Platform.MAC) ? (selectedOption == 1) : (selectedOption == 0);
-                if (!confirmation) { return; }
-                logger.error("Unable to get frame rate. Assuming value: " + frameRate);
-            }
-            long current_time = firstTime;
+    /**
+     * Saves the database to the specified destination in a CSV format with a row per cell ordinal: the n-th cell of
+     * every column in the n-th row.
+     *
+     * @param outFile The path of the file to use when writing to disk.
+     * @param ds The data store to save as a CSV file.
+     * @throws UserWarningException When unable to save the database as a CSV to
+     *                              disk (usually because of permissions errors).
+     */
+    public void exportAsCells(final String outFile, final DataStore ds)
+            throws UserWarningException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile)), 1 << 16)) {
+            List<Variable> variables = getVariablesByName(ds);
 
             // Print header
-            String header = "nFrame,time,";
+            StringBuilder header = new StringBuilder();
             for (Variable v : variables) {
+                header.append(v.getName()).append(".ordinal");
+                header.append(',').append(v.getName()).append(".onset");
+                header.append(',').append(v.getName()).append(".offset,");
 
-                header += v.getName() + ".ordinal";
-                header += "," + v.getName() + ".onset";
-                header += "," + v.getName() + ".offset";
-
-                // Test if the variable is a matrix. If it is, then we have to print out all of its arguments.
+                // Test if the variable is a matrix. If it is, then
+                // we have to print out all of its arguments.
                 if (v.getRootNode().type == Argument.Type.MATRIX) {
                     for (Argument a : v.getRootNode().childArguments) {
-                        header += "," + v.getName() + "." + a.name;
+                        header.append(v.getName()).append('.').append(a.name).append(',');
                     }
                 } else {
-                    header += "," + v.getName() + ".value";
+                    header.append(v.getName()).append(".value,");
                 }
-                header += ',';
             }
-            header = header.trim();
-
-            // Write header
-            ps.println(header);
-
-            int nFrame = 1;
-            while (current_time <= lastTime + 1000.0 / frameRate) {
-                // Update the currentIndex list
-                for (int i = 0; i < variables.size(); i++) {
-                    if (!cellCache.get(i).isEmpty()) {
-                        Cell c = cellCache.get(i).get(currentIndex[i]);
-                        if (current_time > c.getOffset()) {
-
-                            for (int j = currentIndex[i]; j < cellCache.get(i).size(); j++) {
-                                Cell nextCell = cellCache.get(i).get(j);
-                                if (current_time >= nextCell.getOnset()) {
-                                    currentIndex[i] = j;
-                                }
-                            }
-                        }
-                    }
-                }
+            out.write(header.toString().trim());
+            out.write(System.lineSeparator());
+
+            // Walk the columns in lockstep, printing blanks for the columns that are out of cells
+            List<Iterator<Cell>> columns = new ArrayList<>();
+            String[] placeholders = new String[variables.size()];
+            for (int j = 0; j < variables.size(); j++) {
+                columns.add(variables.get(j).getCellsTemporally().iterator());
+                placeholders[j] = commas(getArgumentCount(variables.get(j)) + 3);
+            }
 
-                // Now print each frame as we loop through it
-                String row = Integer.toString(nFrame) + "," + Long.toString(current_time) + ",";
-                for (int i = 0; i < variables.size(); i++) {
-                    if (!cellCache.get(i).isEmpty()) {
-
-                        Cell cell = cellCache.get(i).get(currentIndex[i]);
-
-                        if ((cell.getOnset() <= current_time && cell.getOffset() >= current_time) ||
-                                (Math.abs(cell.getOffset() - cell.getOnset()) < 1000.0 / frameRate &&
-                                        cell.getOnset() > current_time - 1000.0 / frameRate + 1 &&
-                                        current_time >= cell.getOnset() &&
-                                        cell.getOnset() < current_time + 1000.0 / frameRate - 1)) {
-
-                            CellValue cellValue = cell.getCellValue();
-
-                            // Print ordinal, onset, offset
-                            row += Integer.toString(currentIndex[i] + 1) + "," +
-                                    Long.toString(cell.getOnset()) + "," +
-                                    Long.toString(cell.getOffset());
-
-
-                            if (cellValue instanceof MatrixCellValue) {
-                                // Then this is a matrix cellValue, get the sub arguments
-                                MatrixCellValue mv = (MatrixCellValue) cellValue;
-                                for (CellValue v : mv.getArguments()) {
-                                    // Loop over each cellValue and print it with a comma separator
-                                    row += "," + StringUtils.escapeCSVQuotes(v.toString());
-                                }
-                            } else {
-                                // Otherwise just print the single argument
-                                row += "," + StringUtils.escapeCSVQuotes(cell.getCellValue().toString());
-                            }
-                            row += ",";
-
-                        } else {
-                            // Figure out what to print if we don't have a cell here
-                            CellValue cellValue = cell.getCellValue();
-
-                            // Print ordinal, onset, offset
-                            row += ",,";
-
-
-                            if (cellValue instanceof MatrixCellValue) {
-                                // Then this is a matrix cellValue, get the sub arguments
-                                MatrixCellValue mv = (MatrixCellValue) cellValue;
-                                for (CellValue v : mv.getArguments()) {
-                                    // Loop over each cellValue and print it with a comma separator
-                                    row += ",";
-                                }
-                            } else {
-                                // Otherwise just print the single argument
-                                row += ",";
-                            }
-                            row += ",";
-                        }
+            StringBuilder row = new StringBuilder();
+            for (int i = 0; hasNext(columns); i++) {
+                row.setLength(0);
+                for (int j = 0; j < variables.size(); j++) {
+                    if (columns.get(j).hasNext()) {
+                        // Print the cell
+                        appendCell(row.append(i).append(','), variables.get(j), columns.get(j).next());
+                    } else {
+                        // Print a placeholder: we are out of cells
+                        row.append(placeholders[j]);
                     }
-
                 }
-                ps.println(row);
-                current_time += 1000.0 / frameRate;
-                ++nFrame;
+                out.append(row).write(System.lineSeparator());
             }
-
-            fos.close();
         } catch (IOException ie) {
-            logger.error("Export failed. Error: ", ie);
+            logger.error("Export as cells failed. Error: ", ie);
             ResourceMap rMap = Application.getInstance(Datavyu.class).getContext().getResourceMap(Datavyu.class);
             throw new UserWarningException(rMap.getString("UnableToSave.message", outFile), ie);
         }
     }
 
-    public void exportAsCells(final String outFile, final DataStore ds)
-            throws UserWarningException {
-        try {
-            FileOutputStream outStream = new FileOutputStream(outFile);
-            PrintStream ps = new PrintStream(outStream);
-
-            // Get the variables, sort them, and cache the cells
-            List<Variable> variables = ds.getAllVariables();
-            Collections.sort(variables, new Comparator<Variable>() {
-                @Override
-                public int compare(Variable o1, Variable o2) {
-                    return o1.getName().compareTo(o2.getName());
-                }
-            });
-
-            ArrayList<List<Cell>> cellCache = new ArrayList<>();
-
-            int max_length = 0;
-            // Get all of the cells from the DB and store them locally
+    /**
+     * Saves the database to the specified destination in a long CSV format: one row per cell holding its column,
+     * ordinal, onset, offset and values, with the cells of all columns ordered by onset.
+     *
+     * @param outFile The path of the file to use when writing to disk.
+     * @param ds The data store to save as a CSV file.
+     * @throws UserWarningException When unable to save the database as a CSV to
+     *                              disk (usually because of permissions errors).
+     */
+    public void exportAsCellsLong(final String outFile, final DataStore ds) throws UserWarningException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile)), 1 << 16)) {
+            List<Variable> variables = getVariablesByName(ds);
+            List<List<Cell>> columns = new ArrayList<>();
+            int maxArguments = 1;
             for (Variable v : variables) {
-                cellCache.add(v.getCellsTemporally());
-                if (v.getCells().size() > max_length) {
-                    max_length = v.getCells().size();
-                }
+                columns.add(v.getCellsTemporally());
+                maxArguments = Math.max(maxArguments, getArgumentCount(v));
             }
 
             // Print header
-            String header = "";
-
-            List<Integer> arglengths = new ArrayList<Integer>();
-            for (Variable v : variables) {
-
-                header += v.getName() + ".ordinal";
-                header += "," + v.getName() + ".onset";
-                header += "," + v.getName() + ".offset,";
+            StringBuilder row = new StringBuilder("column,ordinal,onset,offset,");
+            for (int k = 1; k <= maxArguments; k++) {
+                row.append("value").append(k).append(',');
+            }
+            out.append(row).write(System.lineSeparator());
 
-                // Test if the variable is a matrix. If it is, then
-                // we have to print out all of its arguments.
-                if (v.getRootNode().type == Argument.Type.MATRIX) {
-                    for (Argument a : v.getRootNode().childArguments) {
-                        header += v.getName() + "." + a.name + ",";
-                    }
-                    arglengths.add(v.getRootNode().childArguments.size() + 3);
-                } else {
-                    header += v.getName() + ".value,";
-                    arglengths.add(4);
+            // Merge the columns on onset; the queue holds the next cell of each column as {column, ordinal}
+            PriorityQueue<int[]> next = new PriorityQueue<>(Math.max(1, columns.size()), (a, b) -> {
+                int order = Long.compare(columns.get(a[0]).get(a[1]).getOnset(),
+                        columns.get(b[0]).get(b[1]).getOnset());
+                return order != 0 ? order : Integer.compare(a[0], b[0]);
+            });
+            for (int j = 0; j < columns.size(); j++) {
+                if (!columns.get(j).isEmpty()) {
+                    next.add(new int[]{j, 0});
                 }
             }
-            header = header.trim();
-
-            // Write header
-            ps.println(header);
-
-            // Now get the column that has the most cells, we are going to use
-            // that number as the number of iterations to loop over everything
-            // printing blanks if that column does not have a cell there
-            StringBuilder row;
-            for (int i = 0; i < max_length; i++) {
-                row = new StringBuilder();
-                for (int j = 0; j < variables.size(); j++) {
-                    Variable v = variables.get(j);
-                    if (cellCache.get(j).size() > i) {
-                        // Print the cell
-                        Cell c = cellCache.get(j).get(i);
-                        row.append(i);
-                        row.append(",");
-                        row.append(c.getOnset());
-                        row.append(",");
-                        row.append(c.getOffset());
-                        row.append(",");
-                        if (v.getRootNode().type == Argument.Type.MATRIX) {
-                            for (int k = 0; k < v.getRootNode().childArguments.size(); k++) {
-                                row.append(StringUtils.escapeCSVQuotes(c.getMatrixValue(k).toString()));
-                                row.append(",");
-                            }
-                        }
-                        else{
-                            row.append(StringUtils.escapeCSVQuotes(c.getCellValue().toString()));
-                            row.append(",");
-                        }
-                    } else {
-                        // Print a placeholder: we are out of cells
-                        for (int k = 0; k < arglengths.get(j); k++) {
-                            row.append(",");
-                        }
-                    }
 
+            while (!next.isEmpty()) {
+                int[] head = next.poll();
+                Variable v = variables.get(head[0]);
+                row.setLength(0);
+                row.append(StringUtils.escapeCSVQuotes(v.getName())).append(',').append(head[1] + 1).append(',');
+                appendCell(row, v, columns.get(head[0]).get(head[1]));
+                row.append(commas(maxArguments - getArgumentCount(v)));
+                out.append(row).write(System.lineSeparator());
+
+                if (++head[1] < columns.get(head[0]).size()) {
+                    next.add(head);
                 }
-                ps.println(row);
             }
-            ps.flush();
-            ps.close();
-            outStream.flush();
-            outStream.close();
         } catch (IOException ie) {
             logger.error("Export as cells failed. Error: ", ie);
             ResourceMap rMap = Application.getInstance(Datavyu.class).getContext().getResourceMap(Datavyu.class);
@@ -333,6 +267,67 @@ public final class ExportDatabaseFileController {
         }
     }
 
+    /**
+     * @param ds A data store.
+     * @return The variables of the data store sorted by name.
+     */
+    private static List<Variable> getVariablesByName(final DataStore ds) {
+        List<Variable> variables = ds.getAllVariables();
+        variables.sort(Comparator.comparing(Variable::getName));
+        return variables;
+    }
+
+    /**
+     * @param v A variable.
+     * @return The number of values in a cell of the variable.
+     */
+    private static int getArgumentCount(final Variable v) {
+        return v.getRootNode().type == Argument.Type.MATRIX ? v.getRootNode().childArguments.size() : 1;
+    }
+
+    /**
+     * Appends the onset, offset and values of a cell, each followed by a comma.
+     *
+     * @param row The row to append to.
+     * @param v The variable of the cell.
+     * @param c The cell.
+     */
+    private static void appendCell(final StringBuilder row, final Variable v, final Cell c) {
+        row.append(c.getOnset()).append(',').append(c.getOffset()).append(',');
+        if (v.getRootNode().type == Argument.Type.MATRIX) {
+            for (int k = 0; k < v.getRootNode().childArguments.size(); k++) {
+                row.append(StringUtils.escapeCSVQuotes(c.getMatrixValue(k).toString())).append(',');
+            }
+        } else {
+            row.append(StringUtils.escapeCSVQuotes(c.getCellValue().toString())).append(',');
+        }
+    }
+
+    /**
+     * @param columns The iterators over the cells of each column.
+     * @return True if any column has cells left.
+     */
+    private static boolean hasNext(final List<Iterator<Cell>> columns) {
+        for (Iterator<Cell> column : columns) {
+            if (column.hasNext()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param count A number of commas.
+     * @return A string of that many commas.
+     */
+    private static String commas(final int count) {
+        StringBuilder commas = new StringBuilder();
+        for (int k = 0; k < count; k++) {
+            commas.append(',');
+        }
+        return commas.toString();
+    }
+
     /**
      * Serialize the database to the specified stream in a CSV format.
      *
@@ -384,20 +379,34 @@ public final class ExportDatabaseFileController {
         }
     }
 
+    /**
+     * Sets whether JSON exports are indented for reading.
+     *
+     * @param prettyPrint True to indent JSON exports; false to write them compactly.
+     */
+    public void setPrettyPrint(final boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
+    /**
+     * Sets whether the passes of JSON exports are generated on all cores. The output is the same either way.
+     *
+     * @param parallel True to generate passes in parallel; false to generate them one after the other.
+     */
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
     /**
      * Save a Datavyu Spreadseet in a JSON File.
      *
      * @param dbFileName Target File
      * @param dataStore DataStore to be saved as JSON
      */
-
     public void exportAsJSON(String dbFileName, DataStore dataStore) throws UserWarningException{
-        ObjectMapper mapper = new ObjectMapper();
-        JsonFactory f = mapper.getFactory();
+        JsonFactory f = new JsonFactory();
         File jsonFile = new File(dbFileName);
-        try {
-            JsonGenerator g = f.createGenerator(jsonFile, JsonEncoding.UTF8);
-            g.setPrettyPrinter(new DefaultPrettyPrinter());
+        try (JsonGenerator g = createGenerator(f.createGenerator(jsonFile, JsonEncoding.UTF8))) {
             //Start a Spreadsheet Object
             g.writeStartObject();
             //Spreadsheet name Field
@@ -405,69 +414,134 @@ public final class ExportDatabaseFileController {
 
             //Start an Array of Passes (Column(Spreadsheet)/Variable(DataStore))
             g.writeArrayFieldStart("passes");
-            for (Variable column : dataStore.getAllVariables()) {
-                // Start an Object for each Pass(Column/Variable)
-                g.writeStartObject();
-                // Pass(Column/Variable) name
-                g.writeStringField("name", column.getName());
-
-                g.writeStringField("type",column.getRootNode().type.toString());
-
-                g.writeObjectFieldStart("arguments");
-
-                column.getRootNode().childArguments.forEach(argument -> {
-                    try {
-                        g.writeStringField(argument.name, argument.type.name());
-                    } catch (IOException e) {
-                        e.printStackTrace();
+            List<Variable> columns = dataStore.getAllVariables();
+            if (parallel) {
+                // Generate a few passes at a time into buffers and write them in order, keeping memory bounded
+                int batchSize = 2 * Runtime.getRuntime().availableProcessors();
+                for (int i = 0; i < columns.size(); i += batchSize) {
+                    List<Variable> batch = columns.subList(i, Math.min(i + batchSize, columns.size()));
+                    List<List<Cell>> cells = new ArrayList<>();
+                    for (Variable column : batch) {
+                        cells.add(column.getCellsTemporally());
                     }
-                });
-                g.writeEndObject();
-
-                //Start an Array of Cells
-                g.writeArrayFieldStart("cells");
-                int count = 1;
-                for (Cell cell : column.getCellsTemporally()) {
-                    // Start an Object for each Cell
-                    g.writeStartObject();
-
-                    g.writeNumberField("id", count);
-                    g.writeStringField("onset", cell.getOnsetString());
-                    g.writeStringField("offset", cell.getOffsetString());
-                    g.writeArrayFieldStart("values");
-
-                    if (column.getRootNode().type == Argument.Type.MATRIX) {
-                        for (int k = 0; k < column.getRootNode().childArguments.size(); k++) {
-                            g.writeString(cell.getMatrixValue(k).toString());
+                    List<String> passes = IntStream.range(0, batch.size()).parallel()
+                            .mapToObj(j -> generatePass(f, batch.get(j), cells.get(j)))
+                            .collect(Collectors.toList());
+                    for (int j = 0; j < passes.size(); j++) {
+                        if (i + j > 0) {
+                            g.writeRaw(',');
                         }
-                    } else {
-                        g.writeString(cell.getCellValue().toString());
+                        g.writeRaw(passes.get(j));
                     }
-
-                    g.writeEndArray();
-                    // End Cell Object
-                    g.writeEndObject();
-                    count++;
                 }
-                // End Cells Array
-                g.writeEndArray();
-                // End Pass Object
-                g.writeEndObject();
+            } else {
+                for (Variable column : columns) {
+                    writePass(g, column, column.getCellsTemporally());
+                }
             }
             // End the Passes Array
             g.writeEndArray();
 
             //End a Spreadsheet Object
             g.writeEndObject();
-
-            g.close();
-            logger.info("JSON File has been successfully saved");
-
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             logger.error("Export as JSON failed. Error: ", e);
             ResourceMap rMap = Application.getInstance(Datavyu.class).getContext().getResourceMap(Datavyu.class);
             throw new UserWarningException(rMap.getString("UnableToSave.message", dbFileName), e);
         }
+        logger.info("JSON File has been successfully saved");
+    }
+
+    /**
+     * Applies the JSON layout to a generator.
+     *
+     * @param g The generator.
+     * @return The generator.
+     */
+    private JsonGenerator createGenerator(final JsonGenerator g) {
+        if (prettyPrint) {
+            g.setPrettyPrinter(new DefaultPrettyPrinter());
+        }
+        return g;
+    }
+
+    /**
+     * Generates the JSON of a pass exactly as it appears within the passes array of a sequential export, including
+     * the whitespace the pretty printer puts in front of it.
+     *
+     * @param f The factory for the generator.
+     * @param column The variable of the pass.
+     * @param cells The cells of the variable in temporal order.
+     * @return The JSON of the pass.
+     */
+    private String generatePass(final JsonFactory f, final Variable column, final List<Cell> cells) {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator g = createGenerator(f.createGenerator(out))) {
+            // Open the same structure as the export, so that the pass gets the same indentation
+            g.writeStartObject();
+            g.writeArrayFieldStart("passes");
+            g.flush();
+            int start = out.getBuffer().length();
+            writePass(g, column, cells);
+            g.flush();
+            return out.getBuffer().substring(start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a pass, i.e. a variable and its cells, as a JSON object.
+     *
+     * @param g The generator to write to.
+     * @param column The variable of the pass.
+     * @param cells The cells of the variable in temporal order.
+     * @throws IOException If unable to write the pass.
+     */
+    private void writePass(final JsonGenerator g, final Variable column, final List<Cell> cells) throws IOException {
+        Argument rootNode = column.getRootNode();
+
+        // Start an Object for each Pass(Column/Variable)
+        g.writeStartObject();
+        // Pass(Column/Variable) name
+        g.writeStringField("name", column.getName());
+
+        g.writeStringField("type", rootNode.type.toString());
 
+        g.writeObjectFieldStart("arguments");
+        for (Argument argument : rootNode.childArguments) {
+            g.writeStringField(argument.name, argument.type.name());
+        }
+        g.writeEndObject();
+
+        //Start an Array of Cells
+        g.writeArrayFieldStart("cells");
+        int count = 1;
+        for (Cell cell : cells) {
+            // Start an Object for each Cell
+            g.writeStartObject();
+
+            g.writeNumberField("id", count);
+            g.writeStringField("onset", cell.getOnsetString());
+            g.writeStringField("offset", cell.getOffsetString());
+            g.writeArrayFieldStart("values");
+
+            if (rootNode.type == Argument.Type.MATRIX) {
+                for (int k = 0; k < rootNode.childArguments.size(); k++) {
+                    g.writeString(cell.getMatrixValue(k).toString());
+                }
+            } else {
+                g.writeString(cell.getCellValue().toString());
+            }
+
+            g.writeEndArray();
+            // End Cell Object
+            g.writeEndObject();
+            count++;
+        }
+        // End Cells Array
+        g.writeEndArray();
+        // End Pass Object
+        g.writeEndObject();
     }
 }
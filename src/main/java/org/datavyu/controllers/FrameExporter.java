@@ -0,0 +1,425 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.datavyu.models.db.*;
+import org.datavyu.util.ArrowStreamWriter;
+import org.datavyu.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the cells of a data store frame by frame, one column group per variable, either as CSV rows or as an Arrow
+ * stream.
+ *
+ * A cursor per variable only ever moves forward through the cells of the variable as the frames advance. CSV frames
+ * are rendered in chunks into reusable buffers; a few chunks are rendered in parallel and written in order. Arrow
+ * frames are collected into record batches of typed columns in a single pass.
+ */
+final class FrameExporter {
+
+    /** Number of frames rendered as a unit */
+    private static final int FRAMES_PER_CHUNK = 1024;
+
+    /** Number of frames in an Arrow record batch */
+    private static final int FRAMES_PER_RECORD_BATCH = 8192;
+
+    /** Number of chunks rendered before they are written */
+    private static final int CHUNKS_PER_BATCH = 2 * Runtime.getRuntime().availableProcessors();
+
+    /** Buffer that each thread renders its chunks into */
+    private static final ThreadLocal<StringBuilder> buffer = ThreadLocal.withInitial(StringBuilder::new);
+
+    /** The variables to export */
+    private final List<Variable> variables;
+
+    /** Onset of each cell of each variable */
+    private final long[][] onsets;
+
+    /** Offset of each cell of each variable */
+    private final long[][] offsets;
+
+    /** Argument values of each cell of each variable */
+    private final String[][][] arguments;
+
+    /** Values of each cell of each variable as CSV fields, each preceded by a comma */
+    private String[][] values;
+
+    /** Empty CSV fields of each cell of each variable, written when no cell is at a frame */
+    private String[][] blanks;
+
+    /** Time between two frames in milliseconds */
+    private final double frameDuration;
+
+    /** Time of the first frame */
+    private long firstTime = Long.MAX_VALUE;
+
+    /** Time of the last cell boundary */
+    private long lastTime = 0;
+
+    /**
+     * Position of the sweep over the frames: frame number, time and the cell each variable is at.
+     */
+    private static final class Sweep {
+        int nFrame;
+        long time;
+        final int[] cursor;
+
+        Sweep(final int nFrame, final long time, final int[] cursor) {
+            this.nFrame = nFrame;
+            this.time = time;
+            this.cursor = cursor;
+        }
+    }
+
+    /**
+     * Creates an exporter.
+     *
+     * @param variables The variables to export.
+     * @param frameRate Number of frames per second.
+     */
+    FrameExporter(final List<Variable> variables, final double frameRate) {
+        this.variables = variables;
+        frameDuration = 1000.0 / frameRate;
+        onsets = new long[variables.size()][];
+        offsets = new long[variables.size()][];
+        arguments = new String[variables.size()][][];
+
+        // Get all of the cells from the DB and store them locally; the values are read once here rather than on
+        // every frame, which also keeps the cells from being read by several threads
+        for (int i = 0; i < variables.size(); i++) {
+            List<Cell> cells = variables.get(i).getCellsTemporally();
+            onsets[i] = new long[cells.size()];
+            offsets[i] = new long[cells.size()];
+            arguments[i] = new String[cells.size()][];
+            for (int j = 0; j < cells.size(); j++) {
+                Cell cell = cells.get(j);
+                onsets[i][j] = cell.getOnset();
+                offsets[i][j] = cell.getOffset();
+
+                CellValue cellValue = cell.getCellValue();
+                if (cellValue instanceof MatrixCellValue) {
+                    // Then this is a matrix cellValue, get the sub arguments
+                    List<CellValue> cellValues = ((MatrixCellValue) cellValue).getArguments();
+                    arguments[i][j] = new String[cellValues.size()];
+                    for (int k = 0; k < cellValues.size(); k++) {
+                        arguments[i][j][k] = cellValues.get(k).toString();
+                    }
+                } else {
+                    arguments[i][j] = new String[]{cellValue.toString()};
+                }
+            }
+
+            // Get first and last time point by sweeping over the cells
+            if (cells.isEmpty()) {
+                continue;
+            }
+            int last = cells.size() - 1;
+            firstTime = Math.min(firstTime, Math.min(onsets[i][0], offsets[i][0]));
+            lastTime = Math.max(lastTime, Math.max(onsets[i][last], offsets[i][last]));
+        }
+    }
+
+    /**
+     * Writes the header and a row for every frame.
+     *
+     * @param out The writer to write to.
+     * @throws IOException If unable to write.
+     */
+    void write(final Writer out) throws IOException {
+        // Render the values once rather than on every frame
+        values = new String[variables.size()][];
+        blanks = new String[variables.size()][];
+        for (int i = 0; i < variables.size(); i++) {
+            values[i] = new String[arguments[i].length];
+            blanks[i] = new String[arguments[i].length];
+            for (int j = 0; j < arguments[i].length; j++) {
+                StringBuilder value = new StringBuilder();
+                StringBuilder blank = new StringBuilder(",,");
+                for (String argument : arguments[i][j]) {
+                    value.append(',').append(StringUtils.escapeCSVQuotes(argument));
+                    blank.append(',');
+                }
+                values[i][j] = value.toString();
+                blanks[i][j] = blank.toString();
+            }
+        }
+
+        out.write(header());
+        out.write(System.lineSeparator());
+
+        Sweep sweep = new Sweep(1, firstTime, new int[variables.size()]);
+        List<Sweep> batch = new ArrayList<>();
+        while (hasFrame(sweep.time)) {
+            // Remember where each chunk starts and move the sweep past it
+            batch.clear();
+            while (batch.size() < CHUNKS_PER_BATCH && hasFrame(sweep.time)) {
+                batch.add(new Sweep(sweep.nFrame, sweep.time, sweep.cursor.clone()));
+                for (int k = 0; k < FRAMES_PER_CHUNK && hasFrame(sweep.time); k++) {
+                    advance(sweep);
+                    sweep.time += frameDuration;
+                    sweep.nFrame++;
+                }
+            }
+
+            List<String> chunks = batch.parallelStream().map(this::renderChunk).collect(Collectors.toList());
+            for (String chunk : chunks) {
+                out.write(chunk);
+            }
+        }
+    }
+
+    /**
+     * Writes the frames as an Arrow stream with the columns of the CSV export. Frame number, time, ordinal, onset and
+     * offset are int64 columns, nominal arguments are dictionary encoded and text arguments are strings. Columns of
+     * variables without a cell at a frame are null.
+     *
+     * @param out The stream to write to.
+     * @throws IOException If unable to write.
+     */
+    void writeArrow(final OutputStream out) throws IOException {
+        List<ArrowStreamWriter.Column> columns = new ArrayList<>();
+        columns.add(new ArrowStreamWriter.Column("nFrame", ArrowStreamWriter.Type.INT64, false, null));
+        columns.add(new ArrowStreamWriter.Column("time", ArrowStreamWriter.Type.INT64, false, null));
+
+        // Dictionary codes of each cell for the nominal arguments of each variable, null for text arguments
+        int[][][] codes = new int[variables.size()][][];
+        for (int i = 0; i < variables.size(); i++) {
+            Variable v = variables.get(i);
+            columns.add(new ArrowStreamWriter.Column(v.getName() + ".ordinal", ArrowStreamWriter.Type.INT64, true,
+                    null));
+            columns.add(new ArrowStreamWriter.Column(v.getName() + ".onset", ArrowStreamWriter.Type.INT64, true,
+                    null));
+            columns.add(new ArrowStreamWriter.Column(v.getName() + ".offset", ArrowStreamWriter.Type.INT64, true,
+                    null));
+
+            List<Argument> variableArguments = v.getRootNode().type == Argument.Type.MATRIX
+                    ? v.getRootNode().childArguments : Collections.singletonList(v.getRootNode());
+            codes[i] = new int[variableArguments.size()][];
+            for (int k = 0; k < variableArguments.size(); k++) {
+                Argument a = variableArguments.get(k);
+                String name = v.getRootNode().type == Argument.Type.MATRIX ? v.getName() + "." + a.name
+                        : v.getName() + ".value";
+                if (a.type == Argument.Type.NOMINAL) {
+                    Map<String, Integer> dictionary = new LinkedHashMap<>();
+                    codes[i][k] = new int[arguments[i].length];
+                    for (int j = 0; j < arguments[i].length; j++) {
+                        String argument = argument(i, j, k);
+                        codes[i][k][j] = argument == null ? ArrowStreamWriter.NULL_INDEX
+                                : dictionary.computeIfAbsent(argument, key -> dictionary.size());
+                    }
+                    columns.add(new ArrowStreamWriter.Column(name, ArrowStreamWriter.Type.DICTIONARY, true,
+                            new ArrayList<>(dictionary.keySet())));
+                } else {
+                    columns.add(new ArrowStreamWriter.Column(name, ArrowStreamWriter.Type.UTF8, true, null));
+                }
+            }
+        }
+
+        // The vectors of a record batch, reused between batches
+        Object[] vectors = new Object[columns.size()];
+        for (int c = 0; c < columns.size(); c++) {
+            switch (columns.get(c).getType()) {
+                case INT64:
+                    vectors[c] = new long[FRAMES_PER_RECORD_BATCH];
+                    break;
+                case UTF8:
+                    vectors[c] = new String[FRAMES_PER_RECORD_BATCH];
+                    break;
+                case DICTIONARY:
+                    vectors[c] = new int[FRAMES_PER_RECORD_BATCH];
+                    break;
+            }
+        }
+
+        ArrowStreamWriter writer = new ArrowStreamWriter(out, columns);
+        Sweep sweep = new Sweep(1, firstTime, new int[variables.size()]);
+        int row = 0;
+        while (hasFrame(sweep.time)) {
+            advance(sweep);
+
+            ((long[]) vectors[0])[row] = sweep.nFrame;
+            ((long[]) vectors[1])[row] = sweep.time;
+            int c = 2;
+            for (int i = 0; i < variables.size(); i++) {
+                int cell = cellAt(sweep, i);
+                ((long[]) vectors[c++])[row] = cell >= 0 ? cell + 1 : ArrowStreamWriter.NULL_LONG;
+                ((long[]) vectors[c++])[row] = cell >= 0 ? onsets[i][cell] : ArrowStreamWriter.NULL_LONG;
+                ((long[]) vectors[c++])[row] = cell >= 0 ? offsets[i][cell] : ArrowStreamWriter.NULL_LONG;
+                for (int k = 0; k < codes[i].length; k++, c++) {
+                    if (codes[i][k] != null) {
+                        ((int[]) vectors[c])[row] = cell >= 0 ? codes[i][k][cell] : ArrowStreamWriter.NULL_INDEX;
+                    } else {
+                        ((String[]) vectors[c])[row] = cell >= 0 ? argument(i, cell, k) : null;
+                    }
+                }
+            }
+
+            if (++row == FRAMES_PER_RECORD_BATCH) {
+                writer.writeBatch(row, vectors);
+                row = 0;
+            }
+            sweep.time += frameDuration;
+            sweep.nFrame++;
+        }
+        if (row > 0) {
+            writer.writeBatch(row, vectors);
+        }
+        writer.close();
+    }
+
+    /**
+     * @param variable The index of a variable.
+     * @param cell The index of a cell of the variable.
+     * @param argument The index of an argument of the variable.
+     * @return The value of the argument in the cell, or null if the cell has no such argument.
+     */
+    private String argument(final int variable, final int cell, final int argument) {
+        String[] cellArguments = arguments[variable][cell];
+        return argument < cellArguments.length ? cellArguments[argument] : null;
+    }
+
+    /**
+     * @param time The time of a frame.
+     * @return True if a frame at the given time is exported.
+     */
+    private boolean hasFrame(final long time) {
+        return time <= lastTime + frameDuration;
+    }
+
+    /**
+     * @return The header row.
+     */
+    private String header() {
+        StringBuilder header = new StringBuilder("nFrame,time,");
+        for (Variable v : variables) {
+            header.append(v.getName()).append(".ordinal");
+            header.append(',').append(v.getName()).append(".onset");
+            header.append(',').append(v.getName()).append(".offset");
+
+            // Test if the variable is a matrix. If it is, then we have to print out all of its arguments.
+            if (v.getRootNode().type == Argument.Type.MATRIX) {
+                for (Argument a : v.getRootNode().childArguments) {
+                    header.append(',').append(v.getName()).append('.').append(a.name);
+                }
+            } else {
+                header.append(',').append(v.getName()).append(".value");
+            }
+            header.append(',');
+        }
+        return header.toString().trim();
+    }
+
+    /**
+     * Moves the cursor of each variable to the last cell that started at the time of the sweep, once the time has
+     * passed the offset of the cell it is at.
+     *
+     * @param sweep The sweep.
+     */
+    private void advance(final Sweep sweep) {
+        for (int i = 0; i < variables.size(); i++) {
+            long[] variableOnsets = onsets[i];
+            int cursor = sweep.cursor[i];
+            if (variableOnsets.length > 0 && sweep.time > offsets[i][cursor]) {
+                while (cursor + 1 < variableOnsets.length && sweep.time >= variableOnsets[cursor + 1]) {
+                    cursor++;
+                }
+                sweep.cursor[i] = cursor;
+            }
+        }
+    }
+
+    /**
+     * Gets the cell of a variable at the frame of the sweep: the cell the cursor is at, if it spans the frame or is
+     * shorter than a frame and starts within it.
+     *
+     * @param sweep The sweep.
+     * @param variable The index of the variable.
+     * @return The index of the cell, or -1 if there is no cell at the frame.
+     */
+    private int cellAt(final Sweep sweep, final int variable) {
+        if (onsets[variable].length == 0) {
+            return -1;
+        }
+
+        long time = sweep.time;
+        int cursor = sweep.cursor[variable];
+        long onset = onsets[variable][cursor];
+        long offset = offsets[variable][cursor];
+        if ((onset <= time && offset >= time) ||
+                (Math.abs(offset - onset) < frameDuration &&
+                        onset > time - frameDuration + 1 &&
+                        time >= onset &&
+                        onset < time + frameDuration - 1)) {
+            return cursor;
+        }
+        return -1;
+    }
+
+    /**
+     * Renders the rows of a chunk of frames.
+     *
+     * @param start Where the chunk starts; not modified.
+     * @return The rows.
+     */
+    private String renderChunk(final Sweep start) {
+        Sweep sweep = new Sweep(start.nFrame, start.time, start.cursor.clone());
+        StringBuilder rows = buffer.get();
+        rows.setLength(0);
+        for (int k = 0; k < FRAMES_PER_CHUNK && hasFrame(sweep.time); k++) {
+            advance(sweep);
+            renderRow(rows, sweep);
+            sweep.time += frameDuration;
+            sweep.nFrame++;
+        }
+        return rows.toString();
+    }
+
+    /**
+     * Renders the row of the frame the sweep is at.
+     *
+     * @param row The buffer to render into.
+     * @param sweep The sweep.
+     */
+    private void renderRow(final StringBuilder row, final Sweep sweep) {
+        long time = sweep.time;
+        row.append(sweep.nFrame).append(',').append(time).append(',');
+        for (int i = 0; i < variables.size(); i++) {
+            if (onsets[i].length == 0) {
+                continue;
+            }
+
+            int cell = cellAt(sweep, i);
+            if (cell >= 0) {
+                // Print ordinal, onset, offset and the values
+                row.append(cell + 1).append(',').append(onsets[i][cell]).append(',').append(offsets[i][cell])
+                        .append(values[i][cell]);
+            } else {
+                // No cell at this frame; leave ordinal, onset, offset and the values empty
+                row.append(blanks[i][sweep.cursor[i]]);
+            }
+            row.append(',');
+        }
+        row.append(System.lineSeparator());
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datavyu.models.db.DataStore;
+import org.datavyu.models.project.Project;
+import org.datavyu.util.ScriptProfiler;
+import org.jruby.embed.EmbedEvalUnit;
+import org.jruby.embed.LocalContextScope;
+import org.jruby.embed.LocalVariableBehavior;
+import org.jruby.embed.ScriptingContainer;
+
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A Ruby runtime of its own with the Datavyu API loaded, for scripts that run alongside other scripts: in batch mode
+ * and on data store snapshots. Unlike the engines of the jruby factory, which share one runtime, the globals of these
+ * runtimes, $db and $pj among them, belong to the script running in it.
+ *
+ * Runtimes are pooled, so that only as many are booted as scripts ran at once, and keep the scripts they compiled.
+ */
+final class IsolatedRubyRuntime {
+
+    /** The logger instance for this class */
+    private static Logger logger = LogManager.getLogger(IsolatedRubyRuntime.class);
+
+    /** Number of compiled scripts kept per runtime */
+    private static final int COMPILED_SCRIPTS = 16;
+
+    /** The runtimes not running a script */
+    private static final Queue<IsolatedRubyRuntime> idle = new ConcurrentLinkedQueue<>();
+
+    /** The runtime */
+    private final ScriptingContainer container;
+
+    /** Compiled scripts by content, JRuby version and file, least recently used first */
+    private final Map<String, EmbedEvalUnit> compiledScripts =
+            new LinkedHashMap<String, EmbedEvalUnit>(COMPILED_SCRIPTS, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, EmbedEvalUnit> eldest) {
+                    return size() > COMPILED_SCRIPTS;
+                }
+            };
+
+    private IsolatedRubyRuntime() {
+        long start = System.nanoTime();
+        container = new ScriptingContainer(LocalContextScope.THREADSAFE, LocalVariableBehavior.TRANSIENT);
+        container.runScriptlet(RubyEngine.RECORD_CORE);
+        container.runScriptlet("load 'Datavyu_API.rb'\n");
+        container.runScriptlet(RubyEngine.RECORD_STATE);
+        logger.info("Prepared isolated Ruby runtime in " + (System.nanoTime() - start) / 1e9 + " s");
+    }
+
+    /**
+     * Takes an idle runtime from the pool, or boots one if all are running scripts. Return it with
+     * {@link #release()} once the script ran.
+     *
+     * @return The runtime.
+     */
+    static IsolatedRubyRuntime take() {
+        IsolatedRubyRuntime runtime = idle.poll();
+        return runtime != null ? runtime : new IsolatedRubyRuntime();
+    }
+
+    /**
+     * Returns this runtime to the pool.
+     */
+    void release() {
+        idle.add(this);
+    }
+
+    /**
+     * Runs a script after resetting the state earlier scripts left behind. A script run by
+     * {@link RunScriptController} can be cancelled through its {@link ScriptProgress} while it runs.
+     *
+     * @param source The source of the script.
+     * @param fileName The file of the script, used in error messages.
+     * @param dataStore The data store the script works on, becomes $db.
+     * @param project The project the script works on, becomes $pj.
+     * @param output Receives what the script prints.
+     */
+    void run(final String source, final String fileName, final DataStore dataStore, final Project project,
+             final Writer output) {
+        container.setWriter(output);
+        container.setErrorWriter(output);
+        container.runScriptlet(RubyEngine.CLEAR_STATE);
+        container.put("$db", dataStore);
+        container.put("$pj", project);
+
+        String key = RubyEngine.getKey(source, fileName);
+        EmbedEvalUnit unit = compiledScripts.get(key);
+        if (unit == null) {
+            unit = container.parse(new StringReader(source), fileName);
+            compiledScripts.put(key, unit);
+        }
+        container.runScriptlet(ScriptProgress.ATTACH);
+        boolean profiled = ScriptProfiler.getActive() != null;
+        if (profiled) {
+            container.runScriptlet(RubyEngine.INSTALL_PROFILING);
+        }
+        try {
+            // Scripts cancelled before they could be interrupted do not start
+            ScriptProgress progress = ScriptProgress.current();
+            if (progress == null || !progress.isCancelled()) {
+                unit.run();
+            }
+        } finally {
+            container.runScriptlet(ScriptProgress.DETACH);
+            if (profiled) {
+                container.runScriptlet(RubyEngine.REMOVE_PROFILING);
+            }
+        }
+    }
+}
@@ -19,8 +19,13 @@ import org.apache.logging.log4j.Logger;
 import org.datavyu.models.db.DataStore;
 import org.datavyu.models.project.Project;
 import org.datavyu.models.project.ViewerSetting;
+import org.datavyu.util.LoadingExecutor;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -39,6 +44,19 @@ public final class OpenController {
     /** Reference to the project that this controller opened */
     private Project project = null;
 
+    /** True if the cells of each variable are created on first access */
+    private boolean lazyLoading = false;
+
+    /**
+     * Sets whether the cells of each variable are created on first access, instead of when opening the file. The
+     * variables themselves are always created when opening the file.
+     *
+     * @param lazyLoading True to create the cells on first access; otherwise false.
+     */
+    public void setLazyLoading(final boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+    }
+
     /**
      * Opens a file as a Datavyu dataStore.
      *
@@ -56,6 +74,7 @@ public final class OpenController {
      */
     public void openDataStore(final File dataStoreFile) {
         OpenDataStoreFileController odc = new OpenDataStoreFileController();
+        odc.setLazyLoading(lazyLoading);
         dataStore = odc.open(dataStoreFile);
         dataStore.deselectAll();
     }
@@ -81,6 +100,7 @@ public final class OpenController {
 
             if (project != null) {
                 OpenDataStoreFileController odc = new OpenDataStoreFileController();
+                odc.setLazyLoading(lazyLoading);
                 dataStore = odc.open(new File(projectFile.getParent(),
                         project.getDatabaseFileName()));
             }
@@ -112,9 +132,6 @@ public final class OpenController {
                 zippedProjectFile = zipFile.getEntry(arch + File.separator + "project");
             }
 
-            OpenProjectFileController opc = new OpenProjectFileController();
-            project = opc.open(zipFile.getInputStream(zippedProjectFile));
-
             ZipEntry zippedDataStore = zipFile.getEntry("db");
 
             // BugzID:1941 - Older dataStore files are nested within a directory
@@ -123,18 +140,48 @@ public final class OpenController {
                 zippedDataStore = zipFile.getEntry(arch + File.separator + "db");
             }
 
-            OpenDataStoreFileController odc = new OpenDataStoreFileController();
-            dataStore = odc.openAsCsv(zipFile.getInputStream(zippedDataStore));
+            // Parse the data store in the background while the project and the viewer settings are read.
+            List<Future<?>> loads = new ArrayList<>();
+            try {
+                final ZipEntry dataStoreEntry = zippedDataStore;
+                Future<DataStore> dataStoreLoad = LoadingExecutor.submit(() -> {
+                    OpenDataStoreFileController odc = new OpenDataStoreFileController();
+                    odc.setLazyLoading(lazyLoading);
+                    return odc.openAsCsv(zipFile.getInputStream(dataStoreEntry));
+                });
+                loads.add(dataStoreLoad);
+
+                OpenProjectFileController opc = new OpenProjectFileController();
+                project = opc.open(zipFile.getInputStream(zippedProjectFile));
+
+                // BugzID:1806
+                for (ViewerSetting vs : project.getViewerSettings()) {
+                    if (vs.getSettingsId() != null) {
+                        ZipEntry entry = zipFile.getEntry(vs.getSettingsId());
+                        loads.add(LoadingExecutor.submit(() -> {
+                            vs.copySettings(zipFile.getInputStream(entry));
+                            return null;
+                        }));
+                    }
+                }
 
-            // BugzID:1806
-            for (ViewerSetting vs : project.getViewerSettings()) {
-                if (vs.getSettingsId() != null) {
-                    ZipEntry entry = zipFile.getEntry(vs.getSettingsId());
-                    vs.copySettings(zipFile.getInputStream(entry));
+                for (Future<?> load : loads) {
+                    load.get();
                 }
+                dataStore = dataStoreLoad.get();
+            } finally {
+                // The archive can only be closed once nothing reads from it anymore.
+                for (Future<?> load : loads) {
+                    try {
+                        load.get();
+                    } catch (ExecutionException | InterruptedException e) {
+                        // Already reported by the first failing load.
+                    }
+                }
+                zipFile.close();
             }
-
-            zipFile.close();
+        } catch (ExecutionException e) {
+            logger.error("Unable to open project archive", e.getCause());
         } catch (Exception e) {
             logger.error("Unable to open project archive", e);
         }
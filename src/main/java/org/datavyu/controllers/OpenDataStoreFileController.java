@@ -52,6 +52,19 @@ public final class OpenDataStoreFileController {
     /** The number of variables that were parsed */
     private int numVariablesParsed = 0;
 
+    /** True if the cells of a variable are created on first access instead of when opening the file */
+    private boolean lazyLoading = false;
+
+    /**
+     * Sets whether the cells of each variable are created on first access rather than when opening the file. Only
+     * applies to CSV files in the current (version 4) format.
+     *
+     * @param lazyLoading True to create the cells on first access; otherwise false.
+     */
+    public void setLazyLoading(final boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+    }
+
     /**
      * Opens a data store
      *
@@ -677,6 +690,97 @@ public final class OpenDataStoreFileController {
         return line;
     }
 
+    /**
+     * Reads the block of text in the CSV file that is the contents of a text or nominal variable without creating
+     * the cells. The block is read exactly as {@link #parseEntries} would read it and is parsed when the cells of the
+     * variable are first accessed.
+     *
+     * @param csvReader The csvReader we are currently parsing
+     * @param variable The variable that the cells will be added to
+     * @return The next line in the file that is not part of the block of text in the CSV file
+     * @throws IOException Exception if unable to read the file correctly
+     */
+    private String deferEntries(final BufferedReader csvReader, final Variable variable) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line = csvReader.readLine();
+        String rawLine = line;
+
+        while ((line != null) && Character.isDigit(line.charAt(0))) {
+            lines.add(rawLine);
+
+            String content = line;
+            if (content.contains("\\")) {
+                if (content.endsWith("\\") || content.endsWith("\\\\")) {
+                    content = content.replace("\\", "") + "\\";
+                } else {
+                    content = content.replace("\\", "");
+                }
+            }
+
+            // BugzID: 1075 - Escaped new lines continue the cell on the next line
+            while ((content != null) && content.endsWith("\\") && !content.endsWith("\\\\")) {
+                content = csvReader.readLine();
+                if (content != null) {
+                    lines.add(content);
+                }
+            }
+
+            line = csvReader.readLine();
+            rawLine = line;
+
+            // Corrupt lines are kept as read, they are repaired again when the cells are parsed
+            if ((line != null) && !Character.isDigit(line.charAt(0)) && testForCorruptLine(line)) {
+                line = fixCorruptLine(line);
+            }
+        }
+
+        if (!lines.isEmpty()) {
+            variable.setCellLoader(new CsvCellLoader(lines));
+        }
+        return line;
+    }
+
+    /**
+     * Reads the block of text in the CSV file that is the contents of a matrix variable without creating the cells.
+     * The block is read exactly as {@link #parseMatrixVariable} would read it and is parsed when the cells of the
+     * variable are first accessed.
+     *
+     * @param csvReader The csvReader we are currently parsing
+     * @param variable The variable that the cells will be added to
+     * @return The next line in the file that is not part of the block of text in the CSV file
+     * @throws IOException If unable to read the file correctly
+     */
+    private String deferMatrixVariable(final BufferedReader csvReader, final Variable variable) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line = csvReader.readLine();
+
+        while ((line != null) && isCell(line)) {
+            lines.add(line);
+            String valuesStr = line.split(",", 3)[2];
+
+            for (int i = 0; i < valuesStr.length(); i++) {
+                if (valuesStr.charAt(i) == '\\') {
+                    if (i + 1 == valuesStr.length()) {
+                        // Escaped new line - the cell continues on the next line
+                        String next = csvReader.readLine();
+                        if (next != null) {
+                            lines.add(next);
+                        }
+                        valuesStr += next;
+                    } else {
+                        i++;
+                    }
+                }
+            }
+            line = csvReader.readLine();
+        }
+
+        if (!lines.isEmpty()) {
+            variable.setCellLoader(new CsvCellLoader(lines));
+        }
+        return line;
+    }
+
     private boolean testForCorruptLine(String line) {
         return line.split("\\(").length != 2;
     }
@@ -793,11 +897,13 @@ public final class OpenDataStoreFileController {
         numVariablesParsed++;
         // Read text variable.
         if (variableType == Argument.Type.TEXT) {
-            return parseEntries(csvFile, newVar, new PopulateText());
+            return lazyLoading && version.equals("#4")
+                    ? deferEntries(csvFile, newVar) : parseEntries(csvFile, newVar, new PopulateText());
 
         } else if (variableType == Argument.Type.NOMINAL) {
             // Read nominal variable.
-            return parseEntries(csvFile, newVar, new PopulateNominal());
+            return lazyLoading && version.equals("#4")
+                    ? deferEntries(csvFile, newVar) : parseEntries(csvFile, newVar, new PopulateNominal());
 
         } else if (variableType == Argument.Type.MATRIX) {
             if(tokens.length > 1) {
@@ -820,7 +926,8 @@ public final class OpenDataStoreFileController {
                 }
                 newVar.setRootNode(newArg);
 
-                return parseMatrixVariable(csvFile, newVar, newArg);
+                return lazyLoading && version.equals("#4")
+                        ? deferMatrixVariable(csvFile, newVar) : parseMatrixVariable(csvFile, newVar, newArg);
             }
         }
         throw new IllegalStateException("Unknown variable type.");
@@ -922,6 +1029,44 @@ public final class OpenDataStoreFileController {
         }
     }
     
+    /**
+     * Creates the cells of a variable from the block of text that was read for it from the CSV file.
+     */
+    private final class CsvCellLoader implements CellLoader {
+
+        /** The lines of the block of text that holds the cells */
+        private final List<String> lines;
+
+        CsvCellLoader(final List<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public void load(final Variable variable) {
+            StringBuilder block = new StringBuilder();
+            for (String line : lines) {
+                block.append(line).append('\n');
+            }
+            BufferedReader reader = new BufferedReader(new StringReader(block.toString()));
+            try {
+                Argument.Type type = variable.getRootNode().type;
+                if (type == Argument.Type.MATRIX) {
+                    parseMatrixVariable(reader, variable, variable.getRootNode());
+                } else {
+                    parseEntries(reader, variable,
+                            type == Argument.Type.TEXT ? new PopulateText() : new PopulateNominal());
+                }
+            } catch (IOException e) {
+                logger.error("Unable to load the cells of variable " + variable.getName() + ". Error: ", e);
+            }
+        }
+
+        @Override
+        public List<String> getCsvLines() {
+            return lines;
+        }
+    }
+
     private class NameWarning implements Runnable {
         private String names;
         
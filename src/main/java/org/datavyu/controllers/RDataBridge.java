@@ -0,0 +1,393 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.datavyu.models.db.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Moves the variables of a data store to an R session and the variables the R script changed back, through a
+ * binary file that R reads and writes a column at a time with readBin and writeBin. Times are passed as doubles,
+ * which hold milliseconds exactly, and values as UTF-8 strings, so nothing is lost on the way. The format and the R
+ * side are described in Datavyu_API.R.
+ */
+public final class RDataBridge {
+
+    /** Marks the start of the file */
+    private static final byte[] MAGIC = {'D', 'V', 'Y', 'U'};
+
+    /** Version of the file format */
+    private static final int VERSION = 1;
+
+    /** Name of the column that holds the values of text and nominal variables */
+    private static final String VALUE_COLUMN = "arg";
+
+    /** Resource with the R functions that read and write the file */
+    private static final String API_RESOURCE = "/Datavyu_API.R";
+
+    /** The data store */
+    private final DataStore dataStore;
+
+    /** The cells of the variables that were written, in the order of their ordinals */
+    private final Map<Variable, Cell[]> writtenCells = new IdentityHashMap<>();
+
+    /**
+     * A variable as read from the file.
+     */
+    private static final class Column {
+        private String name;
+        private Argument.Type type;
+        private String[] argumentNames;
+        private double[] ordinals;
+        private double[] onsets;
+        private double[] offsets;
+        private String[][] values;
+    }
+
+    /**
+     * @param dataStore The data store to pass to R.
+     */
+    public RDataBridge(final DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * @return The R code that defines the functions to read and write the file.
+     * @throws IOException If unable to read the code.
+     */
+    public static String getApiCode() throws IOException {
+        try (InputStream in = RDataBridge.class.getResourceAsStream(API_RESOURCE)) {
+            if (in == null) {
+                throw new FileNotFoundException(API_RESOURCE);
+            }
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                code.write(buffer, 0, read);
+            }
+            return code.toString(StandardCharsets.UTF_8.name());
+        }
+    }
+
+    /**
+     * @param file The file written by {@link #write(File)}.
+     * @return The R code that reads the variables into the list db.
+     */
+    public static String getReadCode(final File file) {
+        return "db <- datavyu_read_db(\"" + toRPath(file) + "\")\n.datavyu_db <- db";
+    }
+
+    /**
+     * @param file The file to pass to {@link #read(File)} afterwards.
+     * @return The R code that writes the variables the script changed in the list db.
+     */
+    public static String getWriteCode(final File file) {
+        return "datavyu_write_db(db, .datavyu_db, \"" + toRPath(file) + "\")";
+    }
+
+    private static String toRPath(final File file) {
+        return file.getAbsolutePath().replace('\\', '/').replace("\"", "\\\"");
+    }
+
+    /**
+     * Writes all variables of the data store to a file.
+     *
+     * @param file The file.
+     * @throws IOException If unable to write the file.
+     */
+    public void write(final File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            List<Variable> variables = dataStore.getAllVariables();
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(variables.size());
+            for (Variable variable : variables) {
+                ColumnarVariable columnar = new ColumnarVariable(variable);
+                Cell[] cells = new Cell[columnar.size()];
+                for (int i = 0; i < cells.length; i++) {
+                    cells[i] = columnar.getCell(i);
+                }
+                writtenCells.put(variable, cells);
+
+                Argument.Type type = variable.getRootNode().type;
+                String[] argumentNames = type == Argument.Type.MATRIX ? columnar.getArgumentNames()
+                        : new String[]{VALUE_COLUMN};
+                writeString(out, variable.getName());
+                writeString(out, type.name());
+                out.writeInt(argumentNames.length);
+                for (String argumentName : argumentNames) {
+                    writeString(out, argumentName);
+                }
+                out.writeInt(cells.length);
+                for (int i = 0; i < cells.length; i++) {
+                    out.writeDouble(i + 1);
+                }
+                for (long onset : columnar.getOnsets()) {
+                    out.writeDouble(onset);
+                }
+                for (long offset : columnar.getOffsets()) {
+                    out.writeDouble(offset);
+                }
+                for (int argument = 0; argument < argumentNames.length; argument++) {
+                    for (String value : columnar.getValues(argument)) {
+                        writeString(out, value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the variables the R script changed and changes the data store to match them. Rows with the ordinal of a
+     * written cell update that cell, other rows create cells and written cells without a row are removed. Variables
+     * that do not exist are created and arguments that do not exist are added.
+     *
+     * @param file The file written by the R code of {@link #getWriteCode(File)}, nothing changes if it is empty.
+     * @return The names of the variables that were changed.
+     * @throws IOException If unable to read the file.
+     * @throws UserWarningException If unable to change a variable as R did.
+     */
+    public List<String> read(final File file) throws IOException, UserWarningException {
+        List<String> changed = new ArrayList<>();
+        if (file.length() == 0) {
+            return changed;
+        }
+        List<Column> columns = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.readInt() != VERSION) {
+                throw new IOException("Not a Datavyu data file from R: " + file);
+            }
+            int count = in.readInt();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            for (int i = 0; i < count; i++) {
+                columns.add(readColumn(in, buffer));
+            }
+        }
+        // Read everything before changing anything
+        for (Column column : columns) {
+            apply(column);
+            changed.add(column.name);
+        }
+        return changed;
+    }
+
+    private static Column readColumn(final DataInputStream in, final ByteArrayOutputStream buffer)
+            throws IOException {
+        Column column = new Column();
+        column.name = readString(in, buffer);
+        String type = readString(in, buffer);
+        try {
+            column.type = Argument.Type.valueOf(type);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown type " + type + " of column " + column.name, e);
+        }
+        column.argumentNames = new String[in.readInt()];
+        for (int i = 0; i < column.argumentNames.length; i++) {
+            column.argumentNames[i] = readString(in, buffer);
+        }
+        int size = in.readInt();
+        column.ordinals = readDoubles(in, size);
+        column.onsets = readDoubles(in, size);
+        column.offsets = readDoubles(in, size);
+        column.values = new String[column.argumentNames.length][size];
+        for (String[] values : column.values) {
+            for (int i = 0; i < size; i++) {
+                values[i] = readString(in, buffer);
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Changes a variable to match the column read.
+     */
+    private void apply(final Column column) throws UserWarningException {
+        Variable variable = getVariable(column.name);
+        if (variable == null) {
+            variable = createVariable(column);
+        } else if (variable.getRootNode().type == Argument.Type.MATRIX) {
+            addArguments(variable, column.argumentNames);
+        } else if (column.argumentNames.length > 1) {
+            throw new UserWarningException("Column " + variable.getName()
+                    + " holds one value per cell, R returned " + column.argumentNames.length + ".");
+        }
+        ColumnarVariable columnar = new ColumnarVariable(variable);
+
+        // Where the values of each argument of the variable are in the column read
+        int[] argumentColumns = new int[columnar.getArgumentCount()];
+        Arrays.fill(argumentColumns, -1);
+        if (variable.getRootNode().type == Argument.Type.MATRIX) {
+            for (int i = 0; i < column.argumentNames.length; i++) {
+                argumentColumns[columnar.getArgumentIndex(column.argumentNames[i])] = i;
+            }
+        } else if (column.argumentNames.length == 1) {
+            argumentColumns[0] = 0;
+        }
+
+        Map<Cell, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < columnar.size(); i++) {
+            indices.put(columnar.getCell(i), i);
+        }
+        Cell[] written = writtenCells.containsKey(variable) ? writtenCells.get(variable) : new Cell[0];
+        boolean[] kept = new boolean[written.length];
+        List<Integer> updatedRows = new ArrayList<>();
+        List<Integer> createdRows = new ArrayList<>();
+        for (int row = 0; row < column.ordinals.length; row++) {
+            double ordinal = column.ordinals[row];
+            int index = (int) ordinal - 1;
+            if (ordinal == index + 1 && index >= 0 && index < written.length && !kept[index]
+                    && indices.containsKey(written[index])) {
+                kept[index] = true;
+                updatedRows.add(row);
+            } else {
+                createdRows.add(row);
+            }
+        }
+
+        // Update the cells that have a row, only changing the values that differ
+        int[] updated = new int[updatedRows.size()];
+        long[] onsets = new long[updated.length];
+        long[] offsets = new long[updated.length];
+        String[][] values = new String[argumentColumns.length][];
+        long[] currentOnsets = columnar.getOnsets();
+        long[] currentOffsets = columnar.getOffsets();
+        for (int argument = 0; argument < argumentColumns.length; argument++) {
+            if (argumentColumns[argument] >= 0) {
+                values[argument] = new String[updated.length];
+            }
+        }
+        for (int i = 0; i < updated.length; i++) {
+            int row = updatedRows.get(i);
+            updated[i] = indices.get(written[(int) column.ordinals[row] - 1]);
+            onsets[i] = toMilliseconds(column.onsets[row], currentOnsets[updated[i]]);
+            offsets[i] = toMilliseconds(column.offsets[row], currentOffsets[updated[i]]);
+            for (int argument = 0; argument < values.length; argument++) {
+                if (values[argument] != null) {
+                    String value = column.values[argumentColumns[argument]][row];
+                    if (!value.equals(columnar.getValues(argument)[updated[i]])) {
+                        values[argument][i] = value;
+                    }
+                }
+            }
+        }
+        columnar.updateCells(updated, onsets, offsets, values);
+
+        // Create cells for the other rows
+        long[] newOnsets = new long[createdRows.size()];
+        long[] newOffsets = new long[newOnsets.length];
+        String[][] newValues = new String[argumentColumns.length][];
+        for (int argument = 0; argument < argumentColumns.length; argument++) {
+            if (argumentColumns[argument] >= 0) {
+                newValues[argument] = new String[newOnsets.length];
+            }
+        }
+        for (int i = 0; i < newOnsets.length; i++) {
+            int row = createdRows.get(i);
+            newOnsets[i] = toMilliseconds(column.onsets[row], 0);
+            newOffsets[i] = toMilliseconds(column.offsets[row], 0);
+            for (int argument = 0; argument < newValues.length; argument++) {
+                if (newValues[argument] != null) {
+                    newValues[argument][i] = column.values[argumentColumns[argument]][row];
+                }
+            }
+        }
+        columnar.createCells(newOnsets, newOffsets, newValues);
+
+        // Remove the cells whose rows were removed
+        for (int i = 0; i < written.length; i++) {
+            if (!kept[i] && indices.containsKey(written[i])) {
+                variable.removeCell(written[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The variable with the name, or else the one whose name only differs in case, as R knows it.
+     */
+    private Variable getVariable(final String name) {
+        Variable variable = dataStore.getVariable(name);
+        if (variable == null) {
+            for (Variable candidate : dataStore.getAllVariables()) {
+                if (candidate.getName().equalsIgnoreCase(name)) {
+                    return candidate;
+                }
+            }
+        }
+        return variable;
+    }
+
+    private Variable createVariable(final Column column) throws UserWarningException {
+        if (column.type != Argument.Type.MATRIX && column.argumentNames.length <= 1) {
+            return dataStore.createVariable(column.name, column.type);
+        }
+        return ColumnarVariable.createVariable(dataStore, column.name, column.argumentNames).getVariable();
+    }
+
+    /**
+     * Adds the arguments that a matrix variable does not have yet.
+     */
+    private static void addArguments(final Variable variable, final String[] argumentNames) {
+        boolean added = false;
+        for (String argumentName : argumentNames) {
+            if (variable.getArgumentIndex(argumentName) < 0) {
+                variable.addArgument(Argument.Type.NOMINAL).name = argumentName;
+                added = true;
+            }
+        }
+        if (added) {
+            // Let the listeners know the names of the new arguments
+            variable.setRootNode(variable.getRootNode());
+        }
+    }
+
+    /**
+     * @param time A time from R in milliseconds, NaN if it is missing.
+     * @param missing The time to use when it is missing.
+     * @return The time in milliseconds.
+     */
+    private static long toMilliseconds(final double time, final long missing) {
+        return Double.isNaN(time) ? missing : Math.round(time);
+    }
+
+    private static double[] readDoubles(final DataInputStream in, final int size) throws IOException {
+        double[] doubles = new double[size];
+        for (int i = 0; i < size; i++) {
+            doubles[i] = in.readDouble();
+        }
+        return doubles;
+    }
+
+    private static void writeString(final DataOutputStream out, final String string) throws IOException {
+        // R reads strings up to a NUL
+        out.write(string.replace('\0', ' ').getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+    }
+
+    private static String readString(final DataInputStream in, final ByteArrayOutputStream buffer)
+            throws IOException {
+        buffer.reset();
+        int b;
+        while ((b = in.readUnsignedByte()) != 0) {
+            buffer.write(b);
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.jruby.runtime.Constants;
+
+import javax.script.*;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A JRuby engine with the Datavyu API loaded, prepared once in the background and reused by every Ruby script run.
+ *
+ * Booting JRuby and loading Datavyu_API.rb takes several seconds, which used to be paid when running a script. The
+ * engines of the jruby factory share one runtime, so the state scripts leave behind is reset between runs instead:
+ * globals scripts introduced are cleared, their constants and their changes to the API are undone, $debug is switched
+ * off and $db, $pj and $sp are bound to the current project.
+ * Scripts are compiled once and kept by content, so that rerunning an unchanged script skips parsing it.
+ */
+final class RubyEngine {
+
+    /** The logger instance for this class */
+    private static Logger logger = LogManager.getLogger(RubyEngine.class);
+
+    /** Records the constants defined before the API is loaded, so that the ones of the API can be told apart */
+    static final String RECORD_CORE = "DATAVYU_CORE_CONSTANTS = Object.constants.freeze\n";
+
+    /**
+     * Records the state once the API is loaded, so that what scripts change can be reset: the globals, the constants,
+     * and the methods of Object and of the other classes the API defines methods of, RCell and RColumn among them.
+     */
+    static final String RECORD_STATE = "DATAVYU_API_VALUES = (Object.constants - DATAVYU_CORE_CONSTANTS)\n"
+            + "  .map { |c| [c, Object.const_get(c)] }.reject { |c, v| v.is_a?(Module) }.freeze\n"
+            + "DATAVYU_API_METHODS = ([Object] + (Object.constants - DATAVYU_CORE_CONSTANTS)\n"
+            + "  .map { |c| Object.const_get(c) })\n"
+            + "  .select { |m| m.is_a?(Module) }.flat_map { |m| [m, m.singleton_class] }\n"
+            + "  .map { |m| [m, (m.public_instance_methods(false) + m.protected_instance_methods(false) +\n"
+            + "                  m.private_instance_methods(false)).map { |n| [n, m.instance_method(n)] }] }\n"
+            + "  .select { |m, methods| methods.any? { |n, method|\n"
+            + "    method.source_location && method.source_location[0].end_with?('Datavyu_API.rb') } }\n"
+            + "  .map { |m, methods| [m, methods.map { |n, method| [n, method, m.public_method_defined?(n) ? :public\n"
+            + "    : m.protected_method_defined?(n) ? :protected : :private] }] }.freeze\n"
+            + "DATAVYU_API_GLOBALS = global_variables.freeze\n"
+            + "DATAVYU_API_CONSTANTS = (Object.constants + [:DATAVYU_API_CONSTANTS]).freeze\n";
+
+    /**
+     * Resets the state scripts leave behind: globals they introduced are cleared, constants they defined other than
+     * classes and modules are removed, methods they added to Object or the Ruby classes of the API are removed and
+     * the methods they redefined there are restored. Methods defined by libraries scripts required are kept, as are
+     * changes to other classes.
+     */
+    static final String CLEAR_STATE =
+            "(global_variables - DATAVYU_API_GLOBALS - [:$defout, :$deferr]).each { |g| eval(\"#{g} = nil\") }\n"
+            + "$debug = false\n"
+            + "(Object.constants - DATAVYU_API_CONSTANTS).each do |c|\n"
+            + "  Object.send(:remove_const, c) unless Object.autoload?(c) || Object.const_get(c).is_a?(Module)\n"
+            + "end\n"
+            + "DATAVYU_API_VALUES.each do |c, v|\n"
+            + "  next if Object.const_defined?(c, false) && Object.const_get(c).equal?(v)\n"
+            + "  Object.send(:remove_const, c) if Object.const_defined?(c, false)\n"
+            + "  Object.const_set(c, v)\n"
+            + "end\n"
+            + "DATAVYU_API_METHODS.each do |m, methods|\n"
+            + "  names = methods.map(&:first)\n"
+            + "  (m.public_instance_methods(false) + m.protected_instance_methods(false) +\n"
+            + "   m.private_instance_methods(false) - names).each do |n|\n"
+            + "    location = m.instance_method(n).source_location\n"
+            + "    m.send(:remove_method, n) unless location.nil? || $LOADED_FEATURES.include?(location[0])\n"
+            + "  end\n"
+            + "  methods.each do |n, method, visibility|\n"
+            + "    next if (m.method_defined?(n) || m.private_method_defined?(n)) && m.instance_method(n) == method\n"
+            + "    m.send(:define_method, n, method)\n"
+            + "    m.send(visibility, n)\n"
+            + "  end\n"
+            + "end\n";
+
+    /** Times the functions of the API while a profiled script runs */
+    static final String INSTALL_PROFILING = "ApiProfiling.install\n";
+
+    /** Stops timing the functions of the API once the profiled script ran */
+    static final String REMOVE_PROFILING = "ApiProfiling.uninstall\n";
+
+    /** Resets the state scripts leave behind and binds the API to the current project */
+    private static final String RESET = CLEAR_STATE
+            + "unless Datavyu.get_project_controller.nil?\n"
+            + "  $db = Datavyu.get_project_controller.get_data_store\n"
+            + "  $pj = Datavyu.get_project_controller.get_project\n"
+            + "end\n"
+            + "$sp = Datavyu.get_view\n";
+
+    /** Number of compiled scripts kept */
+    private static final int COMPILED_SCRIPTS = 16;
+
+    /** The engine being or having been prepared; null until requested */
+    private static FutureTask<RubyEngine> preparation = null;
+
+    /** The engine */
+    private final ScriptEngine engine;
+
+    /** Nanoseconds it took to boot JRuby */
+    private final long bootNanos;
+
+    /** Nanoseconds it took to load the API */
+    private final long apiNanos;
+
+    /** Compiled scripts by content, JRuby version and file, least recently used first */
+    private final Map<String, CompiledScript> compiledScripts =
+            new LinkedHashMap<String, CompiledScript>(COMPILED_SCRIPTS, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, CompiledScript> eldest) {
+                    return size() > COMPILED_SCRIPTS;
+                }
+            };
+
+    /** True once the engine ran a script */
+    private boolean used = false;
+
+    private RubyEngine() throws ScriptException {
+        long start = System.nanoTime();
+        System.setProperty("org.jruby.embed.localvariable.behavior", "transient");
+        engine = new ScriptEngineManager().getEngineByName("jruby").getFactory().getScriptEngine();
+        engine.eval("nil\n");
+        long booted = System.nanoTime();
+        engine.eval(RECORD_CORE);
+        engine.eval("load 'Datavyu_API.rb'\n");
+        engine.eval(RECORD_STATE);
+        bootNanos = booted - start;
+        apiNanos = System.nanoTime() - booted;
+        logger.info("Prepared Ruby engine: booted in " + bootNanos / 1e9 + " s, loaded API in " + apiNanos / 1e9
+                + " s");
+    }
+
+    /**
+     * Starts preparing the engine on a background thread, unless already started.
+     *
+     * @return The preparation of the engine.
+     */
+    static synchronized FutureTask<RubyEngine> prepare() {
+        if (preparation == null) {
+            preparation = new FutureTask<>(RubyEngine::new);
+            Thread thread = new Thread(preparation, "RubyEngine");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+        return preparation;
+    }
+
+    /**
+     * Gets the engine, waiting for it to be prepared if necessary, and resets it for a new run.
+     *
+     * @return The engine.
+     * @throws ScriptException If unable to prepare or reset the engine.
+     */
+    static RubyEngine acquire() throws ScriptException {
+        FutureTask<RubyEngine> task = prepare();
+        RubyEngine rubyEngine;
+        try {
+            rubyEngine = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScriptException(e);
+        } catch (ExecutionException e) {
+            // Try again on the next run, unless another run already did
+            synchronized (RubyEngine.class) {
+                if (preparation == task) {
+                    preparation = null;
+                }
+            }
+            throw e.getCause() instanceof ScriptException ? (ScriptException) e.getCause()
+                    : new ScriptException(new Exception(e.getCause()));
+        }
+        rubyEngine.engine.eval(RESET);
+        return rubyEngine;
+    }
+
+    /**
+     * @return The engine.
+     */
+    ScriptEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Gets the startup a run is spared by this engine having been prepared, and marks the engine as used. The first
+     * run is spared booting JRuby and loading the API. Later runs, which would share the booted runtime anyway, are
+     * spared reloading the API, which is quick once the runtime is warm and not counted.
+     *
+     * @return Nanoseconds of startup saved.
+     */
+    synchronized long use() {
+        long saved = used ? 0 : bootNanos + apiNanos;
+        used = true;
+        return saved;
+    }
+
+    /**
+     * Gets a script compiled by this engine, compiling it unless an identical script was compiled before.
+     *
+     * @param source The source of the script.
+     * @param fileName The file of the script, used in error messages.
+     * @return The compiled script.
+     * @throws ScriptException If the script does not compile.
+     */
+    synchronized CompiledScript compile(final String source, final String fileName) throws ScriptException {
+        String key = getKey(source, fileName);
+        CompiledScript compiledScript = compiledScripts.get(key);
+        if (compiledScript == null) {
+            long start = System.nanoTime();
+            // JRuby takes the file name of compiled scripts from the system property rather than the context
+            String previousFileName = System.setProperty(ScriptEngine.FILENAME, fileName);
+            try {
+                compiledScript = ((Compilable) engine).compile(new StringReader(source));
+            } finally {
+                if (previousFileName == null) {
+                    System.clearProperty(ScriptEngine.FILENAME);
+                } else {
+                    System.setProperty(ScriptEngine.FILENAME, previousFileName);
+                }
+            }
+            compiledScripts.put(key, compiledScript);
+            logger.info("Compiled " + fileName + " in " + (System.nanoTime() - start) / 1e9 + " s");
+        }
+        return compiledScript;
+    }
+
+    /**
+     * @param source The source of a script.
+     * @param fileName The file of the script.
+     * @return True if an identical script was compiled before.
+     */
+    synchronized boolean isCompiled(final String source, final String fileName) {
+        return compiledScripts.containsKey(getKey(source, fileName));
+    }
+
+    /**
+     * Gets the key of a compiled script: the hash of its content, the JRuby version that compiled it and its file.
+     *
+     * @param source The source of the script.
+     * @param fileName The file of the script.
+     * @return The key.
+     */
+    static String getKey(final String source, final String fileName) {
+        StringBuilder key = new StringBuilder();
+        try {
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8))) {
+                key.append(String.format("%02x", b));
+            }
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256; fall back to the source itself
+            key.append(source);
+        }
+        return key.append(' ').append(Constants.VERSION).append(' ').append(fileName).toString();
+    }
+}
@@ -19,19 +19,31 @@ import org.apache.logging.log4j.Logger;
 import org.datavyu.Datavyu;
 import org.datavyu.FileHistory;
 import org.datavyu.models.db.*;
+import org.datavyu.undoableedits.RunScriptEdit;
+import org.datavyu.util.ConsoleSink;
+import org.datavyu.util.ScriptProfiler;
 import org.datavyu.util.FileFilters.RbFilter;
 import org.datavyu.views.ConsoleV;
+import org.datavyu.views.DataviewProgressBar;
 import org.datavyu.views.DatavyuFileChooser;
 import org.jruby.embed.AttributeName;
 import com.github.rcaller.rstuff.RCaller;
 import com.github.rcaller.rstuff.RCode;
 import org.jruby.embed.EvalFailedException;
+import org.jruby.embed.ParseFailedException;
 import org.jruby.exceptions.RaiseException;
 
 import javax.script.*;
 import javax.swing.*;
 import java.io.*;
+import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 /**
@@ -45,23 +57,35 @@ public final class RunScriptController extends SwingWorker<Object, String> {
     /** The path to the script file we are executing */
     private final File scriptFile;
 
-    /** The View that the results of the scripting engine are displayed too */
-    private JTextArea console = null;
-
     /**
-     * output stream for messages coming from the scripting engine.
+     * Writers for messages from the scripting engine and for messages after it finished, to the console.
      */
-    private PipedInputStream consoleOutputStream;
-    private PipedInputStream consoleOutputStreamAfter;
+    private Writer consoleWriter;
+    private Writer consoleWriterAfter;
 
     /**
-     * input stream for displaying messages from the scripting engine.
+     * Stream for the output of R, to the console.
      */
-    private OutputStreamWriter consoleWriter;
-    private OutputStreamWriter consoleWriterAfter;
-
     private OutputStream sIn;
 
+    /** Milliseconds a script runs before its progress is shown */
+    private static final int PROGRESS_DELAY = 1000;
+
+    /** The progress of the script, through which it is cancelled */
+    private ScriptProgress progress;
+
+    /** Shows the progress of the script and cancels it */
+    private DataviewProgressBar progressBar;
+
+    /** Shows the progress bar once the script ran for a while */
+    private javax.swing.Timer showProgress;
+
+    /** Times the script, null unless the script is profiled */
+    private ScriptProfiler profiler;
+
+    /** The changes the script made to the data store, null unless it ran on the data store itself */
+    private RunScriptEdit scriptEdit;
+
     /**
      * Constructs and invokes the run script controller.
      *
@@ -98,6 +122,13 @@ public final class RunScriptController extends SwingWorker<Object, String> {
         init();
     }
 
+    /**
+     * Prepares the Ruby engine in the background, so that the next Ruby script does not wait for JRuby to boot.
+     */
+    public static void prepareRubyEngine() {
+        RubyEngine.prepare();
+    }
+
     public String getScriptFilePath() {
         return this.scriptFile.getAbsolutePath();
     }
@@ -109,35 +140,78 @@ public final class RunScriptController extends SwingWorker<Object, String> {
      */
     private void init() throws IOException {
         Datavyu.getApplication().show(ConsoleV.getInstance());
-        console = ConsoleV.getInstance().getConsole();
-
-        consoleOutputStream = new PipedInputStream();
-        consoleOutputStreamAfter = new PipedInputStream();
-        sIn = new PipedOutputStream(consoleOutputStream);
-        OutputStream sIn2 = new PipedOutputStream(consoleOutputStreamAfter);
-        consoleWriter = new OutputStreamWriter(sIn);
-        consoleWriterAfter = new OutputStreamWriter(sIn2);
+
+        ConsoleSink sink = ConsoleV.getInstance().getSink();
+        consoleWriter = sink.newWriter();
+        consoleWriterAfter = sink.newWriter();
+        sIn = sink.newOutputStream();
+
+        progressBar = new DataviewProgressBar(Datavyu.getView().getFrame(), false);
+        progressBar.setTitle("Running " + (scriptFile == null ? "script" : scriptFile.getName()));
+        progressBar.setCancelAction(this::cancelScript);
+        progress = new ScriptProgress(progressBar::setProgress);
+        showProgress = new javax.swing.Timer(PROGRESS_DELAY, e -> {
+            if (!isDone()) {
+                progressBar.setLocationRelativeTo(Datavyu.getView().getFrame());
+                progressBar.setVisible(true);
+            }
+        });
+        showProgress.setRepeats(false);
+        showProgress.start();
+    }
+
+    /**
+     * Cancels the script. Ruby code is interrupted, R runs to its end but its changes are not applied. The changes
+     * of a cancelled script are discarded: those of scripts on snapshots are not merged, and those of scripts on the
+     * data store itself are rolled back as the script ends, before the data store is unlocked.
+     */
+    public void cancelScript() {
+        progress.cancel();
+    }
+
+    /**
+     * @return True if the script was cancelled.
+     */
+    public boolean isScriptCancelled() {
+        return progress.isCancelled();
+    }
+
+    /**
+     * @return The changes the script made to the data store once it is done, null if it did not run on the data store
+     * itself or was cancelled: scripts that were rejected because another script was running, R scripts and scripts
+     * on snapshots, which record their changes when they are merged.
+     */
+    public RunScriptEdit getScriptEdit() {
+        return scriptEdit;
     }
 
     @Override
     protected Object doInBackground() {
         logger.info("run script");
 
-        ReaderThread t = new ReaderThread();
-        t.start();
-
         FileHistory.rememberScript(scriptFile);
 
-        if (scriptFile.getName().endsWith(".rb")) {
-            runRubyScript(scriptFile);
-        } else if (scriptFile.getName().endsWith(".r") || scriptFile.getName().endsWith(".R")) {
-            runRScript(scriptFile);
+        Set<String> directives = getDirectives();
+        profiler = directives.contains("profile") ? ScriptProfiler.start() : null;
+        progress.begin();
+        try {
+            if (scriptFile.getName().endsWith(".rb")) {
+                runRubyScript(scriptFile);
+            } else if (scriptFile.getName().endsWith(".r") || scriptFile.getName().endsWith(".R")) {
+                runRScript(scriptFile);
+            }
+        } finally {
+            progress.end();
+            if (profiler != null) {
+                profiler.stop();
+                reportProfile(profiler, directives.contains("json"));
+            }
         }
 
-        // Close the output stream to kill our reader thread
+        // Decode what is left of the output of R
         try {
-            consoleWriterAfter.close();
-        } catch (Exception e) {
+            sIn.close();
+        } catch (IOException e) {
             logger.error("Write Failed! Error: ", e);
         }
 
@@ -146,23 +220,124 @@ public final class RunScriptController extends SwingWorker<Object, String> {
 
     private static boolean rubyScriptIsRunning = false;
 
+    /**
+     * Guards the data store against scripts: held for writing while a script changes the data store and while the
+     * changes of a snapshot are merged, and for reading while a snapshot is taken.
+     */
+    private static final ReentrantReadWriteLock dataStoreLock = new ReentrantReadWriteLock();
+
+    /**
+     * Header comment through which a script asks for options, e.g. "# datavyu: snapshot, write" to run on a snapshot
+     * or "# datavyu: profile, json" to be profiled
+     */
+    private static final Pattern DIRECTIVE = Pattern.compile("#\\s*datavyu:(.*)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * How a script accesses the data store.
+     */
+    private enum DataStoreAccess {
+        /** Changes the data store as it runs, one script at a time */
+        LIVE,
+        /** Reads a private snapshot of the data store, alongside other scripts */
+        SNAPSHOT,
+        /** Changes a private snapshot of the data store, whose changes are merged back once the script finished */
+        SNAPSHOT_WRITE
+    }
+
+    /**
+     * Gets the access the script asks for in its header comments. Scripts run on the data store itself unless they
+     * have a line "# datavyu: snapshot", or "# datavyu: snapshot, write" to have their changes merged back.
+     *
+     * @return The access.
+     */
+    private DataStoreAccess getDataStoreAccess() {
+        if (scriptFile == null || !scriptFile.getName().endsWith(".rb")) {
+            return DataStoreAccess.LIVE;
+        }
+        Set<String> directives = getDirectives();
+        if (!directives.contains("snapshot")) {
+            return DataStoreAccess.LIVE;
+        }
+        return directives.contains("write") ? DataStoreAccess.SNAPSHOT_WRITE : DataStoreAccess.SNAPSHOT;
+    }
+
+    /**
+     * Gets the options the script asks for in the "# datavyu:" lines of its header comments, the lines before its
+     * code.
+     *
+     * @return The options in lower case.
+     */
+    private Set<String> getDirectives() {
+        Set<String> directives = new HashSet<>();
+        if (scriptFile == null) {
+            return directives;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(scriptFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    break;
+                }
+                Matcher matcher = DIRECTIVE.matcher(line);
+                if (matcher.matches()) {
+                    for (String directive : matcher.group(1).toLowerCase().split("[^a-z]+")) {
+                        if (!directive.isEmpty()) {
+                            directives.add(directive);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Unable to read header of script " + scriptFile, e);
+        }
+        return directives;
+    }
+
+    /**
+     * Prints the profile of the script to the console, and saves it next to the script if asked to.
+     *
+     * @param profiler The profiler of the script.
+     * @param saveJson True to save the profile as JSON.
+     */
+    private void reportProfile(final ScriptProfiler profiler, final boolean saveJson) {
+        try {
+            consoleWriterAfter.write(profiler.getSummary());
+            if (saveJson) {
+                String name = scriptFile.getName().replaceFirst("\\.[^.]*$", "");
+                File jsonFile = new File(scriptFile.getAbsoluteFile().getParentFile(), name + "-profile-"
+                        + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json");
+                profiler.save(jsonFile, scriptFile.getName());
+                consoleWriterAfter.write("Saved profile to " + jsonFile.getPath() + "\n");
+            }
+            consoleWriterAfter.flush();
+        } catch (IOException e) {
+            logger.error("Unable to report profile of script: ", e);
+        }
+    }
+
     private void runRubyScript(File scriptFile) {
+        DataStoreAccess access = getDataStoreAccess();
+        if (access != DataStoreAccess.LIVE) {
+            runRubyScriptOnSnapshot(scriptFile, access == DataStoreAccess.SNAPSHOT_WRITE);
+            return;
+        }
+
         // The scripting engine factory that we use with Datavyu
 
         if (rubyScriptIsRunning) {
-            JOptionPane.showMessageDialog(null, "A script is running. One script at a time!");
+            JOptionPane.showMessageDialog(null, "A script is running. One script at a time!\n"
+                    + "Scripts starting with \"# datavyu: snapshot\" run alongside other scripts.");
             return;
         }
         rubyScriptIsRunning = true;
-        // init script engine
-        System.setProperty("org.jruby.embed.localvariable.behavior", "transient");
-        ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
-        ScriptEngineFactory scriptEngineFactory = scriptEngineManager.getEngineByName("jruby").getFactory();
-        ScriptEngine rubyEngine = scriptEngineFactory.getScriptEngine();
         ScriptContext rubyContext = new SimpleScriptContext();
-//        rubyContext.setAttribute("db", Datavyu.getProjectController().getDataStore(), ScriptContext.ENGINE_SCOPE);
+        dataStoreLock.writeLock().lock();
+        RunScriptEdit edit = null;
 
         try {
+            // Record the changes for undo while no other script changes the data store
+            edit = new RunScriptEdit(scriptFile.getAbsolutePath());
             try {
                 consoleWriter.write("\n*************************");
                 consoleWriter.write("\nRunning Script: " + scriptFile.getName() + " on project: " +  Datavyu.getProjectController().getProjectNamePretty());
@@ -170,49 +345,82 @@ public final class RunScriptController extends SwingWorker<Object, String> {
 
                 consoleWriter.flush();
 
-                // Place reference to various Datavyu functionality.
-
+                // Reuse the engine prepared in the background, which also places reference to various Datavyu
+                // functionality
                 logger.info("Project controller uses data store: " + Datavyu.getProjectController().getDataStore());
+                long waitStart = System.nanoTime();
+                RubyEngine preparedEngine;
+                try {
+                    preparedEngine = RubyEngine.acquire();
+                } catch (ScriptException e) {
+                    consoleWriter.write("\nUnable to start Ruby: " + makeFriendlyRubyErrorMsg(e) + "\n");
+                    consoleWriter.close();
+                    logger.error("Unable to prepare Ruby engine: ", e);
+                    return;
+                }
+                long savedNanos = preparedEngine.use() - (System.nanoTime() - waitStart);
+                if (savedNanos > 0) {
+                    consoleWriter.write(String.format("(Ruby engine was ready: saved %.2f s of startup)\n",
+                            savedNanos / 1e9));
+                    consoleWriter.flush();
+                }
+                ScriptEngine rubyEngine = preparedEngine.getEngine();
+
                 String path = System.getProperty("user.dir") + File.separator;
                 
                 rubyEngine.put("path", path);
 
-                FileReader scriptReader = new FileReader(scriptFile);
-                LineNumberReader lineReader = new LineNumberReader(
-                        fileReaderIntoStringReader(scriptReader));
+                String source = readScript(new FileReader(scriptFile));
 
                 rubyEngine.setContext(rubyContext);
                 rubyEngine.getContext().setWriter(consoleWriter);
                 rubyEngine.getContext().setErrorWriter(consoleWriter);
                 try{
-                    rubyEngine.eval("load 'Datavyu_API.rb'\n");
+                    rubyEngine.eval(ScriptProgress.ATTACH);
+                    if (profiler != null) {
+                        rubyEngine.eval(RubyEngine.INSTALL_PROFILING);
+                    }
                     rubyEngine.getContext().setAttribute(ScriptEngine.FILENAME, scriptFile.getAbsolutePath(), ScriptContext.ENGINE_SCOPE);
-                    rubyEngine.getContext().setAttribute(AttributeName.TERMINATION.toString(), true,
-                            ScriptContext.ENGINE_SCOPE);
+                    // The runtime is not terminated after the script, it is shared with the next one
                     rubyEngine.getContext().setAttribute(AttributeName.CLEAR_VARAIBLES.toString(), true,
                             ScriptContext.ENGINE_SCOPE);
-                    rubyEngine.eval(lineReader);
+                    // Unchanged scripts are not parsed again
+                    if (preparedEngine.isCompiled(source, scriptFile.getAbsolutePath())) {
+                        consoleWriter.write("(Script is unchanged: reusing its compiled form)\n");
+                        consoleWriter.flush();
+                    }
+                    try {
+                        // Scripts cancelled before they could be interrupted do not start
+                        if (!progress.isCancelled()) {
+                            preparedEngine.compile(source, scriptFile.getAbsolutePath())
+                                    .eval(rubyEngine.getContext());
+                        }
+                    } finally {
+                        rubyEngine.eval(ScriptProgress.DETACH, new SimpleScriptContext());
+                        if (profiler != null) {
+                            rubyEngine.eval(RubyEngine.REMOVE_PROFILING, new SimpleScriptContext());
+                        }
+                    }
                     consoleWriter.close();
 
-                    consoleWriterAfter.write("\nScript has finished running.");
+                    consoleWriterAfter.write(progress.isCancelled() ? "\nScript was cancelled: undid its changes."
+                            : "\nScript has finished running.");
                     consoleWriterAfter.flush();
                     consoleWriterAfter.close();
-                    lineReader.close();
                 }
                 catch (ScriptException e) {
-                    //unfortunately the above seems to always be final line not line of error. still, no noticeable
-                    // performance difference, so im leaving the LineNumberReader wrap
                     consoleWriter.flush();
                     consoleWriter.close();
-                    consoleWriterAfter.write("\n\n***** SCRIPT ERROR *****\n");
-                    String msg = makeFriendlyRubyErrorMsg(e);
-                    consoleWriterAfter.write(msg);
-                    consoleWriterAfter.write("\n*************************\n");
+                    if (progress.isCancelled()) {
+                        consoleWriterAfter.write("\nScript was cancelled: undid its changes.");
+                    } else {
+                        consoleWriterAfter.write("\n\n***** SCRIPT ERROR *****\n");
+                        String msg = makeFriendlyRubyErrorMsg(e);
+                        consoleWriterAfter.write(msg);
+                        consoleWriterAfter.write("\n*************************\n");
+                        logger.error("Unable to execute script: ", e);
+                    }
                     consoleWriterAfter.flush();
-                    logger.error("Unable to execute script: ", e);
-                }
-                finally {
-                    lineReader.close();
                 }
             } catch (FileNotFoundException e) {
                 consoleWriter.close();
@@ -224,12 +432,157 @@ public final class RunScriptController extends SwingWorker<Object, String> {
         } catch (IOException ioe) {
             logger.error("IO Exception occurred when executing the ruby script", ioe);
         } finally{
+            if (edit != null) {
+                edit.stopRecording();
+                if (progress.isCancelled()) {
+                    // Only the changes of the script were recorded, undo them before anyone builds on them
+                    edit.rollBack();
+                } else {
+                    scriptEdit = edit;
+                }
+            }
+            dataStoreLock.writeLock().unlock();
             rubyScriptIsRunning = false;
         }
         Datavyu.getView().getSpreadsheetPanel().redrawCells();
     }
+
+    /**
+     * Runs a Ruby script on a snapshot of the data store in an isolated runtime, so that it runs alongside the user
+     * and other scripts.
+     *
+     * @param scriptFile The script.
+     * @param write True to merge the changes of the script back into the data store as one undoable edit.
+     */
+    private void runRubyScriptOnSnapshot(final File scriptFile, final boolean write) {
+        try {
+            consoleWriter.write("\n*************************");
+            consoleWriter.write("\nRunning Script: " + scriptFile.getName() + " on a snapshot of project: "
+                    + Datavyu.getProjectController().getProjectNamePretty());
+            consoleWriter.write("\n*************************\n");
+            consoleWriter.flush();
+
+            try {
+                String source = readScript(new FileReader(scriptFile));
+                DataStoreFork fork = takeSnapshot(Datavyu.getProjectController().getDataStore());
+
+                IsolatedRubyRuntime runtime = IsolatedRubyRuntime.take();
+                try {
+                    runtime.run(source, scriptFile.getAbsolutePath(), fork.getDataStore(),
+                            Datavyu.getProjectController().getProject(), consoleWriter);
+                } finally {
+                    runtime.release();
+                }
+                consoleWriter.flush();
+
+                Set<String> changed = fork.getChangedVariables();
+                if (progress.isCancelled()) {
+                    consoleWriter.write("\nScript was cancelled: discarded its changes.");
+                } else if (write && !changed.isEmpty()) {
+                    mergeSnapshot(fork, scriptFile);
+                    consoleWriter.write("\nMerged changes to columns: " + String.join(", ", changed));
+                } else if (!changed.isEmpty()) {
+                    consoleWriter.write("\nDiscarded changes to columns: " + String.join(", ", changed)
+                            + " (add \"write\" to the snapshot line of the script to keep them)");
+                }
+                consoleWriter.close();
+
+                consoleWriterAfter.write("\nScript has finished running.");
+                consoleWriterAfter.flush();
+            } catch (EvalFailedException | ParseFailedException e) {
+                consoleWriter.flush();
+                consoleWriter.close();
+                if (progress.isCancelled()) {
+                    consoleWriterAfter.write("\nScript was cancelled: discarded its changes.");
+                } else {
+                    consoleWriterAfter.write("\n\n***** SCRIPT ERROR *****\n");
+                    consoleWriterAfter.write(makeFriendlyRubyErrorMsg(e));
+                    consoleWriterAfter.write("\n*************************\n");
+                    logger.error("Unable to execute script: ", e);
+                }
+                consoleWriterAfter.flush();
+            } catch (UserWarningException e) {
+                consoleWriter.close();
+                consoleWriterAfter.write("\n\n" + e.getMessage() + "\n");
+                consoleWriterAfter.flush();
+                logger.error("Unable to merge changes of script: ", e);
+            } catch (FileNotFoundException e) {
+                consoleWriter.close();
+                consoleWriterAfter.write("File not found: " + e.getMessage());
+                consoleWriterAfter.flush();
+                logger.error("Unable to execute script: ", e);
+            }
+        } catch (IOException ioe) {
+            logger.error("IO Exception occurred when executing the ruby script", ioe);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the data store on the event dispatch thread, once no script is changing it.
+     *
+     * @param dataStore The data store.
+     * @return The snapshot.
+     * @throws UserWarningException If unable to copy the data store.
+     */
+    private static DataStoreFork takeSnapshot(final DataStore dataStore) throws UserWarningException {
+        dataStoreLock.readLock().lock();
+        try {
+            return invokeOnEventDispatchThread(() -> DataStoreFork.fork(dataStore));
+        } finally {
+            dataStoreLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the changes made to a snapshot into the data store on the event dispatch thread, once no script is
+     * changing it, as one undoable edit.
+     *
+     * @param fork The snapshot.
+     * @param scriptFile The script that made the changes.
+     * @throws UserWarningException If the changed columns were also changed in the data store.
+     */
+    private static void mergeSnapshot(final DataStoreFork fork, final File scriptFile) throws UserWarningException {
+        dataStoreLock.writeLock().lock();
+        try {
+            invokeOnEventDispatchThread(() -> {
+                // Record the changes of the merge for undo
+                RunScriptEdit edit = new RunScriptEdit(scriptFile.getAbsolutePath());
+                fork.merge();
+                edit.stopRecording();
+                Datavyu.getView().getUndoSupport().postEdit(edit);
+                Datavyu.getView().getSpreadsheetPanel().redrawCells();
+                return null;
+            });
+        } finally {
+            dataStoreLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a task on the event dispatch thread and waits for it.
+     *
+     * @param task The task.
+     * @param <T> The type of the result of the task.
+     * @return The result of the task.
+     * @throws UserWarningException If the task failed with one.
+     */
+    private static <T> T invokeOnEventDispatchThread(final Callable<T> task) throws UserWarningException {
+        FutureTask<T> future = new FutureTask<>(task);
+        SwingUtilities.invokeLater(future);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UserWarningException("Interrupted while waiting for the spreadsheet.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UserWarningException) {
+                throw (UserWarningException) e.getCause();
+            }
+            throw new UserWarningException("Unable to access the spreadsheet: " + e.getCause(), e);
+        }
+    }
     
-    private StringReader fileReaderIntoStringReader(FileReader fr) throws IOException
+    private String readScript(FileReader fr) throws IOException
     {
         BufferedReader br = new BufferedReader(fr);
         StringBuilder sb = new StringBuilder("");
@@ -243,7 +596,7 @@ public final class RunScriptController extends SwingWorker<Object, String> {
         }
         br.close();
         fr.close();
-        return new StringReader(sb.toString());
+        return sb.toString();
     }
 
     private String makeFriendlyRubyErrorMsg(Throwable scriptException) {
@@ -297,170 +650,65 @@ public final class RunScriptController extends SwingWorker<Object, String> {
 
         caller.redirectROutputToStream(sIn);
 
-        // Initialize our code buffer and database string representation
+        // Pass the database to R in a binary file it reads into a list called db, and the columns the script
+        // changed in db back in another one
         RCode code = RCode.create();
-        HashMap db = convertDbToColStrings();
-        HashMap<String, File> tempFiles = new HashMap<>();
-
-        // Write the database out to temporary files
-        Iterator it = db.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pairs = (Map.Entry) it.next();
-
-            // Now write this out to a temporary file
-            File outfile = new File(System.getProperty("java.io.tmpdir"), (String) pairs.getKey());
-            try {
-                BufferedWriter output = new BufferedWriter(new FileWriter(outfile));
-                output.write((String) pairs.getValue());
-                output.close();
-                tempFiles.put((String) pairs.getKey(), outfile);
-            } catch (IOException e) {
-                logger.error("Writing output to temporary files failed. Error: ", e);
-            }
-            it.remove(); // avoids a ConcurrentModificationException
-        }
-
-        // Create the R code to read in the temporary db files into a structure
-        // called db
-        code.addRCode("db <- list()");
+        RDataBridge bridge = new RDataBridge(Datavyu.getProjectController().getDataStore());
+        File dbFile = null;
+        File changesFile = null;
+        dataStoreLock.writeLock().lock();
         try {
-            // Load each of the temporary files created above into R
-            it = tempFiles.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry pairs = (Map.Entry) it.next();
-
-                String load = "db[[\"" + ((String) pairs.getKey()).toLowerCase() + "\"]] <- read.csv(\""
-                        + ((File) pairs.getValue()).getPath() + "\",header=TRUE, sep=',')";
-                code.addRCode(load);
-
-                it.remove(); // avoids a ConcurrentModificationException
-            }
-        } catch (Exception e) {
-            logger.error("Loading of temporary files failed. Error: ", e);
-        }
+            dbFile = File.createTempFile("datavyu", ".db");
+            changesFile = File.createTempFile("datavyu", ".db");
+            bridge.write(dbFile);
+            code.addRCode(RDataBridge.getApiCode());
+            code.addRCode(RDataBridge.getReadCode(dbFile));
 
-        // Set up plotting. If something gets plotted, display it. Otherwise, just run the code.
-        try {
+            // Set up plotting. If something gets plotted, display it. Otherwise, just run the code.
             File plt = code.startPlot();
             code.R_source(scriptFile.getPath());
+            code.addRCode(RDataBridge.getWriteCode(changesFile));
             caller.setRCode(code);
             caller.runOnly();
             code.endPlot();
             if (plt.length() > 0) {
                 code.showPlot(plt);
             }
-        } catch (Exception e) {
-            logger.error("Failed when plotting. Error: ", e);
-        }
-    }
-
-    private void updateDbFromR() {
-        // TODO: Fill in the code here
-    }
 
-    /**
-     * Convert the Datavyu database to a csv file per column.
-     * This allows for easy reading into R.
-     */
-    private HashMap<String, String> convertDbToColStrings() {
-        // TODO: Use StringBuilder here
-        DataStore db = Datavyu.getProjectController().getDataStore();
-        HashMap<String, String> str_db = new HashMap<>();
-
-        String str_var;
-        for (Variable v : db.getAllVariables()) {
-            str_var = "ordinal,onset,offset";
-            if (v.getRootNode().type == Argument.Type.MATRIX) {
-                for (Argument a : v.getRootNode().childArguments) {
-                    str_var += "," + a.name;
-                }
-            } else {
-                str_var += ",arg";
+            if (progress.isCancelled()) {
+                consoleWriterAfter.write("\nScript was cancelled: discarded the changes of R.\n");
+                consoleWriterAfter.flush();
+                return;
             }
-            str_var += "\n";
-            for (int i = 0; i < v.getCellsTemporally().size(); i++) {
-                Cell c = v.getCellsTemporally().get(i);
-
-                String row = String.format("%d,%d,%d", i + 1, c.getOnset(), c.getOffset());
-                if (v.getRootNode().type == Argument.Type.MATRIX) {
-                    for (CellValue val : ((MatrixCellValue) c.getCellValue()).getArguments()) {
-                        row += ",";
-                        if (!val.isEmpty())
-                            row += val.toString();
-                    }
-                } else {
-                    row += ",";
-                    if (!c.getCellValue().isEmpty()) {
-                        row += c.getCellValue().toString();
-                    }
-                }
-                str_var += row + "\n";
+            List<String> changed = bridge.read(changesFile);
+            if (!changed.isEmpty()) {
+                consoleWriterAfter.write("\nUpdated columns from R: " + String.join(", ", changed) + "\n");
+                consoleWriterAfter.flush();
+            }
+        } catch (UserWarningException e) {
+            logger.error("Unable to update columns from R: ", e);
+            try {
+                consoleWriterAfter.write("\n\n" + e.getMessage() + "\n");
+                consoleWriterAfter.flush();
+            } catch (IOException ioe) {
+                logger.error("Write Failed! Error: ", ioe);
+            }
+        } catch (Exception e) {
+            logger.error("Failed running R script. Error: ", e);
+        } finally {
+            dataStoreLock.writeLock().unlock();
+            if (dbFile != null && !dbFile.delete()) {
+                dbFile.deleteOnExit();
+            }
+            if (changesFile != null && !changesFile.delete()) {
+                changesFile.deleteOnExit();
             }
-            str_db.put(v.getName(), str_var);
         }
-
-        return str_db;
     }
 
     @Override
-    protected void done() {}
-
-    @Override
-    protected void process(final List<String> chunks) {
-        for (String chunk : chunks) {
-            console.append(chunk);
-            // Make sure the last line is always visible
-            console.setCaretPosition(console.getDocument().getLength());
-        }
-    }
-
-    /**
-     * Separate thread for polling the incoming data from the scripting engine.
-     * The data from the scripting engine gets placed directly into the
-     * consoleOutput.
-     */
-    class ReaderThread extends Thread {
-
-        /**
-         * The size of the buffer to use while ingesting data.
-         */
-        private static final int BUFFER_SIZE = 32 * 1024;
-
-        /**
-         * The method to invoke when the thread is started.
-         */
-        @Override
-        public void run() {
-            final byte[] buf = new byte[BUFFER_SIZE];
-
-            int len;
-
-            try {
-                while ((len = consoleOutputStream.read(buf)) != -1) {
-                    if (len > 0) {
-                        // Publish output from script in the console.
-                        String s = new String(buf, 0, len);
-                        publish(s);
-                    }
-
-                    // Allow other threads to do stuff.
-                    Thread.yield();
-
-                }
-                consoleOutputStream.close();
-                while ((len = consoleOutputStreamAfter.read(buf)) != -1) {
-                    if (len > 0) {
-                        // Publish output from script in the console.
-                        String s = new String(buf, 0, len);
-                        publish(s);
-                    }
-                    // Allow other threads to do stuff.
-                    Thread.yield();
-                }
-                consoleOutputStreamAfter.close();
-            } catch (IOException e) {
-                logger.error("Unable to run console thread. Error: ", e);
-            }
-        }
+    protected void done() {
+        showProgress.stop();
+        progressBar.close();
     }
 }
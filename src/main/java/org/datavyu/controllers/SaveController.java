@@ -22,12 +22,15 @@ import org.datavyu.models.db.DataStore;
 import org.datavyu.models.db.UserWarningException;
 import org.datavyu.models.project.Project;
 import org.datavyu.models.project.ViewerSetting;
+import org.datavyu.util.ZipArchiveWriter;
 import org.jdesktop.application.Application;
 import org.jdesktop.application.ResourceMap;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -39,6 +42,32 @@ public final class SaveController {
     /** The logger instance for this class */
     private static Logger logger = LogManager.getLogger(SaveController.class);
 
+    /** Compression level for project archives, ZipArchiveWriter.STORED or one of the Deflater levels */
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /** True if large entries of project archives are compressed on all cores */
+    private boolean parallelCompression = false;
+
+    /**
+     * Sets the compression level for project archives.
+     *
+     * @param compressionLevel ZipArchiveWriter.STORED to store the entries uncompressed, or one of the Deflater
+     *                         levels.
+     */
+    public void setCompressionLevel(final int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Sets whether large entries of project archives are compressed in chunks on all cores. The archives remain
+     * standard zip files.
+     *
+     * @param parallelCompression True to compress on all cores; otherwise false.
+     */
+    public void setParallelCompression(final boolean parallelCompression) {
+        this.parallelCompression = parallelCompression;
+    }
+
     /**
      * Saves only a data store to disk
      *
@@ -100,30 +129,35 @@ public final class SaveController {
             logger.info("Save project.");
 
             FileOutputStream fos = new FileOutputStream(projectFile);
-            ZipOutputStream zos = new ZipOutputStream(fos);
-
-            ZipEntry projectEntry = new ZipEntry("project");
-            zos.putNextEntry(projectEntry);
-            new SaveProjectFileController().save(zos, project);
-            zos.closeEntry();
-
-            ZipEntry dbEntry = new ZipEntry("db");
-            zos.putNextEntry(dbEntry);
-            new SaveDataStoreFileController().saveAsCsv(zos, dataStore);
-            zos.closeEntry();
-
-            // BugzID:1806
-            for (ViewerSetting vs : project.getViewerSettings()) {
-                ZipEntry vsEntry = new ZipEntry(vs.getSettingsId());
-                zos.putNextEntry(vsEntry);
-                vs.writeSettings(zos);
-            }
-
-            zos.finish();
-            zos.close();
 
-            fos.flush();
-            fos.close();
+            if (compressionLevel != Deflater.DEFAULT_COMPRESSION || parallelCompression) {
+                saveProjectArchive(fos, project, dataStore);
+            } else {
+                ZipOutputStream zos = new ZipOutputStream(fos);
+
+                ZipEntry projectEntry = new ZipEntry("project");
+                zos.putNextEntry(projectEntry);
+                new SaveProjectFileController().save(zos, project);
+                zos.closeEntry();
+
+                ZipEntry dbEntry = new ZipEntry("db");
+                zos.putNextEntry(dbEntry);
+                new SaveDataStoreFileController().saveAsCsv(zos, dataStore);
+                zos.closeEntry();
+
+                // BugzID:1806
+                for (ViewerSetting vs : project.getViewerSettings()) {
+                    ZipEntry vsEntry = new ZipEntry(vs.getSettingsId());
+                    zos.putNextEntry(vsEntry);
+                    vs.writeSettings(zos);
+                }
+
+                zos.finish();
+                zos.close();
+
+                fos.flush();
+                fos.close();
+            }
 
             if (remember) {
                 FileHistory.rememberProject(projectFile);
@@ -135,4 +169,36 @@ public final class SaveController {
             throw new UserWarningException(rMap.getString("UnableToSave.message", projectFile), e);
         }
     }
+
+    /**
+     * Writes the project archive with the compression level and mode of this controller.
+     *
+     * @param fos The stream to write the archive to, closed when done
+     * @param project The project to save
+     * @param dataStore The dataStore to save
+     * @throws IOException If unable to write the archive
+     * @throws UserWarningException If unable to save the data store
+     */
+    private void saveProjectArchive(final FileOutputStream fos, final Project project, final DataStore dataStore)
+            throws IOException, UserWarningException {
+        ZipArchiveWriter archive = new ZipArchiveWriter(fos, compressionLevel, parallelCompression);
+
+        // The entries are streamed to the archive rather than held in memory
+        try (OutputStream entry = archive.startEntry("project")) {
+            new SaveProjectFileController().save(entry, project);
+        }
+
+        try (OutputStream entry = archive.startEntry("db")) {
+            new SaveDataStoreFileController().saveAsCsv(entry, dataStore);
+        }
+
+        // BugzID:1806
+        for (ViewerSetting vs : project.getViewerSettings()) {
+            try (OutputStream entry = archive.startEntry(vs.getSettingsId())) {
+                vs.writeSettings(entry);
+            }
+        }
+
+        archive.close();
+    }
 }
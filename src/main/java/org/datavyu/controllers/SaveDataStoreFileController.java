@@ -90,6 +90,15 @@ public final class SaveDataStoreFileController {
 
             ps.println();
 
+            // Write cells that have not been loaded yet as they were read
+            CellLoader cellLoader = variable.getCellLoader();
+            if (cellLoader != null) {
+                for (String line : cellLoader.getCsvLines()) {
+                    ps.println(line);
+                }
+                continue;
+            }
+
             for (Cell cell : variable.getCells()) {
                 ps.printf("%s,%s,%s",
                         cell.getOnsetString(),
@@ -0,0 +1,179 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.jruby.Ruby;
+import org.jruby.RubyThread;
+import org.jruby.runtime.Block;
+import org.jruby.runtime.builtin.IRubyObject;
+
+/**
+ * The progress of a script run by {@link RunScriptController}, which scripts report through set_progress of the
+ * Ruby API, and the means to cancel the script.
+ *
+ * A cancelled Ruby script is stopped by raising Interrupt in its Ruby thread. JRuby delivers it at the next safe point
+ * of the script, between Ruby expressions, so a call into the model always completes and the ensure blocks of the
+ * script run. Scripts cooperate by reporting their progress, which also yields to other threads.
+ */
+public final class ScriptProgress {
+
+    /** Minimum milliseconds between updates that only change the message */
+    private static final long MESSAGE_INTERVAL = 100;
+
+    /** Attaches the Ruby thread running the script, evaluated before the script */
+    static final String ATTACH = "Java::OrgDatavyuControllers::ScriptProgress.attach(Thread.current)\n";
+
+    /**
+     * Detaches the Ruby thread once the script ran, evaluated after the script. An interrupt raised as the script
+     * finished is still pending then, and would stop the next script run on the thread; it is dropped.
+     */
+    static final String DETACH = "Java::OrgDatavyuControllers::ScriptProgress.detach\n"
+            + "begin\n"
+            + "  sleep 0.001 while Thread.pending_interrupt?\n"
+            + "rescue Interrupt\n"
+            + "end\n";
+
+    /** The progress of the script running on each thread */
+    private static final ThreadLocal<ScriptProgress> current = new ThreadLocal<>();
+
+    /**
+     * Receives the progress of a script.
+     */
+    public interface Listener {
+        /**
+         * Called on the thread of the script when its progress changed.
+         *
+         * @param percent The percentage of the script done, -1 if unknown.
+         * @param message The message of the script, empty if none.
+         */
+        void progressChanged(int percent, String message);
+    }
+
+    /** Receives the progress; null if none */
+    private final Listener listener;
+
+    /** Whether the script was cancelled */
+    private volatile boolean cancelled = false;
+
+    /** The Ruby thread of the script; null unless it runs Ruby */
+    private RubyThread rubyThread;
+
+    /** The percentage last reported */
+    private int percent = -1;
+
+    /** The time the progress was last reported */
+    private long reportedAt = 0;
+
+    /**
+     * @param listener Receives the progress of the script; null if none.
+     */
+    public ScriptProgress(final Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return The progress of the script running on the current thread, or null if there is none.
+     */
+    public static ScriptProgress current() {
+        return current.get();
+    }
+
+    /**
+     * Makes this the progress of the script running on the current thread, until {@link #end()}.
+     */
+    void begin() {
+        current.set(this);
+    }
+
+    /**
+     * Ends the script running on the current thread.
+     */
+    void end() {
+        detach();
+        current.remove();
+    }
+
+    /**
+     * Attaches the Ruby thread of the script running on the current thread, so that cancelling interrupts it.
+     *
+     * @param thread The Ruby thread.
+     * @see #ATTACH
+     */
+    public static void attach(final RubyThread thread) {
+        ScriptProgress progress = current();
+        if (progress != null) {
+            synchronized (progress) {
+                progress.rubyThread = thread;
+            }
+        }
+    }
+
+    /**
+     * Detaches the Ruby thread of the script running on the current thread: cancelling no longer interrupts it.
+     *
+     * @see #DETACH
+     */
+    public static void detach() {
+        ScriptProgress progress = current();
+        if (progress != null) {
+            synchronized (progress) {
+                progress.rubyThread = null;
+            }
+        }
+    }
+
+    /**
+     * Cancels the script: interrupts its Ruby code and has its changes discarded. Does nothing if it was cancelled.
+     */
+    public synchronized void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        if (rubyThread != null) {
+            Ruby runtime = rubyThread.getRuntime();
+            IRubyObject interrupt = runtime.getInterrupt().newInstance(runtime.getCurrentContext(),
+                    runtime.newString("Script cancelled"), Block.NULL_BLOCK);
+            rubyThread.raise(interrupt);
+        }
+    }
+
+    /**
+     * @return True if the script was cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Reports the progress of the script. Updates that change neither the percentage nor come long enough after the
+     * last one are dropped, so that scripts can report the progress of each cell.
+     *
+     * @param fraction The fraction of the script done, between 0 and 1; negative if unknown.
+     * @param message The message to show with the progress; null if none.
+     */
+    public void update(final double fraction, final String message) {
+        int newPercent = fraction < 0 ? -1 : (int) Math.round(Math.min(fraction, 1.0) * 100);
+        long now = System.currentTimeMillis();
+        if (newPercent == percent && (message == null || now - reportedAt < MESSAGE_INTERVAL)) {
+            return;
+        }
+        percent = newPercent;
+        reportedAt = now;
+        if (listener != null) {
+            listener.progressChanged(newPercent, message == null ? "" : message);
+        }
+    }
+}
@@ -767,7 +767,7 @@ public final class MixerController implements PropertyChangeListener,
             enableHighlight.setText("Disable Cell Highlighting");
         }
 
-        Datavyu.getProjectController().getSpreadSheetPanel().redrawCells();
+        Datavyu.getProjectController().getSpreadSheetPanel().restyleCells();
     }
 
     public void enableHighlightAndFocusHandler(final ActionEvent e) {
@@ -786,7 +786,7 @@ public final class MixerController implements PropertyChangeListener,
         }
 
         enableHighlight.setEnabled(!Datavyu.getVideoController().getCellHighlightAndFocus());
-        Datavyu.getProjectController().getSpreadSheetPanel().redrawCells();
+        Datavyu.getProjectController().getSpreadSheetPanel().restyleCells();
         Datavyu.getApplication().updateTitle();
     }
 
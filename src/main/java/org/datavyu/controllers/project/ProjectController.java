@@ -36,6 +36,7 @@ import org.datavyu.plugins.StreamViewer;
 import org.datavyu.plugins.Plugin;
 import org.datavyu.plugins.PluginManager;
 import org.datavyu.util.FileSystemUtils;
+import org.datavyu.util.LoadingExecutor;
 import org.datavyu.views.VideoController;
 import org.datavyu.views.discrete.SpreadSheetPanel;
 import org.jdesktop.application.Application;
@@ -45,9 +46,13 @@ import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 
 /**
@@ -91,6 +96,9 @@ public final class ProjectController {
     /** Last option used for saving */
     private FileFilter lastSaveOption;
 
+    /** Steps of loading the project that still have to run on the event dispatch thread */
+    private final Queue<Runnable> pendingLoads = new ArrayDeque<>();
+
     /**
      * Default constructor.
      */
@@ -337,236 +345,305 @@ public final class ProjectController {
         project.setOriginalProjectDirectory(directory);
     }
 
+    /**
+     * @return The track settings of the current project, which only project files of older versions of Datavyu have.
+     */
+    @SuppressWarnings("deprecation") // Track settings are read to open project files of older versions
+    private List<TrackSettings> getLegacyTrackSettings() {
+        List<TrackSettings> trackSettings = new ArrayList<>();
+        for (TrackSettings setting : project.getTrackSettings()) {
+            trackSettings.add(setting);
+        }
+        return trackSettings;
+    }
+
     /**
      * Load the settings from the current project.
+     *
+     * Media files are located in the background; the stream viewers are then created one at a time on the event
+     * dispatch thread, so that the spreadsheet is shown before every media file has been opened.
      */
     public void loadProject() {
 
-        // Use the plugin manager to load up the data viewers
-        PluginManager pluginManager = PluginManager.getInstance();
-        VideoController videoController = spreadSheetPanel.getVideoController();
-
-        // Load the plugins required for each media file
-        boolean showController = false;
+        // Locate the media files while the spreadsheet is being shown
+        List<Future<File>> viewerFiles = new ArrayList<>();
+        for (ViewerSetting setting : project.getViewerSettings()) {
+            viewerFiles.add(LoadingExecutor.submit(() -> locateFile(setting.getFilePath(), false)));
+        }
 
-        List<String> missingFilesList = new LinkedList<>();
-        List<String> missingPluginList = new LinkedList<>();
+        // Do not remove; this is here for backwards compatibility.
+        final List<TrackSettings> trackSettings = getLegacyTrackSettings();
+        List<Future<File>> trackFiles = new ArrayList<>();
+        for (TrackSettings setting : trackSettings) {
+            trackFiles.add(LoadingExecutor.submit(() -> locateFile(setting.getFilePath(), true)));
+        }
 
-        final MixerController mixerController = videoController.getMixerController();
+        final List<String> missingFilesList = new LinkedList<>();
+        final List<String> missingPluginList = new LinkedList<>();
 
-        // Load the viewer settings.
+        // Load the plugins required for each media file
+        int index = 0;
         for (ViewerSetting setting : project.getViewerSettings()) {
-            showController = true;
+            final Future<File> file = viewerFiles.get(index++);
+            pendingLoads.add(() -> loadViewer(setting, file, missingFilesList));
+        }
 
-            File file = new File(setting.getFilePath());
+        final boolean hasViewers = !viewerFiles.isEmpty();
+        pendingLoads.add(() -> {
+            MixerController mixerController = spreadSheetPanel.getVideoController().getMixerController();
 
+            int trackIndex = 0;
+            for (TrackSettings setting : trackSettings) {
+                File file = awaitFile(trackFiles.get(trackIndex++));
 
-            if (!file.exists()) {
-                // Look for a file by generating OS-independent paths.
-                File searchedFile = FileSystemUtils.generateRelative(
-                        project.getOriginalProjectDirectory(),
-                        setting.getFilePath(), project.getProjectDirectory());
+                if (file == null) {
+                    missingFilesList.add(setting.getFilePath());
 
-                if (searchedFile != null) {
-                    file = searchedFile;
+                    continue;
                 }
+
+                mixerController.setTrackInterfaceSettings(setting.getFilePath(),
+                        setting.getMarkers(), setting.isLocked());
             }
 
-            // TODO: Enable search of file again
-            /*
-            if (!file.exists()) {
-                File currentDir = new File(project.getProjectDirectory());
-                String dataFileName = FilenameUtils.getName(setting.getFilePath());
+            boolean showController = hasViewers;
 
-                // Look for a file that _might_ be the file we are looking for.
-                // Searches in this directory, all child directories, and from
-                // the parent directory in all child directories.
-                File searchedFile = FileSystemUtils.searchForFile(currentDir, dataFileName);
+            if (!missingFilesList.isEmpty() || !missingPluginList.isEmpty()) {
+                JFrame mainFrame = Datavyu.getApplication().getMainFrame();
+                ResourceMap rMap = Application.getInstance(Datavyu.class)
+                        .getContext().getResourceMap(Datavyu.class);
 
-                if (searchedFile != null) {
-                    file = searchedFile;
+                StringBuilder sb = new StringBuilder();
+
+                if (!missingFilesList.isEmpty()) {
+                    sb.append("The following files are missing:\n\n");
+
+                    for (String filePath : missingFilesList) {
+                        sb.append(filePath);
+                        sb.append('\n');
+                    }
                 }
-            }
-            */
 
-            // The file is actually missing.
-            if (!file.exists()) {
-                missingFilesList.add(setting.getFilePath());
+                if (!missingPluginList.isEmpty()) {
 
-                continue;
-            }
+                    if (sb.length() != 0) {
+                        sb.append('\n');
+                    }
 
-            Plugin plugin = pluginManager.getAssociatedPlugin(setting.getPluginName());
-
-            if (plugin == null) {
-                JLabel label = new JLabel();
-                Font font = label.getFont();
-
-                // create some css from the label's font
-                StringBuilder style = new StringBuilder("font-family:").append(font.getFamily()).append(";");
-                style.append("font-weight:").append(font.isBold() ? "bold" : "normal").append(";");
-                style.append("font-size:").append(font.getSize()).append("pt;");
-
-                // html content
-                JEditorPane ep = new JEditorPane("text/html",
-                    "<html><body style=\"" + style + "\">"
-                        + "Datavyu no longer support this plugin, please <a href=\"http://www.datavyu.org/download.html\">visit</a> <br/>"
-                        + "to find the appropriate Datavyu version for your plugin.<br/>"
-                        + "The video will be opened with the default plugin.");
-
-                // handle link events
-                ep.addHyperlinkListener(new HyperlinkListener() {
-                    @Override
-                    public void hyperlinkUpdate(HyperlinkEvent evt) {
-                        if (evt.getEventType().equals(HyperlinkEvent.EventType.ACTIVATED)) {
-                            try {
-                                // roll your own link launcher or use Desktop if J6+
-                                Desktop.getDesktop().browse(evt.getURL().toURI());
-                            } catch (Exception e) {
-                                logger.error("Error when opening hyper text " + e);
-                            }
-                        }
+                    sb.append("The following plugins are missing:\n\n");
+
+                    for (String pluginName : missingPluginList) {
+                        sb.append(pluginName);
+                        sb.append('\n');
                     }
-                });
-                ep.setEditable(false);
-                ep.setBackground(label.getBackground());
+                }
 
-                // show
-                JOptionPane.showMessageDialog(Datavyu.getView().getComponent()
-                    , ep
-                    , JOptionPane.MESSAGE_PROPERTY
-                    , JOptionPane.PLAIN_MESSAGE);
+                JOptionPane.showMessageDialog(mainFrame, sb.toString(),
+                        rMap.getString("ProjectLoadError.title"),
+                        JOptionPane.WARNING_MESSAGE);
 
-                plugin = PluginManager.getInstance().getCompatiblePlugin(setting.getPluginClassifier(), file) ;
+                showController = true;
             }
 
-            final StreamViewer streamViewer = plugin.getNewStreamViewer(
-                    Identifier.generateIdentifier(),
-                    file,
-                    Datavyu.getApplication().getMainFrame(),
-                    false);
-
-            if (setting.getSettingsId() != null) {
-                // new project file
-                streamViewer.loadSettings(setting.getSettingsInputStream());
-            } else {
-                // old project file
-                streamViewer.setOffset(setting.getOffset());
+            // Show the data controller
+            if (showController) {
+                Datavyu.getApplication().showVideoController();
             }
+        });
 
-            // Make sure that the parent dialog is visible
-            if (streamViewer.getParentJDialog() != null) {
-                boolean visible = streamViewer.getParentJDialog().isVisible();
-                Datavyu.getApplication().show(streamViewer.getParentJDialog());
-                if (!visible) {
-                    streamViewer.getParentJDialog().setVisible(false);
-                }
-            }
+        SwingUtilities.invokeLater(this::loadNextPending);
+    }
 
-            videoController.addStream(plugin.getTypeIcon(), streamViewer);
+    /**
+     * Runs the remaining steps of loading the project right away. Used before the project settings are gathered,
+     * so that viewers still waiting to be loaded are not dropped from the project.
+     */
+    public void finishLoadingProject() {
+        Runnable load;
+        while ((load = pendingLoads.poll()) != null) {
+            load.run();
+        }
+    }
 
-            if (setting.getTrackSettings() != null) {
-                final TrackSettings ts = setting.getTrackSettings();
-                mixerController.setTrackInterfaceSettings(streamViewer.getIdentifier(), ts.getMarkers(), ts.isLocked());
+    /**
+     * Runs the next step of loading the project and schedules the one after it, letting the spreadsheet repaint in
+     * between.
+     */
+    private void loadNextPending() {
+        Runnable load = pendingLoads.poll();
+        if (load != null) {
+            load.run();
+            if (!pendingLoads.isEmpty()) {
+                SwingUtilities.invokeLater(this::loadNextPending);
             }
-
-            mixerController.bindTrackActions(streamViewer.getIdentifier(), streamViewer.getCustomActions());
-            streamViewer.addViewerStateListener(
-                    mixerController.getTracksEditorController()
-                            .getViewerStateListener(streamViewer.getIdentifier()));
         }
+    }
 
-        // Do not remove; this is here for backwards compatibility.
-        for (TrackSettings setting : project.getTrackSettings()) {
-            File file = new File(setting.getFilePath());
-
-            if (!file.exists()) {
+    /**
+     * Locates a media file of the project.
+     *
+     * @param filePath The path of the file as stored in the project.
+     * @param search True to search the project directory for a file with the same name, which can be slow.
+     * @return The file, or null if it is missing.
+     */
+    private File locateFile(final String filePath, final boolean search) {
+        File file = new File(filePath);
 
-                // Look for a file by generating OS-independent paths.
-                // This is not guaranteed for older project file formats.
-                File searchedFile = FileSystemUtils.generateRelative(
-                        project.getOriginalProjectDirectory(),
-                        setting.getFilePath(), project.getProjectDirectory());
+        if (!file.exists()) {
+            // Look for a file by generating OS-independent paths.
+            File searchedFile = FileSystemUtils.generateRelative(
+                    project.getOriginalProjectDirectory(),
+                    filePath, project.getProjectDirectory());
 
-                if (searchedFile != null) {
-                    file = searchedFile;
-                }
+            if (searchedFile != null) {
+                file = searchedFile;
             }
+        }
 
-            if (!file.exists()) {
+        // TODO: Enable search of file again for viewer settings
+        if (search && !file.exists()) {
 
-                // BugzID:1804 - If absolute path does not find the file, look
-                // in the relative path (as long as we are dealing with a newer
-                // project file type).
-                if (project.getOriginalProjectDirectory() != null) {
+            // BugzID:1804 - If absolute path does not find the file, look
+            // in the relative path (as long as we are dealing with a newer
+            // project file type).
+            if (project.getOriginalProjectDirectory() != null) {
 
-                    File searchedFile = FileSystemUtils.searchForFile(new File(
-                            project.getProjectDirectory()), file.getName());
+                File searchedFile = FileSystemUtils.searchForFile(new File(
+                        project.getProjectDirectory()), file.getName());
 
-                    if (searchedFile != null) {
-                        file = searchedFile;
-                    }
+                if (searchedFile != null) {
+                    file = searchedFile;
                 }
             }
+        }
 
-            if (!file.exists()) {
-                missingFilesList.add(setting.getFilePath());
-
-                continue;
-            }
+        // The file is actually missing.
+        return file.exists() ? file : null;
+    }
 
-            mixerController.setTrackInterfaceSettings(setting.getFilePath(),
-                    setting.getMarkers(), setting.isLocked());
+    /**
+     * Waits for a media file to be located.
+     *
+     * @param locatedFile The file being located.
+     * @return The file, or null if it is missing.
+     */
+    private static File awaitFile(final Future<File> locatedFile) {
+        try {
+            return locatedFile.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Unable to locate media file", e.getCause());
         }
+        return null;
+    }
 
-        if (!missingFilesList.isEmpty() || !missingPluginList.isEmpty()) {
-            JFrame mainFrame = Datavyu.getApplication().getMainFrame();
-            ResourceMap rMap = Application.getInstance(Datavyu.class)
-                    .getContext().getResourceMap(Datavyu.class);
-
-            StringBuilder sb = new StringBuilder();
+    /**
+     * Creates the stream viewer for a viewer setting of the project.
+     *
+     * @param setting The viewer setting.
+     * @param locatedFile The media file of the viewer being located.
+     * @param missingFilesList The list that missing files are added to.
+     */
+    private void loadViewer(final ViewerSetting setting, final Future<File> locatedFile,
+                            final List<String> missingFilesList) {
+        File file = awaitFile(locatedFile);
 
-            if (!missingFilesList.isEmpty()) {
-                sb.append("The following files are missing:\n\n");
+        if (file == null) {
+            missingFilesList.add(setting.getFilePath());
 
-                for (String filePath : missingFilesList) {
-                    sb.append(filePath);
-                    sb.append('\n');
-                }
-            }
+            return;
+        }
 
-            if (!missingPluginList.isEmpty()) {
+        PluginManager pluginManager = PluginManager.getInstance();
+        VideoController videoController = spreadSheetPanel.getVideoController();
+        final MixerController mixerController = videoController.getMixerController();
 
-                if (sb.length() != 0) {
-                    sb.append('\n');
+        Plugin plugin = pluginManager.getAssociatedPlugin(setting.getPluginName());
+
+        if (plugin == null) {
+            JLabel label = new JLabel();
+            Font font = label.getFont();
+
+            // create some css from the label's font
+            StringBuilder style = new StringBuilder("font-family:").append(font.getFamily()).append(";");
+            style.append("font-weight:").append(font.isBold() ? "bold" : "normal").append(";");
+            style.append("font-size:").append(font.getSize()).append("pt;");
+
+            // html content
+            JEditorPane ep = new JEditorPane("text/html",
+                "<html><body style=\"" + style + "\">"
+                    + "Datavyu no longer support this plugin, please <a href=\"http://www.datavyu.org/download.html\">visit</a> <br/>"
+                    + "to find the appropriate Datavyu version for your plugin.<br/>"
+                    + "The video will be opened with the default plugin.");
+
+            // handle link events
+            ep.addHyperlinkListener(new HyperlinkListener() {
+                @Override
+                public void hyperlinkUpdate(HyperlinkEvent evt) {
+                    if (evt.getEventType().equals(HyperlinkEvent.EventType.ACTIVATED)) {
+                        try {
+                            // roll your own link launcher or use Desktop if J6+
+                            Desktop.getDesktop().browse(evt.getURL().toURI());
+                        } catch (Exception e) {
+                            logger.error("Error when opening hyper text " + e);
+                        }
+                    }
                 }
+            });
+            ep.setEditable(false);
+            ep.setBackground(label.getBackground());
 
-                sb.append("The following plugins are missing:\n\n");
+            // show
+            JOptionPane.showMessageDialog(Datavyu.getView().getComponent()
+                , ep
+                , JOptionPane.MESSAGE_PROPERTY
+                , JOptionPane.PLAIN_MESSAGE);
 
-                for (String pluginName : missingPluginList) {
-                    sb.append(pluginName);
-                    sb.append('\n');
-                }
-            }
+            plugin = PluginManager.getInstance().getCompatiblePlugin(setting.getPluginClassifier(), file) ;
+        }
 
-            JOptionPane.showMessageDialog(mainFrame, sb.toString(),
-                    rMap.getString("ProjectLoadError.title"),
-                    JOptionPane.WARNING_MESSAGE);
+        final StreamViewer streamViewer = plugin.getNewStreamViewer(
+                Identifier.generateIdentifier(),
+                file,
+                Datavyu.getApplication().getMainFrame(),
+                false);
 
-            showController = true;
+        if (setting.getSettingsId() != null) {
+            // new project file
+            streamViewer.loadSettings(setting.getSettingsInputStream());
+        } else {
+            // old project file
+            streamViewer.setOffset(setting.getOffset());
         }
 
-        // Show the data controller
-        if (showController) {
-            Datavyu.getApplication().showVideoController();
+        // Make sure that the parent dialog is visible
+        if (streamViewer.getParentJDialog() != null) {
+            boolean visible = streamViewer.getParentJDialog().isVisible();
+            Datavyu.getApplication().show(streamViewer.getParentJDialog());
+            if (!visible) {
+                streamViewer.getParentJDialog().setVisible(false);
+            }
+        }
+
+        videoController.addStream(plugin.getTypeIcon(), streamViewer);
+
+        if (setting.getTrackSettings() != null) {
+            final TrackSettings ts = setting.getTrackSettings();
+            mixerController.setTrackInterfaceSettings(streamViewer.getIdentifier(), ts.getMarkers(), ts.isLocked());
         }
 
+        mixerController.bindTrackActions(streamViewer.getIdentifier(), streamViewer.getCustomActions());
+        streamViewer.addViewerStateListener(
+                mixerController.getTracksEditorController()
+                        .getViewerStateListener(streamViewer.getIdentifier()));
     }
 
     /**
      * Gather and update the various project specific settings.
      */
     public void updateProject() {
+        finishLoadingProject();
 
         VideoController dataController = spreadSheetPanel.getVideoController();
 
@@ -82,6 +82,19 @@ public final class Argument implements Serializable {
         return child;
     }
 
+    /**
+     * Makes this argument the same as another one, while the cells that refer to it keep doing so.
+     *
+     * @param other The argument to take the name, type and child arguments from.
+     */
+    void copyFrom(final Argument other) {
+        name = other.name;
+        type = other.type;
+        id = other.id;
+        childArguments = other.childArguments;
+        lastCodeNumber = other.lastCodeNumber;
+    }
+
     public void clearChildArguments() {
         childArguments.clear();
     }
@@ -22,6 +22,8 @@
  */
 package org.datavyu.models.db;
 
+import java.util.UUID;
+
 /**
  * Represents a cell in the OpenSHAPA spreadsheet.
  */
@@ -112,6 +114,11 @@ public interface Cell {
      */
     String getCellId();
 
+    /**
+     * @return The identifier of the cell, which stays the same while the cell is removed and inserted again
+     */
+    UUID getID();
+
     /**
      * @return True if the cell is selected, false otherwise
      */
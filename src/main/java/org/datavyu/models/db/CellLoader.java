@@ -0,0 +1,36 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import java.util.List;
+
+/**
+ * Creates the cells of a variable on first access, so that opening a data store only needs to read the variable
+ * headers. Until then the cells are kept in the form they were read from the file.
+ */
+public interface CellLoader {
+
+    /**
+     * Creates the cells of the variable.
+     *
+     * @param variable The variable to add the cells to.
+     */
+    void load(final Variable variable);
+
+    /**
+     * @return The cells of the variable as lines in the version 4 CSV format, the way they were read from file.
+     */
+    List<String> getCsvLines();
+}
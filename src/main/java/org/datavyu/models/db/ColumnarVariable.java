@@ -0,0 +1,460 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar access to the cells of a variable, for scripts that process many cells.
+ *
+ * The cells are read in temporal order into arrays: onsets and offsets as longs and each argument as strings or as
+ * dictionary codes. Scripts work on these arrays and write changes back with {@link #createCells} and
+ * {@link #updateCells}, or walk the cells with a {@link Cursor}, rather than converting every cell into a script
+ * object and back. The arrays are read on demand and shared with the caller, so they must not be modified; they
+ * reflect the variable as of the last {@link #refresh()}, which the bulk writes do themselves.
+ */
+public final class ColumnarVariable {
+
+    /** Code of empty values in dictionary encoded arguments */
+    public static final int EMPTY_CODE = -1;
+
+    /** The variable */
+    private final Variable variable;
+
+    /** The cells in temporal order */
+    private Cell[] cells;
+
+    /** Onsets of the cells; null until read */
+    private long[] onsets;
+
+    /** Offsets of the cells; null until read */
+    private long[] offsets;
+
+    /** Values of the cells per argument, empty values are ""; null until read */
+    private String[][] values;
+
+    /**
+     * An argument encoded as codes into a dictionary of its distinct values, which is smaller and faster to compare
+     * than the values themselves for nominal arguments.
+     */
+    public static final class Codes {
+
+        /** Per cell the index of its value in the dictionary, or EMPTY_CODE */
+        private final int[] codes;
+
+        /** The distinct values in order of appearance */
+        private final String[] dictionary;
+
+        private Codes(final int[] codes, final String[] dictionary) {
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * @return Per cell the index of its value in the dictionary, or EMPTY_CODE if the value is empty.
+         */
+        public int[] getCodes() {
+            return codes;
+        }
+
+        /**
+         * @return The distinct values in order of appearance.
+         */
+        public String[] getDictionary() {
+            return dictionary;
+        }
+    }
+
+    /**
+     * Walks the cells in temporal order without creating an object per cell. Reads come from the arrays of the
+     * columnar variable; writes go to the cell at the cursor straight away.
+     */
+    public final class Cursor {
+
+        /** Index of the cell at the cursor */
+        private int index = -1;
+
+        private Cursor() {}
+
+        /**
+         * Moves to the next cell.
+         *
+         * @return True if there is a next cell; otherwise False.
+         */
+        public boolean next() {
+            if (index < cells.length) {
+                index++;
+            }
+            return index < cells.length;
+        }
+
+        /**
+         * @return The index of the cell at the cursor in temporal order.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return The cell at the cursor.
+         */
+        public Cell getCell() {
+            return cells[index];
+        }
+
+        /**
+         * @return The onset of the cell at the cursor in milliseconds.
+         */
+        public long getOnset() {
+            return getOnsets()[index];
+        }
+
+        /**
+         * @return The offset of the cell at the cursor in milliseconds.
+         */
+        public long getOffset() {
+            return getOffsets()[index];
+        }
+
+        /**
+         * @param argument The index of the argument.
+         * @return The value of the argument of the cell at the cursor, "" if empty.
+         */
+        public String getValue(final int argument) {
+            return getValues(argument)[index];
+        }
+
+        /**
+         * @param onset The new onset of the cell at the cursor in milliseconds.
+         */
+        public void setOnset(final long onset) {
+            cells[index].setOnset(onset);
+            if (onsets != null) {
+                onsets[index] = onset;
+            }
+        }
+
+        /**
+         * @param offset The new offset of the cell at the cursor in milliseconds.
+         */
+        public void setOffset(final long offset) {
+            cells[index].setOffset(offset);
+            if (offsets != null) {
+                offsets[index] = offset;
+            }
+        }
+
+        /**
+         * @param argument The index of the argument.
+         * @param value The new value of the argument of the cell at the cursor, "" to clear it.
+         */
+        public void setValue(final int argument, final String value) {
+            setCellValue(cells[index], argument, value);
+            if (values[argument] != null) {
+                values[argument][index] = value;
+            }
+        }
+    }
+
+    /**
+     * Creates a columnar view of a variable.
+     *
+     * @param variable The variable.
+     */
+    public ColumnarVariable(final Variable variable) {
+        this.variable = variable;
+        refresh();
+    }
+
+    /**
+     * Creates a variable with nominal arguments and its columnar view.
+     *
+     * @param dataStore The data store to create the variable in.
+     * @param name The name of the variable.
+     * @param argumentNames The names of the arguments; the variable gets the default argument if there are none.
+     * @return The columnar view of the new variable.
+     * @throws UserWarningException If unable to create the variable, for example because the name is taken.
+     */
+    public static ColumnarVariable createVariable(final DataStore dataStore, final String name,
+                                                  final String... argumentNames) throws UserWarningException {
+        Variable variable = dataStore.createVariable(name, Argument.Type.MATRIX);
+        if (argumentNames.length > 0) {
+            String defaultName = variable.getRootNode().childArguments.get(0).name;
+            for (String argumentName : argumentNames) {
+                variable.addArgument(Argument.Type.NOMINAL).name = argumentName;
+            }
+            variable.removeArgument(defaultName);
+        }
+        return new ColumnarVariable(variable);
+    }
+
+    /**
+     * Reads the cells of the variable again, to see changes that were not made through this view.
+     */
+    public void refresh() {
+        List<Cell> temporalCells = variable.getCellsTemporally();
+        cells = temporalCells.toArray(new Cell[temporalCells.size()]);
+        onsets = null;
+        offsets = null;
+        values = new String[getArgumentCount()][];
+    }
+
+    /**
+     * @return The variable.
+     */
+    public Variable getVariable() {
+        return variable;
+    }
+
+    /**
+     * @return The number of cells.
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * @return The number of arguments, one for text and nominal variables.
+     */
+    public int getArgumentCount() {
+        Argument root = variable.getRootNode();
+        return root.type == Argument.Type.MATRIX ? root.childArguments.size() : 1;
+    }
+
+    /**
+     * @return The names of the arguments.
+     */
+    public String[] getArgumentNames() {
+        Argument root = variable.getRootNode();
+        if (root.type != Argument.Type.MATRIX) {
+            return new String[]{root.name};
+        }
+        String[] names = new String[root.childArguments.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = root.childArguments.get(i).name;
+        }
+        return names;
+    }
+
+    /**
+     * @param name The name of an argument.
+     * @return The index of the argument, or -1 if the variable has no such argument.
+     */
+    public int getArgumentIndex(final String name) {
+        return Arrays.asList(getArgumentNames()).indexOf(name);
+    }
+
+    /**
+     * @param index The index of a cell in temporal order.
+     * @return The cell.
+     */
+    public Cell getCell(final int index) {
+        return cells[index];
+    }
+
+    /**
+     * @return The onsets of the cells in milliseconds, in temporal order.
+     */
+    public long[] getOnsets() {
+        if (onsets == null) {
+            onsets = new long[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                onsets[i] = cells[i].getOnset();
+            }
+        }
+        return onsets;
+    }
+
+    /**
+     * @return The offsets of the cells in milliseconds, in temporal order.
+     */
+    public long[] getOffsets() {
+        if (offsets == null) {
+            offsets = new long[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                offsets[i] = cells[i].getOffset();
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * @param argument The index of an argument.
+     * @return The values of the argument in temporal order, "" where empty.
+     */
+    public String[] getValues(final int argument) {
+        if (values[argument] == null) {
+            String[] column = new String[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                column[i] = getCellValue(cells[i], argument).toString();
+            }
+            values[argument] = column;
+        }
+        return values[argument];
+    }
+
+    /**
+     * @param argument The index of an argument.
+     * @return The values of the argument in temporal order, dictionary encoded.
+     */
+    public Codes getCodes(final int argument) {
+        String[] column = getValues(argument);
+        int[] codes = new int[column.length];
+        Map<String, Integer> dictionary = new HashMap<>();
+        String[] distinct = new String[column.length];
+        for (int i = 0; i < column.length; i++) {
+            if (column[i].isEmpty()) {
+                codes[i] = EMPTY_CODE;
+            } else {
+                Integer code = dictionary.get(column[i]);
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(column[i], code);
+                    distinct[code] = column[i];
+                }
+                codes[i] = code;
+            }
+        }
+        return new Codes(codes, Arrays.copyOf(distinct, dictionary.size()));
+    }
+
+    /**
+     * @return A cursor before the first cell.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Creates cells.
+     *
+     * @param newOnsets The onsets of the cells in milliseconds.
+     * @param newOffsets The offsets of the cells in milliseconds, or null to leave them at 0.
+     * @param newValues Per argument the values of the cells, or null to leave the argument empty; values may be
+     *                  null or "" to leave them empty. May be null to leave all arguments empty.
+     */
+    public void createCells(final long[] newOnsets, final long[] newOffsets, final String[][] newValues) {
+        checkLengths(newOnsets.length, newOffsets, newValues);
+        for (int i = 0; i < newOnsets.length; i++) {
+            Cell cell = variable.createCell();
+            cell.setOnset(newOnsets[i]);
+            if (newOffsets != null) {
+                cell.setOffset(newOffsets[i]);
+            }
+            if (newValues != null) {
+                for (int argument = 0; argument < newValues.length; argument++) {
+                    if (newValues[argument] != null && newValues[argument][i] != null
+                            && !newValues[argument][i].isEmpty()) {
+                        getCellValue(cell, argument).set(newValues[argument][i]);
+                    }
+                }
+            }
+        }
+        refresh();
+    }
+
+    /**
+     * Updates cells.
+     *
+     * @param indices The indices of the cells to update in temporal order.
+     * @param newOnsets The new onsets in milliseconds, or null to leave them.
+     * @param newOffsets The new offsets in milliseconds, or null to leave them.
+     * @param newValues Per argument the new values, or null to leave the argument; values may be null to leave them
+     *                  or "" to clear them. May be null to leave all arguments.
+     */
+    public void updateCells(final int[] indices, final long[] newOnsets, final long[] newOffsets,
+                            final String[][] newValues) {
+        checkLengths(indices.length, newOffsets, newValues);
+        if (newOnsets != null && newOnsets.length != indices.length) {
+            throw new IllegalArgumentException("Expected " + indices.length + " onsets, got " + newOnsets.length);
+        }
+        for (int i = 0; i < indices.length; i++) {
+            Cell cell = cells[indices[i]];
+            if (newOnsets != null) {
+                cell.setOnset(newOnsets[i]);
+            }
+            if (newOffsets != null) {
+                cell.setOffset(newOffsets[i]);
+            }
+            if (newValues != null) {
+                for (int argument = 0; argument < newValues.length; argument++) {
+                    if (newValues[argument] != null && newValues[argument][i] != null) {
+                        setCellValue(cell, argument, newValues[argument][i]);
+                    }
+                }
+            }
+        }
+        refresh();
+    }
+
+    /**
+     * Checks that the arrays given to a bulk write have a value per cell.
+     *
+     * @param length The number of cells written.
+     * @param newOffsets The offsets, or null.
+     * @param newValues The values per argument, or null.
+     */
+    private void checkLengths(final int length, final long[] newOffsets, final String[][] newValues) {
+        if (newOffsets != null && newOffsets.length != length) {
+            throw new IllegalArgumentException("Expected " + length + " offsets, got " + newOffsets.length);
+        }
+        if (newValues != null) {
+            if (newValues.length > getArgumentCount()) {
+                throw new IllegalArgumentException("Expected at most " + getArgumentCount() + " arguments, got "
+                        + newValues.length);
+            }
+            for (String[] column : newValues) {
+                if (column != null && column.length != length) {
+                    throw new IllegalArgumentException("Expected " + length + " values, got " + column.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param cell A cell of the variable.
+     * @param argument The index of an argument.
+     * @return The value of the argument of the cell.
+     */
+    private CellValue getCellValue(final Cell cell, final int argument) {
+        CellValue value = cell.getCellValue();
+        if (value instanceof MatrixCellValue) {
+            return ((MatrixCellValue) value).getArguments().get(argument);
+        }
+        if (argument != 0) {
+            throw new IndexOutOfBoundsException("Argument: " + argument + ", Arguments: 1");
+        }
+        return value;
+    }
+
+    /**
+     * Sets or clears the value of an argument of a cell.
+     *
+     * @param cell A cell of the variable.
+     * @param argument The index of an argument.
+     * @param value The new value, "" to clear it.
+     */
+    private void setCellValue(final Cell cell, final int argument, final String value) {
+        CellValue cellValue = getCellValue(cell, argument);
+        if (value.isEmpty()) {
+            cellValue.clear();
+        } else {
+            cellValue.set(value);
+        }
+    }
+}
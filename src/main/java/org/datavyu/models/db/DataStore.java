@@ -23,6 +23,7 @@
 package org.datavyu.models.db;
 
 import java.util.List;
+import java.util.UUID;
 
 /**
  * An interface which abstracts away from the specific underlying database,
@@ -82,6 +83,15 @@ public interface DataStore {
      */
     Variable getVariable(Cell cell);
 
+    /**
+     * Gets a cell by its identifier, in constant time.
+     *
+     * @param id The identifier of the cell.
+     *
+     * @return The cell, null if no variable of the datastore holds a cell with the identifier.
+     */
+    Cell getCell(UUID id);
+
     /**
      * Creates and adds a variable to this datastore.
      *
@@ -169,6 +179,12 @@ public interface DataStore {
      */
     void setTitleNotifier(final TitleNotifier titleNotifier);
 
+    /**
+     * Removes the listeners registered on the variables and cells of the
+     * datastore, once it is no longer used.
+     */
+    void clearListeners();
+
     /**
      * Adds a listener that needs to be notified when the datastore changes.
      */
@@ -179,6 +195,18 @@ public interface DataStore {
      * the datastore changes.
      */
     void removeListener(final DataStoreListener listener);
+
+    /**
+     * Adds a listener that needs to be notified of every change made to the
+     * cells and variables of the datastore.
+     */
+    void addChangeListener(final DataStoreChangeListener listener);
+
+    /**
+     * Removes a listener from the list of things that need to be notified of
+     * every change made to the cells and variables of the datastore.
+     */
+    void removeChangeListener(final DataStoreChangeListener listener);
     
     void addExemptionVariable(String s);
 
@@ -0,0 +1,88 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+/**
+ * Implement this interface to be notified of every mutation made to the cells of a data store, together with the
+ * state prior to the change. Unlike {@link CellListener}, which is registered per cell, a change listener is
+ * registered once per data store, which makes it suitable for journaling and replaying changes.
+ */
+public interface DataStoreChangeListener {
+
+    /**
+     * Called when a cell has been inserted into a variable of the data store.
+     *
+     * @param cell The cell that was inserted, its parent variable is available from the cell.
+     */
+    void cellInserted(final Cell cell);
+
+    /**
+     * Called when a cell has been removed from a variable of the data store.
+     *
+     * @param cell The cell that was removed, its parent variable is available from the cell.
+     */
+    void cellRemoved(final Cell cell);
+
+    /**
+     * Called when the onset of a cell has changed.
+     *
+     * @param cell The cell that changed.
+     * @param oldOnset The onset before the change in milliseconds.
+     * @param newOnset The onset after the change in milliseconds.
+     */
+    void onsetChanged(final Cell cell, final long oldOnset, final long newOnset);
+
+    /**
+     * Called when the offset of a cell has changed.
+     *
+     * @param cell The cell that changed.
+     * @param oldOffset The offset before the change in milliseconds.
+     * @param newOffset The offset after the change in milliseconds.
+     */
+    void offsetChanged(final Cell cell, final long oldOffset, final long newOffset);
+
+    /**
+     * Called when the value of a cell, or of one argument of a matrix cell, has changed.
+     *
+     * @param cell The cell that changed.
+     * @param argumentIndex The index of the matrix argument that changed, or -1 for text and nominal cells.
+     * @param oldValue The value before the change, empty if the value was empty.
+     * @param newValue The value after the change, empty if the value is now empty.
+     */
+    void valueChanged(final Cell cell, final int argumentIndex, final String oldValue, final String newValue);
+
+    /**
+     * Called when the cells of a variable were created on first access. The cells are as they were read from file
+     * and are not reported through {@link #cellInserted(Cell)}.
+     *
+     * @param variable The variable whose cells were loaded.
+     */
+    void cellsLoaded(final Variable variable);
+
+    /**
+     * Called before an argument is added to, moved within or removed from a variable, while its cells still hold
+     * the values of the arguments as they were.
+     *
+     * @param variable The variable about to change.
+     */
+    void argumentsChanging(final Variable variable);
+
+    /**
+     * Called when a variable was added, removed, renamed, hidden or shown, or when its arguments changed.
+     *
+     * @param variable The variable that changed.
+     */
+    void variableChanged(final Variable variable);
+}
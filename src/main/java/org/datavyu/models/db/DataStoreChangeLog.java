@@ -0,0 +1,512 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the changes made to a data store while it is being recorded, so that they can be undone and redone
+ * afterwards. Only what changed is kept: the cells that were inserted or removed, the old and new onsets, offsets and
+ * values of the cells that were changed and the old and new state of the variables that were added, removed,
+ * renamed, hidden or shown. A variable that gains, moves or loses an argument is the exception, its cells are kept
+ * in full as they were before the change, because the values of a removed argument are lost otherwise.
+ *
+ * Only the changes made on the thread that started recording are kept, so that a script running on its own thread
+ * records its changes and not those the user makes meanwhile. Changes made on other threads still update the state
+ * of the variables as last seen. The changes are undone and redone on one thread at a time.
+ */
+public final class DataStoreChangeLog implements DataStoreChangeListener {
+
+    /** Rough number of bytes a change takes in memory, not counting the strings and cells it holds */
+    private static final long CHANGE_BYTES = 64;
+
+    /** Rough number of bytes a cell takes in memory, not counting its values */
+    private static final long CELL_BYTES = 128;
+
+    /** The data store recorded */
+    private final DataStore dataStore;
+
+    /** The thread whose changes are recorded */
+    private final Thread thread;
+
+    /** The changes in the order they were made */
+    private final List<Change> changes = new ArrayList<>();
+
+    /** The state of the variables as last seen */
+    private final Map<Variable, VariableState> states = new IdentityHashMap<>();
+
+    /** Variables whose arguments are changing, and were recorded in full already */
+    private final Map<Variable, Boolean> argumentsChanging = new IdentityHashMap<>();
+
+    /** Whether changes are being recorded */
+    private boolean recording;
+
+    /** Estimated number of bytes the changes take */
+    private long memorySize;
+
+    private DataStoreChangeLog(final DataStore dataStore) {
+        this.dataStore = dataStore;
+        thread = Thread.currentThread();
+        for (Variable variable : dataStore.getAllVariables()) {
+            states.put(variable, new VariableState(variable));
+        }
+        dataStore.addChangeListener(this);
+        recording = true;
+    }
+
+    /**
+     * Starts recording the changes made to a data store on the calling thread.
+     *
+     * @param dataStore The data store.
+     * @return The log the changes are recorded in until it is stopped.
+     */
+    public static DataStoreChangeLog record(final DataStore dataStore) {
+        return new DataStoreChangeLog(dataStore);
+    }
+
+    /**
+     * Stops recording changes, does nothing if recording stopped already.
+     */
+    public synchronized void stop() {
+        if (recording) {
+            recording = false;
+            dataStore.removeChangeListener(this);
+            states.clear();
+            argumentsChanging.clear();
+        }
+    }
+
+    /**
+     * @return True if changes are being recorded.
+     */
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * @return The number of changes recorded.
+     */
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * @return The estimated number of bytes the recorded changes take in memory.
+     */
+    public long getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * Undoes the recorded changes, last change first. Stops recording first.
+     */
+    public void undo() {
+        stop();
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            changes.get(i).undo();
+        }
+    }
+
+    /**
+     * Redoes the recorded changes after they were undone, first change first.
+     */
+    public void redo() {
+        stop();
+        for (Change change : changes) {
+            change.redo();
+        }
+    }
+
+    @Override
+    public void cellInserted(final Cell cell) {
+        add(new CellChange(cell, true), CELL_BYTES + 2L * cell.getValueAsString().length());
+    }
+
+    @Override
+    public void cellRemoved(final Cell cell) {
+        add(new CellChange(cell, false), CELL_BYTES + 2L * cell.getValueAsString().length());
+    }
+
+    @Override
+    public void onsetChanged(final Cell cell, final long oldOnset, final long newOnset) {
+        add(new Change() {
+            @Override
+            void undo() {
+                cell.setOnset(oldOnset);
+            }
+
+            @Override
+            void redo() {
+                cell.setOnset(newOnset);
+            }
+        }, CHANGE_BYTES);
+    }
+
+    @Override
+    public void offsetChanged(final Cell cell, final long oldOffset, final long newOffset) {
+        add(new Change() {
+            @Override
+            void undo() {
+                cell.setOffset(oldOffset);
+            }
+
+            @Override
+            void redo() {
+                cell.setOffset(newOffset);
+            }
+        }, CHANGE_BYTES);
+    }
+
+    @Override
+    public void valueChanged(final Cell cell, final int argumentIndex, final String oldValue, final String newValue) {
+        add(new Change() {
+            @Override
+            void undo() {
+                setValue(cell, argumentIndex, oldValue);
+            }
+
+            @Override
+            void redo() {
+                setValue(cell, argumentIndex, newValue);
+            }
+        }, CHANGE_BYTES + 2L * (oldValue.length() + newValue.length()));
+    }
+
+    @Override
+    public void cellsLoaded(final Variable variable) {
+        // Loading cells does not change them
+    }
+
+    @Override
+    public synchronized void argumentsChanging(final Variable variable) {
+        VariableState state = states.get(variable);
+        if (state != null && Thread.currentThread() == thread && !argumentsChanging.containsKey(variable)) {
+            VariableImage image = new VariableImage(variable, state.rootNode);
+            add(new ArgumentsChange(variable, image), CHANGE_BYTES + image.getMemorySize());
+            argumentsChanging.put(variable, true);
+        }
+    }
+
+    @Override
+    public synchronized void variableChanged(final Variable variable) {
+        VariableState before = states.get(variable);
+        if (before == null && !isInDataStore(variable)) {
+            // Still being created
+            return;
+        }
+        VariableState after = new VariableState(variable);
+        if (before == null) {
+            // Created while recording, it was not in the data store before
+            before = new VariableState(variable.getName(), variable.isHidden(), after.orderIndex, false,
+                    after.rootNode);
+        }
+        states.put(variable, after);
+
+        if (argumentsChanging.remove(variable) == null && !isSameArgument(before.rootNode, after.rootNode)) {
+            add(new ArgumentsChange(variable, before.rootNode), CHANGE_BYTES);
+        }
+        if (before.inDataStore != after.inDataStore || !before.name.equals(after.name)
+                || before.hidden != after.hidden || before.orderIndex != after.orderIndex) {
+            add(new VariableChange(variable, before, after), CHANGE_BYTES);
+        }
+    }
+
+    /**
+     * Records a change, unless it was made on another thread than the one recorded.
+     *
+     * @param change The change.
+     * @param size The estimated number of bytes it takes.
+     */
+    private synchronized void add(final Change change, final long size) {
+        if (Thread.currentThread() != thread) {
+            return;
+        }
+        changes.add(change);
+        memorySize += size;
+    }
+
+    /**
+     * @return True if the variable is one of the variables of the data store.
+     */
+    private boolean isInDataStore(final Variable variable) {
+        return dataStore.getVariable(variable.getName()) == variable;
+    }
+
+    /**
+     * Sets the value of a cell or of one argument of a matrix cell, clearing it when the value is empty.
+     */
+    private static void setValue(final Cell cell, final int argumentIndex, final String value) {
+        if (argumentIndex < 0) {
+            if (value.isEmpty()) {
+                cell.getCellValue().clear();
+            } else {
+                cell.getCellValue().set(value);
+            }
+        } else if (value.isEmpty()) {
+            cell.clearMatrixValue(argumentIndex);
+        } else {
+            cell.setMatrixValue(argumentIndex, value);
+        }
+    }
+
+    /**
+     * @return True if both arguments and their children have the same names and types.
+     */
+    private static boolean isSameArgument(final Argument a, final Argument b) {
+        if (!a.name.equals(b.name) || a.type != b.type || a.childArguments.size() != b.childArguments.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.childArguments.size(); i++) {
+            if (!isSameArgument(a.childArguments.get(i), b.childArguments.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A recorded change.
+     */
+    private abstract static class Change {
+        abstract void undo();
+
+        abstract void redo();
+    }
+
+    /**
+     * A cell that was inserted into or removed from its variable.
+     */
+    private static final class CellChange extends Change {
+        private final Cell cell;
+        private final Variable variable;
+        private final boolean inserted;
+
+        CellChange(final Cell cell, final boolean inserted) {
+            this.cell = cell;
+            this.variable = cell.getVariable();
+            this.inserted = inserted;
+        }
+
+        @Override
+        void undo() {
+            if (inserted) {
+                variable.removeCell(cell);
+            } else {
+                variable.addCell(cell);
+            }
+        }
+
+        @Override
+        void redo() {
+            if (inserted) {
+                variable.addCell(cell);
+            } else {
+                variable.removeCell(cell);
+            }
+        }
+    }
+
+    /**
+     * The name, visibility, arguments and presence in the data store of a variable.
+     */
+    private final class VariableState {
+        private final String name;
+        private final boolean hidden;
+        private final int orderIndex;
+        private final boolean inDataStore;
+        private final Argument rootNode;
+
+        VariableState(final Variable variable) {
+            this(variable.getName(), variable.isHidden(), variable.getOrderIndex(), isInDataStore(variable),
+                    DataStoreFork.copyArgument(variable.getRootNode()));
+        }
+
+        VariableState(final String name, final boolean hidden, final int orderIndex, final boolean inDataStore,
+                      final Argument rootNode) {
+            this.name = name;
+            this.hidden = hidden;
+            this.orderIndex = orderIndex;
+            this.inDataStore = inDataStore;
+            this.rootNode = rootNode;
+        }
+    }
+
+    /**
+     * A variable that was added, removed, renamed, hidden, shown or moved.
+     */
+    private final class VariableChange extends Change {
+        private final Variable variable;
+        private final VariableState before;
+        private final VariableState after;
+
+        VariableChange(final Variable variable, final VariableState before, final VariableState after) {
+            this.variable = variable;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        void undo() {
+            apply(after, before);
+        }
+
+        @Override
+        void redo() {
+            apply(before, after);
+        }
+
+        private void apply(final VariableState from, final VariableState to) {
+            if (from.inDataStore && !to.inDataStore) {
+                dataStore.removeVariable(variable);
+            }
+            if (!from.name.equals(to.name) && from.inDataStore && to.inDataStore) {
+                try {
+                    variable.setName(to.name, true);
+                } catch (UserWarningException e) {
+                    // The name was in use by this variable before
+                    throw new IllegalStateException("Unable to rename column back to " + to.name, e);
+                }
+            }
+            if (from.hidden != to.hidden) {
+                variable.setHidden(to.hidden);
+            }
+            if (!from.inDataStore && to.inDataStore) {
+                dataStore.addVariable(variable);
+            }
+            // After adding, as the spreadsheet puts added columns last
+            if (to.inDataStore && variable.getOrderIndex() != to.orderIndex) {
+                variable.setOrderIndex(to.orderIndex);
+            }
+        }
+    }
+
+    /**
+     * The arguments of a variable, with the values of its cells when they depend on them.
+     */
+    private static final class VariableImage {
+        private final Argument rootNode;
+        private final Map<Cell, String[]> values;
+
+        VariableImage(final Argument rootNode) {
+            this.rootNode = rootNode;
+            this.values = null;
+        }
+
+        VariableImage(final Variable variable, final Argument rootNode) {
+            this.rootNode = rootNode;
+            this.values = new LinkedHashMap<>();
+            for (Cell cell : variable.getCells()) {
+                List<CellValue> cellValues = DataStoreFork.getValues(cell);
+                String[] strings = new String[cellValues.size()];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = cellValues.get(i).isEmpty() ? "" : cellValues.get(i).toString();
+                }
+                values.put(cell, strings);
+            }
+        }
+
+        /**
+         * @return The estimated number of bytes the cells and values of the image take.
+         */
+        long getMemorySize() {
+            long size = 0;
+            if (values != null) {
+                for (String[] strings : values.values()) {
+                    size += CELL_BYTES;
+                    for (String string : strings) {
+                        size += 2L * string.length();
+                    }
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Changes the variable back to this image. The root argument of the variable stays the same object, so the
+         * cells that refer to it remain part of it.
+         */
+        void restore(final Variable variable) {
+            Argument rootNode = variable.getRootNode();
+            rootNode.copyFrom(DataStoreFork.copyArgument(this.rootNode));
+            if (values != null) {
+                for (Map.Entry<Cell, String[]> entry : values.entrySet()) {
+                    Cell cell = entry.getKey();
+                    String[] strings = entry.getValue();
+                    if (cell.getCellValue() instanceof MatrixCellValue) {
+                        MatrixCellValue value = (MatrixCellValue) cell.getCellValue();
+                        value.getArguments().clear();
+                        for (Argument child : rootNode.childArguments) {
+                            value.createArgument(child);
+                        }
+                        for (int i = 0; i < strings.length; i++) {
+                            setValue(cell, i, strings[i]);
+                        }
+                    } else {
+                        setValue(cell, -1, strings[0]);
+                    }
+                }
+            }
+            variable.setRootNode(rootNode);
+        }
+    }
+
+    /**
+     * A variable whose arguments changed.
+     */
+    private static final class ArgumentsChange extends Change {
+        private final Variable variable;
+        private final boolean withValues;
+        private VariableImage image;
+
+        /**
+         * A change that may have lost values, the image holds the cells as they were before.
+         */
+        ArgumentsChange(final Variable variable, final VariableImage before) {
+            this.variable = variable;
+            this.withValues = true;
+            this.image = before;
+        }
+
+        /**
+         * A change that only renamed or replaced arguments, the image holds the arguments as they were before.
+         */
+        ArgumentsChange(final Variable variable, final Argument before) {
+            this.variable = variable;
+            this.withValues = false;
+            this.image = new VariableImage(before);
+        }
+
+        @Override
+        void undo() {
+            toggle();
+        }
+
+        @Override
+        void redo() {
+            toggle();
+        }
+
+        private void toggle() {
+            Argument current = DataStoreFork.copyArgument(variable.getRootNode());
+            VariableImage other = withValues ? new VariableImage(variable, current) : new VariableImage(current);
+            image.restore(variable);
+            image = other;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A private copy of a data store that changes independently of it, for scripts that run alongside the user and other
+ * scripts. The changes made to the copy can be merged back into the data store it was forked from, as long as the
+ * variables they touch did not change there in the meantime.
+ *
+ * A fork is taken and merged on the thread that edits the data store, the event dispatch thread in the application,
+ * while the copy itself is only used by the thread running the script.
+ */
+public final class DataStoreFork {
+
+    /** The data store forked from */
+    private final DataStore source;
+
+    /** The private copy */
+    private final DataStore copy;
+
+    /** Contents of the variables of the source when forked, by name */
+    private final Map<String, String> forkedContents = new HashMap<>();
+
+    private DataStoreFork(final DataStore source) throws UserWarningException {
+        this.source = source;
+        copy = DataStoreFactory.newDataStore();
+        copy.setName(source.getName());
+        for (Variable variable : source.getAllVariables()) {
+            copyVariable(variable, copy);
+            forkedContents.put(variable.getName(), getContents(variable));
+        }
+        copy.markAsUnchanged();
+    }
+
+    /**
+     * Forks a data store.
+     *
+     * @param source The data store to fork.
+     * @return The fork.
+     * @throws UserWarningException If unable to copy a variable.
+     */
+    public static DataStoreFork fork(final DataStore source) throws UserWarningException {
+        return new DataStoreFork(source);
+    }
+
+    /**
+     * @return The private copy, which can be read and changed without affecting the data store forked from.
+     */
+    public DataStore getDataStore() {
+        return copy;
+    }
+
+    /**
+     * @return The names of the variables that were added, changed or removed in the copy since forking.
+     */
+    public Set<String> getChangedVariables() {
+        Set<String> changed = new TreeSet<>();
+        for (Variable variable : copy.getAllVariables()) {
+            if (!getContents(variable).equals(forkedContents.get(variable.getName()))) {
+                changed.add(variable.getName());
+            }
+        }
+        for (String name : forkedContents.keySet()) {
+            if (copy.getVariable(name) == null) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Merges the changes made to the copy into the data store forked from, replacing the variables that changed. The
+     * merge is all or nothing: nothing is merged if any of these variables also changed in the data store forked
+     * from since forking.
+     *
+     * @return The names of the variables merged.
+     * @throws UserWarningException If a variable changed in both, or unable to copy a variable.
+     */
+    public Set<String> merge() throws UserWarningException {
+        Set<String> changed = getChangedVariables();
+        for (String name : changed) {
+            Variable current = source.getVariable(name);
+            String currentContents = current == null ? null : getContents(current);
+            if (!Objects.equals(currentContents, forkedContents.get(name))) {
+                throw new UserWarningException("Unable to merge the changes to column '" + name
+                        + "', it was changed while the script ran.");
+            }
+        }
+
+        for (String name : changed) {
+            Variable current = source.getVariable(name);
+            if (current != null) {
+                source.removeVariable(current);
+            }
+            Variable changedVariable = copy.getVariable(name);
+            if (changedVariable != null) {
+                // Changed columns keep their place, added columns go after the others
+                int orderIndex = current != null ? current.getOrderIndex() : getLastOrderIndex(source) + 1;
+                copyVariable(changedVariable, source).setOrderIndex(orderIndex);
+            }
+        }
+        for (String name : changed) {
+            Variable merged = source.getVariable(name);
+            forkedContents.put(name, merged == null ? null : getContents(merged));
+        }
+        return changed;
+    }
+
+    /**
+     * Copies a variable with its arguments and cells into a data store.
+     *
+     * @param variable The variable to copy.
+     * @param target The data store to copy into, which has no variable of the same name.
+     * @return The copied variable.
+     * @throws UserWarningException If unable to create the variable.
+     */
+    private static Variable copyVariable(final Variable variable, final DataStore target)
+            throws UserWarningException {
+        Argument type = copyArgument(variable.getRootNode());
+        Variable copied = target.createVariable(variable.getName(), type.type, true);
+        copied.setRootNode(type);
+        for (Cell cell : variable.getCells()) {
+            Cell copiedCell = copied.createCell();
+            copiedCell.setOnset(cell.getOnset());
+            copiedCell.setOffset(cell.getOffset());
+            List<CellValue> values = getValues(cell);
+            List<CellValue> copiedValues = getValues(copiedCell);
+            for (int i = 0; i < values.size(); i++) {
+                if (!values.get(i).isEmpty()) {
+                    copiedValues.get(i).set(values.get(i).toString());
+                }
+            }
+        }
+        copied.setHidden(variable.isHidden());
+        copied.setSelected(variable.isSelected());
+        copied.setOrderIndex(variable.getOrderIndex());
+        return copied;
+    }
+
+    /**
+     * @param dataStore A data store.
+     * @return The largest order index of its variables, -1 if it has none.
+     */
+    private static int getLastOrderIndex(final DataStore dataStore) {
+        int last = -1;
+        for (Variable variable : dataStore.getAllVariables()) {
+            last = Math.max(last, variable.getOrderIndex());
+        }
+        return last;
+    }
+
+    /**
+     * Copies an argument with its child arguments.
+     *
+     * @param argument The argument to copy.
+     * @return The copy.
+     */
+    static Argument copyArgument(final Argument argument) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(argument);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (Argument) in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            // Arguments only hold strings, enums and other arguments
+            throw new IllegalStateException("Unable to copy argument " + argument.name, e);
+        }
+    }
+
+    /**
+     * @param cell A cell.
+     * @return The values of the arguments of the cell, a single one for text and nominal variables.
+     */
+    static List<CellValue> getValues(final Cell cell) {
+        CellValue value = cell.getCellValue();
+        if (value instanceof MatrixCellValue) {
+            return ((MatrixCellValue) value).getArguments();
+        }
+        return Collections.singletonList(value);
+    }
+
+    /**
+     * Describes the contents of a variable, its arguments and cells in any order, to tell whether it changed.
+     *
+     * @param variable The variable.
+     * @return The contents.
+     */
+    static String getContents(final Variable variable) {
+        StringBuilder contents = new StringBuilder();
+        appendArgument(contents, variable.getRootNode());
+        contents.append(variable.isHidden()).append('\n');
+        List<String> cells = new ArrayList<>();
+        for (Cell cell : variable.getCells()) {
+            StringBuilder line = new StringBuilder();
+            line.append(cell.getOnset()).append(',').append(cell.getOffset());
+            for (CellValue value : getValues(cell)) {
+                // Lengths keep values with commas apart
+                String text = value.toString();
+                line.append(',').append(text.length()).append(':').append(text);
+            }
+            cells.add(line.toString());
+        }
+        Collections.sort(cells);
+        for (String cell : cells) {
+            contents.append(cell).append('\n');
+        }
+        return contents.toString();
+    }
+
+    /**
+     * Describes an argument and its children.
+     *
+     * @param contents Receives the description.
+     * @param argument The argument.
+     */
+    private static void appendArgument(final StringBuilder contents, final Argument argument) {
+        contents.append(argument.type).append(' ').append(argument.name.length()).append(':').append(argument.name);
+        contents.append('(');
+        for (Argument child : argument.childArguments) {
+            appendArgument(contents, child);
+        }
+        contents.append(")\n");
+    }
+}
@@ -14,13 +14,18 @@
  */
 package org.datavyu.models.db;
 
+import org.datavyu.util.ScriptProfiler;
+
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 public class DatavyuCell implements Cell {
 
-    static Map<UUID, List<CellListener>> allListeners = new HashMap<UUID, List<CellListener>>();
-    final private UUID id = UUID.randomUUID();
+    // The listeners of cells, registered only while a cell has listeners
+    static final Map<UUID, List<CellListener>> allListeners = new ConcurrentHashMap<>();
+    final private UUID id;
     private long onset = 0L;
     private long offset = 0L;
     private Argument type;
@@ -31,9 +36,15 @@ public class DatavyuCell implements Cell {
     private CellValue cellValue;
 
     public DatavyuCell() {
+        id = UUID.randomUUID();
     }
 
     public DatavyuCell(Variable parent, Argument type) {
+        this(parent, type, UUID.randomUUID());
+    }
+
+    public DatavyuCell(Variable parent, Argument type, UUID id) {
+        this.id = id;
         this.parent = parent;
         this.type = type;
 
@@ -58,20 +69,32 @@ public class DatavyuCell implements Cell {
      * @return The list of listeners for the specified cellId.
      */
     private static List<CellListener> getListeners(UUID cellId) {
-        List<CellListener> result = allListeners.get(cellId);
-
-        if (result == null) {
-            result = new ArrayList<CellListener>();
-            allListeners.put(cellId, result);
-        }
+        return allListeners.getOrDefault(cellId, Collections.<CellListener>emptyList());
+    }
 
-        return result;
+    /**
+     * Removes all the listeners for a cell.
+     *
+     * @param cellId The Identifier of the cell.
+     */
+    static void clearListeners(UUID cellId) {
+        allListeners.remove(cellId);
     }
 
     public Variable getVariable() {
         return parent;
     }
 
+    /**
+     * @return The data store owning this cell if it notifies change listeners, null otherwise.
+     */
+    DatavyuDataStore getOwningDataStore() {
+        if (parent != null && parent.getOwningDatastore() instanceof DatavyuDataStore) {
+            return (DatavyuDataStore) parent.getOwningDatastore();
+        }
+        return null;
+    }
+
     private String convertMStoTimestamp(long time) {
         long hours = Math.round(Math.floor((time / 1000.0 / 60.0 / 60.0)));
         long minutes = Math.round(Math.floor(time / 1000.0 / 60.0 - (hours * 60)));
@@ -108,10 +131,27 @@ public class DatavyuCell implements Cell {
 
     @Override
     public void setOffset(final long newOffset) {
-        if (newOffset != offset) parent.getOwningDatastore().markAsChanged();
-        offset = newOffset;
-        for (CellListener cl : getListeners(getID())) {
-            cl.offsetChanged(offset);
+        long profile = ScriptProfiler.enter(ScriptProfiler.Operation.SET_OFFSET);
+        try {
+            final long oldOffset = offset;
+            offset = newOffset;
+            if (newOffset != oldOffset) {
+                parent.getOwningDatastore().markAsChanged();
+                DatavyuDataStore dataStore = getOwningDataStore();
+                if (dataStore != null) {
+                    dataStore.fireOffsetChanged(this, oldOffset, newOffset);
+                }
+            }
+            long listenersProfile = ScriptProfiler.enter(ScriptProfiler.Operation.LISTENERS);
+            try {
+                for (CellListener cl : getListeners(getID())) {
+                    cl.offsetChanged(offset);
+                }
+            } finally {
+                ScriptProfiler.exit(ScriptProfiler.Operation.LISTENERS, listenersProfile);
+            }
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.SET_OFFSET, profile);
         }
     }
 
@@ -137,10 +177,27 @@ public class DatavyuCell implements Cell {
 
     @Override
     public void setOnset(final long newOnset) {
-        if (newOnset != onset) parent.getOwningDatastore().markAsChanged();
-        onset = newOnset;
-        for (CellListener cl : getListeners(getID())) {
-            cl.onsetChanged(onset);
+        long profile = ScriptProfiler.enter(ScriptProfiler.Operation.SET_ONSET);
+        try {
+            final long oldOnset = onset;
+            onset = newOnset;
+            if (newOnset != oldOnset) {
+                parent.getOwningDatastore().markAsChanged();
+                DatavyuDataStore dataStore = getOwningDataStore();
+                if (dataStore != null) {
+                    dataStore.fireOnsetChanged(this, oldOnset, newOnset);
+                }
+            }
+            long listenersProfile = ScriptProfiler.enter(ScriptProfiler.Operation.LISTENERS);
+            try {
+                for (CellListener cl : getListeners(getID())) {
+                    cl.onsetChanged(onset);
+                }
+            } finally {
+                ScriptProfiler.exit(ScriptProfiler.Operation.LISTENERS, listenersProfile);
+            }
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.SET_ONSET, profile);
         }
     }
 
@@ -244,12 +301,15 @@ public class DatavyuCell implements Cell {
 
     @Override
     public void addListener(final CellListener cellListener) {
-        getListeners(getID()).add(cellListener);
+        allListeners.computeIfAbsent(getID(), cellId -> new CopyOnWriteArrayList<>()).add(cellListener);
     }
 
     @Override
     public void removeListener(final CellListener cellListener) {
-        getListeners(getID()).remove(cellListener);
+        allListeners.computeIfPresent(getID(), (cellId, listeners) -> {
+            listeners.remove(cellListener);
+            return listeners.isEmpty() ? null : listeners;
+        });
     }
 
     public UUID getID() {
@@ -23,6 +23,7 @@
 
 package org.datavyu.models.db;
 
+import org.datavyu.util.ScriptProfiler;
 import org.datavyu.util.StringUtils;
 
 import java.io.Serializable;
@@ -46,7 +47,18 @@ public abstract class DatavyuCellValue implements CellValue, Serializable, Compa
 
     @Override
     public void clear() {
-        this.value = null;
+        long profile = ScriptProfiler.enter(ScriptProfiler.Operation.SET_VALUE);
+        try {
+            if (!isEmpty() && isObserved()) {
+                final String oldValue = toString();
+                this.value = null;
+                fireValueChanged(oldValue, "");
+            } else {
+                this.value = null;
+            }
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.SET_VALUE, profile);
+        }
     }
 
     @Override
@@ -79,10 +91,40 @@ public abstract class DatavyuCellValue implements CellValue, Serializable, Compa
 
     @Override
     public void set(final String newValue) {
-        if (!newValue.equals(toString()) && !newValue.equals(this.value)) {
-            this.value = newValue;
-            this.parent.getVariable().getOwningDatastore().markAsChanged();
+        long profile = ScriptProfiler.enter(ScriptProfiler.Operation.SET_VALUE);
+        try {
+            if (!newValue.equals(toString()) && !newValue.equals(this.value)) {
+                final String oldValue = toString();
+                this.value = newValue;
+                this.parent.getVariable().getOwningDatastore().markAsChanged();
+                fireValueChanged(oldValue, newValue);
+            }
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.SET_VALUE, profile);
+        }
+    }
+
+    /**
+     * Notifies the change listeners of the owning data store that this value changed.
+     *
+     * @param oldValue The value prior to the change.
+     * @param newValue The value after the change.
+     */
+    private void fireValueChanged(final String oldValue, final String newValue) {
+        if (isObserved()) {
+            ((DatavyuCell) parent).getOwningDataStore().fireValueChanged(parent, index, oldValue, newValue);
+        }
+    }
+
+    /**
+     * @return True if the owning data store has change listeners to notify about changes of this value.
+     */
+    private boolean isObserved() {
+        if (parent instanceof DatavyuCell) {
+            DatavyuDataStore dataStore = ((DatavyuCell) parent).getOwningDataStore();
+            return dataStore != null && dataStore.hasChangeListeners();
         }
+        return false;
     }
 
     public Argument getArgument() {
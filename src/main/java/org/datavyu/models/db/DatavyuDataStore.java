@@ -24,8 +24,10 @@ package org.datavyu.models.db;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.datavyu.util.ScriptProfiler;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * TODO: Fill in the comment at the ???
@@ -49,9 +51,15 @@ public class DatavyuDataStore implements DataStore {
     /** All listeners of this data store */
     private List<DataStoreListener> dataStoreListeners = new ArrayList<DataStoreListener>();
 
+    /** All change listeners of this data store */
+    private List<DataStoreChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
     /** The variable that this data store holds */
     private Map<String, Variable> variables;
 
+    /** The cells of the variables, by identifier */
+    private final Map<UUID, Cell> cellsById = new HashMap<>();
+
     /** Compare variable with this class instance */
     private VariableComparator VariableComparator = new VariableComparator();
     
@@ -116,6 +124,10 @@ public class DatavyuDataStore implements DataStore {
     public List<Cell> getSelectedCells() {
         List<Cell> selectedCells = new ArrayList<Cell>();
         for (Variable variable : variables.values()) {
+            // Cells that have not been loaded yet can't be selected
+            if (variable.getCellLoader() != null) {
+                continue;
+            }
             for (Cell cell : variable.getCells()) {
                 if (cell.isSelected()) {
                     selectedCells.add(cell);
@@ -128,6 +140,9 @@ public class DatavyuDataStore implements DataStore {
     @Override
     public void clearCellSelection() {
         for (Variable variable : variables.values()) {
+            if (variable.getCellLoader() != null) {
+                continue;
+            }
             for (Cell cell : variable.getCells()) {
                 if (cell.isSelected()) {
                     cell.setSelected(false);
@@ -147,15 +162,22 @@ public class DatavyuDataStore implements DataStore {
 
     @Override
     public Variable getVariable(String varName) {
-        return variables.get(varName);
+        long profile = ScriptProfiler.enter(ScriptProfiler.Operation.GET_VARIABLE);
+        try {
+            return variables.get(varName);
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.GET_VARIABLE, profile);
+        }
     }
 
     @Override
     public Variable getVariable(Cell cell) {
-        for (Variable v : variables.values()) {
-            if (v.getCells().contains(cell)) return v;
-        }
-        return null;
+        return cellsById.get(cell.getID()) == cell ? cell.getVariable() : null;
+    }
+
+    @Override
+    public Cell getCell(UUID id) {
+        return cellsById.get(id);
     }
 
     @Override
@@ -166,26 +188,32 @@ public class DatavyuDataStore implements DataStore {
     @Override
     public Variable createVariable(final String name, final Argument.Type type, boolean grandfathered)
             throws UserWarningException {
-        // Check to make sure the variable name is not already in use:
-        Variable varTest = getVariable(name);
-        if (varTest != null) {
-            throw new UserWarningException("Unable to add column with name '" + name
-                    + "', one with the same name already exists.");
-        }
+        long profile = ScriptProfiler.enter(ScriptProfiler.Operation.CREATE_VARIABLE);
+        try {
+            // Check to make sure the variable name is not already in use:
+            Variable varTest = getVariable(name);
+            if (varTest != null) {
+                throw new UserWarningException("Unable to add column with name '" + name
+                        + "', one with the same name already exists.");
+            }
 
-        Argument rootNode;
-        if (type == Argument.Type.MATRIX) rootNode = new Argument(name + name.hashCode(), type);
-        else rootNode = new Argument("var", type);
+            Argument rootNode;
+            if (type == Argument.Type.MATRIX) rootNode = new Argument(name + name.hashCode(), type);
+            else rootNode = new Argument("var", type);
 
-        Variable v = new DatavyuVariable(name, rootNode, grandfathered, this);
-        variables.put(name, v);
+            Variable v = new DatavyuVariable(name, rootNode, grandfathered, this);
+            variables.put(name, v);
 
-        for (DataStoreListener dbl : this.dataStoreListeners) {
-            dbl.variableAdded(v);
-        }
+            for (DataStoreListener dbl : this.dataStoreListeners) {
+                dbl.variableAdded(v);
+            }
+            fireVariableChanged(v);
 
-        markAsChanged();
-        return v;
+            markAsChanged();
+            return v;
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.CREATE_VARIABLE, profile);
+        }
     }
 
     @Override
@@ -194,6 +222,12 @@ public class DatavyuDataStore implements DataStore {
             listener.variableRemoved(var);
         }
         variables.remove(var.getName());
+        if (var.getCellLoader() == null) {
+            for (Cell cell : var.getCells()) {
+                cellsById.remove(cell.getID());
+            }
+        }
+        fireVariableChanged(var);
         markAsChanged();
     }
 
@@ -204,6 +238,12 @@ public class DatavyuDataStore implements DataStore {
         }
 
         variables.put(var.getName(), var);
+        if (var.getCellLoader() == null) {
+            for (Cell cell : var.getCells()) {
+                cellsById.put(cell.getID(), cell);
+            }
+        }
+        fireVariableChanged(var);
         markAsChanged();
     }
 
@@ -237,7 +277,10 @@ public class DatavyuDataStore implements DataStore {
     public void updateVariableName(String oldName, String newName, Variable variable) {
         this.variables.remove(oldName);
         this.variables.put(newName, variable);
-        if (!oldName.equals(newName)) markAsChanged();
+        if (!oldName.equals(newName)) {
+            fireVariableChanged(variable);
+            markAsChanged();
+        }
     }
 
     @Override
@@ -250,6 +293,20 @@ public class DatavyuDataStore implements DataStore {
         DatavyuDataStore.titleNotifier = titleNotifier;
     }
 
+    @Override
+    public void clearListeners() {
+        for (Variable variable : variables.values()) {
+            if (variable instanceof DatavyuVariable) {
+                DatavyuVariable.clearListeners(((DatavyuVariable) variable).getID());
+            }
+            if (variable.getCellLoader() == null) {
+                for (Cell cell : variable.getCells()) {
+                    DatavyuCell.clearListeners(cell.getID());
+                }
+            }
+        }
+    }
+
     @Override
     public void addListener(final DataStoreListener listener) {
         dataStoreListeners.add(listener);
@@ -262,6 +319,118 @@ public class DatavyuDataStore implements DataStore {
         }
     }
     
+    @Override
+    public void addChangeListener(final DataStoreChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(final DataStoreChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * @return True if at least one change listener is registered with this data store.
+     */
+    boolean hasChangeListeners() {
+        return !changeListeners.isEmpty();
+    }
+
+    /**
+     * @param cell The cell to check.
+     * @return True if the cell is being created while loading the cells of its variable.
+     */
+    private static boolean isLoading(final Cell cell) {
+        return cell.getVariable() instanceof DatavyuVariable && ((DatavyuVariable) cell.getVariable()).isLoadingCells();
+    }
+
+    void fireCellInserted(final Cell cell) {
+        cellsById.put(cell.getID(), cell);
+        if (isLoading(cell)) {
+            return;
+        }
+        long listenersProfile = ScriptProfiler.enter(ScriptProfiler.Operation.LISTENERS);
+        try {
+            for (DataStoreChangeListener listener : changeListeners) {
+                listener.cellInserted(cell);
+            }
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.LISTENERS, listenersProfile);
+        }
+    }
+
+    void fireCellRemoved(final Cell cell) {
+        cellsById.remove(cell.getID());
+        long listenersProfile = ScriptProfiler.enter(ScriptProfiler.Operation.LISTENERS);
+        try {
+            for (DataStoreChangeListener listener : changeListeners) {
+                listener.cellRemoved(cell);
+            }
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.LISTENERS, listenersProfile);
+        }
+    }
+
+    void fireOnsetChanged(final Cell cell, final long oldOnset, final long newOnset) {
+        if (isLoading(cell)) {
+            return;
+        }
+        long listenersProfile = ScriptProfiler.enter(ScriptProfiler.Operation.LISTENERS);
+        try {
+            for (DataStoreChangeListener listener : changeListeners) {
+                listener.onsetChanged(cell, oldOnset, newOnset);
+            }
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.LISTENERS, listenersProfile);
+        }
+    }
+
+    void fireOffsetChanged(final Cell cell, final long oldOffset, final long newOffset) {
+        if (isLoading(cell)) {
+            return;
+        }
+        long listenersProfile = ScriptProfiler.enter(ScriptProfiler.Operation.LISTENERS);
+        try {
+            for (DataStoreChangeListener listener : changeListeners) {
+                listener.offsetChanged(cell, oldOffset, newOffset);
+            }
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.LISTENERS, listenersProfile);
+        }
+    }
+
+    void fireValueChanged(final Cell cell, final int argumentIndex, final String oldValue, final String newValue) {
+        if (isLoading(cell)) {
+            return;
+        }
+        long listenersProfile = ScriptProfiler.enter(ScriptProfiler.Operation.LISTENERS);
+        try {
+            for (DataStoreChangeListener listener : changeListeners) {
+                listener.valueChanged(cell, argumentIndex, oldValue, newValue);
+            }
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.LISTENERS, listenersProfile);
+        }
+    }
+
+    void fireCellsLoaded(final Variable variable) {
+        for (DataStoreChangeListener listener : changeListeners) {
+            listener.cellsLoaded(variable);
+        }
+    }
+
+    void fireArgumentsChanging(final Variable variable) {
+        for (DataStoreChangeListener listener : changeListeners) {
+            listener.argumentsChanging(variable);
+        }
+    }
+
+    void fireVariableChanged(final Variable variable) {
+        for (DataStoreChangeListener listener : changeListeners) {
+            listener.variableChanged(variable);
+        }
+    }
+
     @Override
     public void addExemptionVariable(String name)
     {
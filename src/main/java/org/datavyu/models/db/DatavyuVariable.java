@@ -25,8 +25,10 @@ package org.datavyu.models.db;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.datavyu.util.ScriptProfiler;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -34,9 +36,9 @@ import java.util.concurrent.CopyOnWriteArrayList;
  */
 public final class DatavyuVariable implements Variable {
 
-    // All the listeners for variables in the data store
     private static Logger logger = LogManager.getLogger(DatavyuVariable.class);
-    private static Map<UUID, List<VariableListener>> allListeners = new HashMap<UUID, List<VariableListener>>();
+    // The listeners of variables, registered only while a variable has listeners
+    private static final Map<UUID, List<VariableListener>> allListeners = new ConcurrentHashMap<>();
     private static CellComparator CellComparator = new CellComparator();
     final private UUID variableId = UUID.randomUUID();
     private List<Cell> cells = new CopyOnWriteArrayList<>();
@@ -46,6 +48,8 @@ public final class DatavyuVariable implements Variable {
     private String name;
     private int orderIndex = -1;
     private DatavyuDataStore owningDatastore;
+    private volatile CellLoader cellLoader = null;
+    private boolean loadingCells = false;
 
     /**
      * Default constructor.
@@ -87,12 +91,7 @@ public final class DatavyuVariable implements Variable {
      * @return The list of listeners for the specified variableId.
      */
     private static List<VariableListener> getListeners(UUID variableId) {
-        List<VariableListener> result = allListeners.get(variableId);
-        if (result == null) {
-            result = new ArrayList<>();
-            allListeners.put(variableId, result);
-        }
-        return result;
+        return allListeners.getOrDefault(variableId, Collections.<VariableListener>emptyList());
     }
 
     /**
@@ -102,12 +101,28 @@ public final class DatavyuVariable implements Variable {
         allListeners.clear();
     }
 
+    /**
+     * Removes all the listeners for a variable.
+     *
+     * @param variableId The Identifier of the variable.
+     */
+    static void clearListeners(UUID variableId) {
+        allListeners.remove(variableId);
+    }
+
     public void addCell(Cell cell) {
+        loadCells();
         if (cell.getCellValue().getArgument() == this.getRootNode()) {
             cells.add(cell);
-            for (VariableListener vl : getListeners(getID())) {
-                vl.cellInserted(cell);
+            long listenersProfile = ScriptProfiler.enter(ScriptProfiler.Operation.LISTENERS);
+            try {
+                for (VariableListener vl : getListeners(getID())) {
+                    vl.cellInserted(cell);
+                }
+            } finally {
+                ScriptProfiler.exit(ScriptProfiler.Operation.LISTENERS, listenersProfile);
             }
+            owningDatastore.fireCellInserted(cell);
             owningDatastore.markAsChanged();
         }
     }
@@ -126,37 +141,75 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public Cell createCell() {
-        Cell c = new DatavyuCell(this, this.getRootNode());
+        return createCell(UUID.randomUUID());
+    }
 
-        cells.add(c);
+    @Override
+    public Cell createCell(final UUID id) {
+        long profile = ScriptProfiler.enter(ScriptProfiler.Operation.CREATE_CELL);
+        try {
+            loadCells();
+            Cell c = new DatavyuCell(this, this.getRootNode(), id);
+
+            cells.add(c);
+
+            // The views are built from the loaded cells once loading has finished
+            if (!loadingCells) {
+                long listenersProfile = ScriptProfiler.enter(ScriptProfiler.Operation.LISTENERS);
+                try {
+                    for (VariableListener vl : getListeners(getID())) {
+                        vl.cellInserted(c);
+                    }
+                } finally {
+                    ScriptProfiler.exit(ScriptProfiler.Operation.LISTENERS, listenersProfile);
+                }
+            }
+            owningDatastore.fireCellInserted(c);
 
-        for (VariableListener vl : getListeners(getID())) {
-            vl.cellInserted(c);
+            owningDatastore.markAsChanged();
+            return c;
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.CREATE_CELL, profile);
         }
-
-        owningDatastore.markAsChanged();
-        return c;
     }
 
     @Override
     public void removeCell(final Cell cell) {
-        cells.remove(cell);
+        long profile = ScriptProfiler.enter(ScriptProfiler.Operation.REMOVE_CELL);
+        try {
+            loadCells();
+            cells.remove(cell);
 
-        owningDatastore.markAsChanged();
+            owningDatastore.markAsChanged();
 
-        for (VariableListener vl : getListeners(getID())) {
-            vl.cellRemoved(cell);
+            long listenersProfile = ScriptProfiler.enter(ScriptProfiler.Operation.LISTENERS);
+            try {
+                for (VariableListener vl : getListeners(getID())) {
+                    vl.cellRemoved(cell);
+                }
+            } finally {
+                ScriptProfiler.exit(ScriptProfiler.Operation.LISTENERS, listenersProfile);
+            }
+            owningDatastore.fireCellRemoved(cell);
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.REMOVE_CELL, profile);
         }
-
     }
 
     @Override
     public List<Cell> getCells() {
-        return cells;
+        long profile = ScriptProfiler.enter(ScriptProfiler.Operation.GET_CELLS);
+        try {
+            loadCells();
+            return cells;
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.GET_CELLS, profile);
+        }
     }
 
     @Override
     public Cell getCellTemporally(final int index) {
+        loadCells();
         Collections.sort(cells, CellComparator);
         return cells.get(index);
     }
@@ -170,6 +223,7 @@ public final class DatavyuVariable implements Variable {
     public void setRootNode(final Argument a) {
         owningDatastore.markAsChanged();
         rootNodeArgument = a;
+        owningDatastore.fireVariableChanged(this);
     }
 
     @Override
@@ -186,15 +240,70 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public List<Cell> getCellsTemporally() {
-        Collections.sort(cells, CellComparator);
-        return cells;
+        long profile = ScriptProfiler.enter(ScriptProfiler.Operation.GET_CELLS);
+        try {
+            loadCells();
+            Collections.sort(cells, CellComparator);
+            return cells;
+        } finally {
+            ScriptProfiler.exit(ScriptProfiler.Operation.GET_CELLS, profile);
+        }
     }
 
     @Override
     public boolean contains(final Cell c) {
+        loadCells();
         return cells.contains(c);
     }
 
+    @Override
+    public void setCellLoader(final CellLoader cellLoader) {
+        this.cellLoader = cellLoader;
+    }
+
+    @Override
+    public CellLoader getCellLoader() {
+        return cellLoader;
+    }
+
+    /**
+     * @return True while the cells of this variable are created by its cell loader.
+     */
+    boolean isLoadingCells() {
+        return loadingCells;
+    }
+
+    /**
+     * Creates the cells of this variable if they have not been loaded yet. Loading the cells neither marks the data
+     * store as changed nor notifies the listeners about the individual cells.
+     */
+    private void loadCells() {
+        if (cellLoader == null) {
+            return;
+        }
+        synchronized (this) {
+            // The loader itself adds the cells through this variable
+            if (cellLoader == null || loadingCells) {
+                return;
+            }
+            boolean changed = owningDatastore.isChanged();
+            loadingCells = true;
+            try {
+                cellLoader.load(this);
+            } finally {
+                loadingCells = false;
+                cellLoader = null;
+            }
+            for (Cell cell : cells) {
+                cell.setSelected(false);
+            }
+            if (!changed) {
+                owningDatastore.markAsUnchanged();
+            }
+            owningDatastore.fireCellsLoaded(this);
+        }
+    }
+
     @Override
     public boolean isSelected() {
         return selected;
@@ -219,6 +328,7 @@ public final class DatavyuVariable implements Variable {
             for (VariableListener vl : getListeners(getID())) {
                 vl.visibilityChanged(hidden);
             }
+            owningDatastore.fireVariableChanged(this);
         }
     }
 
@@ -248,10 +358,12 @@ public final class DatavyuVariable implements Variable {
             owningDatastore.addExemptionVariable(newName);
         }
 
-        if (name != null && owningDatastore != null) {
-            owningDatastore.updateVariableName(name, newName, this);
-        }
+        // Listeners of the data store see the new name
+        String oldName = name;
         this.name = newName;
+        if (oldName != null && owningDatastore != null) {
+            owningDatastore.updateVariableName(oldName, newName, this);
+        }
         for (VariableListener vl : getListeners(getID())) {
             vl.nameChanged(newName);
         }
@@ -264,6 +376,9 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public Argument addArgument(final Argument.Type type) {
+        // The cells are read with the arguments they were saved with
+        loadCells();
+        owningDatastore.fireArgumentsChanging(this);
         Argument arg = getRootNode();
         Argument child = arg.addChildArgument(type);
 
@@ -278,12 +393,14 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public void moveArgument(final int old_index, final int new_index) {
+        loadCells();
         Argument arg = getRootNode();
 
         // Test to see if this is out of bounds
         if (new_index > arg.childArguments.size() - 1 || new_index < 0) {
             return;
         }
+        owningDatastore.fireArgumentsChanging(this);
 
         Argument moved_arg = arg.childArguments.get(old_index);
         arg.childArguments.remove(moved_arg);
@@ -306,6 +423,8 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public void removeArgument(final String name) {
+        loadCells();
+        owningDatastore.fireArgumentsChanging(this);
         Argument arg = getRootNode();
         int arg_index = getArgumentIndex(name);
         arg.childArguments.remove(arg_index);
@@ -332,12 +451,15 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public void addListener(final VariableListener listener) {
-        getListeners(getID()).add(listener);
+        allListeners.computeIfAbsent(getID(), variableId -> new CopyOnWriteArrayList<>()).add(listener);
     }
 
     @Override
     public void removeListener(final VariableListener listener) {
-        getListeners(getID()).remove(listener);
+        allListeners.computeIfPresent(getID(), (variableId, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
     }
 
     @Override
@@ -347,8 +469,12 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public void setOrderIndex(final int newIndex) {
+        final int oldIndex = orderIndex;
         orderIndex = newIndex;
         owningDatastore.markAsChanged();
+        if (oldIndex != newIndex) {
+            owningDatastore.fireVariableChanged(this);
+        }
     }
 
     //would like to change the above calls to DatavyuDataStore.markAsChanged to this,
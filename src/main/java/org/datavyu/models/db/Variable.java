@@ -23,6 +23,7 @@
 package org.datavyu.models.db;
 
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Just a collection of cells, relates to a DataColumn.
@@ -43,6 +44,15 @@ public interface Variable {
      */
     Cell createCell();
 
+    /**
+     * Creates and inserts a cell with the given identifier into the variable, to recreate a cell that was removed.
+     *
+     * @param id The identifier of the cell, which no other cell of the datastore has.
+     *
+     * @return The newly created cell.
+     */
+    Cell createCell(UUID id);
+
     /**
      * Removes a cell from the variable.
      *
@@ -92,6 +102,18 @@ public interface Variable {
      */
     boolean contains(final Cell c);
 
+    /**
+     * Defers creating the cells of this variable until they are first accessed.
+     *
+     * @param cellLoader The loader that creates the cells.
+     */
+    void setCellLoader(final CellLoader cellLoader);
+
+    /**
+     * @return The loader for the cells of this variable if they have not been created yet; otherwise null.
+     */
+    CellLoader getCellLoader();
+
     /**
      * @return True if the variable is currently selected or not.
      */
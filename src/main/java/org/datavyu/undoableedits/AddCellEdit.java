@@ -19,21 +19,42 @@ import org.datavyu.models.db.Variable;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
 /**
  * An undoable edit for adding a cell to the spreadsheet.
  */
-public class AddCellEdit extends SpreadSheetEdit {
+public class AddCellEdit extends SpreadSheetEdit implements SpillableEdit {
     /**
      * Variable name *
      */
     private String varName;
     private Cell addedCell;
 
+    /**
+     * The cell as it was added, for the undo spill log.
+     */
+    private final CellData addedCellData;
+
     public AddCellEdit(String varName, Cell c) {
         super();
         this.varName = varName;
         this.addedCell = c;
+        this.addedCellData = new CellData(c);
+    }
+
+    AddCellEdit(DataInputStream in) throws IOException {
+        super();
+        varName = UndoSpillLog.readString(in);
+        addedCellData = new CellData(in);
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        UndoSpillLog.writeString(out, varName);
+        addedCellData.writeTo(out);
     }
 
     @Override
@@ -53,6 +74,10 @@ public class AddCellEdit extends SpreadSheetEdit {
     public void undo() throws CannotUndoException {
         super.undo();
         Variable var = model.getVariable(varName);
+        if (addedCell == null) {
+            // Read back
+            addedCell = model.getCell(addedCellData.getID());
+        }
         var.removeCell(addedCell);
     }
 }
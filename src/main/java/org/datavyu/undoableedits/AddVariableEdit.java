@@ -23,13 +23,16 @@ import org.datavyu.models.db.Variable;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  *
  */
-public class AddVariableEdit extends VocabEditorEdit {
+public class AddVariableEdit extends VocabEditorEdit implements SpillableEdit {
     /**
      * The logger for this class.
      */
@@ -43,6 +46,18 @@ public class AddVariableEdit extends VocabEditorEdit {
         this.varType = variableType;
     }
 
+    AddVariableEdit(DataInputStream in) throws IOException {
+        super();
+        varName = UndoSpillLog.readString(in);
+        varType = Argument.Type.valueOf(in.readUTF());
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        UndoSpillLog.writeString(out, varName);
+        out.writeUTF(varType.name());
+    }
+
     @Override
     public String getPresentationName() {
         return "New Column \"" + varName + "\"";
@@ -0,0 +1,126 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.undoableedits;
+
+import org.datavyu.models.db.Cell;
+import org.datavyu.models.db.CellValue;
+import org.datavyu.models.db.MatrixCellValue;
+import org.datavyu.models.db.Variable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The identifier, onset, offset and argument values of a cell, as written to the undo spill log. Cells are
+ * recreated from it with the same identifier, so that other edits still find them.
+ */
+final class CellData {
+
+    /** Rough number of bytes a cell takes in memory, not counting its values */
+    static final long CELL_BYTES = 128;
+
+    private final UUID id;
+    private final long onset;
+    private final long offset;
+
+    /** The values of the arguments, "" when empty; a single one for text and nominal cells */
+    private final String[] values;
+
+    CellData(final Cell cell) {
+        id = cell.getID();
+        onset = cell.getOnset();
+        offset = cell.getOffset();
+        List<CellValue> cellValues = getValues(cell);
+        values = new String[cellValues.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = cellValues.get(i).isEmpty() ? "" : cellValues.get(i).toString();
+        }
+    }
+
+    CellData(final DataInput in) throws IOException {
+        id = new UUID(in.readLong(), in.readLong());
+        onset = in.readLong();
+        offset = in.readLong();
+        values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = UndoSpillLog.readString(in);
+        }
+    }
+
+    void writeTo(final DataOutput out) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+        out.writeLong(onset);
+        out.writeLong(offset);
+        out.writeInt(values.length);
+        for (String value : values) {
+            UndoSpillLog.writeString(out, value);
+        }
+    }
+
+    /**
+     * @return The identifier of the cell.
+     */
+    UUID getID() {
+        return id;
+    }
+
+    /**
+     * Creates the cell in a variable.
+     *
+     * @param variable The variable, with the same arguments as the variable the cell was in.
+     * @return The cell.
+     */
+    Cell createIn(final Variable variable) {
+        Cell cell = variable.createCell(id);
+        cell.setOnset(onset);
+        cell.setOffset(offset);
+        List<CellValue> cellValues = getValues(cell);
+        for (int i = 0; i < values.length && i < cellValues.size(); i++) {
+            if (!values[i].isEmpty()) {
+                cellValues.get(i).set(values[i]);
+            }
+        }
+        return cell;
+    }
+
+    /**
+     * @param cell A cell.
+     * @return The estimated number of bytes the cell and its values take in memory.
+     */
+    static long getMemorySize(final Cell cell) {
+        long size = CELL_BYTES;
+        for (CellValue value : getValues(cell)) {
+            size += 2L * value.toString().length();
+        }
+        return size;
+    }
+
+    /**
+     * @param cell A cell.
+     * @return The values of the arguments of the cell, a single one for text and nominal cells.
+     */
+    private static List<CellValue> getValues(final Cell cell) {
+        CellValue value = cell.getCellValue();
+        if (value instanceof MatrixCellValue) {
+            return ((MatrixCellValue) value).getArguments();
+        }
+        return Collections.singletonList(value);
+    }
+}
@@ -22,21 +22,26 @@ import org.datavyu.views.discrete.SpreadsheetCell;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.UUID;
 
 /**
  * An undoable edit for altering the contents of a cell.
  */
-abstract public class ChangeCellEdit extends SpreadSheetEdit {
+abstract public class ChangeCellEdit extends SpreadSheetEdit implements SpillableEdit {
     /**
-     * Column's index
+     * Changes of a cell that follow each other within this many milliseconds are coalesced into one edit.
      */
-    protected int colIndex = -1;
+    static final long COALESCE_INTERVAL = 2000;
 
     /**
-     * Index of this cell in its host column. Initially set to -1 as this is not
-     * a valid index.
+     * Identifier of the cell, to find it again in constant time however the cells of its column changed.
      */
-    protected int ord = -1;
+    protected UUID cellId;
 
     protected String columnName;
 
@@ -45,22 +50,21 @@ abstract public class ChangeCellEdit extends SpreadSheetEdit {
      */
     protected Granularity granularity;
 
+    /**
+     * When the cell was last changed by this edit or an edit it coalesced, in milliseconds.
+     */
+    private long lastChanged;
+
     public ChangeCellEdit(Cell c, Granularity granularity) {
         // New constructor.
         super();
         this.granularity = granularity;
+        this.lastChanged = getTimestamp().getTime();
+        this.cellId = c.getID();
 
         Variable var = Datavyu.getProjectController().getDataStore().getVariable(c);
         if (var != null) {
             columnName = var.getName();
-
-            for (Cell cell : var.getCells()) {
-                ord++;
-
-                if (cell.equals(c)) {
-                    return;
-                }
-            }
         }
     }
 
@@ -68,6 +72,25 @@ abstract public class ChangeCellEdit extends SpreadSheetEdit {
         this(c, Granularity.COARSEGRAINED);
     }
 
+    /**
+     * Reads back an edit from the undo spill log.
+     */
+    ChangeCellEdit(DataInputStream in) throws IOException {
+        super();
+        columnName = UndoSpillLog.readString(in);
+        cellId = new UUID(in.readLong(), in.readLong());
+        granularity = Granularity.values()[in.readByte()];
+        lastChanged = getTimestamp().getTime();
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        UndoSpillLog.writeString(out, columnName == null ? "" : columnName);
+        out.writeLong(cellId.getMostSignificantBits());
+        out.writeLong(cellId.getLeastSignificantBits());
+        out.writeByte(granularity.ordinal());
+    }
+
     public Granularity getGranularity() {
         return granularity;
     }
@@ -89,9 +112,41 @@ abstract public class ChangeCellEdit extends SpreadSheetEdit {
         updateCell();
     }
 
+    /**
+     * Coalesces an edit of the same kind and cell that follows this one within COALESCE_INTERVAL, so that nudging
+     * a time or typing into a cell leaves a single edit that undoes all of it.
+     *
+     * @param anEdit The edit that follows.
+     * @return True if this edit absorbed it.
+     */
+    @Override
+    public boolean addEdit(UndoableEdit anEdit) {
+        if (!canUndo() || anEdit.getClass() != getClass()) {
+            return false;
+        }
+        ChangeCellEdit edit = (ChangeCellEdit) anEdit;
+        long changed = edit.getTimestamp().getTime();
+        if (!edit.cellId.equals(cellId) || changed - lastChanged > COALESCE_INTERVAL) {
+            return false;
+        }
+        absorb(edit);
+        lastChanged = changed;
+        if (edit.granularity == Granularity.COARSEGRAINED) {
+            granularity = Granularity.COARSEGRAINED;
+        }
+        return true;
+    }
+
+    /**
+     * Takes over the new state of the cell from an edit that is coalesced into this one. The old state of this edit
+     * is kept, undoing it undoes both.
+     *
+     * @param edit The edit, of the same class and cell.
+     */
+    abstract protected void absorb(ChangeCellEdit edit);
+
     protected void updateCell() {
-        Variable var = Datavyu.getProjectController().getDataStore().getVariable(columnName);
-        Cell cell = var.getCells().get(ord);
+        Cell cell = Datavyu.getProjectController().getDataStore().getCell(cellId);
         updateCell(cell);
 /*
         if (this.granularity == Granularity.COARSEGRAINED) {
@@ -23,11 +23,14 @@ import org.datavyu.views.discrete.SpreadsheetColumn;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
 /**
  *
  */
-public class ChangeNameVariableEdit extends SpreadSheetEdit {
+public class ChangeNameVariableEdit extends SpreadSheetEdit implements SpillableEdit {
     /**
      * The logger for this class.
      */
@@ -41,6 +44,18 @@ public class ChangeNameVariableEdit extends SpreadSheetEdit {
         this.newVarName = newVarName;
     }
 
+    ChangeNameVariableEdit(DataInputStream in) throws IOException {
+        super();
+        oldVarName = UndoSpillLog.readString(in);
+        newVarName = UndoSpillLog.readString(in);
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        UndoSpillLog.writeString(out, oldVarName);
+        UndoSpillLog.writeString(out, newVarName);
+    }
+
     @Override
     public String getPresentationName() {
         String msg = "";
@@ -18,6 +18,10 @@ import org.datavyu.models.db.Cell;
 import org.datavyu.util.Constants;
 import org.datavyu.views.discrete.SpreadsheetCell;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * An undoable edit for changing the offset of a cell.
  */
@@ -33,6 +37,24 @@ public class ChangeOffsetCellEdit extends ChangeCellEdit {
         this.newOffset = newOffset;
     }
 
+    ChangeOffsetCellEdit(DataInputStream in) throws IOException {
+        super(in);
+        oldOffset = in.readLong();
+        newOffset = in.readLong();
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        super.writeTo(out);
+        out.writeLong(oldOffset);
+        out.writeLong(newOffset);
+    }
+
+    @Override
+    protected void absorb(ChangeCellEdit edit) {
+        newOffset = ((ChangeOffsetCellEdit) edit).newOffset;
+    }
+
     @Override
     public String getPresentationName() {
         return "Changed the offset of a cell within '" + columnName + "' to " + this.newOffset;
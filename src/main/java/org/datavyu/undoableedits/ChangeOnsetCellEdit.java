@@ -18,6 +18,10 @@ import org.datavyu.models.db.Cell;
 import org.datavyu.util.Constants;
 import org.datavyu.views.discrete.SpreadsheetCell;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * An undoable edit for changing the onset of a cell.
  */
@@ -32,6 +36,24 @@ public class ChangeOnsetCellEdit extends ChangeCellEdit {
         this.newOnset = newOnset;
     }
 
+    ChangeOnsetCellEdit(DataInputStream in) throws IOException {
+        super(in);
+        oldOnset = in.readLong();
+        newOnset = in.readLong();
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        super.writeTo(out);
+        out.writeLong(oldOnset);
+        out.writeLong(newOnset);
+    }
+
+    @Override
+    protected void absorb(ChangeCellEdit edit) {
+        newOnset = ((ChangeOnsetCellEdit) edit).newOnset;
+    }
+
     @Override
     public String getPresentationName() {
         return "Changed the onset of a cell within '" + columnName + "' to " + newOnset;
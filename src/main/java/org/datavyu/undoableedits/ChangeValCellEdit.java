@@ -19,6 +19,10 @@ import org.datavyu.models.db.Cell;
 import org.datavyu.util.Constants;
 import org.datavyu.views.discrete.SpreadsheetCell;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * An undoable edit for changing the onset of a cell.
  */
@@ -36,6 +40,27 @@ public class ChangeValCellEdit extends ChangeCellEdit {
         this(c, oldValue, Granularity.COARSEGRAINED);
     }
 
+    ChangeValCellEdit(DataInputStream in) throws IOException {
+        super(in);
+        cellValue = UndoSpillLog.readString(in);
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        super.writeTo(out);
+        UndoSpillLog.writeString(out, cellValue == null ? "" : cellValue);
+    }
+
+    @Override
+    protected void absorb(ChangeCellEdit edit) {
+        // The value before the first change is the one to go back to
+    }
+
+    @Override
+    long getMemorySize() {
+        return super.getMemorySize() + (cellValue == null ? 0 : 2L * cellValue.length());
+    }
+
     @Override
     public String getPresentationName() {
         return super.getPresentationName() + "Val Cell (" + columnName + ") to " + cellValue;
@@ -22,13 +22,16 @@ import org.datavyu.models.db.Variable;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Undoable edit for removing cells.
  */
-public class RemoveCellEdit extends SpreadSheetEdit {
+public class RemoveCellEdit extends SpreadSheetEdit implements SpillableEdit {
     /**
      * The logger for this class.
      */
@@ -36,6 +39,17 @@ public class RemoveCellEdit extends SpreadSheetEdit {
 
     private List<CellTO> cellTOV;
 
+    /**
+     * Variable names and cells read back from the undo spill log, null once the cells were recreated.
+     */
+    private List<String> spilledVariableNames;
+    private List<CellData> spilledCells;
+
+    /**
+     * Estimated number of bytes the removed cells take.
+     */
+    private long memorySize;
+
     /**
      * Constructor.
      *
@@ -46,9 +60,35 @@ public class RemoveCellEdit extends SpreadSheetEdit {
         cellTOV = new ArrayList<CellTO>();
         for (Cell cell : cells) {
             cellTOV.add(new CellTO(cell, model.getVariable(cell)));
+            memorySize += CellData.getMemorySize(cell);
+        }
+    }
+
+    RemoveCellEdit(DataInputStream in) throws IOException {
+        super();
+        int size = in.readInt();
+        spilledVariableNames = new ArrayList<String>(size);
+        spilledCells = new ArrayList<CellData>(size);
+        for (int i = 0; i < size; i++) {
+            spilledVariableNames.add(UndoSpillLog.readString(in));
+            spilledCells.add(new CellData(in));
+        }
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(cellTOV.size());
+        for (CellTO cellTO : cellTOV) {
+            UndoSpillLog.writeString(out, cellTO.getParentVariableName());
+            new CellData(cellTO.getCell()).writeTo(out);
         }
     }
 
+    @Override
+    long getMemorySize() {
+        return super.getMemorySize() + memorySize;
+    }
+
     @Override
     public String getPresentationName() {
         String msg = "nothing";
@@ -70,15 +110,9 @@ public class RemoveCellEdit extends SpreadSheetEdit {
         List<Cell> cellsToDelete = new ArrayList<Cell>();
 
         for (CellTO cellTO : cellTOV) {
-            Variable var = model.getVariable(cellTO.getParentVariableName());
-
-            for (Cell cell : var.getCells()) {
-                if (cell.getOnset() == cellTO.getOnset() &&
-                        cell.getOffset() == cellTO.getOffset() &&
-                        cell.getValueAsString().equals(cellTO.getValue())) {
-                    cellsToDelete.add(cell);
-                    break;
-                }
+            Cell cell = model.getCell(cellTO.getCell().getID());
+            if (cell != null) {
+                cellsToDelete.add(cell);
             }
         }
         new DeleteCellController(cellsToDelete);
@@ -88,6 +122,19 @@ public class RemoveCellEdit extends SpreadSheetEdit {
     public void undo() throws CannotUndoException {
         super.undo();
         LOGGER.info("Undoing remove cells");
+        if (cellTOV == null) {
+            // Read back, the cells are recreated
+            cellTOV = new ArrayList<CellTO>();
+            for (int i = 0; i < spilledCells.size(); i++) {
+                Variable var = model.getVariable(spilledVariableNames.get(i));
+                Cell cell = spilledCells.get(i).createIn(var);
+                cellTOV.add(new CellTO(cell, var));
+                memorySize += CellData.getMemorySize(cell);
+            }
+            spilledVariableNames = null;
+            spilledCells = null;
+            return;
+        }
         for (CellTO cellTO : cellTOV) {
             Variable var = model.getVariable(cellTO.getParentVariableName());
             var.addCell(cellTO.getCell());
@@ -17,16 +17,27 @@ package org.datavyu.undoableedits;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datavyu.controllers.DeleteColumnController;
+import org.datavyu.models.db.Argument;
+import org.datavyu.models.db.Cell;
+import org.datavyu.models.db.UserWarningException;
 import org.datavyu.models.db.Variable;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Undoable edit for removing cells from the spreadsheet.
  */
-public class RemoveVariableEdit extends VocabEditorEdit {
+public class RemoveVariableEdit extends VocabEditorEdit implements SpillableEdit {
     /**
      * The logger for this class.
      */
@@ -34,13 +45,68 @@ public class RemoveVariableEdit extends VocabEditorEdit {
 
     private List<Variable> deletedVariables;
 
+    /**
+     * The variables read back from the undo spill log, null once they were recreated.
+     */
+    private List<SpilledVariable> spilledVariables;
+
+    /**
+     * Estimated number of bytes the deleted variables take, 0 until estimated.
+     */
+    private long memorySize;
+
     public RemoveVariableEdit(List<Variable> varsToDelete) {
         deletedVariables = varsToDelete;
     }
 
+    RemoveVariableEdit(DataInputStream in) throws IOException {
+        super();
+        int size = in.readInt();
+        spilledVariables = new ArrayList<SpilledVariable>(size);
+        for (int i = 0; i < size; i++) {
+            spilledVariables.add(new SpilledVariable(in));
+        }
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(deletedVariables.size());
+        for (Variable var : deletedVariables) {
+            UndoSpillLog.writeString(out, var.getName());
+            out.writeBoolean(var.isHidden());
+            ByteArrayOutputStream rootNode = new ByteArrayOutputStream();
+            try (ObjectOutputStream rootNodeOut = new ObjectOutputStream(rootNode)) {
+                rootNodeOut.writeObject(var.getRootNode());
+            }
+            out.writeInt(rootNode.size());
+            rootNode.writeTo(out);
+            List<Cell> cells = var.getCells();
+            out.writeInt(cells.size());
+            for (Cell cell : cells) {
+                new CellData(cell).writeTo(out);
+            }
+        }
+    }
+
+    @Override
+    long getMemorySize() {
+        if (memorySize == 0 && deletedVariables != null) {
+            for (Variable var : deletedVariables) {
+                for (Cell cell : var.getCells()) {
+                    memorySize += CellData.getMemorySize(cell);
+                }
+            }
+        }
+        return super.getMemorySize() + memorySize;
+    }
+
     @Override
     public String getPresentationName() {
         String msg;
+        if (deletedVariables == null) {
+            return spilledVariables.size() == 1 ? "Delete Variable \"" + spilledVariables.get(0).name + "\""
+                    : "Delete " + spilledVariables.size() + " Variables";
+        }
         if (deletedVariables.size() == 1) {
             msg = "Delete Variable \"" + deletedVariables.get(0).getName() + "\"";
         } else {
@@ -52,6 +118,15 @@ public class RemoveVariableEdit extends VocabEditorEdit {
     @Override
     public void undo() throws CannotRedoException {
         super.undo();
+        if (deletedVariables == null) {
+            // Read back, the variables are recreated
+            deletedVariables = new ArrayList<Variable>();
+            for (SpilledVariable spilled : spilledVariables) {
+                deletedVariables.add(spilled.create());
+            }
+            spilledVariables = null;
+            return;
+        }
         for (Variable var : deletedVariables) {
             model.addVariable(var);
         }
@@ -64,4 +139,46 @@ public class RemoveVariableEdit extends VocabEditorEdit {
         new DeleteColumnController(deletedVariables);
         unselectAll();
     }
+
+    /**
+     * A deleted variable read back from the undo spill log.
+     */
+    private final class SpilledVariable {
+        private final String name;
+        private final boolean hidden;
+        private final Argument rootNode;
+        private final List<CellData> cells;
+
+        SpilledVariable(DataInputStream in) throws IOException {
+            name = UndoSpillLog.readString(in);
+            hidden = in.readBoolean();
+            byte[] rootNodeBytes = new byte[in.readInt()];
+            in.readFully(rootNodeBytes);
+            try (ObjectInputStream rootNodeIn = new ObjectInputStream(new ByteArrayInputStream(rootNodeBytes))) {
+                rootNode = (Argument) rootNodeIn.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unable to read the arguments of " + name, e);
+            }
+            int size = in.readInt();
+            cells = new ArrayList<CellData>(size);
+            for (int i = 0; i < size; i++) {
+                cells.add(new CellData(in));
+            }
+        }
+
+        Variable create() {
+            try {
+                Variable var = model.createVariable(name, rootNode.type, true);
+                var.setRootNode(rootNode);
+                for (CellData cell : cells) {
+                    cell.createIn(var);
+                }
+                var.setHidden(hidden);
+                return var;
+            } catch (UserWarningException e) {
+                LOGGER.error("Unable to recreate variable " + name, e);
+                throw new CannotUndoException();
+            }
+        }
+    }
 }
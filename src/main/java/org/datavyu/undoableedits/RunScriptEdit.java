@@ -14,37 +14,48 @@
  */
 package org.datavyu.undoableedits;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.datavyu.controllers.DeleteColumnController;
-import org.datavyu.models.db.Cell;
-import org.datavyu.models.db.UserWarningException;
-import org.datavyu.models.db.Variable;
+import org.datavyu.models.db.DataStoreChangeLog;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 
 /**
- * Undoable script edit.
+ * Undoable script edit. Records the changes the script makes to the spreadsheet while it runs, from the time the
+ * edit is created on the thread running the script until recording is stopped, and undoes or redoes just those
+ * changes.
  */
 public class RunScriptEdit extends SpreadSheetEdit {
 
-    /** Logger for this class */
-    private static final Logger logger = LogManager.getLogger(RunScriptEdit.class);
-
     /** Script path */
     private String scriptPath;
 
-    /** Relevant columns */
-    private List<VariableTO> colsTO;
+    /** Changes made by the script */
+    private final DataStoreChangeLog changes;
 
     public RunScriptEdit(String scriptPath) {
         super();
         this.scriptPath = scriptPath;
-        colsTO = getSpreadSheetState();
+        changes = DataStoreChangeLog.record(model);
+    }
+
+    /**
+     * Stops recording the changes of the script.
+     */
+    public void stopRecording() {
+        changes.stop();
+    }
+
+    /**
+     * Rolls back the changes of the script, for scripts that were cancelled and leave no edit behind. Called on the
+     * thread that ran the script, the spreadsheet is redrawn once the script is done.
+     */
+    public void rollBack() {
+        changes.undo();
+    }
+
+    @Override
+    long getMemorySize() {
+        return super.getMemorySize() + changes.getMemorySize();
     }
 
     @Override
@@ -56,58 +67,16 @@ public class RunScriptEdit extends SpreadSheetEdit {
     @Override
     public void undo() throws CannotRedoException {
         super.undo();
-        toggleSpreadSheetState();
+        changes.undo();
+        getSpreadsheet().redrawCells();
+        unselectAll();
     }
 
     @Override
     public void redo() throws CannotUndoException {
         super.redo();
-        toggleSpreadSheetState();
-    }
-
-    private void toggleSpreadSheetState() {
-        List<VariableTO> tempColsTO = this.getSpreadSheetState();
-        setSpreadSheetState(colsTO);
-        colsTO = tempColsTO;
-    }
-
-    private List<VariableTO> getSpreadSheetState() {
-        List<VariableTO> varsTO = new ArrayList<>();
-
-        int pos = 0;
-        for (Variable var : model.getAllVariables()) {
-            varsTO.add(new VariableTO(var, pos));
-            pos++;
-        }
-
-        return varsTO;
-    }
-
-    private void setSpreadSheetState(List<VariableTO> varsTO) {
-        try {
-            HashMap<String, Boolean> hiddenStates = new HashMap<>();
-            for (Variable v : model.getAllVariables()) {
-                hiddenStates.put(v.getName(), v.isHidden());
-            }
-            new DeleteColumnController(new ArrayList<>(model.getAllVariables()));
-
-            for (VariableTO varTO : varsTO) {
-                Variable var = model.createVariable(varTO.getName(), varTO.getType().type);
-                var.setRootNode(varTO.getType());
-
-                for (CellTO cellTO : varTO.getTOCells()) {
-                    Cell c = var.createCell();
-                    c.setOnset(cellTO.getOnset());
-                    c.setOffset(cellTO.getOffset());
-                    c.getCellValue().set(cellTO.getValue());
-                }
-            }
-            for (Variable v : model.getAllVariables()) {
-                v.setHidden(hiddenStates.get(v.getName()));
-            }
-        } catch (UserWarningException e) {
-            logger.error("Unable to set spread sheet state. Error: ", e);
-        }
+        changes.redo();
+        getSpreadsheet().redrawCells();
         unselectAll();
     }
 }
@@ -0,0 +1,35 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.undoableedits;
+
+import javax.swing.undo.UndoableEdit;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * An edit that can be moved out of memory into the undo spill log. It is read back from what it writes, through a
+ * constructor that takes a DataInputStream, when it is undone again. Edits that are read back refer to variables by
+ * name and to cells by position or values, as the objects they referred to may have been recreated since.
+ */
+interface SpillableEdit extends UndoableEdit {
+
+    /**
+     * Writes the edit.
+     *
+     * @param out The stream to write to.
+     * @throws IOException If unable to write.
+     */
+    void writeTo(DataOutputStream out) throws IOException;
+}
@@ -0,0 +1,119 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.undoableedits;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Takes the place of an edit in the undo history after the edit was moved to the undo spill log. The edit is read
+ * back when it is undone and stays in memory from then on, until it is spilled again.
+ */
+final class SpilledEdit extends AbstractUndoableEdit {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The logger for this class. */
+    private static final Logger LOGGER = LogManager.getLogger(SpilledEdit.class);
+
+    /** Rough number of bytes a spilled edit takes in memory */
+    static final long SPILLED_BYTES = 64;
+
+    private final UndoSpillLog log;
+
+    /** Position of the record of the edit in the log */
+    private final long position;
+
+    private final Date timestamp;
+
+    private final String presentationName;
+
+    /** The edit once read back, null while it is only in the log */
+    private SpreadSheetEdit edit;
+
+    /**
+     * Moves an edit that was done to the log.
+     *
+     * @param log The log.
+     * @param edit The edit.
+     * @throws IOException If unable to write the edit.
+     */
+    SpilledEdit(final UndoSpillLog log, final SpreadSheetEdit edit) throws IOException {
+        this.log = log;
+        this.position = log.write((SpillableEdit) edit);
+        this.timestamp = edit.getTimestamp();
+        this.presentationName = edit.getPresentationName();
+    }
+
+    /**
+     * @return The edit if it was read back, null if it is only in the log.
+     */
+    SpreadSheetEdit getEdit() {
+        return edit;
+    }
+
+    /**
+     * @return The estimated number of bytes the edit takes in memory.
+     */
+    long getMemorySize() {
+        return edit == null ? SPILLED_BYTES : SPILLED_BYTES + edit.getMemorySize();
+    }
+
+    @Override
+    public void undo() throws CannotUndoException {
+        if (edit == null) {
+            try {
+                edit = (SpreadSheetEdit) log.read(position);
+            } catch (IOException e) {
+                LOGGER.error("Unable to read back " + presentationName, e);
+                throw new CannotUndoException();
+            }
+        }
+        super.undo();
+        edit.undo();
+    }
+
+    @Override
+    public void redo() throws CannotRedoException {
+        super.redo();
+        edit.redo();
+    }
+
+    @Override
+    public void die() {
+        super.die();
+        if (edit != null) {
+            edit.die();
+        }
+        log.release();
+    }
+
+    @Override
+    public String getPresentationName() {
+        return edit == null ? presentationName : edit.getPresentationName();
+    }
+
+    @Override
+    public String toString() {
+        return SpreadSheetEdit.toHistoryEntry(timestamp, getPresentationName(), canUndo());
+    }
+}
@@ -35,6 +35,9 @@ import java.util.Date;
  */
 public abstract class SpreadSheetEdit extends AbstractUndoableEdit {
 
+    /** Rough number of bytes an edit takes in memory, not counting the strings and cells it holds */
+    static final long EDIT_BYTES = 256;
+
     private Date timestamp; // when the action was done
 
     protected ProjectController controller;
@@ -64,6 +67,23 @@ public abstract class SpreadSheetEdit extends AbstractUndoableEdit {
         super.undo();
     }
 
+    /**
+     * @return When the edit was done.
+     */
+    Date getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Estimates the memory the edit takes, for the memory budget of the undo history. Edits that hold strings or
+     * cells add them to the estimate.
+     *
+     * @return The estimated number of bytes.
+     */
+    long getMemorySize() {
+        return EDIT_BYTES;
+    }
+
     protected SpreadsheetCell getSpreadsheetCell(Cell cell) {
         for (SpreadsheetColumn sCol : getSpreadsheet().getColumns()) {
             for (SpreadsheetCell sCell : sCol.getCells()) {
@@ -104,8 +124,12 @@ public abstract class SpreadSheetEdit extends AbstractUndoableEdit {
     }
 
     protected String getStyle() {
+        return getStyle(canUndo());
+    }
+
+    private static String getStyle(boolean canUndo) {
         String style;
-        if (this.canUndo()) {
+        if (canUndo) {
             style = "color='#000000'";
         } else {
             style = "color='#C0C0C0'";
@@ -113,10 +137,23 @@ public abstract class SpreadSheetEdit extends AbstractUndoableEdit {
         return style;
     }
 
+    /**
+     * Formats an entry of the undo history.
+     *
+     * @param timestamp When the edit was done.
+     * @param msg The presentation name of the edit.
+     * @param canUndo True if the edit can be undone, entries that can only be redone are grayed out.
+     * @return The entry.
+     */
+    static String toHistoryEntry(Date timestamp, String msg, boolean canUndo) {
+        SimpleDateFormat formatter = new SimpleDateFormat("HH:mm:ss");
+        return "<html><font " + getStyle(canUndo) + ">" + formatter.format(timestamp)
+                + "\t" + msg + "</font></html>";
+    }
+
     @Override
     public String toString() {
         String msg;
-        SimpleDateFormat formatter = new SimpleDateFormat("HH:mm:ss");
         if (this instanceof AddCellEdit) {
             msg = ((AddCellEdit) this).getPresentationName();
         } else if (this instanceof AddVariableEdit) {
@@ -140,8 +177,7 @@ public abstract class SpreadSheetEdit extends AbstractUndoableEdit {
         } else {
             msg = "";
         }
-        return "<html><font " + getStyle() + ">" + formatter.format(this.timestamp)
-                + "\t" + msg + "</font></html>";
+        return toHistoryEntry(timestamp, msg, canUndo());
     }
 
 }
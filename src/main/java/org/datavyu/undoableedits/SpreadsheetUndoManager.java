@@ -14,8 +14,11 @@
  */
 package org.datavyu.undoableedits;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.datavyu.Datavyu;
 import org.datavyu.undoableedits.ChangeCellEdit.Granularity;
+import org.datavyu.util.ConfigProperties;
 
 import javax.swing.*;
 import javax.swing.event.ListDataListener;
@@ -23,24 +26,52 @@ import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import javax.swing.undo.UndoManager;
 import javax.swing.undo.UndoableEdit;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- *
+ * The undo history of the spreadsheet. The history is bounded by memory rather than by the number of edits: once
+ * the edits take more than the memory budget, the oldest ones are moved to a spill log on disk and read back when
+ * they are undone. Only the oldest edits are spilled, so that edits read back, which find cells by their identifiers
+ * and may recreate them, never precede edits that hold on to the cells themselves. The oldest edits that cannot be
+ * spilled, such as script runs, are dropped from the history instead.
  */
 public class SpreadsheetUndoManager extends UndoManager implements ListModel {
 
+    /** The logger for this class. */
+    private static final Logger LOGGER = LogManager.getLogger(SpreadsheetUndoManager.class);
+
+    /** Maximum number of edits, high enough that the memory budget bounds the history */
+    private static final int MAX_EDITS = 10000;
+
     List<ListDataListener> listeners;
 
+    /** Number of bytes the edits in memory may take */
+    private final long memoryBudget;
+
+    /** Edits moved out of memory */
+    private final UndoSpillLog spillLog = new UndoSpillLog();
+
     public SpreadsheetUndoManager() {
+        this(ConfigProperties.getInstance().getUndoMemoryBudget() * 1024L * 1024L);
+    }
+
+    /**
+     * @param memoryBudget Number of bytes the edits in memory may take before the oldest are moved to disk.
+     */
+    public SpreadsheetUndoManager(long memoryBudget) {
         listeners = new ArrayList<ListDataListener>();
+        this.memoryBudget = memoryBudget;
+        setLimit(MAX_EDITS);
     }
 
     @Override
     public synchronized void undo() throws CannotUndoException {
         super.undo();
-        Datavyu.getView().getSpreadsheetPanel().redrawCells();
+        if (Datavyu.getView() != null) {
+            Datavyu.getView().getSpreadsheetPanel().redrawCells();
+        }
     }
 
     @Override
@@ -77,6 +108,7 @@ public class SpreadsheetUndoManager extends UndoManager implements ListModel {
         }
         if (addEdit && ue != null) {
             result = super.addEdit(ue);
+            keepWithinBudget();
         } else {
             result = false;
         }
@@ -87,6 +119,55 @@ public class SpreadsheetUndoManager extends UndoManager implements ListModel {
         return result;
     }
 
+    /**
+     * Moves the oldest edits to the spill log, or drops them if they cannot be spilled, until the edits in memory
+     * are within the memory budget. The newest edit always stays in memory.
+     */
+    private void keepWithinBudget() {
+        long used = 0;
+        for (UndoableEdit edit : edits) {
+            used += getMemorySize(edit);
+        }
+        for (int i = 0; used > memoryBudget && i < edits.size() - 1 && edits.get(i).canUndo(); i++) {
+            UndoableEdit edit = edits.get(i);
+            SpreadSheetEdit resident = edit instanceof SpilledEdit ? ((SpilledEdit) edit).getEdit()
+                    : edit instanceof SpreadSheetEdit ? (SpreadSheetEdit) edit : null;
+            if (edit instanceof SpilledEdit && resident == null) {
+                // In the log already
+                continue;
+            }
+            if (resident instanceof SpillableEdit) {
+                try {
+                    SpilledEdit spilled = new SpilledEdit(spillLog, resident);
+                    used += spilled.getMemorySize() - getMemorySize(edit);
+                    if (edit instanceof SpilledEdit) {
+                        // Releases the record it was read back from
+                        edit.die();
+                    }
+                    edits.set(i, spilled);
+                    continue;
+                } catch (IOException e) {
+                    LOGGER.error("Unable to spill undo history to disk", e);
+                }
+            }
+            // Edits that are not spilled end the history, older edits would undo to a state it never had
+            for (int j = 0; j <= i; j++) {
+                used -= getMemorySize(edits.get(j));
+            }
+            trimEdits(0, i);
+            i = -1;
+        }
+    }
+
+    private static long getMemorySize(UndoableEdit edit) {
+        if (edit instanceof SpreadSheetEdit) {
+            return ((SpreadSheetEdit) edit).getMemorySize();
+        } else if (edit instanceof SpilledEdit) {
+            return ((SpilledEdit) edit).getMemorySize();
+        }
+        return SpreadSheetEdit.EDIT_BYTES;
+    }
+
     // Return the complete list of edits in an array.
     public synchronized UndoableEdit[] getEdits() {
         UndoableEdit[] array = new UndoableEdit[edits.size()];
@@ -155,7 +236,7 @@ public class SpreadsheetUndoManager extends UndoManager implements ListModel {
         listeners.remove(l);
     }
 
-    public void goTo(SpreadSheetEdit edit) {
+    public void goTo(UndoableEdit edit) {
         if (edit.canUndo()) {
             this.undoTo(edit);
         } else if (edit.canRedo()) {
@@ -0,0 +1,175 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.undoableedits;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A temporary file holding the edits of the undo history that were moved out of memory. Every edit is a compressed
+ * record at the end of the file: its length, the kind of edit and what the edit wrote. The file is created with the
+ * first record and emptied once all records are released.
+ */
+final class UndoSpillLog {
+
+    /** The logger for this class. */
+    private static final Logger LOGGER = LogManager.getLogger(UndoSpillLog.class);
+
+    /** Kinds of edits */
+    private static final byte CHANGE_ONSET = 1;
+    private static final byte CHANGE_OFFSET = 2;
+    private static final byte CHANGE_VALUE = 3;
+    private static final byte ADD_CELL = 4;
+    private static final byte REMOVE_CELL = 5;
+    private static final byte ADD_VARIABLE = 6;
+    private static final byte REMOVE_VARIABLE = 7;
+    private static final byte CHANGE_VARIABLE_NAME = 8;
+
+    /** The file, null until the first record is written */
+    private RandomAccessFile data;
+
+    /** The number of records not released */
+    private int records;
+
+    /**
+     * Writes an edit.
+     *
+     * @param edit The edit.
+     * @return The position of the record, to read the edit back from.
+     * @throws IOException If unable to write to the file.
+     */
+    synchronized long write(final SpillableEdit edit) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(getKind(edit));
+            edit.writeTo(out);
+        }
+        if (data == null) {
+            File file = File.createTempFile("datavyu-undo", ".log");
+            file.deleteOnExit();
+            data = new RandomAccessFile(file, "rw");
+        }
+        long position = data.length();
+        data.seek(position);
+        data.writeInt(bytes.size());
+        data.write(bytes.toByteArray());
+        records++;
+        return position;
+    }
+
+    /**
+     * Reads an edit back.
+     *
+     * @param position The position of its record.
+     * @return The edit, as it was when written.
+     * @throws IOException If unable to read from the file.
+     */
+    synchronized SpillableEdit read(final long position) throws IOException {
+        data.seek(position);
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+            return readEdit(in.readByte(), in);
+        }
+    }
+
+    /**
+     * Releases a record that is no longer read, the file is emptied when no records are left.
+     */
+    synchronized void release() {
+        if (--records == 0 && data != null) {
+            try {
+                data.setLength(0);
+            } catch (IOException e) {
+                LOGGER.error("Unable to empty undo spill log", e);
+            }
+        }
+    }
+
+    private static byte getKind(final SpillableEdit edit) {
+        if (edit instanceof ChangeOnsetCellEdit) {
+            return CHANGE_ONSET;
+        } else if (edit instanceof ChangeOffsetCellEdit) {
+            return CHANGE_OFFSET;
+        } else if (edit instanceof ChangeValCellEdit) {
+            return CHANGE_VALUE;
+        } else if (edit instanceof AddCellEdit) {
+            return ADD_CELL;
+        } else if (edit instanceof RemoveCellEdit) {
+            return REMOVE_CELL;
+        } else if (edit instanceof AddVariableEdit) {
+            return ADD_VARIABLE;
+        } else if (edit instanceof RemoveVariableEdit) {
+            return REMOVE_VARIABLE;
+        } else if (edit instanceof ChangeNameVariableEdit) {
+            return CHANGE_VARIABLE_NAME;
+        }
+        throw new IllegalArgumentException("Unable to spill " + edit.getClass().getName());
+    }
+
+    private static SpillableEdit readEdit(final byte kind, final DataInputStream in) throws IOException {
+        switch (kind) {
+            case CHANGE_ONSET:
+                return new ChangeOnsetCellEdit(in);
+            case CHANGE_OFFSET:
+                return new ChangeOffsetCellEdit(in);
+            case CHANGE_VALUE:
+                return new ChangeValCellEdit(in);
+            case ADD_CELL:
+                return new AddCellEdit(in);
+            case REMOVE_CELL:
+                return new RemoveCellEdit(in);
+            case ADD_VARIABLE:
+                return new AddVariableEdit(in);
+            case REMOVE_VARIABLE:
+                return new RemoveVariableEdit(in);
+            case CHANGE_VARIABLE_NAME:
+                return new ChangeNameVariableEdit(in);
+            default:
+                throw new IOException("Unknown kind of edit " + kind);
+        }
+    }
+
+    /**
+     * Writes a string of any length as UTF-8.
+     */
+    static void writeString(final DataOutput out, final String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString.
+     */
+    static String readString(final DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
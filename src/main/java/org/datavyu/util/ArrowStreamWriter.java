@@ -0,0 +1,573 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Writes a table in the Apache Arrow IPC streaming format, which pyarrow (ipc.open_stream), pandas and R
+ * (arrow::read_ipc_stream) load without parsing. The table is written in record batches, so only one batch has to be
+ * held in memory.
+ *
+ * Only the column types needed by Datavyu exports are supported: int64, utf8 and dictionary encoded utf8 with int32
+ * indices. Dictionaries must be known up front and are written once after the schema.
+ */
+public final class ArrowStreamWriter implements Closeable {
+
+    /** Marks a null value in an int64 column */
+    public static final long NULL_LONG = Long.MIN_VALUE;
+
+    /** Marks a null value in a dictionary column */
+    public static final int NULL_INDEX = -1;
+
+    /** Metadata version V5 */
+    private static final short METADATA_VERSION = 4;
+
+    /** Message header types */
+    private static final byte HEADER_SCHEMA = 1;
+    private static final byte HEADER_DICTIONARY_BATCH = 2;
+    private static final byte HEADER_RECORD_BATCH = 3;
+
+    /** Field types */
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_UTF8 = 5;
+
+    /** Kinds of columns */
+    public enum Type {
+        /** Signed 64 bit integers, given as long[] with NULL_LONG for nulls */
+        INT64,
+        /** Strings, given as String[] with null for nulls */
+        UTF8,
+        /** Strings from a dictionary, given as int[] dictionary indices with NULL_INDEX for nulls */
+        DICTIONARY
+    }
+
+    /**
+     * A column of the table.
+     */
+    public static final class Column {
+        private final String name;
+        private final Type type;
+        private final boolean nullable;
+        private final List<String> dictionary;
+
+        /**
+         * @param name The name of the column.
+         * @param type The type of the column.
+         * @param nullable True if the column can hold nulls.
+         * @param dictionary The values of a dictionary column; null for other columns.
+         */
+        public Column(final String name, final Type type, final boolean nullable, final List<String> dictionary) {
+            this.name = name;
+            this.type = type;
+            this.nullable = nullable;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * @return The type of the column.
+         */
+        public Type getType() {
+            return type;
+        }
+    }
+
+    /** The stream to write to */
+    private final OutputStream out;
+
+    /** The columns of the table */
+    private final List<Column> columns;
+
+    /** Body of the message being written, reused between batches */
+    private final LittleEndianBuffer body = new LittleEndianBuffer();
+
+    /** Field nodes of the message being written: length and null count of each column */
+    private final LittleEndianBuffer nodes = new LittleEndianBuffer();
+
+    /** Buffers of the message being written: offset and length of each buffer in the body */
+    private final LittleEndianBuffer buffers = new LittleEndianBuffer();
+
+    /**
+     * Writes the schema and the dictionaries of a table.
+     *
+     * @param out The stream to write to; buffered by the caller.
+     * @param columns The columns of the table.
+     * @throws IOException If unable to write.
+     */
+    public ArrowStreamWriter(final OutputStream out, final List<Column> columns) throws IOException {
+        this.out = out;
+        this.columns = columns;
+
+        List<FlatTable> fields = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            fields.add(field(columns.get(i), i));
+        }
+        FlatTable schema = new FlatTable()
+                .add(0, (short) 0) // Little endian
+                .add(1, fields);
+        writeMessage(HEADER_SCHEMA, schema, 0);
+
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            if (column.type == Type.DICTIONARY) {
+                String[] values = column.dictionary.toArray(new String[0]);
+                startBody();
+                addUtf8(values, values.length);
+                FlatTable dictionaryBatch = new FlatTable()
+                        .add(0, (long) i)
+                        .add(1, recordBatch(values.length));
+                writeMessage(HEADER_DICTIONARY_BATCH, dictionaryBatch, body.size());
+            }
+        }
+    }
+
+    /**
+     * Writes a record batch.
+     *
+     * @param length The number of rows in the batch.
+     * @param vectors The values of each column, of the array type given by the type of the column; only the first
+     *                length entries are written.
+     * @throws IOException If unable to write.
+     */
+    public void writeBatch(final int length, final Object[] vectors) throws IOException {
+        startBody();
+        for (int i = 0; i < columns.size(); i++) {
+            switch (columns.get(i).type) {
+                case INT64:
+                    addInt64((long[]) vectors[i], length);
+                    break;
+                case UTF8:
+                    addUtf8((String[]) vectors[i], length);
+                    break;
+                case DICTIONARY:
+                    addIndices((int[]) vectors[i], length);
+                    break;
+            }
+        }
+        writeMessage(HEADER_RECORD_BATCH, recordBatch(length), body.size());
+    }
+
+    /**
+     * Writes the end of stream marker; does not close the underlying stream.
+     *
+     * @throws IOException If unable to write.
+     */
+    @Override
+    public void close() throws IOException {
+        LittleEndianBuffer end = new LittleEndianBuffer();
+        end.putInt(-1);
+        end.putInt(0);
+        end.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * @param column A column.
+     * @param id The dictionary id to use for a dictionary column.
+     * @return The schema field describing the column.
+     */
+    private static FlatTable field(final Column column, final long id) {
+        FlatTable field = new FlatTable()
+                .add(0, column.name)
+                .add(1, column.nullable)
+                .add(5, new ArrayList<FlatTable>());
+        if (column.type == Type.INT64) {
+            field.add(2, TYPE_INT).add(3, intType(64));
+        } else {
+            field.add(2, TYPE_UTF8).add(3, new FlatTable());
+        }
+        if (column.type == Type.DICTIONARY) {
+            field.add(4, new FlatTable()
+                    .add(0, id)
+                    .add(1, intType(32))
+                    .add(2, false));
+        }
+        return field;
+    }
+
+    /**
+     * @param bitWidth The width of the integer type.
+     * @return A signed integer type.
+     */
+    private static FlatTable intType(final int bitWidth) {
+        return new FlatTable().add(0, bitWidth).add(1, true);
+    }
+
+    /**
+     * @param length The number of rows.
+     * @return The record batch header for the nodes and buffers added since the body was started.
+     */
+    private FlatTable recordBatch(final long length) {
+        return new FlatTable()
+                .add(0, length)
+                .add(1, new FlatStructs(nodes.toByteArray()))
+                .add(2, new FlatStructs(buffers.toByteArray()));
+    }
+
+    private void startBody() {
+        body.clear();
+        nodes.clear();
+        buffers.clear();
+    }
+
+    /**
+     * Adds a field node and its validity buffer. The validity buffer is left empty when there are no nulls.
+     *
+     * @param length The number of values.
+     * @param valid The validity of each value.
+     */
+    private void addValidity(final int length, final boolean[] valid) {
+        int nullCount = 0;
+        for (int i = 0; i < length; i++) {
+            if (!valid[i]) {
+                nullCount++;
+            }
+        }
+        nodes.putLong(length);
+        nodes.putLong(nullCount);
+
+        int start = body.size();
+        if (nullCount > 0) {
+            byte[] bitmap = new byte[(length + 7) / 8];
+            for (int i = 0; i < length; i++) {
+                if (valid[i]) {
+                    bitmap[i >> 3] |= 1 << (i & 7);
+                }
+            }
+            body.put(bitmap);
+        }
+        endBuffer(start);
+    }
+
+    /**
+     * Records a buffer of the body and pads the body to a multiple of 8 bytes.
+     *
+     * @param start Where the buffer starts in the body.
+     */
+    private void endBuffer(final int start) {
+        buffers.putLong(start);
+        buffers.putLong(body.size() - start);
+        body.align(8);
+    }
+
+    private void addInt64(final long[] values, final int length) {
+        boolean[] valid = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            valid[i] = values[i] != NULL_LONG;
+        }
+        addValidity(length, valid);
+
+        int start = body.size();
+        for (int i = 0; i < length; i++) {
+            body.putLong(valid[i] ? values[i] : 0);
+        }
+        endBuffer(start);
+    }
+
+    private void addIndices(final int[] indices, final int length) {
+        boolean[] valid = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            valid[i] = indices[i] != NULL_INDEX;
+        }
+        addValidity(length, valid);
+
+        int start = body.size();
+        for (int i = 0; i < length; i++) {
+            body.putInt(valid[i] ? indices[i] : 0);
+        }
+        endBuffer(start);
+    }
+
+    private void addUtf8(final String[] values, final int length) {
+        boolean[] valid = new boolean[length];
+        byte[][] bytes = new byte[length][];
+        for (int i = 0; i < length; i++) {
+            valid[i] = values[i] != null;
+            bytes[i] = valid[i] ? values[i].getBytes(StandardCharsets.UTF_8) : new byte[0];
+        }
+        addValidity(length, valid);
+
+        int start = body.size();
+        int offset = 0;
+        body.putInt(offset);
+        for (int i = 0; i < length; i++) {
+            offset += bytes[i].length;
+            body.putInt(offset);
+        }
+        endBuffer(start);
+
+        start = body.size();
+        for (int i = 0; i < length; i++) {
+            body.put(bytes[i]);
+        }
+        endBuffer(start);
+    }
+
+    /**
+     * Writes an encapsulated message: continuation marker, metadata length, metadata padded to 8 bytes and the body.
+     *
+     * @param headerType The type of the header.
+     * @param header The header.
+     * @param bodyLength The length of the body.
+     * @throws IOException If unable to write.
+     */
+    private void writeMessage(final byte headerType, final FlatTable header, final int bodyLength)
+            throws IOException {
+        FlatTable message = new FlatTable()
+                .add(0, METADATA_VERSION)
+                .add(1, headerType)
+                .add(2, header)
+                .add(3, (long) bodyLength);
+        LittleEndianBuffer metadata = new LittleEndianBuffer();
+        message.serialize(metadata);
+        metadata.align(8);
+
+        LittleEndianBuffer prefix = new LittleEndianBuffer();
+        prefix.putInt(-1);
+        prefix.putInt(metadata.size());
+        prefix.writeTo(out);
+        metadata.writeTo(out);
+        if (bodyLength > 0) {
+            body.writeTo(out);
+        }
+    }
+
+    /**
+     * A growable little endian byte buffer.
+     */
+    private static final class LittleEndianBuffer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        private void ensure(final int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void align(final int alignment) {
+            int padding = (alignment - size % alignment) % alignment;
+            ensure(padding);
+            Arrays.fill(bytes, size, size + padding, (byte) 0);
+            size += padding;
+        }
+
+        void put(final byte[] values) {
+            ensure(values.length);
+            System.arraycopy(values, 0, bytes, size, values.length);
+            size += values.length;
+        }
+
+        void putByte(final int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void putShort(final int value) {
+            ensure(2);
+            setShort(size, value);
+            size += 2;
+        }
+
+        void putInt(final int value) {
+            ensure(4);
+            setInt(size, value);
+            size += 4;
+        }
+
+        void putLong(final long value) {
+            ensure(8);
+            setInt(size, (int) value);
+            setInt(size + 4, (int) (value >>> 32));
+            size += 8;
+        }
+
+        void setShort(final int position, final int value) {
+            bytes[position] = (byte) value;
+            bytes[position + 1] = (byte) (value >>> 8);
+        }
+
+        void setInt(final int position, final int value) {
+            setShort(position, value);
+            setShort(position + 2, value >>> 16);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        void writeTo(final OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+    }
+
+    /**
+     * A vector of 16 byte structs, such as field nodes and buffers, in a flatbuffer.
+     */
+    private static final class FlatStructs {
+        private final byte[] bytes;
+
+        FlatStructs(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * A flatbuffer table, just enough of the format for Arrow metadata. Fields are scalars (Boolean, Byte, Short,
+     * Integer, Long) or references to strings, tables, vectors of tables and vectors of structs. Referenced objects
+     * are laid out after the table that references them, so that all offsets point forward.
+     */
+    private static final class FlatTable {
+        private final TreeMap<Integer, Object> fields = new TreeMap<>();
+
+        FlatTable add(final int id, final Object value) {
+            fields.put(id, value);
+            return this;
+        }
+
+        /**
+         * Serializes this table as the root of a flatbuffer.
+         *
+         * @param buffer The buffer to write to, empty.
+         */
+        void serialize(final LittleEndianBuffer buffer) {
+            Deque<Object[]> pending = new ArrayDeque<>();
+            buffer.putInt(0);
+            pending.add(new Object[]{this, 0});
+            while (!pending.isEmpty()) {
+                Object[] reference = pending.poll();
+                int position = place(reference[0], buffer, pending);
+                int from = (Integer) reference[1];
+                buffer.setInt(from, position - from);
+            }
+        }
+
+        /**
+         * Writes an object and queues the objects it references.
+         *
+         * @return The position of the object, which offsets refer to.
+         */
+        private static int place(final Object object, final LittleEndianBuffer buffer, final Deque<Object[]> pending) {
+            if (object instanceof FlatTable) {
+                return ((FlatTable) object).placeTable(buffer, pending);
+            } else if (object instanceof String) {
+                byte[] bytes = ((String) object).getBytes(StandardCharsets.UTF_8);
+                buffer.align(4);
+                int position = buffer.size();
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+                buffer.putByte(0);
+                return position;
+            } else if (object instanceof FlatStructs) {
+                byte[] bytes = ((FlatStructs) object).bytes;
+                // The structs hold longs, so they start on 8 bytes after the length
+                buffer.align(8);
+                buffer.putInt(0);
+                int position = buffer.size();
+                buffer.putInt(bytes.length / 16);
+                buffer.put(bytes);
+                return position;
+            } else {
+                List<?> tables = (List<?>) object;
+                buffer.align(4);
+                int position = buffer.size();
+                buffer.putInt(tables.size());
+                for (Object table : tables) {
+                    pending.add(new Object[]{table, buffer.size()});
+                    buffer.putInt(0);
+                }
+                return position;
+            }
+        }
+
+        private static int sizeOf(final Object value) {
+            if (value instanceof Boolean || value instanceof Byte) {
+                return 1;
+            } else if (value instanceof Short) {
+                return 2;
+            } else if (value instanceof Long) {
+                return 8;
+            }
+            // Integers and offsets
+            return 4;
+        }
+
+        private int placeTable(final LittleEndianBuffer buffer, final Deque<Object[]> pending) {
+            // Lay out the fields after the vtable offset, largest first
+            List<Integer> ids = new ArrayList<>(fields.keySet());
+            ids.sort((a, b) -> sizeOf(fields.get(b)) - sizeOf(fields.get(a)));
+            int[] offsets = new int[fields.isEmpty() ? 0 : fields.lastKey() + 1];
+            int tableSize = 4;
+            for (int id : ids) {
+                int size = sizeOf(fields.get(id));
+                tableSize = (tableSize + size - 1) / size * size;
+                offsets[id] = tableSize;
+                tableSize += size;
+            }
+
+            // The vtable precedes the table
+            buffer.align(2);
+            int vtablePosition = buffer.size();
+            buffer.putShort(4 + 2 * offsets.length);
+            buffer.putShort(tableSize);
+            for (int offset : offsets) {
+                buffer.putShort(offset);
+            }
+
+            buffer.align(8);
+            int tablePosition = buffer.size();
+            for (int i = 0; i < tableSize; i++) {
+                buffer.putByte(0);
+            }
+            buffer.setInt(tablePosition, tablePosition - vtablePosition);
+            for (int id : ids) {
+                Object value = fields.get(id);
+                int position = tablePosition + offsets[id];
+                if (value instanceof Boolean) {
+                    buffer.bytes[position] = (byte) ((Boolean) value ? 1 : 0);
+                } else if (value instanceof Byte) {
+                    buffer.bytes[position] = (Byte) value;
+                } else if (value instanceof Short) {
+                    buffer.setShort(position, (Short) value);
+                } else if (value instanceof Integer) {
+                    buffer.setInt(position, (Integer) value);
+                } else if (value instanceof Long) {
+                    buffer.setInt(position, (int) (long) (Long) value);
+                    buffer.setInt(position + 4, (int) ((Long) value >>> 32));
+                } else {
+                    pending.add(new Object[]{value, position});
+                }
+            }
+            return tablePosition;
+        }
+    }
+}
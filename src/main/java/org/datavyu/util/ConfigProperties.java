@@ -21,6 +21,7 @@ import org.jdesktop.application.LocalStorage;
 
 import java.awt.*;
 import java.io.*;
+import java.util.zip.Deflater;
 
 /**
  * Configuration properties that are loaded from the settings.xml file in the resource folder.
@@ -123,6 +124,66 @@ public final class ConfigProperties implements Serializable {
     /** True if pre releases are preferred */
     private boolean usePreRelease;
 
+    /** Default on use of the auto save journal */
+    private static final boolean DEFAULT_USE_AUTO_SAVE_JOURNAL = true;
+
+    /** True if auto save appends edits to a journal instead of periodically saving the whole project */
+    private boolean useAutoSaveJournal = DEFAULT_USE_AUTO_SAVE_JOURNAL;
+
+    /** Default on creating the cells of a variable on first access */
+    private static final boolean DEFAULT_USE_LAZY_CELL_LOADING = true;
+
+    /** True if the cells of a variable are created on first access when opening files */
+    private boolean useLazyCellLoading = DEFAULT_USE_LAZY_CELL_LOADING;
+
+    /** Default compression level for saved projects */
+    private static final int DEFAULT_SAVE_COMPRESSION_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+    /** Compression level for saved projects, ZipArchiveWriter.STORED or one of the Deflater levels */
+    private int saveCompressionLevel = DEFAULT_SAVE_COMPRESSION_LEVEL;
+
+    /** Default on compressing saved projects on all cores */
+    private static final boolean DEFAULT_PARALLEL_SAVE_COMPRESSION = true;
+
+    /** True if saved projects are compressed on all cores */
+    private boolean parallelSaveCompression = DEFAULT_PARALLEL_SAVE_COMPRESSION;
+
+    /** Default compression level for auto saved projects, these are local and written often */
+    private static final int DEFAULT_AUTO_SAVE_COMPRESSION_LEVEL = ZipArchiveWriter.STORED;
+
+    /** Compression level for auto saved projects, ZipArchiveWriter.STORED or one of the Deflater levels */
+    private int autoSaveCompressionLevel = DEFAULT_AUTO_SAVE_COMPRESSION_LEVEL;
+
+    /** Default on indenting JSON exports */
+    private static final boolean DEFAULT_PRETTY_PRINT_JSON_EXPORT = true;
+
+    /** True if JSON exports are indented for reading; otherwise they are written compactly */
+    private boolean prettyPrintJsonExport = DEFAULT_PRETTY_PRINT_JSON_EXPORT;
+
+    /** Default on generating JSON exports on all cores */
+    private static final boolean DEFAULT_PARALLEL_JSON_EXPORT = true;
+
+    /** True if the variables of JSON exports are generated on all cores */
+    private boolean parallelJsonExport = DEFAULT_PARALLEL_JSON_EXPORT;
+
+    /** Default on preparing the Ruby engine at startup */
+    private static final boolean DEFAULT_PREPARE_SCRIPT_ENGINE = true;
+
+    /** True if the Ruby engine is booted in the background at startup, so that running a script starts at once */
+    private boolean prepareScriptEngine = DEFAULT_PREPARE_SCRIPT_ENGINE;
+
+    /** Default memory budget of the undo history, in megabytes */
+    private static final int DEFAULT_UNDO_MEMORY_BUDGET = 64;
+
+    /** Megabytes the undo history may take in memory before older edits are moved to disk */
+    private int undoMemoryBudget = DEFAULT_UNDO_MEMORY_BUDGET;
+
+    /** Default on virtualizing the spreadsheet */
+    private static final boolean DEFAULT_VIRTUALIZE_SPREADSHEET = true;
+
+    /** True if the spreadsheet only builds components for the cells in view; otherwise every cell gets them */
+    private boolean virtualizeSpreadsheet = DEFAULT_VIRTUALIZE_SPREADSHEET;
+
     /** Default for favorites folder */
     private static final String DEFAULT_FAVORITES_FOLDER = "favorites";
 
@@ -644,6 +705,186 @@ public final class ConfigProperties implements Serializable {
         this.usePreRelease = usePreRelease;
     }
 
+    /**
+     * Get the auto save journal flag.
+     *
+     * @return True if auto save appends edits to a journal; otherwise False.
+     */
+    public boolean getUseAutoSaveJournal() {
+        return useAutoSaveJournal;
+    }
+
+    /**
+     * Set the auto save journal flag.
+     *
+     * @param useAutoSaveJournal True if auto save appends edits to a journal; otherwise False.
+     */
+    public void setUseAutoSaveJournal(boolean useAutoSaveJournal) {
+        this.useAutoSaveJournal = useAutoSaveJournal;
+    }
+
+    /**
+     * Get the lazy cell loading flag.
+     *
+     * @return True if the cells of a variable are created on first access; otherwise False.
+     */
+    public boolean getUseLazyCellLoading() {
+        return useLazyCellLoading;
+    }
+
+    /**
+     * Set the lazy cell loading flag.
+     *
+     * @param useLazyCellLoading True if the cells of a variable are created on first access; otherwise False.
+     */
+    public void setUseLazyCellLoading(boolean useLazyCellLoading) {
+        this.useLazyCellLoading = useLazyCellLoading;
+    }
+
+    /**
+     * Get the compression level for saved projects.
+     *
+     * @return ZipArchiveWriter.STORED or one of the Deflater levels.
+     */
+    public int getSaveCompressionLevel() {
+        return saveCompressionLevel;
+    }
+
+    /**
+     * Set the compression level for saved projects.
+     *
+     * @param saveCompressionLevel ZipArchiveWriter.STORED or one of the Deflater levels.
+     */
+    public void setSaveCompressionLevel(int saveCompressionLevel) {
+        this.saveCompressionLevel = saveCompressionLevel;
+    }
+
+    /**
+     * Get the parallel compression flag for saved projects.
+     *
+     * @return True if saved projects are compressed on all cores; otherwise False.
+     */
+    public boolean getParallelSaveCompression() {
+        return parallelSaveCompression;
+    }
+
+    /**
+     * Set the parallel compression flag for saved projects.
+     *
+     * @param parallelSaveCompression True if saved projects are compressed on all cores; otherwise False.
+     */
+    public void setParallelSaveCompression(boolean parallelSaveCompression) {
+        this.parallelSaveCompression = parallelSaveCompression;
+    }
+
+    /**
+     * Get the compression level for auto saved projects.
+     *
+     * @return ZipArchiveWriter.STORED or one of the Deflater levels.
+     */
+    public int getAutoSaveCompressionLevel() {
+        return autoSaveCompressionLevel;
+    }
+
+    /**
+     * Set the compression level for auto saved projects.
+     *
+     * @param autoSaveCompressionLevel ZipArchiveWriter.STORED or one of the Deflater levels.
+     */
+    public void setAutoSaveCompressionLevel(int autoSaveCompressionLevel) {
+        this.autoSaveCompressionLevel = autoSaveCompressionLevel;
+    }
+
+    /**
+     * Get the pretty print flag for JSON exports.
+     *
+     * @return True if JSON exports are indented for reading; otherwise False.
+     */
+    public boolean getPrettyPrintJsonExport() {
+        return prettyPrintJsonExport;
+    }
+
+    /**
+     * Set the pretty print flag for JSON exports.
+     *
+     * @param prettyPrintJsonExport True if JSON exports are indented for reading; otherwise False.
+     */
+    public void setPrettyPrintJsonExport(boolean prettyPrintJsonExport) {
+        this.prettyPrintJsonExport = prettyPrintJsonExport;
+    }
+
+    /**
+     * Get the parallel generation flag for JSON exports.
+     *
+     * @return True if the variables of JSON exports are generated on all cores; otherwise False.
+     */
+    public boolean getParallelJsonExport() {
+        return parallelJsonExport;
+    }
+
+    /**
+     * Set the parallel generation flag for JSON exports.
+     *
+     * @param parallelJsonExport True if the variables of JSON exports are generated on all cores; otherwise False.
+     */
+    public void setParallelJsonExport(boolean parallelJsonExport) {
+        this.parallelJsonExport = parallelJsonExport;
+    }
+
+    /**
+     * Get the flag for preparing the Ruby engine at startup.
+     *
+     * @return True if the Ruby engine is booted in the background at startup; otherwise False.
+     */
+    public boolean getPrepareScriptEngine() {
+        return prepareScriptEngine;
+    }
+
+    /**
+     * Set the flag for preparing the Ruby engine at startup.
+     *
+     * @param prepareScriptEngine True if the Ruby engine is booted in the background at startup; otherwise False.
+     */
+    public void setPrepareScriptEngine(boolean prepareScriptEngine) {
+        this.prepareScriptEngine = prepareScriptEngine;
+    }
+
+    /**
+     * Get the memory budget of the undo history.
+     *
+     * @return The megabytes the undo history may take in memory before older edits are moved to disk.
+     */
+    public int getUndoMemoryBudget() {
+        return undoMemoryBudget;
+    }
+
+    /**
+     * Set the memory budget of the undo history.
+     *
+     * @param undoMemoryBudget The megabytes the undo history may take in memory before older edits are moved to disk.
+     */
+    public void setUndoMemoryBudget(int undoMemoryBudget) {
+        this.undoMemoryBudget = undoMemoryBudget;
+    }
+
+    /**
+     * Get the flag for virtualizing the spreadsheet.
+     *
+     * @return True if the spreadsheet only builds components for the cells in view; otherwise False.
+     */
+    public boolean getVirtualizeSpreadsheet() {
+        return virtualizeSpreadsheet;
+    }
+
+    /**
+     * Set the flag for virtualizing the spreadsheet.
+     *
+     * @param virtualizeSpreadsheet True if the spreadsheet only builds components for the cells in view; otherwise False.
+     */
+    public void setVirtualizeSpreadsheet(boolean virtualizeSpreadsheet) {
+        this.virtualizeSpreadsheet = virtualizeSpreadsheet;
+    }
+
     /**
      * Get the favorites folder.
      *
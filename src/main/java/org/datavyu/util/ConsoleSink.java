@@ -0,0 +1,245 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Collects the output of scripts for a console text area. Any thread can write to the sink, which appends what was
+ * written to the text area on the event dispatch thread at most {@link #UPDATES_PER_SECOND} times a second. The text
+ * area keeps the last {@link #DEFAULT_CAPACITY} characters, and so does the sink while it waits for the text area.
+ * A writer that gets ahead of the text area waits for it, but at most {@link #MAX_WAIT} milliseconds per write.
+ */
+public final class ConsoleSink {
+
+    /** The logger for this class */
+    private static Logger logger = LogManager.getLogger(ConsoleSink.class);
+
+    /** Number of characters kept in the text area */
+    public static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+    /** Maximum number of times per second that the text area is updated */
+    public static final int UPDATES_PER_SECOND = 30;
+
+    /** Maximum time in milliseconds a write waits for the text area to catch up */
+    public static final long MAX_WAIT = 100L;
+
+    /** Convert nanoseconds to milliseconds */
+    private static final long NANO_IN_MILLI = 1000000L;
+
+    /** The text area */
+    private final JTextArea textArea;
+
+    /** Number of characters kept in the text area, and waiting for it */
+    private final int capacity;
+
+    /** Text waiting to be appended to the text area */
+    private final StringBuilder pending = new StringBuilder();
+
+    /** Number of characters that were dropped before reaching the text area */
+    private long dropped;
+
+    /** Whether an update of the text area is scheduled */
+    private boolean updateScheduled;
+
+    /** Time of the last update of the text area in nanoseconds */
+    private long lastUpdate;
+
+    /**
+     * @param textArea The text area to append to.
+     */
+    public ConsoleSink(final JTextArea textArea) {
+        this(textArea, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param textArea The text area to append to.
+     * @param capacity Number of characters kept in the text area.
+     */
+    public ConsoleSink(final JTextArea textArea, final int capacity) {
+        this.textArea = textArea;
+        this.capacity = capacity;
+        lastUpdate = System.nanoTime();
+    }
+
+    /**
+     * @return A writer that appends to the console. Closing it only flushes it.
+     */
+    public Writer newWriter() {
+        return new Writer() {
+            @Override
+            public void write(final char[] chars, final int offset, final int length) {
+                ConsoleSink.this.append(new String(chars, offset, length));
+            }
+
+            @Override
+            public void write(final String string) {
+                ConsoleSink.this.append(string);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * @return A stream that appends UTF-8 encoded text to the console. Characters split between writes are decoded
+     * once all their bytes arrived; closing the stream decodes what is left.
+     */
+    public OutputStream newOutputStream() {
+        return new OutputStream() {
+            private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            private ByteBuffer bytes = ByteBuffer.allocate(1024);
+            private final CharBuffer chars = CharBuffer.allocate(1024);
+
+            @Override
+            public void write(final int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public synchronized void write(final byte[] b, final int offset, final int length) {
+                if (bytes.remaining() < length) {
+                    ByteBuffer larger = ByteBuffer.allocate(bytes.position() + length);
+                    bytes.flip();
+                    larger.put(bytes);
+                    bytes = larger;
+                }
+                bytes.put(b, offset, length);
+                decode(false);
+            }
+
+            @Override
+            public synchronized void close() {
+                decode(true);
+                decoder.flush(chars);
+                appendChars();
+                decoder.reset();
+            }
+
+            private void decode(final boolean endOfInput) {
+                bytes.flip();
+                while (decoder.decode(bytes, chars, endOfInput).isOverflow()) {
+                    appendChars();
+                }
+                appendChars();
+                // Keeps the bytes of a character that is not complete yet
+                bytes.compact();
+            }
+
+            private void appendChars() {
+                chars.flip();
+                if (chars.hasRemaining()) {
+                    append(chars.toString());
+                }
+                chars.clear();
+            }
+        };
+    }
+
+    /**
+     * Appends text to the console. Waits for the text area if it is behind, unless called on the event dispatch
+     * thread, and drops the oldest text waiting for it if it does not catch up in time.
+     *
+     * @param text The text to append.
+     */
+    public synchronized void append(final CharSequence text) {
+        if (text.length() == 0) {
+            return;
+        }
+        if (pending.length() + text.length() > capacity && !SwingUtilities.isEventDispatchThread()) {
+            long deadline = System.nanoTime() + MAX_WAIT * NANO_IN_MILLI;
+            long wait;
+            while (pending.length() + text.length() > capacity
+                    && (wait = (deadline - System.nanoTime()) / NANO_IN_MILLI) > 0) {
+                try {
+                    wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        pending.append(text);
+        if (pending.length() > capacity) {
+            // Text beyond the capacity would not be kept by the text area either
+            int excess = pending.length() - capacity;
+            pending.delete(0, excess);
+            dropped += excess;
+        }
+        if (!updateScheduled) {
+            updateScheduled = true;
+            long sinceUpdate = (System.nanoTime() - lastUpdate) / NANO_IN_MILLI;
+            int delay = (int) Math.max(0, 1000 / UPDATES_PER_SECOND - sinceUpdate);
+            Timer timer = new Timer(delay, e -> update());
+            timer.setRepeats(false);
+            timer.start();
+        }
+    }
+
+    /**
+     * Appends the text waiting for the text area to it, and removes the oldest text from the text area that is
+     * beyond its capacity. Must be called on the event dispatch thread.
+     */
+    void update() {
+        String text;
+        long droppedText;
+        synchronized (this) {
+            text = pending.toString();
+            droppedText = dropped;
+            pending.setLength(0);
+            dropped = 0;
+            updateScheduled = false;
+            lastUpdate = System.nanoTime();
+            notifyAll();
+        }
+
+        Document document = textArea.getDocument();
+        try {
+            if (droppedText > 0) {
+                document.remove(0, document.getLength());
+                text = "[" + droppedText + " characters of output not shown]\n" + text;
+            }
+            document.insertString(document.getLength(), text, null);
+            int excess = document.getLength() - capacity;
+            if (excess > 0) {
+                document.remove(0, excess);
+            }
+        } catch (BadLocationException e) {
+            logger.error("Unable to append to the console. Error: ", e);
+        }
+        // Make sure the last line is always visible
+        textArea.setCaretPosition(document.getLength());
+    }
+}
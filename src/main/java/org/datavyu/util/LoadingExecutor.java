@@ -0,0 +1,54 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of background threads that load the parts of a project, such as the data store, the viewer settings
+ * and the media files, concurrently.
+ */
+public final class LoadingExecutor {
+
+    /** Number of threads, enough to overlap the parts of a project without competing with the user interface */
+    private static final int THREAD_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** Number of the next thread, used in the thread names */
+    private static final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    /** The threads; daemons so that loading never keeps the application from exiting */
+    private static final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT, runnable -> {
+        Thread thread = new Thread(runnable, "LoadingExecutor-" + threadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LoadingExecutor() {}
+
+    /**
+     * Runs a task in the background.
+     *
+     * @param task The task to run.
+     * @param <T> The type of the result of the task.
+     * @return The future result of the task.
+     */
+    public static <T> Future<T> submit(final Callable<T> task) {
+        return executor.submit(task);
+    }
+}
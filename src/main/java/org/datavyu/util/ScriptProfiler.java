@@ -0,0 +1,331 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts and times what a script does while it runs: the calls it makes into the model, the functions of the Ruby
+ * API it calls, the time the model spends notifying listeners and the work done on the event dispatch thread in the
+ * meantime. The model reports its calls through {@link #enter(Operation)} and {@link #exit(Operation, long)}, which
+ * cost a volatile read when no script is profiled. Only calls from the thread running the profiled script count.
+ */
+public final class ScriptProfiler {
+
+    /** Returned by {@link #enter(Operation)} when the call is not profiled */
+    public static final long NOT_PROFILED = Long.MIN_VALUE;
+
+    /** Convert nanoseconds to milliseconds */
+    private static final double NANO_IN_MILLI = 1e6;
+
+    /**
+     * Calls into the model that are profiled.
+     */
+    public enum Operation {
+        GET_VARIABLE("getVariable"),
+        CREATE_VARIABLE("createVariable"),
+        GET_CELLS("getCells"),
+        CREATE_CELL("createCell"),
+        REMOVE_CELL("removeCell"),
+        SET_ONSET("setOnset"),
+        SET_OFFSET("setOffset"),
+        SET_VALUE("set/clear value"),
+        LISTENERS("listener fan-out");
+
+        private final String label;
+
+        Operation(final String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /** The profiler of the script being profiled, if any */
+    private static volatile ScriptProfiler active;
+
+    /** The thread running the script */
+    private final Thread thread;
+
+    /** Calls and nanoseconds per operation, not counting calls nested in the same operation */
+    private final long[] counts = new long[Operation.values().length];
+    private final long[] nanos = new long[Operation.values().length];
+    private final int[] depths = new int[Operation.values().length];
+
+    /** Depth of nested model calls, and nanoseconds in outermost model calls made directly or by the API */
+    private int modelDepth;
+    private long modelNanos;
+    private long modelInApiNanos;
+
+    /** Calls and nanoseconds per API function, and nanoseconds in outermost API calls */
+    private final Map<String, long[]> apiCalls = new TreeMap<>();
+    private int apiDepth;
+    private long apiNanos;
+
+    /** Events and nanoseconds of work on the event dispatch thread */
+    private volatile long edtEvents;
+    private volatile long edtNanos;
+
+    /** The event queue that times the event dispatch thread, if there is one */
+    private TimingEventQueue eventQueue;
+
+    /** When profiling started and stopped in nanoseconds */
+    private final long startTime;
+    private long stopTime;
+
+    private ScriptProfiler() {
+        thread = Thread.currentThread();
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Starts profiling the script that runs on the current thread.
+     *
+     * @return The profiler, or null if another script is being profiled.
+     */
+    public static synchronized ScriptProfiler start() {
+        if (active != null) {
+            return null;
+        }
+        ScriptProfiler profiler = new ScriptProfiler();
+        if (!GraphicsEnvironment.isHeadless()) {
+            profiler.eventQueue = profiler.new TimingEventQueue();
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(profiler.eventQueue);
+        }
+        active = profiler;
+        return profiler;
+    }
+
+    /**
+     * Stops profiling.
+     */
+    public void stop() {
+        synchronized (ScriptProfiler.class) {
+            if (active == this) {
+                active = null;
+                stopTime = System.nanoTime();
+                if (eventQueue != null) {
+                    eventQueue.uninstall();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The profiler of the script being profiled, or null if there is none.
+     */
+    public static ScriptProfiler getActive() {
+        return active;
+    }
+
+    /**
+     * Called by the model when a call starts.
+     *
+     * @param operation The operation.
+     * @return The time the call started, to pass to {@link #exit(Operation, long)}.
+     */
+    public static long enter(final Operation operation) {
+        ScriptProfiler profiler = active;
+        if (profiler == null || profiler.thread != Thread.currentThread()) {
+            return NOT_PROFILED;
+        }
+        profiler.depths[operation.ordinal()]++;
+        profiler.modelDepth++;
+        return System.nanoTime();
+    }
+
+    /**
+     * Called by the model when a call ends, in a finally block.
+     *
+     * @param operation The operation.
+     * @param start What {@link #enter(Operation)} returned.
+     */
+    public static void exit(final Operation operation, final long start) {
+        ScriptProfiler profiler = active;
+        if (start == NOT_PROFILED || profiler == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        int index = operation.ordinal();
+        if (--profiler.depths[index] == 0) {
+            profiler.counts[index]++;
+            profiler.nanos[index] += elapsed;
+        }
+        if (--profiler.modelDepth == 0) {
+            if (profiler.apiDepth > 0) {
+                profiler.modelInApiNanos += elapsed;
+            } else {
+                profiler.modelNanos += elapsed;
+            }
+        }
+    }
+
+    /**
+     * Called by the Ruby API when a function starts.
+     *
+     * @return The time the function started, to pass to {@link #exitApi(String, long)}.
+     */
+    public long enterApi() {
+        if (thread != Thread.currentThread()) {
+            return NOT_PROFILED;
+        }
+        apiDepth++;
+        return System.nanoTime();
+    }
+
+    /**
+     * Called by the Ruby API when a function ends.
+     *
+     * @param name The name of the function.
+     * @param start What {@link #enterApi()} returned.
+     */
+    public void exitApi(final String name, final long start) {
+        if (start == NOT_PROFILED) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        long[] calls = apiCalls.get(name);
+        if (calls == null) {
+            calls = new long[2];
+            apiCalls.put(name, calls);
+        }
+        calls[0]++;
+        calls[1] += elapsed;
+        if (--apiDepth == 0) {
+            apiNanos += elapsed;
+        }
+    }
+
+    /**
+     * @param operation An operation.
+     * @return The number of calls of the operation from the script.
+     */
+    public long getCount(final Operation operation) {
+        return counts[operation.ordinal()];
+    }
+
+    /**
+     * @return The summary of the profile as a table for the console.
+     */
+    public String getSummary() {
+        long total = stopTime - startTime;
+        StringBuilder summary = new StringBuilder();
+        summary.append("\n***** SCRIPT PROFILE *****\n");
+        summary.append(String.format("%-32s %12s%n", "Where the time went", "ms"));
+        appendTime(summary, "Total", total);
+        appendTime(summary, "  Script code (Ruby)", total - apiNanos - modelNanos);
+        appendTime(summary, "  API functions (Ruby)", apiNanos - modelInApiNanos);
+        appendTime(summary, "  Model (Java)", modelNanos + modelInApiNanos);
+        appendTime(summary, "    of which listener fan-out", nanos[Operation.LISTENERS.ordinal()]);
+        appendTime(summary, String.format("Event dispatch thread (%d events)", edtEvents), edtNanos);
+
+        summary.append(String.format("%n%-32s %10s %12s %10s%n", "Model call", "calls", "ms", "us/call"));
+        for (Operation operation : Operation.values()) {
+            appendCalls(summary, operation.getLabel(), counts[operation.ordinal()], nanos[operation.ordinal()]);
+        }
+        if (!apiCalls.isEmpty()) {
+            summary.append(String.format("%n%-32s %10s %12s %10s%n", "API function", "calls", "ms", "us/call"));
+            for (Map.Entry<String, long[]> entry : apiCalls.entrySet()) {
+                appendCalls(summary, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+        summary.append("(Times of calls include the calls they make)\n");
+        summary.append("**************************\n");
+        return summary.toString();
+    }
+
+    private static void appendTime(final StringBuilder summary, final String label, final long nanos) {
+        summary.append(String.format("%-32s %12.1f%n", label, nanos / NANO_IN_MILLI));
+    }
+
+    private static void appendCalls(final StringBuilder summary, final String label, final long count,
+                                    final long nanos) {
+        if (count > 0) {
+            summary.append(String.format("%-32s %10d %12.1f %10.1f%n", label, count, nanos / NANO_IN_MILLI,
+                    nanos / 1e3 / count));
+        }
+    }
+
+    /**
+     * Saves the profile as JSON, to compare runs.
+     *
+     * @param file The file to save to.
+     * @param script The name of the script.
+     * @throws IOException If unable to save the file.
+     */
+    public void save(final File file, final String script) throws IOException {
+        try (JsonGenerator g = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            g.setPrettyPrinter(new DefaultPrettyPrinter());
+            g.writeStartObject();
+            g.writeStringField("script", script);
+            g.writeNumberField("totalMs", (stopTime - startTime) / NANO_IN_MILLI);
+            g.writeNumberField("scriptMs", (stopTime - startTime - apiNanos - modelNanos) / NANO_IN_MILLI);
+            g.writeNumberField("apiMs", (apiNanos - modelInApiNanos) / NANO_IN_MILLI);
+            g.writeNumberField("modelMs", (modelNanos + modelInApiNanos) / NANO_IN_MILLI);
+            g.writeNumberField("edtEvents", edtEvents);
+            g.writeNumberField("edtMs", edtNanos / NANO_IN_MILLI);
+            g.writeObjectFieldStart("model");
+            for (Operation operation : Operation.values()) {
+                writeCalls(g, operation.getLabel(), counts[operation.ordinal()], nanos[operation.ordinal()]);
+            }
+            g.writeEndObject();
+            g.writeObjectFieldStart("api");
+            for (Map.Entry<String, long[]> entry : apiCalls.entrySet()) {
+                writeCalls(g, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+            g.writeEndObject();
+            g.writeEndObject();
+        }
+    }
+
+    private static void writeCalls(final JsonGenerator g, final String name, final long count, final long nanos)
+            throws IOException {
+        g.writeObjectFieldStart(name);
+        g.writeNumberField("calls", count);
+        g.writeNumberField("ms", nanos / NANO_IN_MILLI);
+        g.writeEndObject();
+    }
+
+    /**
+     * Times the events dispatched while the script runs.
+     */
+    private final class TimingEventQueue extends EventQueue {
+        @Override
+        protected void dispatchEvent(final AWTEvent event) {
+            long start = System.nanoTime();
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                edtNanos += System.nanoTime() - start;
+                edtEvents++;
+            }
+        }
+
+        void uninstall() {
+            pop();
+        }
+    }
+}
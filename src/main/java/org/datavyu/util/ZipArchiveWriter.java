@@ -0,0 +1,442 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a standard zip archive whose entries are either stored or deflated at a chosen level.
+ *
+ * Entries are streamed to the archive in chunks, so only a few chunks of an entry are held in memory at a time. The
+ * checksum and sizes of an entry are written into its local header once the entry is complete, which is why the
+ * archive is written to a file.
+ *
+ * In parallel mode the chunks are deflated on all cores. Every chunk but the last ends on a byte boundary (a sync
+ * flush) and uses the end of the previous chunk as its dictionary, so the chunks join into one regular deflate stream
+ * that any zip reader can inflate.
+ *
+ * The archive is limited to the 4 GB of a zip without zip64 extensions.
+ */
+public final class ZipArchiveWriter implements Closeable {
+
+    /** Compression level that stores entries without compressing them */
+    public static final int STORED = -2;
+
+    /** Size of the chunks an entry is written and deflated in */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    /** Size of the window of a deflate stream, the most a chunk can refer back into the previous chunk */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    /** Largest number of chunks deflated in parallel at a time, which bounds the memory an entry takes */
+    private static final int MAX_CHUNKS_IN_FLIGHT = 2 * Runtime.getRuntime().availableProcessors();
+
+    /** Largest size or offset in a zip without zip64 extensions */
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    /** Position of the checksum within the local header */
+    private static final int LOCAL_HEADER_CRC_OFFSET = 14;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    /** General purpose flag marking the entry names as UTF-8 */
+    private static final int UTF8_FLAG = 0x0800;
+
+    private static final int METHOD_STORED = 0;
+
+    private static final int METHOD_DEFLATED = 8;
+
+    /** The stream the archive is written to */
+    private final FileOutputStream out;
+
+    /** The compression level, STORED or one of the Deflater levels */
+    private final int level;
+
+    /** True if the chunks of an entry are deflated on all cores */
+    private final boolean parallel;
+
+    /** The central directory records of the entries written so far */
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+
+    /** The entry being written, null if none is */
+    private EntryStream openEntry;
+
+    /** Number of entries written so far */
+    private int entryCount = 0;
+
+    /** Number of bytes written to the stream so far */
+    private long offset = 0;
+
+    /** Modification time of all entries in MS-DOS format */
+    private final long dosTime;
+
+    /**
+     * Creates a writer for a zip archive.
+     *
+     * @param out The new file to write the archive to; closed when the writer is closed.
+     * @param level The compression level, STORED or one of the Deflater levels.
+     * @param parallel True to deflate large entries in chunks on all cores.
+     */
+    public ZipArchiveWriter(final FileOutputStream out, final int level, final boolean parallel) {
+        this.out = out;
+        this.level = level;
+        this.parallel = parallel && Runtime.getRuntime().availableProcessors() > 1;
+        this.dosTime = toDosTime(Calendar.getInstance());
+    }
+
+    /**
+     * Starts an entry of the archive. The entry is complete once the returned stream is closed, which has to happen
+     * before the next entry is started.
+     *
+     * @param name The name of the entry.
+     * @return The stream to write the uncompressed content of the entry to.
+     * @throws IOException If unable to write the entry.
+     */
+    public OutputStream startEntry(final String name) throws IOException {
+        if (openEntry != null) {
+            throw new IllegalStateException("Entry " + openEntry.name + " is still being written.");
+        }
+        openEntry = new EntryStream(name);
+        return openEntry;
+    }
+
+    /**
+     * Writes an entry to the archive.
+     *
+     * @param name The name of the entry.
+     * @param data The uncompressed content of the entry.
+     * @throws IOException If unable to write the entry.
+     */
+    public void writeEntry(final String name, final byte[] data) throws IOException {
+        try (OutputStream entry = startEntry(name)) {
+            entry.write(data);
+        }
+    }
+
+    /**
+     * Writes the central directory and closes the stream.
+     *
+     * @throws IOException If unable to write the central directory.
+     */
+    @Override
+    public void close() throws IOException {
+        if (openEntry != null) {
+            openEntry.close();
+        }
+        if (offset + centralDirectory.size() > MAX_SIZE || entryCount > 0xFFFF) {
+            throw new ZipException("Archive does not fit in a zip archive without zip64 extensions.");
+        }
+        ByteArrayOutputStream end = new ByteArrayOutputStream();
+        writeInt(end, END_SIGNATURE);
+        writeShort(end, 0); // number of this disk
+        writeShort(end, 0); // disk with the central directory
+        writeShort(end, entryCount);
+        writeShort(end, entryCount);
+        writeInt(end, centralDirectory.size());
+        writeInt(end, offset);
+        writeShort(end, 0); // comment length
+
+        centralDirectory.writeTo(out);
+        end.writeTo(out);
+        out.flush();
+        out.close();
+    }
+
+    /**
+     * Streams the content of an entry to the archive chunk by chunk.
+     */
+    private final class EntryStream extends OutputStream {
+
+        private final String name;
+
+        private final byte[] nameBytes;
+
+        private final int method = level == STORED ? METHOD_STORED : METHOD_DEFLATED;
+
+        /** Position of the local header of the entry */
+        private final long headerOffset;
+
+        private final CRC32 crc = new CRC32();
+
+        /** Deflates the entry as one stream when not deflating in parallel */
+        private final Deflater deflater;
+
+        /** Chunks being deflated in parallel, in the order they are written */
+        private final Deque<Future<byte[]>> chunksInFlight = new ArrayDeque<>();
+
+        /** The chunk being filled */
+        private byte[] chunk = new byte[CHUNK_SIZE];
+
+        /** Number of bytes in the chunk being filled */
+        private int chunkLength = 0;
+
+        /** The end of the previous chunk, the dictionary of the next one */
+        private byte[] dictionary;
+
+        private long size = 0;
+
+        private long compressedSize = 0;
+
+        private boolean closed = false;
+
+        EntryStream(final String name) throws IOException {
+            this.name = name;
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            this.headerOffset = offset;
+            this.deflater = method == METHOD_DEFLATED && !parallel ? new Deflater(level, true) : null;
+
+            // The checksum and sizes are filled in once the entry is complete
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            writeInt(header, LOCAL_HEADER_SIGNATURE);
+            writeShort(header, version());
+            writeShort(header, UTF8_FLAG);
+            writeShort(header, method);
+            writeInt(header, dosTime);
+            writeInt(header, 0); // checksum
+            writeInt(header, 0); // compressed size
+            writeInt(header, 0); // size
+            writeShort(header, nameBytes.length);
+            writeShort(header, 0); // extra field length
+            header.write(nameBytes);
+            header.writeTo(out);
+            offset += header.size();
+        }
+
+        private int version() {
+            return method == METHOD_STORED ? 10 : 20;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] data, int start, int length) throws IOException {
+            if (closed) {
+                throw new IOException("Entry " + name + " is closed.");
+            }
+            crc.update(data, start, length);
+            size += length;
+            while (length > 0) {
+                int count = Math.min(length, CHUNK_SIZE - chunkLength);
+                System.arraycopy(data, start, chunk, chunkLength, count);
+                chunkLength += count;
+                start += count;
+                length -= count;
+                if (chunkLength == CHUNK_SIZE) {
+                    writeChunk(false);
+                }
+            }
+        }
+
+        /**
+         * Writes or deflates the chunk being filled and starts a new one.
+         *
+         * @param last True if this is the last chunk of the entry.
+         */
+        private void writeChunk(final boolean last) throws IOException {
+            if (method == METHOD_STORED) {
+                writeContent(chunk, chunkLength);
+            } else if (deflater != null) {
+                deflater.setInput(chunk, 0, chunkLength);
+                if (last) {
+                    deflater.finish();
+                }
+                byte[] buffer = new byte[16 * 1024];
+                while (last ? !deflater.finished() : !deflater.needsInput()) {
+                    writeContent(buffer, deflater.deflate(buffer));
+                }
+            } else {
+                if (chunksInFlight.size() >= MAX_CHUNKS_IN_FLIGHT) {
+                    writeDeflatedChunk();
+                }
+                final byte[] input = chunk;
+                final int length = chunkLength;
+                final byte[] previous = dictionary;
+                chunksInFlight.add(CompletableFuture.supplyAsync(() -> deflateChunk(input, length, previous, last)));
+                if (!last) {
+                    dictionary = Arrays.copyOfRange(input, CHUNK_SIZE - DICTIONARY_SIZE, CHUNK_SIZE);
+                    // The chunk is still being deflated, so a new one is filled
+                    chunk = new byte[CHUNK_SIZE];
+                }
+            }
+            chunkLength = 0;
+        }
+
+        /**
+         * Waits for the oldest chunk in flight to be deflated and writes it.
+         */
+        private void writeDeflatedChunk() throws IOException {
+            try {
+                byte[] deflated = chunksInFlight.remove().get();
+                writeContent(deflated, deflated.length);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing entry " + name + ".");
+            } catch (ExecutionException e) {
+                throw new IOException("Unable to deflate entry " + name + ".", e.getCause());
+            }
+        }
+
+        private void writeContent(final byte[] content, final int length) throws IOException {
+            out.write(content, 0, length);
+            compressedSize += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeChunk(true);
+                while (!chunksInFlight.isEmpty()) {
+                    writeDeflatedChunk();
+                }
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+                openEntry = null;
+            }
+            offset += compressedSize;
+            if (size > MAX_SIZE || compressedSize > MAX_SIZE || headerOffset > MAX_SIZE) {
+                throw new ZipException("Entry " + name + " does not fit in a zip archive without zip64 extensions.");
+            }
+
+            // Fill in the checksum and sizes of the local header
+            ByteArrayOutputStream sizes = new ByteArrayOutputStream();
+            writeInt(sizes, crc.getValue());
+            writeInt(sizes, compressedSize);
+            writeInt(sizes, size);
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(sizes.toByteArray());
+            long position = headerOffset + LOCAL_HEADER_CRC_OFFSET;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+
+            // Central directory record
+            writeInt(centralDirectory, CENTRAL_HEADER_SIGNATURE);
+            writeShort(centralDirectory, version());
+            writeShort(centralDirectory, version());
+            writeShort(centralDirectory, UTF8_FLAG);
+            writeShort(centralDirectory, method);
+            writeInt(centralDirectory, dosTime);
+            writeInt(centralDirectory, crc.getValue());
+            writeInt(centralDirectory, compressedSize);
+            writeInt(centralDirectory, size);
+            writeShort(centralDirectory, nameBytes.length);
+            writeShort(centralDirectory, 0); // extra field length
+            writeShort(centralDirectory, 0); // comment length
+            writeShort(centralDirectory, 0); // disk number
+            writeShort(centralDirectory, 0); // internal attributes
+            writeInt(centralDirectory, 0); // external attributes
+            writeInt(centralDirectory, headerOffset);
+            centralDirectory.write(nameBytes);
+            entryCount++;
+        }
+    }
+
+    /**
+     * Deflates one chunk of an entry as part of a raw deflate stream.
+     *
+     * @param data The chunk.
+     * @param length The length of the chunk.
+     * @param dictionary The end of the previous chunk, null for the first chunk.
+     * @param last True if this is the last chunk, which finishes the deflate stream.
+     * @return The deflated chunk.
+     */
+    private byte[] deflateChunk(final byte[] data, final int length, final byte[] dictionary, final boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(data, 0, length);
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[16 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    deflated.write(buffer, 0, count);
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    deflated.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return deflated.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param calendar The time to convert.
+     * @return The time in MS-DOS format, date in the high and time in the low 16 bits.
+     */
+    private static long toDosTime(final Calendar calendar) {
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((year - 1980) << 25)
+                | ((calendar.get(Calendar.MONTH) + 1) << 21)
+                | (calendar.get(Calendar.DAY_OF_MONTH) << 16)
+                | (calendar.get(Calendar.HOUR_OF_DAY) << 11)
+                | (calendar.get(Calendar.MINUTE) << 5)
+                | (calendar.get(Calendar.SECOND) >> 1);
+    }
+
+    private static void writeShort(final ByteArrayOutputStream out, final int value) {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private static void writeInt(final ByteArrayOutputStream out, final long value) {
+        out.write((int) (value & 0xFF));
+        out.write((int) ((value >>> 8) & 0xFF));
+        out.write((int) ((value >>> 16) & 0xFF));
+        out.write((int) ((value >>> 24) & 0xFF));
+    }
+}
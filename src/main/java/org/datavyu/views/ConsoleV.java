@@ -17,6 +17,7 @@ package org.datavyu.views;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datavyu.Datavyu;
+import org.datavyu.util.ConsoleSink;
 
 import javax.swing.*;
 import java.awt.*;
@@ -37,6 +38,11 @@ public final class ConsoleV extends DatavyuDialog {
      * The instance of the console.
      */
     private static ConsoleV instance;
+
+    /**
+     * The sink that appends the output of scripts to the console.
+     */
+    private final ConsoleSink sink;
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton closeButton;
     private javax.swing.JTextArea console;
@@ -54,6 +60,7 @@ public final class ConsoleV extends DatavyuDialog {
         initComponents();
         setName(this.getClass().getSimpleName());
         console.setFont(new Font("Monospaced", Font.PLAIN, 16));
+        sink = new ConsoleSink(console);
     }
 
     /**
@@ -75,6 +82,13 @@ public final class ConsoleV extends DatavyuDialog {
         return this.console;
     }
 
+    /**
+     * @return The sink that appends to the console, for any thread to write to.
+     */
+    public ConsoleSink getSink() {
+        return sink;
+    }
+
     /**
      * This method is called from within the constructor to
      * initialize the form.
@@ -20,6 +20,7 @@ public class DataviewProgressBar extends JDialog {
     private JProgressBar progressBar;
     private JScrollPane scrollPane1;
     private JTextArea infoTextArea;
+    private Runnable cancelAction;
 
     /**
      * Creates new form DataviewProgressBar
@@ -74,6 +75,13 @@ public class DataviewProgressBar extends JDialog {
         });
     }
 
+    /**
+     * @param cancelAction Run when the user cancels, on the event dispatch thread; null if none.
+     */
+    public void setCancelAction(final Runnable cancelAction) {
+        this.cancelAction = cancelAction;
+    }
+
     public int getProgress() {
         return progress;
     }
@@ -152,6 +160,9 @@ public class DataviewProgressBar extends JDialog {
         infoTextArea.append(String.format("Aborting..."));
         if (isError) {
             close();
+        } else if (cancelAction != null) {
+            cancelButton.setEnabled(false);
+            cancelAction.run();
         }
     }
 
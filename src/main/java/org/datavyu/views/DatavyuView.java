@@ -732,6 +732,16 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
     }
 
 
+    /**
+     * @return A save controller that compresses projects as set in the configuration.
+     */
+    private SaveController createSaveController() {
+        SaveController saveController = new SaveController();
+        saveController.setCompressionLevel(ConfigProperties.getInstance().getSaveCompressionLevel());
+        saveController.setParallelCompression(ConfigProperties.getInstance().getParallelSaveCompression());
+        return saveController;
+    }
+
     public void checkForAutosavedFile() {
         // Check for autosaved file (crash condition)
         try {
@@ -752,11 +762,14 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
                                 "Datavyu has detected an unsaved file. Would you like recover this file ?",
                                 "Datavyu",
                                 JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                            // Apply the edits journaled after the file was saved
+                            AutoSaveJournal.recover(f);
                             openRecoveredFile(f);
                             this.saveAs();
                         }
                         // delete the recovered file
                         f.delete();
+                        AutoSaveJournal.getJournalFile(f).delete();
                     }
                 }
             }
@@ -841,7 +854,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
     public void save() {
 
         try {
-            SaveController saveC = new SaveController();
+            SaveController saveC = createSaveController();
 
             // If the user has not saved before - invoke the saveAs()
             // controller to force the user to nominate a destination file.
@@ -849,7 +862,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
             if (projectController.isNewProject() || (projectController.getProjectName() == null)) {
                 saveAs();
             } else {
-                SaveController saveController = new SaveController();
+                SaveController saveController = createSaveController();
 
                 // Force people to use new
                 if ((projectController.getLastSaveOption() instanceof ShapaFilter)
@@ -971,6 +984,8 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
 
         try{
             ExportDatabaseFileController exportJSON = new ExportDatabaseFileController();
+            exportJSON.setPrettyPrint(ConfigProperties.getInstance().getPrettyPrintJsonExport());
+            exportJSON.setParallel(ConfigProperties.getInstance().getParallelJsonExport());
 
             String dbFileName = fc.getSelectedFile().getPath();
             if (!dbFileName.endsWith(".json")) {
@@ -1049,6 +1064,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
         DatavyuFileChooser fileChooser = new DatavyuFileChooser();
 
         fileChooser.addChoosableFileFilter(CellCsvFilter.INSTANCE);
+        fileChooser.addChoosableFileFilter(CellLongCsvFilter.INSTANCE);
         fileChooser.setFileFilter(CellCsvFilter.INSTANCE);
 
         int result = fileChooser.showSaveDialog(getComponent());
@@ -1077,7 +1093,11 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
             }
             File f = new File(fc.getSelectedFile().getParent(), dbFileName);
 
-            exportC.exportAsCells(dbFileName, projectController.getDataStore());
+            if (fc.getFileFilter() == CellLongCsvFilter.INSTANCE) {
+                exportC.exportAsCellsLong(dbFileName, projectController.getDataStore());
+            } else {
+                exportC.exportAsCells(dbFileName, projectController.getDataStore());
+            }
         } catch (Exception e) {
             logger.error("Failed export to CSV. Error: ", e);
         }
@@ -1091,6 +1111,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
         DatavyuFileChooser fileChooser = new DatavyuFileChooser();
 
         fileChooser.addChoosableFileFilter(FrameCsvFilter.INSTANCE);
+        fileChooser.addChoosableFileFilter(FrameArrowFilter.INSTANCE);
         fileChooser.setFileFilter(FrameCsvFilter.INSTANCE);
 
         int result = fileChooser.showSaveDialog(getComponent());
@@ -1107,9 +1128,11 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
         try {
             ExportDatabaseFileController exportC = new ExportDatabaseFileController();
 
+            boolean arrow = fc.getFileFilter() == FrameArrowFilter.INSTANCE;
+            String extension = arrow ? ".arrows" : ".csv";
             String dbFileName = fc.getSelectedFile().getPath();
-            if (!dbFileName.endsWith(".csv")) {
-                dbFileName = dbFileName.concat(".csv");
+            if (!dbFileName.endsWith(extension)) {
+                dbFileName = dbFileName.concat(extension);
             }
 
             // Only save if the project file does not exists or if the user
@@ -1118,7 +1141,11 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
                 return;
             }
 
-            exportC.exportByFrame(dbFileName, projController.getDataStore());
+            if (arrow) {
+                exportC.exportByFrameAsArrow(dbFileName, projController.getDataStore());
+            } else {
+                exportC.exportByFrame(dbFileName, projController.getDataStore());
+            }
 
         } catch (Exception e) {
             logger.error("Export to CSV by frame failed. Error: ", e);
@@ -1135,7 +1162,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
         projController.updateProject();
 
         try {
-            SaveController saveController = new SaveController();
+            SaveController saveController = createSaveController();
 
             FileFilter filter = fileChooser.getFileFilter();
 
@@ -1229,7 +1256,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
         projectController.updateProject();
 
         try {
-            SaveController saveController = new SaveController();
+            SaveController saveController = createSaveController();
 
             FileFilter filter = fc.getFileFilter();
 
@@ -1467,6 +1494,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
 
         // Set the database to the freshly loaded database.
         OpenController openController = new OpenController();
+        openController.setLazyLoading(ConfigProperties.getInstance().getUseLazyCellLoading());
         openController.openDataStore(databaseFile);
 
         // Make a project for the new database.
@@ -1478,6 +1506,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
 
     private OpenController openProject(final File projectFile) {
         OpenController openController = new OpenController();
+        openController.setLazyLoading(ConfigProperties.getInstance().getUseLazyCellLoading());
         openController.openProject(projectFile);
 
         // Check to make sure that this project file isn't already open
@@ -1678,12 +1707,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
     @Action
     public void runScript() {
         try {
-            RunScriptController scriptC = new RunScriptController(Datavyu.getView().getFrame());
-            // record the effect
-            UndoableEdit edit = new RunScriptEdit(scriptC.getScriptFilePath());
-            // notify the listeners
-            Datavyu.getView().getUndoSupport().postEdit(edit);
-            scriptC.execute();
+            startScript(new RunScriptController(Datavyu.getView().getFrame()));
         } catch (IOException e) {
             logger.error("Unable run script", e);
         }
@@ -1692,17 +1716,31 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
     public void runScript(File scriptFile) {
         logger.info("Running script: " + scriptFile.getAbsolutePath());
         try {
-            RunScriptController scriptC = new RunScriptController(scriptFile);
-            // record the effect
-            UndoableEdit edit = new RunScriptEdit(scriptC.getScriptFilePath());
-            // notify the listeners
-            Datavyu.getView().getUndoSupport().postEdit(edit);
-            scriptC.execute();
+            startScript(new RunScriptController(scriptFile));
         } catch (IOException e) {
             logger.error("Unable run script", e);
         }
     }
 
+    /**
+     * Starts a script and posts its effect as one undoable edit once it has run; scripts on snapshots post it when
+     * their changes are merged. A script that was cancelled rolls back its changes itself and leaves no edit.
+     *
+     * @param scriptC The controller of the script.
+     */
+    private void startScript(final RunScriptController scriptC) {
+        scriptC.addPropertyChangeListener(evt -> {
+            if ("state".equals(evt.getPropertyName()) && evt.getNewValue() == SwingWorker.StateValue.DONE) {
+                RunScriptEdit edit = scriptC.getScriptEdit();
+                if (edit != null) {
+                    // notify the listeners
+                    getUndoSupport().postEdit(edit);
+                }
+            }
+        });
+        scriptC.execute();
+    }
+
     /**
      * Action for setting the favourites folder
      */
@@ -2766,13 +2804,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
     private void runRecentScript(final ActionEvent evt) {
 
         try {
-            // record the effect
-            UndoableEdit edit = new RunScriptEdit(evt.getActionCommand());
-            RunScriptController scriptC = new RunScriptController(evt.getActionCommand());
-
-            // notify the listeners
-            Datavyu.getView().getUndoSupport().postEdit(edit);
-            scriptC.execute();
+            startScript(new RunScriptController(evt.getActionCommand()));
         } catch (IOException e) {
             logger.error("Unable to run recent script", e);
         }
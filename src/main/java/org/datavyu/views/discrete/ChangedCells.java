@@ -0,0 +1,94 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete;
+
+import org.datavyu.models.db.Cell;
+import org.datavyu.models.db.DataStoreChangeListener;
+import org.datavyu.models.db.Variable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Notes the cells whose values changed in the data store since the spreadsheet
+ * was last redrawn, so that a redraw only touches those.
+ *
+ * Scripts change the data store on their own thread, so changes may be noted
+ * on any thread.
+ */
+final class ChangedCells implements DataStoreChangeListener {
+
+    /** Cells whose values changed */
+    private final Set<Cell> cells = ConcurrentHashMap.newKeySet();
+
+    /** Variables whose arguments changed, so that all their cells need to be redrawn */
+    private final Set<Variable> variables = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return The cells whose values changed since they were last taken.
+     */
+    List<Cell> takeCells() {
+        return take(cells);
+    }
+
+    /**
+     * @return The variables whose cells all changed since they were last taken.
+     */
+    List<Variable> takeVariables() {
+        return take(variables);
+    }
+
+    private static <T> List<T> take(final Set<T> changed) {
+        List<T> result = new ArrayList<>();
+        for (Iterator<T> it = changed.iterator(); it.hasNext(); ) {
+            result.add(it.next());
+            it.remove();
+        }
+        return result;
+    }
+
+    @Override
+    public void cellInserted(final Cell cell) { }
+
+    @Override
+    public void cellRemoved(final Cell cell) {
+        cells.remove(cell);
+    }
+
+    @Override
+    public void onsetChanged(final Cell cell, final long oldOnset, final long newOnset) { }
+
+    @Override
+    public void offsetChanged(final Cell cell, final long oldOffset, final long newOffset) { }
+
+    @Override
+    public void valueChanged(final Cell cell, final int argumentIndex, final String oldValue, final String newValue) {
+        cells.add(cell);
+    }
+
+    @Override
+    public void cellsLoaded(final Variable variable) { }
+
+    @Override
+    public void argumentsChanging(final Variable variable) {
+        variables.add(variable);
+    }
+
+    @Override
+    public void variableChanged(final Variable variable) { }
+}
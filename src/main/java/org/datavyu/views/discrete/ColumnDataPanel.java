@@ -19,6 +19,7 @@ import org.apache.logging.log4j.Logger;
 import org.datavyu.models.db.Cell;
 import org.datavyu.models.db.DataStore;
 import org.datavyu.models.db.Variable;
+import org.datavyu.util.ConfigProperties;
 import org.datavyu.util.Constants;
 
 import javax.swing.*;
@@ -28,13 +29,20 @@ import java.util.*;
 import java.util.List;
 
 /**
- * ColumnDataPanel panel that contains the SpreadsheetCell panels.
+ * ColumnDataPanel panel that contains the SpreadsheetCell panels. When the
+ * spreadsheet is virtualized only the cells in view are added to the panel
+ * and get components to show them; the components of cells that leave the
+ * view are reused for the cells that come into it.
  */
 public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher {
     /**
      * The logger for this class.
      */
     private static final Logger logger = LogManager.getLogger(ColumnDataPanel.class);
+    /**
+     * Pixels above and below the view in which cells are shown as well, so that scrolling finds them ready.
+     */
+    private static final int OVERSCAN = 300;
     /**
      * Width of the column.
      */
@@ -59,6 +67,42 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
      * The mapping between the database and the spreadsheet cells.
      */
     private Map<Cell, SpreadsheetCell> viewMap;
+    /**
+     * True once the spreadsheet cells have been built for the variable.
+     */
+    private boolean cellsBuilt = false;
+    /**
+     * True if only the cells in view are shown.
+     */
+    private final boolean virtualized;
+    /**
+     * The cells that are shown.
+     */
+    private final Set<SpreadsheetCell> shownCells = new HashSet<>();
+    /**
+     * Components of cells that left the view, ready to show other cells.
+     */
+    private final Deque<SpreadsheetCellPanel> unusedPanels = new ArrayDeque<>();
+    /**
+     * The cells in temporal order, null if cells were added, removed or moved since they were ordered.
+     */
+    private List<SpreadsheetCell> temporalCells;
+    /**
+     * Counts the times cells were added, removed or moved in time.
+     */
+    private int cellsVersion;
+    /**
+     * Height of the tallest cell placed in the column.
+     */
+    private int tallestCell;
+    /**
+     * Earliest onset of the cells that changed since the column was last laid out, Long.MAX_VALUE if none did.
+     */
+    private long changedFrom = Long.MIN_VALUE;
+    /**
+     * Height of a cell that has not been shown yet, -1 until it has been measured.
+     */
+    private int estimatedCellHeight = -1;
     /**
      * button for creating a new empty cell.
      */
@@ -90,6 +134,7 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
         viewMap = new HashMap<>();
         cellSelectionL = cellSelL;
         model = variable;
+        virtualized = ConfigProperties.getInstance().getVirtualizeSpreadsheet();
 
         setLayout(null);
         setBorder(BorderFactory.createMatteBorder(0, 0, 0, Constants.BORDER_SIZE,
@@ -104,8 +149,25 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
                 new Color(175, 175, 175)));
         this.add(padding);
 
-        // Populate the data column with spreadsheet cells.
-        buildDataPanelCells(column, variable, cellSelL);
+        // Populate the data column with spreadsheet cells. The cells of a hidden variable that have not been
+        // loaded yet are built once the column is shown.
+        if (variable.isHidden() && variable.getCellLoader() != null) {
+            this.setSize(columnWidth, columnHeight);
+        } else {
+            buildDataPanelCells(column, variable, cellSelL);
+        }
+    }
+
+    /**
+     * Builds the spreadsheet cells if they were deferred while the column was hidden.
+     *
+     * @param column The column containing the cells
+     */
+    public void buildCells(final SpreadsheetColumn column) {
+        if (!cellsBuilt) {
+            buildDataPanelCells(column, model, cellSelectionL);
+            revalidate();
+        }
     }
 
     /**
@@ -134,20 +196,25 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
      */
     private void buildDataPanelCells(final SpreadsheetColumn column, final Variable variable,
                                      final CellSelectionListener cellSelL) {
+        cellsBuilt = true;
+        changedFrom = Long.MIN_VALUE;
+        cellsVersion++;
 
         // traverse and build the cells
         for (Cell cell : variable.getCellsTemporally()) {
-            SpreadsheetCell sc = new SpreadsheetCell(column, cell, cellSelL);
+            SpreadsheetCell sc = new SpreadsheetCell(this, column, cell, cellSelL);
             cell.addListener(sc);
 
-            // add cell to the JPanel
-            this.add(sc);
-
-            // and add it to our reference list
+            // add it to our reference list
             cells.add(sc);
 
             // Add the Identifier's to the mapping.
             viewMap.put(cell, sc);
+
+            // add cell to the JPanel, a virtualized column does so once it is in view
+            if (!virtualized) {
+                showCell(sc);
+            }
             columnHeight += sc.getHeight();
         }
 
@@ -161,11 +228,18 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
     public void clear() {
         for (SpreadsheetCell cell : cells) {
             cell.getCell().removeListener(cell);
-            this.remove(cell);
+        }
+        for (SpreadsheetCell cell : shownCells) {
+            hideCell(cell);
         }
 
         cells.clear();
         viewMap.clear();
+        shownCells.clear();
+        temporalCells = null;
+        cellsVersion++;
+        tallestCell = 0;
+        changedFrom = Long.MIN_VALUE;
     }
 
     /**
@@ -174,11 +248,17 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
      * @param cell The cell to find and delete from the column data panel.
      */
     public void deleteCell(final Cell cell) {
+        if (!cellsBuilt) {
+            return;
+        }
         SpreadsheetCell sCell = viewMap.get(cell);
         cell.removeListener(sCell);
-        this.remove(sCell);
+        if (shownCells.remove(sCell)) {
+            hideCell(sCell);
+        }
         cells.remove(sCell);
         viewMap.remove(cell);
+        cellMoved(cell.getOnset());
     }
 
     /**
@@ -191,19 +271,172 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
      *                 selection.
      */
     public void insertCell(final SpreadsheetColumn column, final Cell cell, final CellSelectionListener cellSelL) {
+        if (!cellsBuilt) {
+            return;
+        }
 
-        SpreadsheetCell nCell = new SpreadsheetCell(column, cell, cellSelL);
+        SpreadsheetCell nCell = new SpreadsheetCell(this, column, cell, cellSelL);
         nCell.setWidth(this.getWidth());
         cell.addListener(nCell);
 //        cellSelectionL.clearColumnSelection();
 
         nCell.setAlignmentX(Component.RIGHT_ALIGNMENT);
-        this.add(nCell);
         this.cells.add(nCell);
         viewMap.put(cell, nCell);
+        cellMoved(cell.getOnset());
+        showCell(nCell);
         nCell.requestFocus();
     }
 
+    /**
+     * Attaches components to a cell and adds it to the panel, reusing the
+     * components of a cell that left the view if there is one.
+     *
+     * @param sc The cell to show.
+     */
+    void showCell(final SpreadsheetCell sc) {
+        if (sc.isMaterialized()) {
+            return;
+        }
+        int estimate = virtualized ? sc.getPreferredSize().height : 0;
+        SpreadsheetCellPanel panel = unusedPanels.poll();
+        sc.attachPanel(panel != null ? panel : new SpreadsheetCellPanel(sc.getCell()));
+        this.add(sc);
+        shownCells.add(sc);
+
+        // Lay out again if the cell turned out to be larger or smaller than assumed.
+        if (virtualized) {
+            estimatedCellHeight = sc.getPreferredSize().height;
+            if (estimatedCellHeight != estimate) {
+                cellChanged(sc.getOnsetTicks());
+                revalidate();
+            }
+        }
+    }
+
+    /**
+     * Takes the components from a cell and removes it from the panel.
+     *
+     * @param sc The cell to hide.
+     */
+    private void hideCell(final SpreadsheetCell sc) {
+        unusedPanels.push(sc.detachPanel());
+        this.remove(sc);
+    }
+
+    /**
+     * @return The height assumed for cells that have not been shown yet.
+     */
+    int getEstimatedCellHeight() {
+        if (estimatedCellHeight < 0 && !cells.isEmpty()) {
+            SpreadsheetCellPanel panel = new SpreadsheetCellPanel(cells.get(0).getCell());
+            estimatedCellHeight = panel.getPreferredSize().height;
+            unusedPanels.push(panel);
+        }
+        return Math.max(estimatedCellHeight, 0);
+    }
+
+    /**
+     * Notes the height a cell was placed with.
+     *
+     * @param height The height of the cell.
+     */
+    void cellPlaced(final int height) {
+        tallestCell = Math.max(tallestCell, height);
+    }
+
+    /**
+     * Notes that the size of a cell may have changed, so that the layout
+     * places the cells from its onset on again.
+     *
+     * @param onset The onset of the cell.
+     */
+    void cellChanged(final long onset) {
+        changedFrom = Math.min(changedFrom, onset);
+    }
+
+    /**
+     * Notes that a cell was added, removed or moved in time, so that the
+     * cells are ordered again.
+     *
+     * @param onset The earliest onset the cell had.
+     */
+    void cellMoved(final long onset) {
+        temporalCells = null;
+        cellsVersion++;
+        cellChanged(onset);
+    }
+
+    /**
+     * @return A number that changes whenever cells are added, removed or moved
+     * in time.
+     */
+    int getCellsVersion() {
+        return cellsVersion;
+    }
+
+    /**
+     * Gets the earliest onset of the cells that changed since the column was
+     * last laid out and starts noting changes afresh.
+     *
+     * @return The earliest onset, Long.MIN_VALUE if the whole column changed or
+     * Long.MAX_VALUE if nothing did.
+     */
+    public long takeChangedFrom() {
+        long from = changedFrom;
+        changedFrom = Long.MAX_VALUE;
+        return from;
+    }
+
+    /**
+     * Shows the cells in view or close to it and hides those that left the
+     * view, except for the cell with the focus. Does nothing unless the
+     * spreadsheet is virtualized.
+     *
+     * @param viewport The viewport of the spreadsheet.
+     */
+    public void showCellsInView(final JViewport viewport) {
+        if (!virtualized || !cellsBuilt || viewport.getView() == null) {
+            return;
+        }
+        Rectangle area = SwingUtilities.convertRectangle(viewport.getView(), viewport.getViewRect(), this);
+        int top = area.y - OVERSCAN;
+        int bottom = area.y + area.height + OVERSCAN;
+        boolean inView = isVisible() && area.height > 0;
+
+        for (Iterator<SpreadsheetCell> it = shownCells.iterator(); it.hasNext(); ) {
+            SpreadsheetCell sc = it.next();
+            boolean near = sc.getY() <= bottom && sc.getY() + sc.getHeight() >= top;
+            if (!(inView && near) && !sc.isFocusOwner()) {
+                it.remove();
+                hideCell(sc);
+            }
+        }
+        if (!inView) {
+            return;
+        }
+
+        // The cells are laid out top to bottom in temporal order, so the first
+        // one near the view starts at most the tallest cell above it.
+        List<SpreadsheetCell> ordered = getCellsTemporally();
+        int low = 0;
+        int high = ordered.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ordered.get(mid).getY() < top - tallestCell) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < ordered.size() && ordered.get(i).getY() <= bottom; i++) {
+            SpreadsheetCell sc = ordered.get(i);
+            if (sc.getY() + sc.getHeight() >= top) {
+                showCell(sc);
+            }
+        }
+    }
+
     /**
      * Set the width of the SpreadsheetCell.
      *
@@ -236,25 +469,60 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
         return this.padding;
     }
 
+    /**
+     * Brings cells up to date with their values in the data store. Cells out
+     * of view only forget their size, they are brought up to date once shown.
+     *
+     * @param changed The cells of the column that changed.
+     */
+    void redrawCells(final Collection<Cell> changed) {
+        for (Cell cell : changed) {
+            SpreadsheetCell sc = viewMap.get(cell);
+            if (sc != null) {
+                sc.valueChange(cell.getCellValue());
+                sc.updateSelectionDisplay();
+            }
+        }
+    }
+
+    /**
+     * Shows the borders and highlighting of the cells in view afresh.
+     */
+    void restyleShownCells() {
+        for (SpreadsheetCell sc : shownCells) {
+            sc.updateSelectionDisplay();
+        }
+    }
+
     public SpreadsheetCell getCellTemporally(final int index) {
+        if (!cellsBuilt) {
+            return null;
+        }
         return viewMap.get(model.getCellTemporally(index));
     }
 
     /**
-     * @return The SpreadsheetCells in this column temporally.
+     * @return The SpreadsheetCells in this column temporally. The cells are
+     * only ordered again once they were added, removed or moved in time.
      */
     public List<SpreadsheetCell> getCellsTemporally() {
-        ArrayList<SpreadsheetCell> result = new ArrayList<>();
+        if (!cellsBuilt) {
+            return new ArrayList<>();
+        }
 
-        int ord = 1;
-        for (Cell c : model.getCellsTemporally()) {
-            SpreadsheetCell sc = viewMap.get(c);
-            if (sc != null) {
-                sc.setOrdinal(ord++);
-                result.add(sc);
+        if (temporalCells == null) {
+            List<SpreadsheetCell> result = new ArrayList<>();
+            int ord = 1;
+            for (Cell c : model.getCellsTemporally()) {
+                SpreadsheetCell sc = viewMap.get(c);
+                if (sc != null) {
+                    sc.setOrdinal(ord++);
+                    result.add(sc);
+                }
             }
+            temporalCells = result;
         }
-        return result;
+        return Collections.unmodifiableList(temporalCells);
     }
 
     /**
@@ -0,0 +1,295 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete;
+
+import org.datavyu.Datavyu;
+import org.datavyu.models.db.Cell;
+import org.datavyu.util.ClockTimer;
+import org.datavyu.util.ClockTimer.ClockListener;
+import org.datavyu.views.VideoController;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Highlights the cells of a spreadsheet relative to the playback time.
+ *
+ * A cell only changes its highlight when the time crosses its onset or its
+ * end, so on every clock update the highlighter looks up the cells whose onset
+ * or end lies between the previous and the current time in a temporal index
+ * of each column and updates just those.
+ */
+final class PlaybackHighlighter implements ClockListener {
+
+    /**
+     * Where a cell lies relative to the playback time.
+     */
+    enum State {
+        /** The time is past the onset and offset of the cell. */
+        PAST,
+        /** The time lies between the onset and offset of the cell. */
+        CURRENT,
+        /** The time has not reached the cell yet. */
+        FUTURE
+    }
+
+    /**
+     * The spreadsheet whose cells are highlighted.
+     */
+    private final SpreadSheetPanel spreadsheet;
+    /**
+     * Temporal index of each column, rebuilt once the cells of the column moved.
+     */
+    private final Map<ColumnDataPanel, TemporalIndex> indices = new HashMap<>();
+    /**
+     * Set while an update waits to run on the event dispatch thread.
+     */
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+    /**
+     * The clock the highlighter listens to, null while it does not.
+     */
+    private ClockTimer clock;
+    /**
+     * The latest time reported by the clock.
+     */
+    private volatile long clockTime;
+    /**
+     * The time the cells were last highlighted for, null if they need to be
+     * highlighted afresh because highlighting was off.
+     */
+    private Long highlightedTime;
+
+    PlaybackHighlighter(final SpreadSheetPanel spreadsheet) {
+        this.spreadsheet = spreadsheet;
+    }
+
+    /**
+     * @param cell The cell to locate.
+     * @param time The playback time in milliseconds.
+     * @return Where the cell lies relative to the time.
+     */
+    static State stateAt(final Cell cell, final long time) {
+        if (cell.isPastTimeWindow(time)) {
+            return State.PAST;
+        } else if (cell.isInTimeWindow(time)) {
+            return State.CURRENT;
+        }
+        return State.FUTURE;
+    }
+
+    /**
+     * Starts highlighting the cells as the given clock runs.
+     *
+     * @param clockTimer The clock of the video controller.
+     */
+    void start(final ClockTimer clockTimer) {
+        stop();
+        clock = clockTimer;
+        clock.registerListener(this);
+    }
+
+    /**
+     * Stops listening to the clock.
+     */
+    void stop() {
+        if (clock != null) {
+            clock.unRegisterListener(this);
+            clock = null;
+        }
+    }
+
+    /**
+     * Hands the time over to the event dispatch thread, clock updates that
+     * arrive before it got to the previous one are folded into a single update.
+     */
+    private void scheduleUpdate(final double time) {
+        clockTime = (long) time;
+        if (!updatePending.getAndSet(true)) {
+            SwingUtilities.invokeLater(() -> {
+                updatePending.set(false);
+                update(clockTime);
+            });
+        }
+    }
+
+    /**
+     * Brings the highlights of the cells up to date with the given time.
+     *
+     * @param time The playback time in milliseconds.
+     */
+    private void update(final long time) {
+        VideoController videoController = Datavyu.getVideoController();
+        if (!videoController.getCellHighlighting() && !videoController.getCellHighlightAndFocus()) {
+            highlightedTime = null;
+            return;
+        }
+
+        Set<ColumnDataPanel> visible = new HashSet<>();
+        for (SpreadsheetColumn column : spreadsheet.getVisibleColumns()) {
+            ColumnDataPanel dataPanel = column.getDataPanel();
+            visible.add(dataPanel);
+            TemporalIndex index = indices.get(dataPanel);
+            if (index == null || index.version != dataPanel.getCellsVersion()) {
+                // The cells moved, so the index and their highlights are stale.
+                index = new TemporalIndex(dataPanel);
+                indices.put(dataPanel, index);
+                highlightAll(index, time);
+            } else if (highlightedTime == null) {
+                highlightAll(index, time);
+            } else if (time != highlightedTime) {
+                index.forEachCrossed(highlightedTime, time, cell -> highlight(cell, time));
+            }
+        }
+        indices.keySet().retainAll(visible);
+        highlightedTime = time;
+    }
+
+    /**
+     * Highlights all the cells of a column for the given time.
+     */
+    private static void highlightAll(final TemporalIndex index, final long time) {
+        for (SpreadsheetCell cell : index.byOnset) {
+            highlight(cell, time);
+        }
+    }
+
+    /**
+     * Highlights a cell for the given time, cells out of view are highlighted
+     * once they are shown.
+     */
+    private static void highlight(final SpreadsheetCell cell, final long time) {
+        if (cell.isMaterialized()) {
+            cell.setPlaybackState(stateAt(cell.getCell(), time));
+        }
+    }
+
+    /**
+     * @return The index of the first value greater than or equal to the key.
+     */
+    static int lowerBound(final long[] values, final long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The index of the first value greater than the key.
+     */
+    static int upperBound(final long[] values, final long key) {
+        return key == Long.MAX_VALUE ? values.length : lowerBound(values, key + 1);
+    }
+
+    /**
+     * The cells of a column ordered by onset and by end, the later of their
+     * onset and offset.
+     */
+    static final class TemporalIndex {
+        final int version;
+        final SpreadsheetCell[] byOnset;
+        final long[] onsets;
+        final SpreadsheetCell[] byEnd;
+        final long[] ends;
+
+        TemporalIndex(final ColumnDataPanel dataPanel) {
+            version = dataPanel.getCellsVersion();
+            List<SpreadsheetCell> cells = dataPanel.getCellsTemporally();
+            byOnset = cells.toArray(new SpreadsheetCell[0]);
+            onsets = new long[byOnset.length];
+            for (int i = 0; i < byOnset.length; i++) {
+                onsets[i] = byOnset[i].getCell().getOnset();
+            }
+
+            byEnd = byOnset.clone();
+            Arrays.sort(byEnd, Comparator.comparingLong(TemporalIndex::end));
+            ends = new long[byEnd.length];
+            for (int i = 0; i < byEnd.length; i++) {
+                ends[i] = end(byEnd[i]);
+            }
+        }
+
+        /**
+         * Passes on the cells whose onset or end lies between two times, the
+         * only cells that can lie differently relative to the two times.
+         *
+         * @param previous The time the cells were highlighted for.
+         * @param time     The time to highlight the cells for.
+         * @param action   What to do with each of these cells.
+         */
+        void forEachCrossed(final long previous, final long time, final Consumer<SpreadsheetCell> action) {
+            long from = Math.min(time, previous);
+            long to = Math.max(time, previous);
+
+            // Cells whose onset was passed start or stop being current,
+            // cells whose end was passed become past or current again.
+            for (int i = upperBound(onsets, from); i < upperBound(onsets, to); i++) {
+                action.accept(byOnset[i]);
+            }
+            for (int i = lowerBound(ends, from); i < lowerBound(ends, to); i++) {
+                action.accept(byEnd[i]);
+            }
+        }
+
+        private static long end(final SpreadsheetCell cell) {
+            return Math.max(cell.getCell().getOnset(), cell.getCell().getOffset());
+        }
+    }
+
+    @Override
+    public void clockForceSync(final double clockTime) {
+        scheduleUpdate(clockTime);
+    }
+
+    @Override
+    public void clockPeriodicSync(final double clockTime) {
+        scheduleUpdate(clockTime);
+    }
+
+    @Override
+    public void clockStop(final double clockTime) { }
+
+    @Override
+    public void clockPause(final double clockTime) { }
+
+    @Override
+    public void clockStart(final double clockTime) { }
+
+    @Override
+    public void clockRate(final float rate) { }
+
+    @Override
+    public void clockBoundaryCheck(final double clockTime) { }
+
+    @Override
+    public void streamsBoundaryCheck(final double clockTime) { }
+
+    @Override
+    public void clockSeekPlayback(final double clockTime) { }
+}
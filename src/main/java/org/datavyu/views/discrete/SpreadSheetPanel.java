@@ -51,8 +51,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 import javax.swing.text.BadLocationException;
@@ -121,6 +123,15 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
     /** Drop down menu for hidden columns */
     private JPopupMenu dropdown = new JPopupMenu();
 
+    /** Highlights the cells as the video plays */
+    private final PlaybackHighlighter highlighter = new PlaybackHighlighter(this);
+
+    /** Cells whose values changed since the spreadsheet was last redrawn */
+    private final ChangedCells changedCells = new ChangedCells();
+
+    /** True while the spreadsheet listens to events */
+    private boolean listenersRegistered;
+
     public SpreadSheetPanel(final ProjectController projectController, DataviewProgressBar progressBar) {
         setName(this.getClass().getSimpleName());
         setLayout(new BorderLayout());
@@ -141,6 +152,13 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
         scrollPane.setViewportView(mainView);
         scrollPane.setColumnHeaderView(headerView);
 
+        // Show the cells that are scrolled into view.
+        scrollPane.getViewport().addChangeListener(e -> {
+            for (SpreadsheetColumn col : columns) {
+                col.getDataPanel().showCellsInView(scrollPane.getViewport());
+            }
+        });
+
 
         // Default layout is ordinal.
         setLayoutType(SheetLayoutType.Ordinal);
@@ -249,14 +267,46 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
         hiddenVariablesSpacerLabel.setText(hiddenVariablesButton.getText());
     }
 
+    /**
+     * Redraws the cells whose values changed in the data store since the
+     * spreadsheet was last redrawn.
+     */
     public void redrawCells() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(this::redrawCells);
+            return;
+        }
+
+        Map<Variable, ColumnDataPanel> dataPanels = new HashMap<>();
         for (SpreadsheetColumn col : getColumns()) {
-            for (SpreadsheetCell cell : col.getCells()) {
-                cell.valueChange(cell.getCell().getCellValue());
-                cell.updateSelectionDisplay();
+            dataPanels.put(col.getVariable(), col.getDataPanel());
+        }
+
+        for (Variable variable : changedCells.takeVariables()) {
+            ColumnDataPanel dataPanel = dataPanels.remove(variable);
+            if (dataPanel != null) {
+                dataPanel.redrawCells(variable.getCells());
             }
         }
 
+        Map<Variable, List<Cell>> changed = changedCells.takeCells().stream()
+                .collect(Collectors.groupingBy(Cell::getVariable));
+        for (Map.Entry<Variable, List<Cell>> entry : changed.entrySet()) {
+            ColumnDataPanel dataPanel = dataPanels.get(entry.getKey());
+            if (dataPanel != null) {
+                dataPanel.redrawCells(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Shows the borders and highlighting of the cells in view afresh, for
+     * display settings that are not part of the data store.
+     */
+    public void restyleCells() {
+        for (SpreadsheetColumn col : getColumns()) {
+            col.getDataPanel().restyleShownCells();
+        }
     }
 
     /**
@@ -275,6 +325,9 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
 
     public void setVideoController(VideoController videoController) {
         this.videoController = videoController;
+        if (listenersRegistered) {
+            highlighter.start(videoController.getClockTimer());
+        }
     }
 
     /**
@@ -284,6 +337,10 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
     public void registerListeners() {
         KeyboardFocusManager m = KeyboardFocusManager.getCurrentKeyboardFocusManager();
         m.addKeyEventDispatcher(this);
+        listenersRegistered = true;
+        if (videoController != null) {
+            highlighter.start(videoController.getClockTimer());
+        }
     }
 
     /**
@@ -293,6 +350,8 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
     public void deregisterListeners() {
         KeyboardFocusManager m = KeyboardFocusManager.getCurrentKeyboardFocusManager();
         m.removeKeyEventDispatcher(this);
+        listenersRegistered = false;
+        highlighter.stop();
     }
 
     /**
@@ -423,11 +482,14 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
         // check if we need to deregister any existing listeners.
         if ((dataStore != null) && (dataStore != db)) {
             dataStore.removeListener(this);
+            dataStore.removeChangeListener(changedCells);
         }
 
         // set the database
         dataStore = db;
         dataStore.addListener(this);
+        dataStore.removeChangeListener(changedCells);
+        dataStore.addChangeListener(changedCells);
 
         // setName to remember screen locations
         setName(db.getName());
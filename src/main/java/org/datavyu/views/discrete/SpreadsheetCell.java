@@ -20,13 +20,10 @@ import org.datavyu.Datavyu;
 import org.datavyu.models.db.Cell;
 import org.datavyu.models.db.CellListener;
 import org.datavyu.models.db.CellValue;
-import org.datavyu.util.ClockTimer;
 import org.datavyu.util.ConfigProperties;
+import org.datavyu.views.VideoController;
 import org.datavyu.views.discrete.datavalues.MatrixRootView;
-import org.datavyu.views.discrete.datavalues.TimeStampDataValueEditor.TimeStampSource;
 import org.datavyu.views.discrete.datavalues.TimeStampTextField;
-import org.jdesktop.application.Application;
-import org.jdesktop.application.ResourceMap;
 
 import javax.swing.*;
 import javax.swing.Box.Filler;
@@ -40,10 +37,12 @@ import java.util.List;
 
 
 /**
- * Visual representation of a spreadsheet cell.
+ * Visual representation of a spreadsheet cell. The components that show the
+ * cell are only attached while it is in view of a virtualized column, out of
+ * view the cell just keeps its bounds for the layout.
  */
 public class SpreadsheetCell extends JPanel
-        implements MouseListener, FocusListener, CellListener, ClockTimer.ClockListener {
+        implements MouseListener, FocusListener, CellListener {
 
     /**
      * Border to use if cell overlaps with another.
@@ -56,9 +55,9 @@ public class SpreadsheetCell extends JPanel
                             3, 0, 3, ConfigProperties.getInstance().getSpreadSheetBackgroundColor()));
 
     /**
-     * Width of spacer between onset and offset timestamps.
+     * Default width of a cell.
      */
-    private static final int TIME_SPACER = 5;
+    private static final int DEFAULT_WIDTH = 229;
     /**
      * Border to use when a cell is highlighted.
      */
@@ -90,7 +89,7 @@ public class SpreadsheetCell extends JPanel
     /**
      * Border to use for normal cell. No extra information to show.
      */
-    private static final Border NORMAL_BORDER = new CompoundBorder(
+    static final Border NORMAL_BORDER = new CompoundBorder(
             new CompoundBorder(
                     new MatteBorder(1, 0, 1, 0, ConfigProperties.DEFAULT_BORDER_COLOUR),
                     new MatteBorder(0, 0, 3, 0, ConfigProperties.getInstance().getSpreadSheetBackgroundColor())),
@@ -100,42 +99,66 @@ public class SpreadsheetCell extends JPanel
      * The logger for this class.
      */
     private static Logger logger = LogManager.getLogger(SpreadsheetCell.class);
+    /**
+     * Number of preferred sizes of cells taken from their cache.
+     */
+    private static long sizeCacheHits = 0;
+    /**
+     * Number of preferred sizes of cells that had to be measured.
+     */
+    private static long sizeCacheMisses = 0;
     boolean isLaid = false;
     private boolean brandNew;
     /**
-     * The panel that displays the cell.
+     * The panel that displays the cell, null while the cell is out of view.
      */
-    private JPanel cellPanel;
+    private SpreadsheetCellPanel cellPanel;
     /**
-     * A panel for holding the header to the cell.
+     * The column data panel that holds this cell and lends it its components.
      */
-    private JPanel topPanel;
+    private final ColumnDataPanel columnPanel;
     /**
-     * A panel for holding the value of the cell.
+     * The ordinal of the cell.
      */
-    private MatrixRootView dataPanel;
+    private int ordinal;
     /**
-     * The Ordinal display component.
+     * The width of the cell.
      */
-    private JLabel ord;
-    private Color timeHighlightColor = new Color(116, 242, 190);
-    private Color pastTimeHighlightColor = new Color(247, 153, 153);
+    private int width = DEFAULT_WIDTH;
     /**
-     * The Onset display component.
+     * The preferred size of the cell as last measured, null if it has to be measured again.
      */
-    private TimeStampTextField onset;
+    private Dimension preferredSize;
     /**
-     * The Offset display component.
+     * The value text the preferred size was measured with.
      */
-    private TimeStampTextField offset;
+    private String sizedText;
     /**
-     * The cell that this SpreadsheetCell represents.
+     * The data font the preferred size was measured with.
      */
-    private Cell model;
+    private Font sizedFont;
+    /**
+     * The width the value wrapped to when the preferred size was measured.
+     */
+    private int sizedWidth;
+    /**
+     * The border the preferred size was measured with, highlighted borders differ in height.
+     */
+    private Border sizedBorder;
+    /**
+     * The onset of the cell as last reported to its column.
+     */
+    private long knownOnset;
+    private Color timeHighlightColor = new Color(116, 242, 190);
+    private Color pastTimeHighlightColor = new Color(247, 153, 153);
+    /**
+     * Where the cell lies relative to the playback time, null until highlighted.
+     */
+    private PlaybackHighlighter.State playbackState;
     /**
-     * Component that sets the width of the cell.
+     * The cell that this SpreadsheetCell represents.
      */
-    private Filler stretcher;
+    private Cell model;
     /**
      * strut creates the gap between this cell and the previous cell.
      */
@@ -156,106 +179,80 @@ public class SpreadsheetCell extends JPanel
 
     private final SpreadsheetColumn parentColumn;
 
-    public SpreadsheetCell(final SpreadsheetColumn parentColumn,
+    public SpreadsheetCell(final ColumnDataPanel columnPanel,
+                           final SpreadsheetColumn parentColumn,
                            final Cell cell,
                            final CellSelectionListener listener) {
 
+        this.columnPanel = columnPanel;
         this.parentColumn = parentColumn;
         model = cell;
+        knownOnset = cell.getOnset();
         setName(this.getClass().getSimpleName());
 
-        ResourceMap rMap = Application.getInstance(Datavyu.class).getContext()
-                .getResourceMap(SpreadsheetCell.class);
-
         // Check the selected state of the datacell
         // If it is already selected in the database, we need to inform
         // the selector, but not trigger a selection change or deselect others.
         cellSelL = listener;
 
-        cellPanel = new JPanel();
-        cellPanel.addMouseListener(this);
-        strut = new Filler(new Dimension(0, 0),
-                new Dimension(0, 0),
-                new Dimension(Short.MAX_VALUE, 0));
-
         setLayout(new BorderLayout());
-        this.add(strut, BorderLayout.NORTH);
-        this.add(cellPanel, BorderLayout.CENTER);
-
-        // Build components used for the spreadsheet cell.
-        topPanel = new JPanel();
-        topPanel.addMouseListener(this);
-        ord = new JLabel();
-        ord.setFont(ConfigProperties.getInstance().getSpreadSheetLabelFont());
-        ord.setForeground(ConfigProperties.getInstance().getSpreadSheetOrdinalForegroundColor());
-        ord.setToolTipText(rMap.getString("ord.tooltip"));
-        ord.addMouseListener(this);
-        ord.setFocusable(true);
-
-        onset = new TimeStampTextField(model, TimeStampSource.Onset);
-        onset.setFont(ConfigProperties.getInstance().getSpreadSheetLabelFont());
-        onset.setForeground(ConfigProperties.getInstance().getSpreadSheetTimeStampForegroundColor());
-        onset.setToolTipText(rMap.getString("onset.tooltip"));
-        onset.addFocusListener(this);
-        onset.addMouseListener(this);
-        onset.setName("onsetTextField");
-
-        offset = new TimeStampTextField(model, TimeStampSource.Offset);
-        offset.setFont(ConfigProperties.getInstance().getSpreadSheetLabelFont());
-        offset.setForeground(ConfigProperties.getInstance().getSpreadSheetTimeStampForegroundColor());
-        offset.setToolTipText(rMap.getString("offset.tooltip"));
-        offset.addFocusListener(this);
-        offset.addMouseListener(this);
-        offset.setName("offsetTextField");
-
-        dataPanel = new MatrixRootView(model, cell.getCellValue());
-        dataPanel.setFont(ConfigProperties.getInstance().getSpreadSheetDataFont());
-        dataPanel.setForeground(ConfigProperties.getInstance().getSpreadSheetForegroundColor());
-
-        dataPanel.setOpaque(false);
-        dataPanel.addFocusListener(this);
-        dataPanel.addMouseListener(this);
-        dataPanel.setName("cellValue");
-
-        // Set the appearance of the spreadsheet cell.
-        cellPanel.setBackground(ConfigProperties.getInstance().getSpreadSheetBackgroundColor());
-        // Cell is highlighted by default.
-        cellPanel.setBorder(NORMAL_BORDER);
-        cellPanel.setLayout(new BorderLayout());
-
-        // Set the apperance of the top panel and add child elements (ord, onset
-        // and offset).
-        topPanel.setOpaque(false);
-        topPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 2, 0));
-        topPanel.setLayout(new BoxLayout(topPanel, BoxLayout.X_AXIS));
-        cellPanel.add(topPanel, BorderLayout.NORTH);
-        topPanel.add(ord);
-
-        Component strut1 = Box.createHorizontalStrut(TIME_SPACER);
-        topPanel.add(strut1);
-
-        Component glue = Box.createGlue();
-        topPanel.add(glue);
-
-        topPanel.add(onset);
-
-        Component strut2 = Box.createHorizontalStrut(TIME_SPACER);
-        topPanel.add(strut2);
-        topPanel.add(offset);
-
-        // Set the apperance of the data panel - add elements for dis6playing
-        // the actual data of the panel.
-        cellPanel.add(dataPanel, BorderLayout.CENTER);
-
-        Dimension d = new Dimension(229, 0);
-        stretcher = new Filler(d, d, d);
-        cellPanel.add(stretcher, BorderLayout.SOUTH);
-
-        Datavyu.getVideoController().getClockTimer().registerListener(this);
 
         brandNew = true;
     }
 
+    /**
+     * Shows the cell with the given components.
+     *
+     * @param panel The components to display the cell with.
+     */
+    void attachPanel(final SpreadsheetCellPanel panel) {
+        cellPanel = panel;
+        panel.attach(this);
+        if (ordinal > 0) {
+            panel.setOrdinal(ordinal);
+        }
+        panel.setWidth(width);
+
+        if (strut == null) {
+            strut = new Filler(new Dimension(0, 0),
+                    new Dimension(0, 0),
+                    new Dimension(Short.MAX_VALUE, 0));
+        }
+        this.add(strut, BorderLayout.NORTH);
+        this.add(panel, BorderLayout.CENTER);
+        updateSelectionDisplay();
+    }
+
+    /**
+     * Takes the components away from the cell once it is out of view.
+     *
+     * @return The components that displayed the cell.
+     */
+    SpreadsheetCellPanel detachPanel() {
+        SpreadsheetCellPanel panel = cellPanel;
+        removeAll();
+        panel.detach();
+        cellPanel = null;
+        return panel;
+    }
+
+    /**
+     * @return True if the components that display the cell are attached.
+     */
+    public boolean isMaterialized() {
+        return cellPanel != null;
+    }
+
+    /**
+     * @return The components that display the cell, attached first if the cell is out of view.
+     */
+    private SpreadsheetCellPanel getCellPanel() {
+        if (cellPanel == null) {
+            columnPanel.showCell(this);
+        }
+        return cellPanel;
+    }
+
     public boolean isBeingProcessed() {
         return beingProcessed;
     }
@@ -318,14 +315,14 @@ public class SpreadsheetCell extends JPanel
      * @return onset view
      */
     public TimeStampTextField getOnset() {
-        return onset;
+        return getCellPanel().getOnset();
     }
 
     /**
      * @return offset view
      */
     public TimeStampTextField getOffset() {
-        return offset;
+        return getCellPanel().getOffset();
     }
 
     /**
@@ -334,7 +331,10 @@ public class SpreadsheetCell extends JPanel
      * @param ordinal The new ordinal value to use with this cell.
      */
     public void setOrdinal(final Integer ordinal) {
-        ord.setText(ordinal.toString());
+        this.ordinal = ordinal;
+        if (cellPanel != null) {
+            cellPanel.setOrdinal(ordinal);
+        }
     }
 
     /**
@@ -375,8 +375,13 @@ public class SpreadsheetCell extends JPanel
      * @param width New width of the SpreadsheetCell.
      */
     public void setWidth(final int width) {
-        Dimension d = new Dimension(width, 0);
-        stretcher.changeShape(d, d, d);
+        if (width != this.width) {
+            this.width = width;
+            preferredSize = null;
+        }
+        if (cellPanel != null) {
+            cellPanel.setWidth(width);
+        }
     }
 
     /**
@@ -412,6 +417,9 @@ public class SpreadsheetCell extends JPanel
     public void setOverlapBorder(final boolean overlap) {
         cellOverlap = overlap;
 
+        if (cellPanel == null) {
+            return;
+        }
         if (cellOverlap) {
 
             if (model.isHighlighted()) {
@@ -439,31 +447,38 @@ public class SpreadsheetCell extends JPanel
      * @return The MatrixRootView of this cell.
      */
     public final MatrixRootView getDataView() {
-        return dataPanel;
+        return getCellPanel().getDataView();
     }
 
     public void selectOnset() {
-        onset.selectAll();
-        offset.select(0, 0);
-        dataPanel.select(0, 0);
-        onset.requestFocusInWindow();
+        SpreadsheetCellPanel panel = getCellPanel();
+        panel.getOnset().selectAll();
+        panel.getOffset().select(0, 0);
+        panel.getDataView().select(0, 0);
+        panel.getOnset().requestFocusInWindow();
     }
 
     public void selectOffset() {
-        offset.selectAll();
-        onset.select(0, 0);
-        dataPanel.select(0, 0);
-        offset.requestFocusInWindow();
+        SpreadsheetCellPanel panel = getCellPanel();
+        panel.getOffset().selectAll();
+        panel.getOnset().select(0, 0);
+        panel.getDataView().select(0, 0);
+        panel.getOffset().requestFocusInWindow();
     }
 
     public void selectVal() {
-        dataPanel.selectAll();
-        onset.select(0, 0);
-        offset.select(0, 0);
-        dataPanel.requestFocusInWindow();
+        SpreadsheetCellPanel panel = getCellPanel();
+        panel.getDataView().selectAll();
+        panel.getOnset().select(0, 0);
+        panel.getOffset().select(0, 0);
+        panel.getDataView().requestFocusInWindow();
     }
 
     public void updateSelectionDisplay() {
+        // Cells out of view are brought up to date once they are shown.
+        if (cellPanel == null) {
+            return;
+        }
         if (model.isHighlighted() && !Datavyu.getVideoController().getCellHighlightAndFocus()) {
             if (cellOverlap) {
                 cellPanel.setBorder(HIGHLIGHT_OVERLAP_BORDER);
@@ -484,22 +499,35 @@ public class SpreadsheetCell extends JPanel
             }
         }
 
-        if (Datavyu.getVideoController().getCellHighlightAndFocus()) {
-            if (model.isPastTimeWindow(Datavyu.getVideoController().getCurrentTime())) {
-                cellPanel.setBackground(pastTimeHighlightColor);
-            }  else if(model.isInTimeWindow(Datavyu.getVideoController().getCurrentTime())) {
-                cellPanel.setBackground(timeHighlightColor);
-            } else {
-                cellPanel.setBackground(ConfigProperties.getInstance().getSpreadSheetBackgroundColor());
-            }
-        } else if (Datavyu.getVideoController().getCellHighlighting()) {
-            if(model.isPastTimeWindow(Datavyu.getVideoController().getCurrentTime())) {
-                cellPanel.setBackground(pastTimeHighlightColor);
-            } else if(model.isInTimeWindow(Datavyu.getVideoController().getCurrentTime())) {
-                cellPanel.setBackground(timeHighlightColor);
-            } else {
-                cellPanel.setBackground(ConfigProperties.getInstance().getSpreadSheetBackgroundColor());
+        VideoController videoController = Datavyu.getVideoController();
+        if (videoController.getCellHighlightAndFocus() || videoController.getCellHighlighting()) {
+            playbackState = PlaybackHighlighter.stateAt(model, videoController.getCurrentTime());
+        }
+        updateBackground();
+    }
+
+    /**
+     * Highlights the cell for where it lies relative to the playback time.
+     *
+     * @param state Where the cell lies relative to the playback time.
+     */
+    void setPlaybackState(final PlaybackHighlighter.State state) {
+        if (state != playbackState) {
+            playbackState = state;
+            if (cellPanel != null) {
+                updateBackground();
             }
+        }
+    }
+
+    private void updateBackground() {
+        VideoController videoController = Datavyu.getVideoController();
+        if (!videoController.getCellHighlightAndFocus() && !videoController.getCellHighlighting()) {
+            cellPanel.setBackground(ConfigProperties.getInstance().getSpreadSheetBackgroundColor());
+        } else if (playbackState == PlaybackHighlighter.State.PAST) {
+            cellPanel.setBackground(pastTimeHighlightColor);
+        } else if (playbackState == PlaybackHighlighter.State.CURRENT) {
+            cellPanel.setBackground(timeHighlightColor);
         } else {
             cellPanel.setBackground(ConfigProperties.getInstance().getSpreadSheetBackgroundColor());
         }
@@ -510,7 +538,10 @@ public class SpreadsheetCell extends JPanel
     // *************************************************************************
     @Override
     public void offsetChanged(final long newOffset) {
-        offset.setValue();
+        columnPanel.cellMoved(knownOnset);
+        if (cellPanel != null) {
+            cellPanel.getOffset().setValue();
+        }
         if (model.isSelected()) {
             // Update the find windows to the newly selected cell's values
             Datavyu.getVideoController().setOnsetField(model.getOnset());
@@ -520,7 +551,11 @@ public class SpreadsheetCell extends JPanel
 
     @Override
     public void onsetChanged(final long newOnset) {
-        onset.setValue();
+        columnPanel.cellMoved(Math.min(knownOnset, newOnset));
+        knownOnset = newOnset;
+        if (cellPanel != null) {
+            cellPanel.getOnset().setValue();
+        }
         if (model.isSelected()) {
             Datavyu.getVideoController().setOnsetField(model.getOnset());
             Datavyu.getVideoController().setOffsetField(model.getOffset());
@@ -529,6 +564,8 @@ public class SpreadsheetCell extends JPanel
 
     @Override
     public void highlightingChange(final boolean isHighlighted) {
+        // The borders of highlighted cells differ in height.
+        columnPanel.cellChanged(knownOnset);
         updateSelectionDisplay();
         if (model.isSelected()) {
             // Update the find windows to the newly selected cell's values
@@ -539,20 +576,32 @@ public class SpreadsheetCell extends JPanel
 
     @Override
     public void selectionChange(final boolean isSelected) {
+        columnPanel.cellChanged(knownOnset);
         updateSelectionDisplay();
         if (model.isSelected()) {
             // Update the find windows to the newly selected cell's values
             Datavyu.getVideoController().setOnsetField(model.getOnset());
             Datavyu.getVideoController().setOffsetField(model.getOffset());
-        } else if(getDataView().getEdTracker().indexOfCurrentEditor() > -1) {
+        } else if (cellPanel != null && getDataView().getEdTracker().indexOfCurrentEditor() > -1) {
             parentColumn.setIndexOfPreviousFocusedCell(getDataView().getEdTracker().indexOfCurrentEditor());
         }
     }
 
     @Override
     public void valueChange(final CellValue newCellValue) {
-        dataPanel.setMatrix(newCellValue);
-        revalidate();
+        // Only a different text can change the size of the cell.
+        boolean resized = !model.getValueAsString().equals(sizedText);
+        if (resized) {
+            preferredSize = null;
+            columnPanel.cellChanged(knownOnset);
+        }
+        if (cellPanel == null) {
+            return;
+        }
+        cellPanel.getDataView().setMatrix(newCellValue);
+        if (resized) {
+            revalidate();
+        }
     }
 
     // *************************************************************************
@@ -582,7 +631,7 @@ public class SpreadsheetCell extends JPanel
         // currently selected cells and select this cell.
         if (!isEditorSrc && !groupSel && !contSel) {
           logger.debug("User has clicked in magic spot, without modifier");
-            ord.requestFocus();
+            cellPanel.getOrdinal().requestFocus();
             cellSelL.clearCellSelection();
             model.setHighlighted(!model.isSelected());
 
@@ -594,7 +643,7 @@ public class SpreadsheetCell extends JPanel
             // this cell to the current selection.
         } else if (groupSel && !contSel) {
           logger.debug("User has clicked on editor or magic spot with modifier.");
-            ord.requestFocus();
+            cellPanel.getOrdinal().requestFocus();
             model.setHighlighted(!model.isSelected());
 
             if (model.isSelected()) {
@@ -605,7 +654,7 @@ public class SpreadsheetCell extends JPanel
             // Add this cell and everything in between the current selection.
         } else if (contSel) {
           logger.debug("User has clicked on editor or magic spot with shift modifier");
-            ord.requestFocus();
+            cellPanel.getOrdinal().requestFocus();
             cellSelL.addCellToContinousSelection(this);
 
             // User has clicked somewhere in the cell without modifier. This
@@ -677,53 +726,107 @@ public class SpreadsheetCell extends JPanel
 
     @Override
     public boolean isFocusOwner() {
-        return (onset.isFocusOwner() || offset.isFocusOwner() || dataPanel.isFocusOwner());
+        return cellPanel != null && (cellPanel.getOnset().isFocusOwner() || cellPanel.getOffset().isFocusOwner()
+                || cellPanel.getDataView().isFocusOwner());
     }
 
     @Override
     public void requestFocus() {
-        dataPanel.requestFocus();
-    }
-
-    // *************************************************************************
-    // Parent Class Overrides
-    // *************************************************************************
-    @Override
-    public void paint(final Graphics g) {
-        // BugzID:474 - Set the size at paint time - somewhere else may have
-        // altered the font.
-        dataPanel.setFont(ConfigProperties.getInstance().getSpreadSheetDataFont());
-        super.paint(g);
+        getDataView().requestFocus();
     }
 
     @Override
-    public void clockForceSync(double clockTime) {
-        updateSelectionDisplay();
+    public void setBounds(final int x, final int y, final int width, final int height) {
+        super.setBounds(x, y, width, height);
+        columnPanel.cellPlaced(height);
     }
 
+    /**
+     * The preferred size is only measured again once the value text, the data
+     * font, the width the value wraps to or the border changed. A cell out of
+     * view has the size it had when it was last shown or else the estimate of
+     * its column.
+     *
+     * @return The preferred size of the cell.
+     */
     @Override
-    public void clockPeriodicSync(double clockTime) {
-        updateSelectionDisplay();
-    }
+    public Dimension getPreferredSize() {
+        if (cellPanel == null) {
+            if (preferredSize == null) {
+                return new Dimension(width, columnPanel.getEstimatedCellHeight());
+            }
+            sizeCacheHits++;
+            return new Dimension(preferredSize);
+        }
 
-    @Override
-    public void clockStop(double clockTime) { }
+        Font font = ConfigProperties.getInstance().getSpreadSheetDataFont();
+        MatrixRootView dataView = cellPanel.getDataView();
+        if (preferredSize != null && font.equals(sizedFont) && dataView.getWidth() == sizedWidth
+                && cellPanel.getBorder() == sizedBorder) {
+            sizeCacheHits++;
+            return new Dimension(preferredSize);
+        }
 
-    @Override
-    public void clockPause(double clockTime) { }
+        sizeCacheMisses++;
+        if (!font.equals(dataView.getFont())) {
+            dataView.setFont(font);
+        }
+        preferredSize = super.getPreferredSize();
+        sizedText = model.getValueAsString();
+        sizedFont = font;
+        sizedWidth = dataView.getWidth();
+        sizedBorder = cellPanel.getBorder();
+        return new Dimension(preferredSize);
+    }
 
-    @Override
-    public void clockStart(double clockTime) { }
+    /**
+     * Measures the cell again once its components were laid out at another
+     * width, as the value may wrap differently, and lays out the column again
+     * if the height changed.
+     */
+    void contentsLaidOut() {
+        if (preferredSize == null || cellPanel.getDataView().getWidth() == sizedWidth) {
+            return;
+        }
+        int height = preferredSize.height;
+        if (getPreferredSize().height != height) {
+            columnPanel.cellChanged(knownOnset);
+            revalidate();
+        }
+    }
 
-    @Override
-    public void clockRate(float rate) { }
+    /**
+     * @return The number of preferred sizes of cells taken from their cache.
+     */
+    public static long getSizeCacheHits() {
+        return sizeCacheHits;
+    }
 
-    @Override
-    public void clockBoundaryCheck(double clockTime) { }
+    /**
+     * @return The number of preferred sizes of cells that had to be measured.
+     */
+    public static long getSizeCacheMisses() {
+        return sizeCacheMisses;
+    }
 
-    @Override
-    public void streamsBoundaryCheck(double clockTime) { }
+    /**
+     * @return The share of preferred sizes of cells taken from their cache, between 0 and 1.
+     */
+    public static double getSizeCacheHitRate() {
+        long total = sizeCacheHits + sizeCacheMisses;
+        return total == 0 ? 0 : (double) sizeCacheHits / total;
+    }
 
+    // *************************************************************************
+    // Parent Class Overrides
+    // *************************************************************************
     @Override
-    public void clockSeekPlayback(double clockTime) { }
+    public void paint(final Graphics g) {
+        // BugzID:474 - Set the size at paint time - somewhere else may have
+        // altered the font.
+        if (cellPanel != null) {
+            cellPanel.getDataView().setFont(ConfigProperties.getInstance().getSpreadSheetDataFont());
+        }
+        super.paint(g);
+    }
 }
@@ -0,0 +1,246 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete;
+
+import org.datavyu.Datavyu;
+import org.datavyu.models.db.Cell;
+import org.datavyu.util.ConfigProperties;
+import org.datavyu.views.discrete.datavalues.MatrixRootView;
+import org.datavyu.views.discrete.datavalues.TimeStampDataValueEditor.TimeStampSource;
+import org.datavyu.views.discrete.datavalues.TimeStampTextField;
+import org.jdesktop.application.Application;
+import org.jdesktop.application.ResourceMap;
+
+import javax.swing.*;
+import javax.swing.Box.Filler;
+import java.awt.*;
+
+/**
+ * The components that show the contents of a SpreadsheetCell: the ordinal,
+ * onset, offset and value of its cell. A virtualized column only gives these
+ * to the cells in view and hands them on to other cells as the view scrolls.
+ */
+final class SpreadsheetCellPanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Width of spacer between onset and offset timestamps.
+     */
+    private static final int TIME_SPACER = 5;
+    /**
+     * A panel for holding the header to the cell.
+     */
+    private final JPanel topPanel;
+    /**
+     * The Ordinal display component.
+     */
+    private final JLabel ord;
+    /**
+     * The Onset display component.
+     */
+    private final TimeStampTextField onset;
+    /**
+     * The Offset display component.
+     */
+    private final TimeStampTextField offset;
+    /**
+     * A panel for holding the value of the cell.
+     */
+    private final MatrixRootView dataPanel;
+    /**
+     * Component that sets the width of the cell.
+     */
+    private final Filler stretcher;
+    /**
+     * The cell the components were built for, null once they have been lent to a spreadsheet cell.
+     */
+    private Cell cell;
+    /**
+     * The spreadsheet cell these components belong to, null while they are not used.
+     */
+    private SpreadsheetCell owner;
+
+    /**
+     * Builds the components for a cell.
+     *
+     * @param cell The cell to show.
+     */
+    SpreadsheetCellPanel(final Cell cell) {
+        this.cell = cell;
+
+        ResourceMap rMap = Application.getInstance(Datavyu.class).getContext()
+                .getResourceMap(SpreadsheetCell.class);
+
+        // Build components used for the spreadsheet cell.
+        topPanel = new JPanel();
+        ord = new JLabel();
+        ord.setFont(ConfigProperties.getInstance().getSpreadSheetLabelFont());
+        ord.setForeground(ConfigProperties.getInstance().getSpreadSheetOrdinalForegroundColor());
+        ord.setToolTipText(rMap.getString("ord.tooltip"));
+        ord.setFocusable(true);
+
+        onset = new TimeStampTextField(cell, TimeStampSource.Onset);
+        onset.setFont(ConfigProperties.getInstance().getSpreadSheetLabelFont());
+        onset.setForeground(ConfigProperties.getInstance().getSpreadSheetTimeStampForegroundColor());
+        onset.setToolTipText(rMap.getString("onset.tooltip"));
+        onset.setName("onsetTextField");
+
+        offset = new TimeStampTextField(cell, TimeStampSource.Offset);
+        offset.setFont(ConfigProperties.getInstance().getSpreadSheetLabelFont());
+        offset.setForeground(ConfigProperties.getInstance().getSpreadSheetTimeStampForegroundColor());
+        offset.setToolTipText(rMap.getString("offset.tooltip"));
+        offset.setName("offsetTextField");
+
+        dataPanel = new MatrixRootView(cell, cell.getCellValue());
+        dataPanel.setFont(ConfigProperties.getInstance().getSpreadSheetDataFont());
+        dataPanel.setForeground(ConfigProperties.getInstance().getSpreadSheetForegroundColor());
+        dataPanel.setOpaque(false);
+        dataPanel.setName("cellValue");
+
+        // Set the appearance of the spreadsheet cell.
+        setBackground(ConfigProperties.getInstance().getSpreadSheetBackgroundColor());
+        // Cell is highlighted by default.
+        setBorder(SpreadsheetCell.NORMAL_BORDER);
+        setLayout(new BorderLayout());
+
+        // Set the apperance of the top panel and add child elements (ord, onset
+        // and offset).
+        topPanel.setOpaque(false);
+        topPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 2, 0));
+        topPanel.setLayout(new BoxLayout(topPanel, BoxLayout.X_AXIS));
+        add(topPanel, BorderLayout.NORTH);
+        topPanel.add(ord);
+        topPanel.add(Box.createHorizontalStrut(TIME_SPACER));
+        topPanel.add(Box.createGlue());
+        topPanel.add(onset);
+        topPanel.add(Box.createHorizontalStrut(TIME_SPACER));
+        topPanel.add(offset);
+
+        // Set the apperance of the data panel - add elements for displaying
+        // the actual data of the panel.
+        add(dataPanel, BorderLayout.CENTER);
+
+        Dimension d = new Dimension(229, 0);
+        stretcher = new Filler(d, d, d);
+        add(stretcher, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Lends the components to a spreadsheet cell, which then gets their mouse
+     * and focus events.
+     *
+     * @param newOwner The spreadsheet cell that shows its cell with the components.
+     */
+    void attach(final SpreadsheetCell newOwner) {
+        if (owner != null) {
+            detach();
+        }
+        owner = newOwner;
+
+        // The cell may have changed while the components showed another one.
+        Cell newCell = newOwner.getCell();
+        if (newCell != cell) {
+            onset.setCell(newCell);
+            offset.setCell(newCell);
+            dataPanel.setCell(newCell);
+        }
+        cell = null;
+
+        addMouseListener(owner);
+        topPanel.addMouseListener(owner);
+        ord.addMouseListener(owner);
+        onset.addFocusListener(owner);
+        onset.addMouseListener(owner);
+        offset.addFocusListener(owner);
+        offset.addMouseListener(owner);
+        dataPanel.addFocusListener(owner);
+        dataPanel.addMouseListener(owner);
+    }
+
+    /**
+     * Takes the components back from their spreadsheet cell.
+     */
+    void detach() {
+        if (owner == null) {
+            return;
+        }
+        removeMouseListener(owner);
+        topPanel.removeMouseListener(owner);
+        ord.removeMouseListener(owner);
+        onset.removeFocusListener(owner);
+        onset.removeMouseListener(owner);
+        offset.removeFocusListener(owner);
+        offset.removeMouseListener(owner);
+        dataPanel.removeFocusListener(owner);
+        dataPanel.removeMouseListener(owner);
+        owner = null;
+    }
+
+    @Override
+    public void doLayout() {
+        super.doLayout();
+        if (owner != null) {
+            owner.contentsLaidOut();
+        }
+    }
+
+    /**
+     * Set the ordinal value.
+     *
+     * @param ordinal The new ordinal value to show.
+     */
+    void setOrdinal(final int ordinal) {
+        ord.setText(Integer.toString(ordinal));
+    }
+
+    /**
+     * Set the width of the components.
+     *
+     * @param width New width of the components.
+     */
+    void setWidth(final int width) {
+        Dimension d = new Dimension(width, 0);
+        stretcher.changeShape(d, d, d);
+    }
+
+    /**
+     * @return The Ordinal display component.
+     */
+    JLabel getOrdinal() {
+        return ord;
+    }
+
+    /**
+     * @return The Onset display component.
+     */
+    TimeStampTextField getOnset() {
+        return onset;
+    }
+
+    /**
+     * @return The Offset display component.
+     */
+    TimeStampTextField getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return The MatrixRootView showing the value of the cell.
+     */
+    MatrixRootView getDataView() {
+        return dataPanel;
+    }
+}
@@ -578,6 +578,9 @@ public final class SpreadsheetColumn extends JLabel implements VariableListener,
 
     @Override
     public void visibilityChanged(final boolean isHidden) {
+        if (!isHidden) {
+            datapanel.buildCells(this);
+        }
         setVisible(!isHidden);
         this.datapanel.setVisible(!isHidden);
         this.setSelected(false);
@@ -124,6 +124,18 @@ public final class MatrixRootView extends JTextArea implements FocusListener {
         return true;
     }
 
+    /**
+     * Shows the value of another cell in this MatrixRootView.
+     *
+     * @param cell The parent cell for this spread sheet cell.
+     */
+    public void setCell(final Cell cell) {
+        parentCell = cell;
+        oldValue = "";
+        setCaretPosition(0);
+        setMatrix(cell.getCellValue());
+    }
+
     /**
      * Sets the value that this MatrixRootView will represent.
      *
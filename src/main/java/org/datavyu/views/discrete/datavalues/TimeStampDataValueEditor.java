@@ -78,6 +78,17 @@ public final class TimeStampDataValueEditor extends EditorComponent {
         resetValue();
     }
 
+    /**
+     * Shows the timestamp of another cell in this editor.
+     *
+     * @param cell The cell this editor now resides within.
+     */
+    public void setCell(final Cell cell) {
+        parentCell = cell;
+        edit = null;
+        resetValue();
+    }
+
     /**
      * Reset the values by retrieving from the database.
      */
@@ -68,6 +68,18 @@ public final class TimeStampTextField extends JTextField
         addKeyListener(this);
     }
 
+    /**
+     * Shows the timestamp of another cell in this text field.
+     *
+     * @param cell The parent datacell for this spreadsheet cell.
+     */
+    public void setCell(final Cell cell) {
+        parentCell = cell;
+        setCaretPosition(0);
+        myEditor.setCell(cell);
+        rebuildText();
+    }
+
     /**
      * Sets the value to be displayed.
      */
@@ -14,9 +14,12 @@
  */
 package org.datavyu.views.discrete.layouts;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.datavyu.views.discrete.ColumnDataPanel;
 import org.datavyu.views.discrete.SpreadsheetCell;
 import org.datavyu.views.discrete.SpreadsheetColumn;
+import org.datavyu.views.discrete.SpreadsheetView;
 
 import javax.swing.*;
 
@@ -25,6 +28,9 @@ import javax.swing.*;
  */
 public abstract class SheetLayout extends ScrollPaneLayout {
 
+    /** The logger for this class */
+    private static final Logger logger = LogManager.getLogger(SheetLayout.class);
+
     /**
      * SheetLayout constructor.
      */
@@ -33,5 +39,21 @@ public abstract class SheetLayout extends ScrollPaneLayout {
 
     public abstract void reorientView(SpreadsheetCell cell);
 
+    /**
+     * Shows the cells in view once the cells of the columns have been placed.
+     *
+     * @param pane     The scroll pane holding the spreadsheet.
+     * @param mainView The actual spreadsheet that we are populating.
+     */
+    protected void cellsPlaced(final JScrollPane pane, final SpreadsheetView mainView) {
+        for (SpreadsheetColumn col : mainView.getColumns()) {
+            col.getDataPanel().showCellsInView(pane.getViewport());
+        }
+
+        logger.debug("Laid out the spreadsheet, cell size cache hits: " + SpreadsheetCell.getSizeCacheHits()
+                + ", misses: " + SpreadsheetCell.getSizeCacheMisses()
+                + ", hit rate: " + Math.round(SpreadsheetCell.getSizeCacheHitRate() * 100) + "%");
+    }
+
     public abstract void reorientView(SpreadsheetColumn column);
 }
@@ -162,6 +162,8 @@ public class SheetLayoutOrdinal extends SheetLayout {
 
 
         }
+
+        cellsPlaced(pane, mainView);
     }
 
     public void reorientView(SpreadsheetCell cell) {
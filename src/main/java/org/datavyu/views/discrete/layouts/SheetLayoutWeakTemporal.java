@@ -14,6 +14,7 @@
  */
 package org.datavyu.views.discrete.layouts;
 
+import org.datavyu.util.ConfigProperties;
 import org.datavyu.views.discrete.SpreadsheetCell;
 import org.datavyu.views.discrete.SpreadsheetColumn;
 import org.datavyu.views.discrete.SpreadsheetView;
@@ -26,14 +27,60 @@ import java.util.stream.Collectors;
 /**
  * SheetLayoutWeakTemporal - mimics the weak temporal alignment style from
  * original MacSHAPA.
+ *
+ * The positions of the onset and offset times are kept between passes. A pass
+ * only places the cells again from the earliest onset of the cells that changed
+ * since the last one, together with the earlier cells that last until then.
  */
 public class SheetLayoutWeakTemporal extends SheetLayout {
     // The of the right hand margin.
 
+    /** Default space separating unique times */
+    private static final int GAP_SIZE = 15;
+
     // The maximum height of the layout in pixels.
     int maxHeight;
     private JScrollPane pane;
 
+    /** The visible columns when they were last laid out */
+    private List<SpreadsheetColumn> laidOutColumns = new ArrayList<>();
+
+    /** The widths of the visible columns when they were last laid out */
+    private List<Integer> laidOutWidths = new ArrayList<>();
+
+    /** The font of the cells when they were last laid out */
+    private Font laidOutFont;
+
+    /** What the layout knows about each visible column, in the order of the columns */
+    private final List<ColumnLayout> columnLayouts = new ArrayList<>();
+
+    /** All onset and offset times, mapped to the space the cells starting at them need */
+    private final TreeMap<Long, Integer> heightMap = new TreeMap<>();
+
+    /** The position of each time */
+    private final TreeMap<Long, Integer> onsetMap = new TreeMap<>();
+
+    /** The bottom of the cells that end at each time and do not overlap the next */
+    private final TreeMap<Long, Integer> offsetMap = new TreeMap<>();
+
+    /**
+     * What the layout knows about a column.
+     */
+    private static final class ColumnLayout {
+
+        /** The latest time each cell or an earlier one of the column lasts until, in temporal order */
+        private long[] lastsUntil = new long[0];
+
+        /** The bottom of each cell as placed, in temporal order */
+        private int[] bottoms = new int[0];
+
+        /** Summed height of the cells starting at each onset */
+        private final TreeMap<Long, Integer> heights = new TreeMap<>();
+
+        /** The height of the column */
+        private int workingHeight;
+    }
+
     /**
      * SheetLayoutOrdinal constructor.
      *
@@ -44,7 +91,6 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
 
     @Override
     public void layoutContainer(Container parent) {
-        //TODO: figure out how to make this whole algorithm neater.
 //        long startTime = System.currentTimeMillis();
         super.layoutContainer(parent);
         pane = (JScrollPane) parent;
@@ -57,69 +103,144 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
         // Get visible columns.
         List<SpreadsheetColumn> visible_columns = getVisibleColumns(mainView);
 
-        // Map columns to temporally ordered cells from column.
-        HashMap<SpreadsheetColumn, List<SpreadsheetCell>> cellMap = new HashMap<>();
-        for(SpreadsheetColumn col : visible_columns){
-            cellMap.put(col, col.getCellsTemporally());
+        // Place everything again once columns were shown, hidden, moved or resized, or the font changed.
+        long from = Long.MAX_VALUE;
+        for (SpreadsheetColumn col : visible_columns) {
+            from = Math.min(from, col.getDataPanel().takeChangedFrom());
+        }
+        List<Integer> widths = visible_columns.stream().map(Component::getWidth).collect(Collectors.toList());
+        Font font = ConfigProperties.getInstance().getSpreadSheetDataFont();
+        if (!visible_columns.equals(laidOutColumns) || !widths.equals(laidOutWidths) || !font.equals(laidOutFont)) {
+            from = Long.MIN_VALUE;
+            laidOutColumns = visible_columns;
+            laidOutWidths = widths;
+            laidOutFont = font;
+            columnLayouts.clear();
+        }
+
+        if (from != Long.MAX_VALUE) {
+            placeCells(visible_columns.stream().map(SpreadsheetColumn::getCellsTemporally)
+                    .collect(Collectors.toList()), widths, from);
+        }
+
+        for (int i = 0; i < visible_columns.size(); i++) {
+            int colHeight = getWorkingHeight(i);
+            visible_columns.get(i).setWorkingHeight(colHeight);
+            maxHeight = Math.max(maxHeight, colHeight);
         }
 
-        TreeSet<Long> times = new TreeSet<Long>();
-        HashMap<Long, Integer> heightMap = new HashMap<>();
+        padColumns(mainView, parent);
+        cellsPlaced(pane, mainView);
+//        System.err.println(String.format("Aligned.  Time: %d.", System.currentTimeMillis() - startTime));
+    }
+
+    /**
+     * @param column The index of a visible column.
+     * @return The height of the column when its cells were last placed.
+     */
+    int getWorkingHeight(final int column) {
+        return columnLayouts.get(column).workingHeight;
+    }
+
+    /**
+     * Places the cells of the columns from the given time on. The positions
+     * of earlier times stay as they are.
+     *
+     * @param columns The cells of the visible columns in temporal order.
+     * @param widths  The widths of the visible columns.
+     * @param from    The earliest onset of the cells that changed.
+     */
+    void placeCells(final List<List<SpreadsheetCell>> columns, final List<Integer> widths, final long from) {
+        heightMap.tailMap(from, true).clear();
+        onsetMap.tailMap(from, true).clear();
+        offsetMap.tailMap(from, true).clear();
 
         /* Go through each column and assign "height" values to onset times.
            This will determine how much space to allocate between onset times.
-           For each column, create an intermediate map and then merge with the
-           actual map using maximum values.  This is required since a column can have
-           multiple cells with the same onset.
-           Also accumulate all unique times.
+           For each column sum the heights of the cells sharing an onset and merge
+           with the actual map using maximum values. Also accumulate all unique times.
+           Only the cells starting from the earliest change on need to be summed.
+           The first cell to place in each column is the first one that lasts
+           until the change, or the first of the cells sharing its onset.
          */
-        for( SpreadsheetColumn col : visible_columns){
-            HashMap<Long, Integer> intermediateMap = new HashMap<>();
-            for( SpreadsheetCell curCell : cellMap.get(col)){
-                long onset = curCell.getOnsetTicks();
+        while (columnLayouts.size() < columns.size()) {
+            columnLayouts.add(new ColumnLayout());
+        }
+        int[] firstToPlace = new int[columns.size()];
+        for (int c = 0; c < columns.size(); c++) {
+            ColumnLayout layout = columnLayouts.get(c);
+            List<SpreadsheetCell> orderedCells = columns.get(c);
+            int changed = firstStartingAt(orderedCells, from);
+
+            long[] lastsUntil = Arrays.copyOf(layout.lastsUntil, orderedCells.size());
+            for (int i = changed; i < orderedCells.size(); i++) {
+                SpreadsheetCell curCell = orderedCells.get(i);
+                long until = Math.max(curCell.getOnsetTicks(), curCell.getOffsetTicksActual());
+                lastsUntil[i] = (i == 0) ? until : Math.max(lastsUntil[i - 1], until);
+            }
+            layout.lastsUntil = lastsUntil;
+
+            layout.heights.tailMap(from, true).clear();
+            for (SpreadsheetCell curCell : orderedCells.subList(changed, orderedCells.size())) {
                 int height = curCell.getPreferredSize().height;
-                intermediateMap.compute(onset, (k, v) -> (v == null) ? height : v + height);
+                layout.heights.merge(curCell.getOnsetTicks(), height, Integer::sum);
+            }
+            layout.heights.tailMap(from, true).forEach((k, v) -> heightMap.merge(k, v, Integer::max));
+
+            int first = firstLastingUntil(lastsUntil, from);
+            while (first > 0 && first < orderedCells.size() && orderedCells.get(first - 1).getOnsetTicks()
+                    == orderedCells.get(first).getOnsetTicks()) {
+                first--;
+            }
+            firstToPlace[c] = first;
 
-                // Add the onset and offset times to our master set.
-                times.add(onset);
+            // Add the offset times to our master set.
+            for (SpreadsheetCell curCell : orderedCells.subList(first, orderedCells.size())) {
+                long onset = curCell.getOnsetTicks();
                 long offset = curCell.getOffsetTicksActual();
-                if(offset > onset) times.add(offset);
+                if (offset > onset && offset >= from) {
+                    heightMap.putIfAbsent(offset, 0);
+                }
             }
-            // Merge the intermediate map entries.
-            intermediateMap.forEach( (k, v) -> heightMap.merge(k, v, Integer::max));
         }
 
         /* Iterate over sorted set of times and assign position values.
            For onset times o1, o2 : Map(o2) = Map(o1) + heightMap(o1) + gapSize
          */
-        int gapSize = 15;   // default space separating unique times
-        HashMap<Long, Integer> onsetMap = new HashMap<>();
-        int pos = 0;    // position to assign to next onset time
-        for(Long time : times){
-            onsetMap.put(time, pos);
-            pos += heightMap.getOrDefault(time, 0);
-            pos += gapSize;
+        Map.Entry<Long, Integer> before = onsetMap.lastEntry();
+        int pos = (before == null) ? 0 : before.getValue() + heightMap.get(before.getKey()) + GAP_SIZE;
+        for (Map.Entry<Long, Integer> time : heightMap.tailMap(from, true).entrySet()) {
+            onsetMap.put(time.getKey(), pos);
+            pos += time.getValue();
+            pos += GAP_SIZE;
         }
 
-        /* Iterate over all spreadsheet cells and set boundaries using onset and offset maps.
-           Keep a local copy of the position maps.  Since each time value gets a range of positions
-           (starting from onset map's value and ending at the offset's value), update the local copy of
-           the onset map to get positions for cells sharing onsets.
+        /* Iterate over the spreadsheet cells to place and set boundaries using onset and offset maps.
+           Each time value gets a range of positions (starting from onset map's value and ending
+           at the offset's value), keep how far the cells sharing an onset have been stacked.
          */
-        HashMap<Long, Integer> offsetMap = new HashMap<>();
-        for( SpreadsheetColumn col : visible_columns){
-            List<SpreadsheetCell> orderedCells = cellMap.get(col);
-            int colWidth = col.getWidth();
+        for (int c = 0; c < columns.size(); c++) {
+            List<SpreadsheetCell> orderedCells = columns.get(c);
+            ColumnLayout layout = columnLayouts.get(c);
+            int first = firstToPlace[c];
+            layout.bottoms = Arrays.copyOf(layout.bottoms, orderedCells.size());
+            if (first == orderedCells.size()) {
+                // Nothing to place, such as after deleting the last cells; the column ends with its last cell
+                layout.workingHeight = orderedCells.isEmpty() ? 0 : layout.bottoms[orderedCells.size() - 1];
+                continue;
+            }
+
+            int colWidth = widths.get(c);
             int colHeight = 0;
-            HashMap<Long, Integer> onsetMapLocal = new HashMap<>(onsetMap);
-            SpreadsheetCell prevCell = null;
-            for (int i = 0; i < orderedCells.size(); i++) {
+            HashMap<Long, Integer> stacked = new HashMap<>();
+            SpreadsheetCell prevCell = (first == 0) ? null : orderedCells.get(first - 1);
+            for (int i = first; i < orderedCells.size(); i++) {
                 SpreadsheetCell curCell = orderedCells.get(i);
                 SpreadsheetCell nextCell = (i == orderedCells.size() - 1) ? null : orderedCells.get(i + 1);
 
                 long onset = curCell.getOnsetTicks();
                 long offset = curCell.getOffsetTicksActual();
-                int cellTopY = onsetMapLocal.get(onset);
+                int cellTopY = onsetMap.get(onset) + stacked.getOrDefault(onset, 0);
 
                 // Get height for cell
                 int cellHeight;
@@ -137,7 +258,8 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
                 // Current offset greater than or equal to next onset
                 else if (nextCell != null && offset >= nextCell.getOnsetTicks()) {
                     curCell.setOverlapBorder(true);
-                    cellHeight = onsetMapLocal.get(nextCell.getOnsetTicks()) - cellTopY;
+                    long nextOnset = nextCell.getOnsetTicks();
+                    cellHeight = onsetMap.get(nextOnset) + stacked.getOrDefault(nextOnset, 0) - cellTopY;
                 } else {
                     curCell.setOverlapBorder(false);
                     cellHeight = offsetMap.getOrDefault(offset, onsetMap.get(offset)) - cellTopY;
@@ -153,9 +275,8 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
                 // Set cell boundary
                 curCell.setBounds(0, cellTopY, colWidth - 1, cellHeight);
 
-                // Update local onset map
-                int adjOn = cellHeight;
-                onsetMapLocal.compute(onset, (k, v) -> v + adjOn);
+                // Update how far the cells sharing the onset are stacked
+                stacked.merge(onset, cellHeight, Integer::sum);
 
                 // Update offset map
                 if(!curCell.getOverlapBorder()) {
@@ -165,26 +286,63 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
 
                 // Update vars
                 colHeight = cellTopY + cellHeight;
+                layout.bottoms[i] = colHeight;
                 prevCell = curCell;
             }
 
             // Set column working height
-            col.setWorkingHeight(colHeight);
-            maxHeight = Math.max(maxHeight, colHeight);
+            layout.workingHeight = colHeight;
         }
 
-        /* Do a second pass to update the offsets again. */
-        for (SpreadsheetColumn col : visible_columns) {
-            int colWidth = col.getWidth();
-            for (SpreadsheetCell sc : cellMap.get(col)) {
+        /* Do a second pass to update the offsets again, including the cell before the first one placed. */
+        for (int c = 0; c < columns.size(); c++) {
+            int colWidth = widths.get(c);
+            List<SpreadsheetCell> orderedCells = columns.get(c);
+            int first = Math.max(firstToPlace[c] - 1, 0);
+            for (SpreadsheetCell sc : orderedCells.subList(first, orderedCells.size())) {
                 int mapHeight = offsetMap.getOrDefault(sc.getOffsetTicks(), -1) - sc.getY();
                 if (!sc.getOverlapBorder() && sc.getSize().getHeight() < mapHeight)
                     sc.setBounds(0, sc.getY(), colWidth - 1, mapHeight);
             }
         }
+    }
 
-        padColumns(mainView, parent);
-//        System.err.println(String.format("Aligned.  Time: %d.", System.currentTimeMillis() - startTime));
+    /**
+     * @param orderedCells The cells of a column in temporal order.
+     * @param time         The time to look for.
+     * @return The index of the first cell with an onset at or after the time.
+     */
+    private static int firstStartingAt(final List<SpreadsheetCell> orderedCells, final long time) {
+        int low = 0;
+        int high = orderedCells.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (orderedCells.get(mid).getOnsetTicks() < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param lastsUntil The latest time each cell or an earlier one lasts until.
+     * @param time       The time to look for.
+     * @return The index of the first cell that lasts until the time or later.
+     */
+    private static int firstLastingUntil(final long[] lastsUntil, final long time) {
+        int low = 0;
+        int high = lastsUntil.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lastsUntil[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
     public void reorientView(SpreadsheetCell cell) {
@@ -40,10 +40,13 @@ import 'org.datavyu.models.db.CellValue'
 import 'org.datavyu.models.db.Variable'
 import 'org.datavyu.models.db.Cell'
 import 'org.datavyu.models.db.Argument'
+import 'org.datavyu.models.db.ColumnarVariable'
 import 'org.datavyu.models.project.Project'
 import 'org.datavyu.controllers.SaveController'
 import 'org.datavyu.controllers.OpenController'
 import 'org.datavyu.controllers.project.ProjectController'
+import 'org.datavyu.controllers.ScriptProgress'
+import 'org.datavyu.util.ScriptProfiler'
 
 $debug = false
 # Prints the specified message if global variable #debug set true.
@@ -55,8 +58,11 @@ end
 
 # Set $db, this is so that JRuby doesn't decide
 # to overwrite it halfway thru the script.
-$db = Datavyu.get_project_controller.get_data_store
-$pj = Datavyu.get_project_controller.get_project
+# Scripts run in batch mode have no project controller; $db and $pj are set by the batch runner instead.
+unless Datavyu.get_project_controller.nil?
+  $db = Datavyu.get_project_controller.get_data_store
+  $pj = Datavyu.get_project_controller.get_project
+end
 $sp = Datavyu.get_view
 
 # Ruby representation of a spreadsheet cell.
@@ -768,6 +774,27 @@ end
 alias :getVariable :get_column
 alias :getColumn :get_column
 
+# Columnar access to a Datavyu column, for processing many cells without converting each of them into an RCell.
+# Onsets and offsets are read as arrays of longs, codes as arrays of strings or dictionary codes.
+# Changes are written back in bulk with create_cells and update_cells, or cell by cell through a cursor.
+# @param name [String] the name of the column in the spreadsheet
+# @return [ColumnarVariable] columnar view of the column or nil if the named column does not exist
+# @example
+#       trial = get_column_arrays("trial")
+#       onsets = trial.get_onsets
+#       offsets = trial.get_offsets
+#       shifted = onsets.map { |t| t + 100 }
+#       trial.update_cells((0...trial.size).to_a, shifted, offsets.map { |t| t + 100 }, nil)
+def get_column_arrays(name)
+  var = $db.getVariable(name)
+  if (var == nil)
+    printNoColumnFoundWarning(name.to_s)
+    return nil
+  end
+
+  return ColumnarVariable.new(var)
+end
+
 
 # Translate a Ruby column object into a Datavyu column and saves it to the spreadsheet.
 # If two parameters are specified, the first parameter is the name under which the column will be saved.
@@ -2887,3 +2914,57 @@ def column_to_videos(column: 'tracks__', file_code: 'file',
               onset: cell.onset)
   end
 end
+
+# Report the progress of the script. Scripts that run for more than a second show their progress, with a button to
+# cancel them. Reporting progress also gives Datavyu the chance to stop a cancelled script right away.
+# @param done [Numeric] work done
+# @param total [Numeric] total work, 100 to report the percentage done
+# @param message [String] message to show with the progress; optional
+# @return nil
+# @example
+#   col.cells.each_with_index do |cell, i|
+#     set_progress(i, col.cells.size, "Cell #{cell.ordinal}")
+#     # ... code the cell ...
+#   end
+def set_progress(done, total = 100, message = nil)
+  progress = ScriptProgress.current
+  progress.update(total.zero? ? -1.0 : done.to_f / total, message) unless progress.nil?
+  Thread.pass
+  nil
+end
+alias :setProgress :set_progress
+
+# Times the functions of this API for scripts that are profiled, those with a line "# datavyu: profile" before their
+# code. The timing wrappers are only defined while a profiled script runs; the module is empty otherwise, so that
+# other scripts call the functions directly.
+module ApiProfiling
+  # The functions of this API
+  FUNCTIONS = Object.private_instance_methods(false).select do |name|
+    location = Object.instance_method(name).source_location
+    location && location[0] == __FILE__
+  end.freeze
+
+  # Wraps the functions of this API to report their calls to the active profiler.
+  def self.install
+    profiler = ScriptProfiler.getActive
+    return if profiler.nil?
+
+    FUNCTIONS.each do |name|
+      define_method(name) do |*args, &block|
+        start = profiler.enterApi
+        begin
+          super(*args, &block)
+        ensure
+          profiler.exitApi(name.to_s, start)
+        end
+      end
+      private name
+    end
+  end
+
+  # Removes the wrappers once the profiled script ran.
+  def self.uninstall
+    (instance_methods(false) + private_instance_methods(false)).each { |name| remove_method(name) }
+  end
+end
+Object.send(:prepend, ApiProfiling)
@@ -0,0 +1,200 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.datavyu.models.db.*;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for journaling edits and replaying them on top of an auto saved file.
+ */
+public class AutoSaveJournalTest {
+
+    /** The data store that is journaled */
+    private DataStore dataStore;
+
+    /** The file the data store is auto saved to */
+    private File checkpointFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dataStore = DataStoreFactory.newDataStore();
+        Variable text = dataStore.createVariable("text", Argument.Type.TEXT);
+        Cell cell = text.createCell();
+        cell.setOnset(1000);
+        cell.setOffset(2000);
+        cell.getCellValue().set("first");
+
+        Variable matrix = dataStore.createVariable("matrix", Argument.Type.MATRIX);
+        matrix.addArgument(Argument.Type.NOMINAL);
+        cell = matrix.createCell();
+        cell.setOnset(500);
+        cell.setMatrixValue(0, "a");
+
+        checkpointFile = File.createTempFile("~journal_", ".csv");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        AutoSaveJournal.getJournalFile(checkpointFile).delete();
+        checkpointFile.delete();
+    }
+
+    @Test
+    public void testReplayJournal() throws Exception {
+        AutoSaveJournal journal = new AutoSaveJournal(dataStore);
+        assertTrue(journal.isCheckpointRequired());
+        journal.checkpoint(checkpointFile, null);
+        assertFalse(journal.isCheckpointRequired());
+
+        Variable text = dataStore.getVariable("text");
+        Cell cell = text.createCell();
+        cell.setOnset(3000);
+        cell.setOffset(4000);
+        cell.getCellValue().set("tab\tand\nnew line");
+        text.getCells().get(0).getCellValue().clear();
+
+        Variable matrix = dataStore.getVariable("matrix");
+        Cell matrixCell = matrix.getCells().get(0);
+        matrixCell.setMatrixValue(1, "b");
+        matrixCell.setOffset(900);
+        Cell removed = matrix.createCell();
+        matrix.removeCell(removed);
+        journal.close();
+
+        assertTrue(AutoSaveJournal.recover(checkpointFile));
+        assertFalse(AutoSaveJournal.getJournalFile(checkpointFile).exists());
+
+        OpenController openController = new OpenController();
+        openController.openDataStore(checkpointFile);
+        DataStore recovered = openController.getDataStore();
+
+        List<Cell> textCells = recovered.getVariable("text").getCellsTemporally();
+        assertEquals(textCells.size(), 2);
+        assertEquals(textCells.get(0).getValueAsString(), "");
+        assertEquals(textCells.get(1).getOnset(), 3000);
+        assertEquals(textCells.get(1).getOffset(), 4000);
+        assertEquals(textCells.get(1).getValueAsString(), "tab\tand\nnew line");
+
+        List<Cell> matrixCells = recovered.getVariable("matrix").getCells();
+        assertEquals(matrixCells.size(), 1);
+        assertEquals(matrixCells.get(0).getOnset(), 500);
+        assertEquals(matrixCells.get(0).getOffset(), 900);
+        assertEquals(matrixCells.get(0).getValueAsString(), "(a,b)");
+    }
+
+    @Test
+    public void testVariableChangeRequiresCheckpoint() throws Exception {
+        AutoSaveJournal journal = new AutoSaveJournal(dataStore);
+        journal.checkpoint(checkpointFile, null);
+
+        dataStore.createVariable("other", Argument.Type.NOMINAL);
+        assertTrue(journal.isCheckpointRequired());
+        // The checkpoint waits until the variables were left alone
+        assertFalse(journal.isCheckpointDue());
+
+        File nextCheckpointFile = File.createTempFile("~journal_", ".csv");
+        journal.checkpoint(nextCheckpointFile, null);
+        assertFalse(journal.isCheckpointRequired());
+        assertFalse(checkpointFile.exists());
+        journal.close();
+
+        AutoSaveJournal.getJournalFile(nextCheckpointFile).delete();
+        nextCheckpointFile.delete();
+    }
+
+    @Test
+    public void testJournalWhileCheckpointIsWritten() throws Exception {
+        AutoSaveJournal journal = new AutoSaveJournal(dataStore);
+        journal.checkpoint(checkpointFile, null);
+
+        Variable text = dataStore.getVariable("text");
+        text.getCells().get(0).getCellValue().set("saved");
+        File nextCheckpointFile = File.createTempFile("~journal_", ".csv");
+        Future<?> checkpoint = journal.startCheckpoint(nextCheckpointFile, null);
+
+        // Edits made while the checkpoint is written go to its journal
+        Cell cell = text.createCell();
+        cell.setOnset(3000);
+        cell.getCellValue().set("journaled");
+        text.getCells().get(0).setOffset(2500);
+        checkpoint.get();
+        assertFalse(journal.isCheckpointInProgress());
+        assertFalse(checkpointFile.exists());
+        journal.close();
+
+        assertTrue(AutoSaveJournal.recover(nextCheckpointFile));
+        OpenController openController = new OpenController();
+        openController.openDataStore(nextCheckpointFile);
+        List<Cell> textCells = openController.getDataStore().getVariable("text").getCellsTemporally();
+        assertEquals(textCells.size(), 2);
+        assertEquals(textCells.get(0).getValueAsString(), "saved");
+        assertEquals(textCells.get(0).getOffset(), 2500);
+        assertEquals(textCells.get(1).getOnset(), 3000);
+        assertEquals(textCells.get(1).getValueAsString(), "journaled");
+
+        AutoSaveJournal.getJournalFile(nextCheckpointFile).delete();
+        nextCheckpointFile.delete();
+    }
+
+    @Test
+    public void testJournalVariableChanges() throws Exception {
+        Variable text = dataStore.getVariable("text");
+        Variable matrix = dataStore.getVariable("matrix");
+        text.setOrderIndex(0);
+        matrix.setOrderIndex(1);
+        dataStore.createVariable("other", Argument.Type.NOMINAL).setOrderIndex(2);
+        AutoSaveJournal journal = new AutoSaveJournal(dataStore);
+        journal.checkpoint(checkpointFile, null);
+
+        text.setName("renamed");
+        text.getCells().get(0).getCellValue().set("second");
+        matrix.setHidden(true);
+        int textIndex = text.getOrderIndex();
+        text.setOrderIndex(matrix.getOrderIndex());
+        matrix.setOrderIndex(textIndex);
+        dataStore.removeVariable(dataStore.getVariable("other"));
+        assertFalse(journal.isCheckpointRequired());
+        journal.close();
+
+        assertTrue(AutoSaveJournal.recover(checkpointFile));
+        OpenController openController = new OpenController();
+        openController.openDataStore(checkpointFile);
+        DataStore recovered = openController.getDataStore();
+
+        List<Variable> variables = recovered.getAllVariables();
+        assertEquals(variables.size(), 2);
+        assertEquals(variables.get(0).getName(), "matrix");
+        assertEquals(variables.get(1).getName(), "renamed");
+        assertTrue(variables.get(0).isHidden());
+        assertEquals(variables.get(1).getCells().get(0).getValueAsString(), "second");
+    }
+
+    @Test
+    public void testRecoverWithoutJournal() throws IOException {
+        assertFalse(AutoSaveJournal.recover(checkpointFile));
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.apache.commons.io.FileUtils;
+import org.datavyu.models.db.UserWarningException;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for processing projects in batch.
+ */
+public class BatchControllerTest {
+    // The location of the test files.
+    private static final String TEST_FOLDER = System.getProperty("testPath");
+
+    @Test
+    public void testExportCellsOfGlob() throws UserWarningException, IOException {
+        File outDir = new File("target/batch");
+        FileUtils.deleteQuietly(outDir);
+
+        int status = BatchController.run(new String[]{"cells", "--threads", "2", "--out", outDir.getPath(),
+                TEST_FOLDER + "IO/simple[34].opf"});
+        assertEquals(status, 0);
+
+        // Every project is exported as if it was opened on its own
+        for (String name : new String[]{"simple3", "simple4"}) {
+            OpenController openc = new OpenController();
+            openc.openProject(new File(TEST_FOLDER + "IO/" + name + ".opf"));
+            File expected = new File("target/" + name + "_expected_cells.csv");
+            new ExportDatabaseFileController().exportAsCells(expected.getPath(), openc.getDataStore());
+
+            File exported = new File(outDir, name + "_cells.csv");
+            assertTrue(exported.isFile());
+            assertEquals(FileUtils.readFileToString(exported, "UTF-8"),
+                    FileUtils.readFileToString(expected, "UTF-8"));
+        }
+    }
+
+    @Test
+    public void testExportCellsNextToSpreadsheet() throws IOException {
+        File dir = new File("target/batch_csv");
+        FileUtils.deleteQuietly(dir);
+        File spreadsheet = new File(dir, "simple1.csv");
+        FileUtils.copyFile(new File(TEST_FOLDER + "IO/simple1.csv"), spreadsheet);
+        byte[] contents = FileUtils.readFileToByteArray(spreadsheet);
+
+        assertEquals(BatchController.run(new String[]{"cells", spreadsheet.getPath()}), 0);
+
+        // The export goes next to the spreadsheet and leaves it alone
+        assertTrue(new File(dir, "simple1_cells.csv").isFile());
+        assertEquals(FileUtils.readFileToByteArray(spreadsheet), contents);
+    }
+
+    @Test
+    public void testFailures() {
+        // Missing projects fail without stopping the others
+        assertEquals(BatchController.run(new String[]{"json", "--out", "target",
+                TEST_FOLDER + "IO/simple3.opf", TEST_FOLDER + "IO/missing.opf"}), 1);
+        assertTrue(new File("target/simple3.json").isFile());
+
+        // Invalid arguments
+        assertEquals(BatchController.run(new String[]{"unknown", TEST_FOLDER + "IO/simple3.opf"}), 2);
+        assertEquals(BatchController.run(new String[]{"script", TEST_FOLDER + "IO/simple3.opf"}), 2);
+    }
+}
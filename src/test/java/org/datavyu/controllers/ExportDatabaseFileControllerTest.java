@@ -0,0 +1,369 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.FileUtils;
+import org.datavyu.models.db.*;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+
+/**
+ * Tests for exporting Datavyu spreadsheets.
+ */
+public class ExportDatabaseFileControllerTest {
+    // The location of the test files.
+    private static final String TEST_FOLDER = System.getProperty("testPath");
+
+    /**
+     * Exports a data store as JSON.
+     *
+     * @param dataStore The data store to export.
+     * @param name The name of the exported file.
+     * @param prettyPrint True to indent the export.
+     * @param parallel True to generate the variables in parallel.
+     * @return The exported file.
+     * @throws UserWarningException If unable to export.
+     */
+    private File exportAsJSON(final DataStore dataStore, final String name, final boolean prettyPrint,
+                              final boolean parallel) throws UserWarningException {
+        File outFile = new File("target/" + name + ".json");
+        ExportDatabaseFileController exportC = new ExportDatabaseFileController();
+        exportC.setPrettyPrint(prettyPrint);
+        exportC.setParallel(parallel);
+        exportC.exportAsJSON(outFile.getPath(), dataStore);
+        return outFile;
+    }
+
+    @Test
+    public void testExportJSONLayouts() throws UserWarningException, IOException {
+        OpenController openc = new OpenController();
+        openc.openProject(new File(TEST_FOLDER + "IO/simple3.opf"));
+        DataStore dataStore = openc.getDataStore();
+
+        File pretty = exportAsJSON(dataStore, "pretty", true, false);
+        File compact = exportAsJSON(dataStore, "compact", false, false);
+
+        // Generating the variables in parallel gives the same output
+        assertEquals(FileUtils.readFileToString(exportAsJSON(dataStore, "prettyParallel", true, true), "UTF-8"),
+                FileUtils.readFileToString(pretty, "UTF-8"));
+        assertEquals(FileUtils.readFileToString(exportAsJSON(dataStore, "compactParallel", false, true), "UTF-8"),
+                FileUtils.readFileToString(compact, "UTF-8"));
+
+        // The compact export only differs in layout
+        assertNotEquals(compact.length(), pretty.length());
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(mapper.readTree(compact), mapper.readTree(pretty));
+    }
+
+    @Test
+    public void testExportByFrame() throws UserWarningException, IOException {
+        DataStore dataStore = DataStoreFactory.newDataStore();
+        Variable text = dataStore.createVariable("text", Argument.Type.TEXT);
+        Cell first = text.createCell();
+        first.setOnset(0);
+        first.setOffset(150);
+        first.getCellValue().set("a \"quoted\" value");
+        Cell second = text.createCell();
+        second.setOnset(300);
+        second.setOffset(300);
+        second.getCellValue().set("b");
+        Variable matrix = dataStore.createVariable("matrix", Argument.Type.MATRIX);
+        Cell cell = matrix.createCell();
+        cell.setOnset(100);
+        cell.setOffset(200);
+        cell.setMatrixValue(0, "c");
+
+        // Frames are 100 ms apart
+        StringWriter out = new StringWriter();
+        new FrameExporter(dataStore.getAllVariables(), 10.0).write(out);
+
+        String[] rows = out.toString().split(System.lineSeparator());
+        assertEquals(rows.length, 6);
+        assertEquals(rows[0], "nFrame,time,text.ordinal,text.onset,text.offset,text.value,"
+                + "matrix.ordinal,matrix.onset,matrix.offset,matrix.code01,");
+        assertEquals(rows[1], "1,0,1,0,150,\"a \"\"quoted\"\" value\",,,,,");
+        assertEquals(rows[2], "2,100,1,0,150,\"a \"\"quoted\"\" value\",1,100,200,\"c\",");
+        assertEquals(rows[3], "3,200,,,,,1,100,200,\"c\",");
+        assertEquals(rows[4], "4,300,2,300,300,\"b\",,,,,");
+        assertEquals(rows[5], "5,400,,,,,,,,,");
+    }
+
+    @Test
+    public void testExportByFrameAsArrow() throws UserWarningException, IOException {
+        DataStore dataStore = DataStoreFactory.newDataStore();
+        Variable nominal = dataStore.createVariable("nominal", Argument.Type.NOMINAL);
+        for (int i = 0; i < 100; i++) {
+            Cell cell = nominal.createCell();
+            cell.setOnset(i * 1000);
+            cell.setOffset(i * 1000 + 500);
+            cell.getCellValue().set(i % 2 == 0 ? "even" : "odd");
+        }
+        Variable text = dataStore.createVariable("text", Argument.Type.TEXT);
+        for (int i = 0; i < 10; i++) {
+            Cell cell = text.createCell();
+            cell.setOnset(i * 10000 + 250);
+            cell.setOffset(i * 10000 + 3250);
+            cell.getCellValue().set("say \"hi\" " + i);
+        }
+        Variable matrix = dataStore.createVariable("matrix", Argument.Type.MATRIX);
+        Argument rootNode = matrix.getRootNode();
+        rootNode.childArguments.add(new Argument("code02", Argument.Type.NOMINAL));
+        matrix.setRootNode(rootNode);
+        for (int i = 0; i < 5; i++) {
+            Cell cell = matrix.createCell();
+            cell.setOnset(i * 20000 + 100);
+            cell.setOffset(i * 20000 + 900);
+            cell.setMatrixValue(0, "a" + i);
+            if (i != 3) {
+                cell.setMatrixValue(1, i % 2 == 0 ? "left" : "right");
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new FrameExporter(dataStore.getAllVariables(), 30.0).writeArrow(out);
+
+        // Encapsulated messages padded to 8 bytes, ending in the end of stream marker
+        ByteBuffer stream = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        int messages = 0;
+        while (true) {
+            assertEquals(stream.position() % 8, 0);
+            assertEquals(stream.getInt(), -1);
+            int metadataLength = stream.getInt();
+            if (metadataLength == 0) {
+                break;
+            }
+            assertEquals(metadataLength % 8, 0);
+
+            // The body length is the last field of the message, a long at the end of the root table
+            int root = stream.position() + stream.getInt(stream.position());
+            int vtable = root - stream.getInt(root);
+            long bodyLength = stream.getLong(root + stream.getShort(vtable + 4 + 2 * 3));
+            assertEquals(bodyLength % 8, 0);
+            stream.position(stream.position() + metadataLength + (int) bodyLength);
+            messages++;
+        }
+        assertEquals(stream.remaining(), 0);
+
+        // Schema, a dictionary for each of the three nominal columns and a single record batch for the frames
+        assertEquals(messages, 5);
+
+        // The decoded columns, values and nulls match the by frame CSV export of the same cells
+        StringWriter csv = new StringWriter();
+        new FrameExporter(dataStore.getAllVariables(), 30.0).write(csv);
+        List<String> expected = Arrays.asList(csv.toString().split(System.lineSeparator()));
+        assertEquals(readArrow(out.toByteArray()), expected);
+    }
+
+    /**
+     * Decodes an Arrow stream written by the frame exporter into rows formatted like the by frame CSV export.
+     *
+     * @param bytes The Arrow stream.
+     * @return The header and a row for every frame.
+     */
+    private static List<String> readArrow(final byte[] bytes) {
+        ByteBuffer stream = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        List<String> names = new ArrayList<>();
+        List<Character> kinds = new ArrayList<>();
+        Map<Integer, List<String>> dictionaries = new HashMap<>();
+        List<String> rows = new ArrayList<>();
+        int position = 0;
+        while (stream.getInt(position + 4) != 0) {
+            int metadata = position + 8;
+            int body = metadata + stream.getInt(position + 4);
+            int message = indirect(stream, metadata);
+            byte headerType = stream.get(field(stream, message, 1));
+            int header = indirect(stream, field(stream, message, 2));
+            if (headerType == 1) {
+                // Schema: int64 columns, utf8 columns and utf8 columns encoded against a dictionary
+                int fields = indirect(stream, field(stream, header, 1));
+                for (int i = 0; i < stream.getInt(fields); i++) {
+                    int column = indirect(stream, fields + 4 + 4 * i);
+                    names.add(string(stream, indirect(stream, field(stream, column, 0))));
+                    boolean utf8 = stream.get(field(stream, column, 2)) == 5;
+                    kinds.add(field(stream, column, 4) >= 0 ? 'd' : utf8 ? 's' : 'l');
+                }
+                rows.add(String.join(",", names) + ",");
+            } else if (headerType == 2) {
+                int id = (int) stream.getLong(field(stream, header, 0));
+                int batch = indirect(stream, field(stream, header, 1));
+                assertEquals(kinds.get(id), Character.valueOf('d'));
+                dictionaries.put(id, Arrays.asList(readBatch(stream, batch, body,
+                        Collections.singletonList('s')).get(0)));
+            } else {
+                assertEquals(headerType, 3);
+                List<String[]> columns = readBatch(stream, header, body, kinds);
+                for (int r = 0; r < columns.get(0).length; r++) {
+                    StringBuilder row = new StringBuilder();
+                    for (int c = 0; c < columns.size(); c++) {
+                        String value = columns.get(c)[r];
+                        if (value != null && kinds.get(c) == 'd') {
+                            value = dictionaries.get(c).get(Integer.parseInt(value));
+                        }
+                        if (value != null) {
+                            row.append(kinds.get(c) == 'l' ? value : "\"" + value.replace("\"", "\"\"") + "\"");
+                        }
+                        row.append(',');
+                    }
+                    rows.add(row.toString());
+                }
+            }
+            position = body + (int) stream.getLong(field(stream, message, 3));
+        }
+        return rows;
+    }
+
+    /**
+     * Decodes the columns of a record batch, checking the node lengths and null counts against the validity buffers.
+     *
+     * @param stream The Arrow stream.
+     * @param batch The position of the record batch table.
+     * @param body The position of the message body.
+     * @param kinds The column kinds: 'l' for int64, 's' for utf8 and 'd' for dictionary indices.
+     * @return The values of every column, null where the validity buffer marks a null.
+     */
+    private static List<String[]> readBatch(final ByteBuffer stream, final int batch, final int body,
+                                            final List<Character> kinds) {
+        int length = (int) stream.getLong(field(stream, batch, 0));
+        int nodes = indirect(stream, field(stream, batch, 1));
+        int buffers = indirect(stream, field(stream, batch, 2));
+        assertEquals(stream.getInt(nodes), kinds.size());
+        int buffer = buffers + 4;
+        List<String[]> columns = new ArrayList<>();
+        for (int c = 0; c < kinds.size(); c++) {
+            assertEquals(stream.getLong(nodes + 4 + 16 * c), length);
+            long nullCount = stream.getLong(nodes + 4 + 16 * c + 8);
+            int validity = body + (int) stream.getLong(buffer);
+            boolean nullable = stream.getLong(buffer + 8) > 0;
+            int data = body + (int) stream.getLong(buffer + 16);
+            buffer += 32;
+            int characters = 0;
+            if (kinds.get(c) == 's') {
+                characters = body + (int) stream.getLong(buffer);
+                buffer += 16;
+            }
+
+            String[] values = new String[length];
+            int nulls = 0;
+            for (int r = 0; r < length; r++) {
+                if (nullable && (stream.get(validity + r / 8) & (1 << (r % 8))) == 0) {
+                    nulls++;
+                } else if (kinds.get(c) == 'l') {
+                    values[r] = String.valueOf(stream.getLong(data + 8 * r));
+                } else if (kinds.get(c) == 'd') {
+                    values[r] = String.valueOf(stream.getInt(data + 4 * r));
+                } else {
+                    int start = stream.getInt(data + 4 * r);
+                    values[r] = new String(bytes(stream, characters + start, stream.getInt(data + 4 * r + 4) - start),
+                            StandardCharsets.UTF_8);
+                }
+            }
+            assertEquals(nulls, nullCount);
+            columns.add(values);
+        }
+        assertEquals(buffer, buffers + 4 + 16 * stream.getInt(buffers));
+        return columns;
+    }
+
+    /**
+     * @return The position of a flatbuffer table field, or -1 if the field is absent.
+     */
+    private static int field(final ByteBuffer stream, final int table, final int id) {
+        int vtable = table - stream.getInt(table);
+        if (4 + 2 * id >= stream.getShort(vtable)) {
+            return -1;
+        }
+        int offset = stream.getShort(vtable + 4 + 2 * id);
+        return offset == 0 ? -1 : table + offset;
+    }
+
+    /**
+     * @return The position referred to by the flatbuffer offset at the given position.
+     */
+    private static int indirect(final ByteBuffer stream, final int position) {
+        return position + stream.getInt(position);
+    }
+
+    /**
+     * @return The flatbuffer string at the given position.
+     */
+    private static String string(final ByteBuffer stream, final int position) {
+        return new String(bytes(stream, position + 4, stream.getInt(position)), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(final ByteBuffer stream, final int position, final int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = stream.get(position + i);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testExportAsCellsLong() throws UserWarningException, IOException {
+        DataStore dataStore = DataStoreFactory.newDataStore();
+        Variable text = dataStore.createVariable("text", Argument.Type.TEXT);
+        Variable matrix = dataStore.createVariable("matrix", Argument.Type.MATRIX);
+        Argument rootNode = matrix.getRootNode();
+        rootNode.childArguments.add(new Argument("code02", Argument.Type.NOMINAL));
+        matrix.setRootNode(rootNode);
+        long[] textOnsets = {0, 200, 400};
+        for (long onset : textOnsets) {
+            Cell cell = text.createCell();
+            cell.setOnset(onset);
+            cell.setOffset(onset + 50);
+            cell.getCellValue().set("t" + onset);
+        }
+        long[] matrixOnsets = {200, 300};
+        for (long onset : matrixOnsets) {
+            Cell cell = matrix.createCell();
+            cell.setOnset(onset);
+            cell.setOffset(onset + 50);
+            cell.setMatrixValue(0, "a" + onset);
+            cell.setMatrixValue(1, "b" + onset);
+        }
+
+        File outFile = new File("target/long.csv");
+        new ExportDatabaseFileController().exportAsCellsLong(outFile.getPath(), dataStore);
+
+        // Cells of all columns by onset; ties in column name order
+        List<String> rows = FileUtils.readLines(outFile, Charset.defaultCharset());
+        assertEquals(rows, Arrays.asList(
+                "column,ordinal,onset,offset,value1,value2,",
+                "\"text\",1,0,50,\"t0\",,",
+                "\"matrix\",1,200,250,\"a200\",\"b200\",",
+                "\"text\",2,200,250,\"t200\",,",
+                "\"matrix\",2,300,350,\"a300\",\"b300\",",
+                "\"text\",3,400,450,\"t400\",,"));
+    }
+}
@@ -15,16 +15,24 @@
 package org.datavyu.controllers;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 import org.apache.logging.log4j.LogManager;
 import org.datavyu.models.db.Argument;
 import org.datavyu.models.db.Cell;
+import org.datavyu.models.db.CellValue;
 import org.datavyu.models.db.DataStore;
+import org.datavyu.models.db.DataStoreFactory;
+import org.datavyu.models.db.MatrixCellValue;
 import org.datavyu.models.db.Variable;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.Collections;
 import java.util.Comparator;
@@ -154,4 +162,128 @@ public class OpenControllerTest {
         List<Cell> cells = vars.get(0).getCells();
         assertEquals(cells.size(), 1);
     }
+
+    @Test
+    public void testLoadCSVLazily() throws Exception {
+        DataStore ds = DataStoreFactory.newDataStore();
+        Variable text = ds.createVariable("text", Argument.Type.TEXT);
+        Cell cell = text.createCell();
+        cell.setOnset(1000);
+        cell.getCellValue().set("two\nlines, with a comma \\ and a backslash");
+        cell = text.createCell();
+        cell.setOnset(2000);
+        cell.getCellValue().set("second");
+        Variable matrix = ds.createVariable("matrix", Argument.Type.MATRIX);
+        matrix.addArgument(Argument.Type.NOMINAL);
+        cell = matrix.createCell();
+        cell.setMatrixValue(0, "multi\nline");
+        cell.setMatrixValue(1, "b,c");
+        matrix.setHidden(true);
+
+        File csvFile = File.createTempFile("lazy", ".csv");
+        csvFile.deleteOnExit();
+        new SaveDataStoreFileController().saveAsCsv(csvFile.getAbsolutePath(), ds);
+
+        OpenController openc = new OpenController();
+        openc.setLazyLoading(true);
+        openc.openDataStore(csvFile);
+        DataStore lazy = openc.getDataStore();
+        assertNotNull(lazy.getVariable("text").getCellLoader());
+        assertNotNull(lazy.getVariable("matrix").getCellLoader());
+        lazy.markAsUnchanged();
+
+        // Saving cells that are not loaded writes them as they were read
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new SaveDataStoreFileController().saveAsCsv(expected, ds);
+        ByteArrayOutputStream unloaded = new ByteArrayOutputStream();
+        new SaveDataStoreFileController().saveAsCsv(unloaded, lazy);
+        assertEquals(unloaded.toString(), expected.toString());
+
+        List<Cell> cells = lazy.getVariable("text").getCells();
+        assertNull(lazy.getVariable("text").getCellLoader());
+        assertEquals(cells.size(), 2);
+        assertEquals(cells.get(0).getOnset(), 1000);
+        assertEquals(cells.get(0).getValueAsString(), "two\nlines, with a comma \\ and a backslash");
+        assertEquals(cells.get(1).getValueAsString(), "second");
+        assertFalse(cells.get(0).isSelected());
+
+        cells = lazy.getVariable("matrix").getCells();
+        assertEquals(cells.size(), 1);
+        assertEquals(cells.get(0).getValueAsString(), "(multi\nline,b,c)");
+        assertFalse(lazy.isChanged());
+
+        ByteArrayOutputStream loaded = new ByteArrayOutputStream();
+        new SaveDataStoreFileController().saveAsCsv(loaded, lazy);
+        assertEquals(loaded.toString(), expected.toString());
+    }
+    /**
+     * Opens a matrix variable with the values (a,b,c) without loading its cells.
+     *
+     * @return The variable, with its cells not loaded yet.
+     */
+    private Variable openMatrixLazily() throws Exception {
+        DataStore ds = DataStoreFactory.newDataStore();
+        Variable matrix = ds.createVariable("matrix", Argument.Type.MATRIX);
+        matrix.addArgument(Argument.Type.NOMINAL);
+        matrix.addArgument(Argument.Type.NOMINAL);
+        Cell cell = matrix.createCell();
+        cell.setMatrixValue(0, "a");
+        cell.setMatrixValue(1, "b");
+        cell.setMatrixValue(2, "c");
+
+        File csvFile = File.createTempFile("lazy", ".csv");
+        csvFile.deleteOnExit();
+        new SaveDataStoreFileController().saveAsCsv(csvFile.getAbsolutePath(), ds);
+
+        OpenController openc = new OpenController();
+        openc.setLazyLoading(true);
+        openc.openDataStore(csvFile);
+        Variable lazy = openc.getDataStore().getVariable("matrix");
+        assertNotNull(lazy.getCellLoader());
+        return lazy;
+    }
+
+    /**
+     * Checks that each value of a cell belongs to the argument of the variable at the same position.
+     */
+    private void assertArgumentsMatch(final Variable matrix, final Cell cell) {
+        List<Argument> arguments = matrix.getRootNode().childArguments;
+        List<CellValue> values = ((MatrixCellValue) cell.getCellValue()).getArguments();
+        assertEquals(values.size(), arguments.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(values.get(i).getArgument().name, arguments.get(i).name);
+        }
+    }
+
+    @Test
+    public void testAddArgumentBeforeLoading() throws Exception {
+        Variable matrix = openMatrixLazily();
+        matrix.addArgument(Argument.Type.NOMINAL);
+        List<Cell> cells = matrix.getCells();
+        assertEquals(cells.size(), 1);
+        assertArgumentsMatch(matrix, cells.get(0));
+        assertEquals(cells.get(0).getMatrixValue(0).toString(), "a");
+        assertEquals(cells.get(0).getMatrixValue(2).toString(), "c");
+        assertTrue(cells.get(0).getMatrixValue(3).isEmpty());
+    }
+
+    @Test
+    public void testMoveArgumentBeforeLoading() throws Exception {
+        Variable matrix = openMatrixLazily();
+        matrix.moveArgument(0, 2);
+        List<Cell> cells = matrix.getCells();
+        assertEquals(cells.size(), 1);
+        assertArgumentsMatch(matrix, cells.get(0));
+        assertEquals(cells.get(0).getValueAsString(), "(b,c,a)");
+    }
+
+    @Test
+    public void testRemoveArgumentBeforeLoading() throws Exception {
+        Variable matrix = openMatrixLazily();
+        matrix.removeArgument(matrix.getRootNode().childArguments.get(1).name);
+        List<Cell> cells = matrix.getCells();
+        assertEquals(cells.size(), 1);
+        assertArgumentsMatch(matrix, cells.get(0));
+        assertEquals(cells.get(0).getValueAsString(), "(a,c)");
+    }
 }
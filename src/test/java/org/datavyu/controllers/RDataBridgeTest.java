@@ -0,0 +1,140 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.datavyu.models.db.*;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for passing variables to R and back. The files R would write are written here the way writeBin does.
+ */
+public class RDataBridgeTest {
+
+    /** The data store passed to R */
+    private DataStore dataStore;
+
+    /** The bridge to R */
+    private RDataBridge bridge;
+
+    @BeforeMethod
+    public void setUp() throws UserWarningException, IOException {
+        dataStore = DataStoreFactory.newDataStore();
+        ColumnarVariable trial = ColumnarVariable.createVariable(dataStore, "Trial", "hand", "look");
+        trial.createCells(new long[]{0, 1000, 9007199254740L}, new long[]{500, 1500, 9007199254741L},
+                new String[][]{{"l", "r", ""}, {"x,y", "", "naïve\nline"}});
+        Variable notes = dataStore.createVariable("notes", Argument.Type.TEXT);
+        notes.createCell().getCellValue().set("first");
+
+        bridge = new RDataBridge(dataStore);
+        bridge.write(File.createTempFile("datavyu", ".db"));
+    }
+
+    @Test
+    public void testRoundTripIsLossless() throws IOException, UserWarningException {
+        File file = File.createTempFile("datavyu", ".db");
+        bridge.write(file);
+        String before = getValues("Trial");
+
+        // Reading back what was written changes nothing
+        assertEquals(bridge.read(file), Arrays.asList("Trial", "notes"));
+        assertEquals(getValues("Trial"), before);
+        assertEquals(new ColumnarVariable(dataStore.getVariable("Trial")).getOnsets(),
+                new long[]{0, 1000, 9007199254740L});
+        assertEquals(new ColumnarVariable(dataStore.getVariable("notes")).getValues(0), new String[]{"first"});
+    }
+
+    @Test
+    public void testReadChanges() throws IOException, UserWarningException {
+        File file = File.createTempFile("datavyu", ".db");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write(new byte[]{'D', 'V', 'Y', 'U'});
+            out.writeInt(1);
+            out.writeInt(2);
+            // The first row is dropped, the third changed and a row and an argument added; R lower cases names
+            writeColumn(out, "trial", "MATRIX", new String[]{"look", "hand", "extra"},
+                    new double[]{3, 2, Double.NaN}, new double[]{3000, 1000, 4000}, new double[]{3500, 1500, 4500},
+                    new String[][]{{"z", "", "new"}, {"", "r", ""}, {"e", "", ""}});
+            writeColumn(out, "created", "TEXT", new String[]{"arg"},
+                    new double[]{Double.NaN}, new double[]{10}, new double[]{20}, new String[][]{{"hello"}});
+        }
+
+        assertEquals(bridge.read(file), Arrays.asList("trial", "created"));
+        ColumnarVariable trial = new ColumnarVariable(dataStore.getVariable("Trial"));
+        assertEquals(trial.getArgumentNames(), new String[]{"hand", "look", "extra"});
+        assertEquals(trial.getOnsets(), new long[]{1000, 3000, 4000});
+        assertEquals(getValues("Trial"),
+                Arrays.deepToString(new String[][]{{"r", "", ""}, {"", "z", "new"}, {"", "e", ""}}));
+
+        ColumnarVariable created = new ColumnarVariable(dataStore.getVariable("created"));
+        assertEquals(created.getVariable().getRootNode().type, Argument.Type.TEXT);
+        assertEquals(created.getOffsets(), new long[]{20});
+        assertEquals(created.getValues(0), new String[]{"hello"});
+        assertEquals(dataStore.getVariable("notes").getCells().size(), 1);
+    }
+
+    @Test
+    public void testNothingChanged() throws IOException, UserWarningException {
+        assertEquals(bridge.read(File.createTempFile("datavyu", ".db")), Collections.emptyList());
+        assertTrue(RDataBridge.getApiCode().contains("datavyu_write_db"));
+    }
+
+    /**
+     * @return The values of the variable per argument.
+     */
+    private String getValues(final String name) {
+        ColumnarVariable variable = new ColumnarVariable(dataStore.getVariable(name));
+        String[][] values = new String[variable.getArgumentCount()][];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = variable.getValues(i);
+        }
+        return Arrays.deepToString(values);
+    }
+
+    private static void writeColumn(final DataOutputStream out, final String name, final String type,
+                                    final String[] arguments, final double[] ordinals, final double[] onsets,
+                                    final double[] offsets, final String[][] values) throws IOException {
+        writeString(out, name);
+        writeString(out, type);
+        out.writeInt(arguments.length);
+        for (String argument : arguments) {
+            writeString(out, argument);
+        }
+        out.writeInt(ordinals.length);
+        for (double[] times : new double[][]{ordinals, onsets, offsets}) {
+            for (double time : times) {
+                out.writeDouble(time);
+            }
+        }
+        for (String[] column : values) {
+            for (String value : column) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String string) throws IOException {
+        out.write(string.getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+    }
+}
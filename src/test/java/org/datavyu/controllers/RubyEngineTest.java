@@ -0,0 +1,96 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.datavyu.models.db.DataStore;
+import org.datavyu.models.db.DataStoreFactory;
+import org.datavyu.util.ScriptProfiler;
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for the state of the Ruby runtimes that scripts share.
+ */
+public class RubyEngineTest {
+
+    /** Redefines an API function and an API class, and leaves a method and a constant behind */
+    private static final String CHANGE_API = "def get_column(name)\n  'patched'\nend\n"
+            + "class RCell\n  def onset\n    -1\n  end\nend\n"
+            + "def helper\nend\n"
+            + "LIMIT = 3\n"
+            + "puts get_column('x')\n";
+
+    /** Reports what the previous script left behind */
+    private static final String CHECK_API = "puts method(:get_column).source_location[0].end_with?('Datavyu_API.rb')\n"
+            + "puts RCell.new.onset.inspect\n"
+            + "puts defined?(helper).inspect\n"
+            + "puts defined?(LIMIT).inspect\n";
+
+    @Test
+    public void testScriptChangesAreReset() {
+        // Isolated runtimes are reset like the shared engine, which binds to the running application
+        DataStore dataStore = DataStoreFactory.newDataStore();
+        IsolatedRubyRuntime runtime = IsolatedRubyRuntime.take();
+        try {
+            StringWriter output = new StringWriter();
+            runtime.run(CHANGE_API, "change.rb", dataStore, null, output);
+            assertEquals(output.toString().trim(), "patched");
+
+            output = new StringWriter();
+            runtime.run(CHECK_API, "check.rb", dataStore, null, output);
+            assertEquals(output.toString().trim(), "true\nnil\nnil\nnil");
+
+            // Running the script again does not warn about its constant
+            output = new StringWriter();
+            runtime.run(CHANGE_API, "change.rb", dataStore, null, output);
+            assertEquals(output.toString().trim(), "patched");
+        } finally {
+            runtime.release();
+        }
+    }
+    @Test
+    public void testApiIsTimedOnlyWhileProfiled() {
+        String describe = "puts method(:get_column).owner\nputs method(:get_column).arity\n";
+        DataStore dataStore = DataStoreFactory.newDataStore();
+        IsolatedRubyRuntime runtime = IsolatedRubyRuntime.take();
+        ScriptProfiler profiler = null;
+        try {
+            StringWriter output = new StringWriter();
+            runtime.run(describe, "plain.rb", dataStore, null, output);
+            assertEquals(output.toString().trim(), "Object\n1");
+
+            profiler = ScriptProfiler.start();
+            output = new StringWriter();
+            runtime.run("get_column_list\n" + describe, "profiled.rb", dataStore, null, output);
+            assertEquals(output.toString().trim(), "ApiProfiling\n-1");
+            profiler.stop();
+            assertTrue(profiler.getSummary().contains("get_column_list"));
+
+            // The functions are called directly again once the profiled script ran
+            output = new StringWriter();
+            runtime.run(describe, "plain.rb", dataStore, null, output);
+            assertEquals(output.toString().trim(), "Object\n1");
+        } finally {
+            if (profiler != null) {
+                profiler.stop();
+            }
+            runtime.release();
+        }
+    }
+}
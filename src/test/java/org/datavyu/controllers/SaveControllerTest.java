@@ -14,16 +14,23 @@
  */
 package org.datavyu.controllers;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
 import org.apache.commons.io.IOUtils;
 import org.datavyu.models.db.*;
 import org.datavyu.models.project.Project;
+import org.datavyu.util.ZipArchiveWriter;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 
 /**
@@ -198,4 +205,56 @@ public class SaveControllerTest {
         savec.saveProject(outFile, p, ds);
         assertTrue(areFilesSameByteComp(outFile, demoFile));
     }
+
+    @Test
+    public void testSaveOPFCompressionLevels() throws UserWarningException, IOException {
+        Project p = new Project();
+        p.setProjectName("large");
+
+        // Large enough for the data store to be compressed in several chunks
+        DataStore ds = DataStoreFactory.newDataStore();
+        Variable var = ds.createVariable("testColumn", Argument.Type.TEXT);
+        for (int i = 0; i < 20000; i++) {
+            Cell c = var.createCell();
+            c.setOnset(i * 1000);
+            c.setOffset(i * 1000 + 999);
+            c.getCellValue().set("cell " + i + " " + Integer.toHexString(i * 7919));
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new SaveDataStoreFileController().saveAsCsv(expected, ds);
+
+        int[] levels = {ZipArchiveWriter.STORED, Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION};
+        for (int level : levels) {
+            for (boolean parallel : new boolean[]{false, true}) {
+                File outFile = new File("target/test-level" + level + (parallel ? "-parallel" : "") + ".opf");
+                SaveController savec = new SaveController();
+                savec.setCompressionLevel(level);
+                savec.setParallelCompression(parallel);
+                savec.saveProject(outFile, p, ds);
+
+                ZipFile zipFile = new ZipFile(outFile);
+                ByteArrayOutputStream db = new ByteArrayOutputStream();
+                IOUtils.copy(zipFile.getInputStream(zipFile.getEntry("db")), db);
+                zipFile.close();
+                assertEquals(db.toString(), expected.toString());
+
+                // Readers that go by the local headers see the same content
+                try (ZipInputStream zipStream = new ZipInputStream(new FileInputStream(outFile))) {
+                    ZipEntry zipEntry;
+                    while ((zipEntry = zipStream.getNextEntry()) != null && !zipEntry.getName().equals("db")) {
+                        zipStream.closeEntry();
+                    }
+                    assertNotNull(zipEntry);
+                    db = new ByteArrayOutputStream();
+                    IOUtils.copy(zipStream, db);
+                    assertEquals(db.toString(), expected.toString());
+                }
+
+                OpenController openc = new OpenController();
+                openc.openProject(outFile);
+                assertEquals(openc.getProject().getProjectName(), "large");
+                assertEquals(openc.getDataStore().getVariable("testColumn").getCells().size(), 20000);
+            }
+        }
+    }
 }
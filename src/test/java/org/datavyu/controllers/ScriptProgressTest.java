@@ -0,0 +1,88 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.datavyu.models.db.DataStore;
+import org.datavyu.models.db.DataStoreFactory;
+import org.jruby.embed.EvalFailedException;
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests for reporting the progress of scripts and cancelling them.
+ */
+public class ScriptProgressTest {
+
+    @Test
+    public void testUpdatesAreThrottled() {
+        List<String> updates = new ArrayList<>();
+        ScriptProgress progress = new ScriptProgress((percent, message) -> updates.add(percent + " " + message));
+        for (int i = 0; i < 1000; i++) {
+            progress.update(i / 1000.0, "cell " + i);
+        }
+        progress.update(-1, null);
+
+        // Each percentage once, messages of the same percentage are dropped
+        assertTrue(updates.size() <= 102, "Too many updates: " + updates.size());
+        assertEquals(updates.get(0), "0 cell 0");
+        assertEquals(updates.get(1), "1 cell 5");
+        assertEquals(updates.get(updates.size() - 1), "-1 ");
+    }
+
+    @Test
+    public void testCancelInterruptsRuby() throws InterruptedException {
+        DataStore dataStore = DataStoreFactory.newDataStore();
+        IsolatedRubyRuntime runtime = IsolatedRubyRuntime.take();
+        try {
+            final ScriptProgress progress = new ScriptProgress(null);
+            progress.begin();
+            Thread canceller = new Thread(() -> {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                progress.cancel();
+            });
+            canceller.start();
+            StringWriter output = new StringWriter();
+            try {
+                runtime.run("begin\n  loop { set_progress(50) }\nensure\n  puts 'cleaned up'\nend\n", "loop.rb",
+                        dataStore, null, output);
+                fail("Expected the script to be interrupted");
+            } catch (EvalFailedException e) {
+                assertTrue(progress.isCancelled());
+                assertTrue(output.toString().contains("cleaned up"));
+            } finally {
+                progress.end();
+                canceller.join();
+            }
+
+            // The runtime runs the next script as usual
+            output = new StringWriter();
+            runtime.run("puts 'next'\n", "next.rb", dataStore, null, output);
+            assertEquals(output.toString().trim(), "next");
+        } finally {
+            runtime.release();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for the columnar access to variables.
+ */
+public class ColumnarVariableTest {
+
+    /** The data store the variables are created in */
+    private DataStore dataStore;
+
+    @BeforeMethod
+    public void setUp() {
+        dataStore = DataStoreFactory.newDataStore();
+    }
+
+    @Test
+    public void testCreateAndRead() throws UserWarningException {
+        ColumnarVariable columns = ColumnarVariable.createVariable(dataStore, "trial", "hand", "look");
+        assertEquals(columns.getArgumentNames(), new String[]{"hand", "look"});
+        assertEquals(columns.getArgumentIndex("look"), 1);
+
+        // Cells are read back in temporal order
+        columns.createCells(new long[]{2000, 1000, 3000}, new long[]{2500, 1500, 3500},
+                new String[][]{{"l", "r", null}, {"", "x", "y"}});
+        assertEquals(columns.size(), 3);
+        assertEquals(columns.getOnsets(), new long[]{1000, 2000, 3000});
+        assertEquals(columns.getOffsets(), new long[]{1500, 2500, 3500});
+        assertEquals(columns.getValues(0), new String[]{"r", "l", ""});
+        assertEquals(columns.getValues(1), new String[]{"x", "", "y"});
+
+        ColumnarVariable.Codes codes = columns.getCodes(0);
+        assertEquals(codes.getCodes(), new int[]{0, 1, ColumnarVariable.EMPTY_CODE});
+        assertEquals(codes.getDictionary(), new String[]{"r", "l"});
+
+        // The cells are the ones of the variable
+        List<Cell> cells = dataStore.getVariable("trial").getCellsTemporally();
+        assertEquals(cells.size(), 3);
+        assertEquals(cells.get(0).getValueAsString(), "(r,x)");
+        assertEquals(cells.get(1).getValueAsString(), "(l,)");
+    }
+
+    @Test
+    public void testUpdate() throws UserWarningException {
+        ColumnarVariable columns = ColumnarVariable.createVariable(dataStore, "trial", "hand");
+        columns.createCells(new long[]{0, 1000, 2000}, null, new String[][]{{"a", "b", "c"}});
+
+        // Null leaves values, "" clears them
+        columns.updateCells(new int[]{2, 0}, new long[]{500, 2500}, null, new String[][]{{"", null}});
+        assertEquals(columns.getOnsets(), new long[]{500, 1000, 2500});
+        assertEquals(columns.getValues(0), new String[]{"", "b", "a"});
+        assertTrue(((MatrixCellValue) columns.getCell(0).getCellValue()).getArguments().get(0).isEmpty());
+
+        Variable variable = dataStore.getVariable("trial");
+        ColumnarVariable.Cursor cursor = new ColumnarVariable(variable).cursor();
+        while (cursor.next()) {
+            cursor.setOffset(cursor.getOnset() + 100);
+            if (cursor.getValue(0).isEmpty()) {
+                cursor.setValue(0, "z");
+            }
+        }
+        assertFalse(cursor.next());
+
+        ColumnarVariable reread = new ColumnarVariable(variable);
+        assertEquals(reread.getOffsets(), new long[]{600, 1100, 2600});
+        assertEquals(reread.getValues(0), new String[]{"z", "b", "a"});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMismatchedLengths() throws UserWarningException {
+        ColumnarVariable columns = ColumnarVariable.createVariable(dataStore, "trial");
+        columns.createCells(new long[]{0, 1000}, new long[]{500}, null);
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+
+/**
+ * Tests for recording, undoing and redoing the changes made to a data store.
+ */
+public class DataStoreChangeLogTest {
+
+    /** The data store that is changed */
+    private DataStore dataStore;
+
+    @BeforeMethod
+    public void setUp() throws UserWarningException {
+        dataStore = DataStoreFactory.newDataStore();
+        ColumnarVariable trial = ColumnarVariable.createVariable(dataStore, "trial", "hand", "look");
+        trial.createCells(new long[]{0, 1000}, new long[]{500, 1500}, new String[][]{{"l", "r"}, {"x,y", ""}});
+        Variable notes = dataStore.createVariable("notes", Argument.Type.TEXT);
+        notes.createCell().getCellValue().set("first");
+        notes.setOrderIndex(0);
+        trial.getVariable().setOrderIndex(1);
+
+        // Like the spreadsheet, put added columns last
+        DataStoreListener spreadsheet = mock(DataStoreListener.class);
+        doAnswer(invocation -> {
+            invocation.<Variable>getArgument(0).setOrderIndex(dataStore.getAllVariables().size());
+            return null;
+        }).when(spreadsheet).variableAdded(any(Variable.class));
+        dataStore.addListener(spreadsheet);
+    }
+
+    /**
+     * @return The names, order indices and contents of the variables of the data store in column order.
+     */
+    private List<String> getContents() {
+        List<String> contents = new ArrayList<>();
+        for (Variable variable : dataStore.getAllVariables()) {
+            contents.add(variable.getName() + "@" + variable.getOrderIndex() + "\n"
+                    + DataStoreFork.getContents(variable));
+        }
+        return contents;
+    }
+
+    /**
+     * Undoes and redoes the changes in the log twice, checking the contents each time.
+     */
+    private void assertUndoRedo(final DataStoreChangeLog log, final List<String> before) {
+        log.stop();
+        List<String> after = getContents();
+        assertNotEquals(after, before);
+        for (int i = 0; i < 2; i++) {
+            log.undo();
+            assertEquals(getContents(), before);
+            log.redo();
+            assertEquals(getContents(), after);
+        }
+    }
+
+    @Test
+    public void testCellChanges() throws UserWarningException {
+        List<String> before = getContents();
+        DataStoreChangeLog log = DataStoreChangeLog.record(dataStore);
+
+        Variable trial = dataStore.getVariable("trial");
+        Cell cell = trial.getCellTemporally(0);
+        cell.setOnset(100);
+        cell.setOffset(900);
+        cell.setMatrixValue(1, "z");
+        cell.clearMatrixValue(0);
+        trial.removeCell(trial.getCellTemporally(1));
+        Cell added = trial.createCell();
+        added.setOnset(2000);
+        added.setMatrixValue(0, "new");
+        dataStore.getVariable("notes").getCellTemporally(0).getCellValue().set("second");
+
+        // Only what changed is kept
+        assertEquals(log.size(), 9);
+        assertUndoRedo(log, before);
+    }
+
+    @Test
+    public void testChangesOfOtherThreadsAreNotRecorded() throws Exception {
+        DataStoreChangeLog log = DataStoreChangeLog.record(dataStore);
+        Variable trial = dataStore.getVariable("trial");
+        Variable notes = dataStore.getVariable("notes");
+
+        // Like the user editing while a script runs
+        Thread user = new Thread(() -> {
+            notes.getCellTemporally(0).getCellValue().set("user");
+            try {
+                notes.setName("remarks");
+            } catch (UserWarningException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        user.start();
+        user.join();
+        trial.getCellTemporally(0).setOnset(100);
+        notes.setHidden(true);
+        log.stop();
+        assertEquals(log.size(), 2);
+
+        log.undo();
+        assertEquals(trial.getCellTemporally(0).getOnset(), 0);
+        assertFalse(notes.isHidden());
+        assertEquals(notes.getName(), "remarks");
+        assertEquals(notes.getCellTemporally(0).getValueAsString(), "user");
+    }
+
+    @Test
+    public void testVariableChanges() throws UserWarningException {
+        List<String> before = getContents();
+        DataStoreChangeLog log = DataStoreChangeLog.record(dataStore);
+
+        Variable notes = dataStore.getVariable("notes");
+        notes.getCellTemporally(0).getCellValue().set("changed before removal");
+        dataStore.removeVariable(notes);
+        dataStore.getVariable("trial").setName("trials");
+        dataStore.getVariable("trials").setHidden(true);
+        ColumnarVariable.createVariable(dataStore, "added", "a").createCells(new long[]{5}, null,
+                new String[][]{{"v"}});
+
+        assertUndoRedo(log, before);
+        log.undo();
+        assertEquals(dataStore.getVariable("notes"), notes);
+        assertEquals(dataStore.getAllVariables().get(0), notes);
+        assertFalse(dataStore.getVariable("trial").isHidden());
+    }
+
+    @Test
+    public void testColumnOrderChanges() throws UserWarningException {
+        List<String> before = getContents();
+        DataStoreChangeLog log = DataStoreChangeLog.record(dataStore);
+
+        dataStore.getVariable("trial").setOrderIndex(0);
+        dataStore.getVariable("notes").setOrderIndex(1);
+
+        assertUndoRedo(log, before);
+    }
+
+    @Test
+    public void testArgumentChanges() throws UserWarningException {
+        List<String> before = getContents();
+        DataStoreChangeLog log = DataStoreChangeLog.record(dataStore);
+
+        Variable trial = dataStore.getVariable("trial");
+        trial.getCellTemporally(1).setMatrixValue(1, "before");
+        trial.removeArgument("hand");
+        trial.getCellTemporally(0).setMatrixValue(0, "after");
+        Argument added = trial.addArgument(Argument.Type.NOMINAL);
+        added.name = "gaze";
+        trial.setRootNode(trial.getRootNode());
+        trial.moveArgument(1, 0);
+        trial.createCell().setMatrixValue(0, "up");
+
+        assertUndoRedo(log, before);
+    }
+
+    @Test
+    public void testMergedFork() throws UserWarningException {
+        List<String> before = getContents();
+        DataStoreFork fork = DataStoreFork.fork(dataStore);
+        DataStore copy = fork.getDataStore();
+        copy.getVariable("trial").addArgument(Argument.Type.NOMINAL);
+        copy.getVariable("trial").getCellTemporally(1).setMatrixValue(2, "third");
+        copy.removeVariable(copy.getVariable("notes"));
+
+        DataStoreChangeLog log = DataStoreChangeLog.record(dataStore);
+        fork.merge();
+        assertUndoRedo(log, before);
+    }
+}
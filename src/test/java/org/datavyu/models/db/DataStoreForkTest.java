@@ -0,0 +1,118 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests for forking data stores.
+ */
+public class DataStoreForkTest {
+
+    /** The data store that is forked */
+    private DataStore dataStore;
+
+    @BeforeMethod
+    public void setUp() throws UserWarningException {
+        dataStore = DataStoreFactory.newDataStore();
+        ColumnarVariable trial = ColumnarVariable.createVariable(dataStore, "trial", "hand", "look");
+        trial.createCells(new long[]{0, 1000}, new long[]{500, 1500}, new String[][]{{"l", "r"}, {"x,y", ""}});
+        Variable notes = dataStore.createVariable("notes", Argument.Type.TEXT);
+        notes.createCell().getCellValue().set("first");
+        trial.getVariable().setOrderIndex(1);
+        notes.setOrderIndex(0);
+    }
+
+    /**
+     * @param dataStore A data store.
+     * @return The names of its variables in column order.
+     */
+    private static List<String> getColumnOrder(final DataStore dataStore) {
+        List<String> names = new ArrayList<>();
+        for (Variable variable : dataStore.getAllVariables()) {
+            names.add(variable.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testCopyIsPrivate() throws UserWarningException {
+        DataStoreFork fork = DataStoreFork.fork(dataStore);
+        DataStore copy = fork.getDataStore();
+        assertTrue(fork.getChangedVariables().isEmpty());
+        assertEquals(getColumnOrder(copy), Arrays.asList("notes", "trial"));
+        assertEquals(new ColumnarVariable(copy.getVariable("trial")).getValues(1), new String[]{"x,y", ""});
+
+        // Changing the copy leaves the data store alone
+        copy.getVariable("trial").getCellTemporally(0).setOnset(200);
+        copy.getVariable("trial").addArgument(Argument.Type.NOMINAL);
+        copy.removeVariable(copy.getVariable("notes"));
+        assertEquals(fork.getChangedVariables(), new HashSet<>(Arrays.asList("trial", "notes")));
+
+        assertEquals(dataStore.getVariable("trial").getCellTemporally(0).getOnset(), 0);
+        assertEquals(dataStore.getVariable("trial").getRootNode().childArguments.size(), 2);
+        assertEquals(dataStore.getVariable("notes").getCells().size(), 1);
+    }
+
+    @Test
+    public void testMerge() throws UserWarningException {
+        DataStoreFork fork = DataStoreFork.fork(dataStore);
+        DataStore copy = fork.getDataStore();
+        new ColumnarVariable(copy.getVariable("trial")).updateCells(new int[]{1}, null, null,
+                new String[][]{null, {"z"}});
+        ColumnarVariable.createVariable(copy, "added").createCells(new long[]{5}, null, null);
+
+        assertEquals(fork.merge(), new HashSet<>(Arrays.asList("trial", "added")));
+        assertEquals(new ColumnarVariable(dataStore.getVariable("trial")).getValues(1), new String[]{"x,y", "z"});
+        assertEquals(dataStore.getVariable("added").getCells().size(), 1);
+        assertEquals(dataStore.getVariable("notes").getCells().size(), 1);
+
+        // The changed column keeps its place and the added column goes last
+        assertEquals(getColumnOrder(dataStore), Arrays.asList("notes", "trial", "added"));
+    }
+
+    @Test
+    public void testConflictingMergeChangesNothing() throws UserWarningException {
+        DataStoreFork fork = DataStoreFork.fork(dataStore);
+        fork.getDataStore().removeVariable(fork.getDataStore().getVariable("notes"));
+        fork.getDataStore().getVariable("trial").getCellTemporally(1).setOffset(2000);
+
+        // The column also changed in the data store while the copy was changed
+        dataStore.getVariable("trial").getCellTemporally(1).setOffset(3000);
+        try {
+            fork.merge();
+            fail("Expected the merge to fail");
+        } catch (UserWarningException e) {
+            assertTrue(e.getMessage().contains("trial"));
+        }
+        assertEquals(dataStore.getVariable("trial").getCellTemporally(1).getOffset(), 3000);
+        assertEquals(dataStore.getVariable("notes").getCells().size(), 1);
+
+        // Unchanged copies merge nothing
+        DataStoreFork unchanged = DataStoreFork.fork(dataStore);
+        assertEquals(unchanged.merge(), Collections.emptySet());
+    }
+}
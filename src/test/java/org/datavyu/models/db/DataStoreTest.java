@@ -144,4 +144,25 @@ public class DataStoreTest {
         model.markAsUnchanged();
         assertFalse(model.isChanged());
     }
+
+    @Test
+    public void listenersRegisteredOnlyWhileListening() throws UserWarningException {
+        Variable var = model.createVariable("foo", Argument.Type.TEXT);
+        Cell cell = var.createCell();
+        cell.setOnset(1000);
+        assertFalse(DatavyuCell.allListeners.containsKey(cell.getID()));
+
+        CellListener cellListener = mock(CellListener.class);
+        cell.addListener(cellListener);
+        cell.setOnset(2000);
+        verify(cellListener).onsetChanged(2000);
+        cell.removeListener(cellListener);
+        assertFalse(DatavyuCell.allListeners.containsKey(cell.getID()));
+
+        cell.addListener(cellListener);
+        model.clearListeners();
+        assertFalse(DatavyuCell.allListeners.containsKey(cell.getID()));
+        cell.setOnset(3000);
+        verify(cellListener, times(0)).onsetChanged(3000);
+    }
 }
@@ -0,0 +1,127 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.undoableedits;
+
+import org.datavyu.Datavyu;
+import org.datavyu.controllers.project.ProjectController;
+import org.datavyu.models.db.Argument;
+import org.datavyu.models.db.Cell;
+import org.datavyu.models.db.DataStore;
+import org.datavyu.models.db.DataStoreFactory;
+import org.datavyu.models.db.UserWarningException;
+import org.datavyu.models.db.Variable;
+import org.datavyu.models.project.Project;
+import org.datavyu.undoableedits.ChangeCellEdit.Granularity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for coalescing edits and bounding the undo history by memory.
+ */
+public class SpreadsheetUndoManagerTest {
+
+    /** The variable edited */
+    private Variable variable;
+
+    @BeforeMethod
+    public void setUp() throws UserWarningException {
+        DataStore ds = DataStoreFactory.newDataStore();
+        Datavyu.setProjectController(new ProjectController(new Project(), ds));
+        variable = ds.createVariable("trial", Argument.Type.TEXT);
+    }
+
+    @Test
+    public void testNudgesCoalesce() {
+        SpreadsheetUndoManager undoManager = new SpreadsheetUndoManager(1024 * 1024);
+        Cell cell = variable.createCell();
+        cell.setOnset(1000);
+        for (int i = 0; i < 5; i++) {
+            setOnset(undoManager, cell, cell.getOnset() + 100);
+        }
+        assertEquals(undoManager.getSize(), 1);
+
+        undoManager.undo();
+        assertEquals(cell.getOnset(), 1000);
+        undoManager.redo();
+        assertEquals(cell.getOnset(), 1500);
+    }
+
+    @Test
+    public void testSpilledEditsUndo() {
+        // Every edit but the newest is over the budget
+        SpreadsheetUndoManager undoManager = new SpreadsheetUndoManager(1);
+        Cell first = addCell(undoManager, 100);
+        Cell second = addCell(undoManager, 200);
+        second.getCellValue().set("kept");
+        setOnset(undoManager, first, 150);
+        undoManager.addEdit(new RemoveCellEdit(Collections.singletonList(second)));
+        variable.removeCell(second);
+        setOnset(undoManager, first, 175);
+
+        assertEquals(undoManager.getSize(), 5);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(undoManager.getElementAt(i) instanceof SpilledEdit);
+        }
+        assertTrue(undoManager.getElementAt(3).toString().contains("Delete Cell"));
+
+        undoManager.undo();
+        assertEquals(first.getOnset(), 150);
+        undoManager.undo();
+        assertEquals(variable.getCells().size(), 2);
+        assertEquals(variable.getCellTemporally(1).getValueAsString(), "kept");
+        assertEquals(variable.getCellTemporally(1).getID(), second.getID());
+        undoManager.undo();
+        assertEquals(first.getOnset(), 100);
+        undoManager.undo();
+        undoManager.undo();
+        assertEquals(variable.getCells().size(), 0);
+    }
+
+    @Test
+    public void testEditsFollowTheirCell() {
+        SpreadsheetUndoManager undoManager = new SpreadsheetUndoManager(1024 * 1024);
+        Cell removed = variable.createCell();
+        Cell cell = variable.createCell();
+        cell.setOnset(1000);
+        setOnset(undoManager, cell, 2000);
+
+        // Changing the cells of the column moves the cell to another position
+        variable.removeCell(removed);
+        variable.createCell();
+        assertEquals(variable.getOwningDatastore().getCell(cell.getID()), cell);
+        assertEquals(variable.getOwningDatastore().getCell(removed.getID()), null);
+
+        undoManager.undo();
+        assertEquals(cell.getOnset(), 1000);
+    }
+
+    private Cell addCell(SpreadsheetUndoManager undoManager, long onset) {
+        Cell cell = variable.createCell();
+        cell.setOnset(onset);
+        undoManager.addEdit(new AddCellEdit(variable.getName(), cell));
+        return cell;
+    }
+
+    private void setOnset(SpreadsheetUndoManager undoManager, Cell cell, long onset) {
+        long oldOnset = cell.getOnset();
+        cell.setOnset(onset);
+        undoManager.addEdit(new ChangeOnsetCellEdit(cell, oldOnset, onset, Granularity.FINEGRAINED));
+    }
+}
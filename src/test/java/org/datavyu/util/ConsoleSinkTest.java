@@ -0,0 +1,132 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.util;
+
+import org.testng.annotations.Test;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for the sink that collects the output of scripts for the console.
+ */
+public class ConsoleSinkTest {
+
+    /**
+     * Updates the text area with what the sink has waiting and returns its text.
+     */
+    private static String update(final ConsoleSink sink, final JTextArea textArea) throws Exception {
+        String[] text = new String[1];
+        SwingUtilities.invokeAndWait(() -> {
+            sink.update();
+            text[0] = textArea.getText();
+        });
+        return text[0];
+    }
+
+    @Test
+    public void testSplitCharacters() throws Exception {
+        JTextArea textArea = new JTextArea();
+        ConsoleSink sink = new ConsoleSink(textArea);
+        OutputStream out = sink.newOutputStream();
+        for (byte b : "naïve € 😀".getBytes(StandardCharsets.UTF_8)) {
+            out.write(b);
+        }
+        out.close();
+        assertEquals(update(sink, textArea), "naïve € 😀");
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        JTextArea textArea = new JTextArea();
+        ConsoleSink sink = new ConsoleSink(textArea, 100);
+        Writer writer = sink.newWriter();
+        for (int i = 0; i < 50; i++) {
+            writer.write(String.format("line %02d\n", i));
+            if (i % 10 == 0) {
+                update(sink, textArea);
+            }
+        }
+        String text = update(sink, textArea);
+        assertEquals(text.length(), 100);
+        assertTrue(text.endsWith("line 48\nline 49\n"));
+    }
+
+    @Test
+    public void testCoalescedUpdates() throws Exception {
+        JTextArea textArea = new JTextArea();
+        AtomicInteger inserts = new AtomicInteger();
+        textArea.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(final DocumentEvent e) {
+                inserts.incrementAndGet();
+            }
+
+            @Override
+            public void removeUpdate(final DocumentEvent e) {
+            }
+
+            @Override
+            public void changedUpdate(final DocumentEvent e) {
+            }
+        });
+        ConsoleSink sink = new ConsoleSink(textArea);
+        Writer writer = sink.newWriter();
+        for (int i = 0; i < 10000; i++) {
+            writer.write("cell " + i + "\n");
+        }
+        Thread.sleep(500);
+        String text = update(sink, textArea);
+        assertTrue(text.endsWith("cell 9999\n"));
+        assertTrue(inserts.get() < 100, "Updates: " + inserts.get());
+    }
+
+    @Test
+    public void testWritesDoNotWaitForBusyEventThread() throws Exception {
+        JTextArea textArea = new JTextArea();
+        ConsoleSink sink = new ConsoleSink(textArea, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        long start = System.nanoTime();
+        Writer writer = sink.newWriter();
+        for (int i = 0; i < 10; i++) {
+            writer.write(new String(new char[500]).replace('\0', (char) ('a' + i)));
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+        release.countDown();
+        assertTrue(elapsed < 10 * ConsoleSink.MAX_WAIT + 500, "Waited " + elapsed + " ms");
+
+        // Only the newest output is kept
+        String text = update(sink, textArea);
+        assertTrue(text.endsWith(new String(new char[500]).replace('\0', 'j')));
+        assertTrue(text.length() <= 1000);
+    }
+}
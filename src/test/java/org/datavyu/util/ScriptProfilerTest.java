@@ -0,0 +1,103 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.util;
+
+import org.datavyu.models.db.Argument;
+import org.datavyu.models.db.Cell;
+import org.datavyu.models.db.DataStore;
+import org.datavyu.models.db.DataStoreFactory;
+import org.datavyu.models.db.Variable;
+import org.datavyu.util.ScriptProfiler.Operation;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for profiling scripts.
+ */
+public class ScriptProfilerTest {
+
+    private ScriptProfiler profiler;
+
+    @AfterMethod
+    public void tearDown() {
+        if (profiler != null) {
+            profiler.stop();
+        }
+    }
+
+    @Test
+    public void testCountsModelCalls() throws Exception {
+        DataStore dataStore = DataStoreFactory.newDataStore();
+        profiler = ScriptProfiler.start();
+        assertNotNull(profiler);
+        assertNull(ScriptProfiler.start());
+
+        Variable variable = dataStore.createVariable("trial", Argument.Type.TEXT);
+        for (int i = 0; i < 3; i++) {
+            Cell cell = variable.createCell();
+            cell.setOnset(i * 1000);
+            cell.getCellValue().set("cell " + i);
+        }
+        long getVariableCalls = profiler.getCount(Operation.GET_VARIABLE);
+        dataStore.getVariable("trial").getCells();
+
+        // Calls from other threads are not part of the script
+        Thread other = new Thread(variable::createCell);
+        other.start();
+        other.join();
+        profiler.stop();
+        variable.createCell();
+
+        assertEquals(profiler.getCount(Operation.CREATE_VARIABLE), 1);
+        assertEquals(profiler.getCount(Operation.CREATE_CELL), 3);
+        assertEquals(profiler.getCount(Operation.SET_ONSET), 3);
+        assertEquals(profiler.getCount(Operation.SET_VALUE), 3);
+        assertEquals(profiler.getCount(Operation.GET_VARIABLE), getVariableCalls + 1);
+        assertEquals(profiler.getCount(Operation.GET_CELLS), 1);
+        assertEquals(variable.getCells().size(), 5);
+        assertNull(ScriptProfiler.getActive());
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        profiler = ScriptProfiler.start();
+        long start = profiler.enterApi();
+        long inner = profiler.enterApi();
+        profiler.exitApi("get_column", inner);
+        profiler.exitApi("set_column", start);
+        profiler.stop();
+
+        String summary = profiler.getSummary();
+        assertTrue(summary.contains("API functions (Ruby)"));
+        assertTrue(summary.contains("get_column"));
+        assertTrue(summary.contains("set_column"));
+
+        File file = File.createTempFile("profile", ".json");
+        file.deleteOnExit();
+        profiler.save(file, "test.rb");
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"test.rb\""));
+        assertTrue(json.contains("\"get_column\""));
+    }
+}
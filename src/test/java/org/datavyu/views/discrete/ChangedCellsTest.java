@@ -0,0 +1,132 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete;
+
+import org.datavyu.models.db.*;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for noting the cells that changed since the spreadsheet was last redrawn.
+ */
+public class ChangedCellsTest {
+
+    /** The data store that is changed */
+    private DataStore dataStore;
+
+    /** The changes noted */
+    private ChangedCells changed;
+
+    @BeforeMethod
+    public void setUp() {
+        dataStore = DataStoreFactory.newDataStore();
+        changed = new ChangedCells();
+        dataStore.addChangeListener(changed);
+    }
+
+    @Test
+    public void testTakeChangedValues() throws UserWarningException {
+        Variable text = dataStore.createVariable("text", Argument.Type.TEXT);
+        Cell first = text.createCell();
+        Cell second = text.createCell();
+        Cell moved = text.createCell();
+        assertTrue(changed.takeCells().isEmpty());
+
+        first.getCellValue().set("a");
+        first.getCellValue().set("b");
+        second.getCellValue().set("c");
+        moved.setOnset(1000);
+        assertEquals(new HashSet<>(changed.takeCells()), new HashSet<>(Arrays.asList(first, second)));
+
+        // Taken cells are not taken again until they change again
+        assertTrue(changed.takeCells().isEmpty());
+        second.getCellValue().set("d");
+        assertEquals(changed.takeCells(), Collections.singletonList(second));
+    }
+
+    @Test
+    public void testRemovedCellsAreNotTaken() throws UserWarningException {
+        Variable text = dataStore.createVariable("text", Argument.Type.TEXT);
+        Cell kept = text.createCell();
+        Cell removed = text.createCell();
+        kept.getCellValue().set("a");
+        removed.getCellValue().set("b");
+        dataStore.removeCell(removed);
+        assertEquals(changed.takeCells(), Collections.singletonList(kept));
+    }
+
+    @Test
+    public void testTakeVariablesWithChangedArguments() throws UserWarningException {
+        Variable matrix = dataStore.createVariable("matrix", Argument.Type.MATRIX);
+        Variable text = dataStore.createVariable("text", Argument.Type.TEXT);
+        text.createCell().getCellValue().set("a");
+        assertTrue(changed.takeVariables().isEmpty());
+
+        matrix.addArgument(Argument.Type.NOMINAL);
+        assertEquals(changed.takeVariables(), Collections.singletonList(matrix));
+        assertTrue(changed.takeVariables().isEmpty());
+    }
+
+    @Test
+    public void testChangesNotedWhileTakingAreNotLost() throws Exception {
+        int threads = 4;
+        int changesPerThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<Cell>>> noted = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            noted.add(executor.submit(() -> {
+                List<Cell> cells = new ArrayList<>();
+                for (int i = 0; i < changesPerThread; i++) {
+                    Cell cell = mock(Cell.class);
+                    changed.valueChanged(cell, 0, "", "value");
+                    cells.add(cell);
+                }
+                return cells;
+            }));
+        }
+
+        // Take while the changes are noted, every cell is taken exactly once
+        List<Cell> taken = new ArrayList<>();
+        boolean done = false;
+        while (!done) {
+            done = noted.stream().allMatch(Future::isDone);
+            taken.addAll(changed.takeCells());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        Set<Cell> expected = new HashSet<>();
+        for (Future<List<Cell>> cells : noted) {
+            expected.addAll(cells.get());
+        }
+        assertEquals(taken.size(), threads * changesPerThread);
+        assertEquals(new HashSet<>(taken), expected);
+    }
+}
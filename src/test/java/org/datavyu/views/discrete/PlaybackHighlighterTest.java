@@ -0,0 +1,148 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete;
+
+import org.datavyu.models.db.*;
+import org.datavyu.views.discrete.PlaybackHighlighter.State;
+import org.datavyu.views.discrete.PlaybackHighlighter.TemporalIndex;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for highlighting the cells that lie differently relative to a new playback time.
+ */
+public class PlaybackHighlighterTest {
+
+    /** Onsets and offsets of the cells, including shared onsets, a point cell and a reversed cell */
+    private static final long[][] TIMES = {{0, 500}, {1000, 2000}, {1000, 1500}, {1800, 3000}, {4000, 4000},
+            {5000, 4500}, {6000, 7000}};
+
+    /** The cells of the column */
+    private ColumnDataPanel panel;
+
+    @BeforeMethod
+    public void setUp() throws UserWarningException {
+        Variable variable = DataStoreFactory.newDataStore().createVariable("column", Argument.Type.TEXT);
+        for (long[] time : TIMES) {
+            Cell cell = variable.createCell();
+            cell.setOnset(time[0]);
+            cell.setOffset(time[1]);
+        }
+        panel = new ColumnDataPanel(null, 200, variable, null);
+    }
+
+    private Set<SpreadsheetCell> getCrossed(final TemporalIndex index, final long previous, final long time) {
+        Set<SpreadsheetCell> crossed = new HashSet<>();
+        index.forEachCrossed(previous, time, crossed::add);
+        return crossed;
+    }
+
+    private SpreadsheetCell getCell(final long onset, final long offset) {
+        for (SpreadsheetCell cell : panel.getCellsTemporally()) {
+            if (cell.getCell().getOnset() == onset && cell.getCell().getOffset() == offset) {
+                return cell;
+            }
+        }
+        throw new IllegalArgumentException("No cell from " + onset + " to " + offset);
+    }
+
+    @Test
+    public void testBoundSearches() {
+        long[] values = {10, 20, 20, 20, 30};
+        assertEquals(PlaybackHighlighter.lowerBound(values, Long.MIN_VALUE), 0);
+        assertEquals(PlaybackHighlighter.lowerBound(values, 10), 0);
+        assertEquals(PlaybackHighlighter.lowerBound(values, 11), 1);
+        assertEquals(PlaybackHighlighter.lowerBound(values, 20), 1);
+        assertEquals(PlaybackHighlighter.lowerBound(values, 21), 4);
+        assertEquals(PlaybackHighlighter.lowerBound(values, 31), 5);
+
+        assertEquals(PlaybackHighlighter.upperBound(values, 9), 0);
+        assertEquals(PlaybackHighlighter.upperBound(values, 10), 1);
+        assertEquals(PlaybackHighlighter.upperBound(values, 20), 4);
+        assertEquals(PlaybackHighlighter.upperBound(values, 30), 5);
+        assertEquals(PlaybackHighlighter.upperBound(values, Long.MAX_VALUE), 5);
+
+        assertEquals(PlaybackHighlighter.lowerBound(new long[0], 0), 0);
+        assertEquals(PlaybackHighlighter.upperBound(new long[0], Long.MAX_VALUE), 0);
+    }
+
+    @Test
+    public void testStateAt() {
+        Cell cell = getCell(1000, 2000).getCell();
+        assertEquals(PlaybackHighlighter.stateAt(cell, 999), State.FUTURE);
+        assertEquals(PlaybackHighlighter.stateAt(cell, 1000), State.CURRENT);
+        assertEquals(PlaybackHighlighter.stateAt(cell, 2000), State.CURRENT);
+        assertEquals(PlaybackHighlighter.stateAt(cell, 2001), State.PAST);
+
+        // A reversed cell is never current, it is past once the time is past its onset
+        Cell reversed = getCell(5000, 4500).getCell();
+        assertEquals(PlaybackHighlighter.stateAt(reversed, 4700), State.FUTURE);
+        assertEquals(PlaybackHighlighter.stateAt(reversed, 5000), State.FUTURE);
+        assertEquals(PlaybackHighlighter.stateAt(reversed, 5001), State.PAST);
+    }
+
+    @Test
+    public void testCrossingBoundaries() {
+        TemporalIndex index = new TemporalIndex(panel);
+        SpreadsheetCell cell = getCell(1000, 2000);
+
+        // Reaching the onset or passing the offset crosses the cell, in either direction
+        assertTrue(getCrossed(index, 999, 1000).contains(cell));
+        assertTrue(getCrossed(index, 1000, 999).contains(cell));
+        assertTrue(getCrossed(index, 2000, 2001).contains(cell));
+        assertTrue(getCrossed(index, 2001, 2000).contains(cell));
+
+        // Moving within the cell or up to its onset does not
+        assertFalse(getCrossed(index, 1000, 2000).contains(cell));
+        assertFalse(getCrossed(index, 998, 999).contains(cell));
+        assertTrue(getCrossed(index, 1200, 1200).isEmpty());
+    }
+
+    @Test
+    public void testCrossedCellsCoverStateChanges() {
+        TemporalIndex index = new TemporalIndex(panel);
+        Set<Long> times = new TreeSet<>();
+        for (long[] time : TIMES) {
+            for (long boundary : time) {
+                times.add(boundary - 1);
+                times.add(boundary);
+                times.add(boundary + 1);
+            }
+        }
+        times.add(Long.MIN_VALUE);
+        times.add(Long.MAX_VALUE);
+
+        for (long previous : times) {
+            for (long time : times) {
+                Set<SpreadsheetCell> crossed = getCrossed(index, previous, time);
+                for (SpreadsheetCell cell : panel.getCellsTemporally()) {
+                    if (PlaybackHighlighter.stateAt(cell.getCell(), previous)
+                            != PlaybackHighlighter.stateAt(cell.getCell(), time)) {
+                        assertTrue(crossed.contains(cell), "Cell from " + cell.getCell().getOnset() + " to "
+                                + cell.getCell().getOffset() + " not crossed from " + previous + " to " + time);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete.layouts;
+
+import org.datavyu.models.db.*;
+import org.datavyu.views.discrete.ColumnDataPanel;
+import org.datavyu.views.discrete.SpreadsheetCell;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests that placing the cells from the earliest change on gives the same layout as placing all of them again.
+ */
+public class SheetLayoutWeakTemporalTest {
+
+    /** Width of the columns */
+    private static final int WIDTH = 200;
+
+    /** The variables of the columns */
+    private List<Variable> variables;
+
+    /** The panels the cells of the columns belong to */
+    private List<ColumnDataPanel> panels;
+
+    /** The cells of the columns in temporal order */
+    private List<List<SpreadsheetCell>> columns;
+
+    /** The layout placing the cells from the earliest change on */
+    private SheetLayoutWeakTemporal layout;
+
+    @BeforeMethod
+    public void setUp() throws UserWarningException {
+        DataStore dataStore = DataStoreFactory.newDataStore();
+        variables = new ArrayList<>();
+        panels = new ArrayList<>();
+        columns = new ArrayList<>();
+
+        // Gaps, overlaps, shared onsets, continuous cells, a point cell and a reversed cell
+        addColumn(dataStore, "first", new long[][]{{0, 500}, {1000, 2500}, {2000, 3000}, {2000, 2200},
+                {5000, 6000}, {6001, 7000}});
+        addColumn(dataStore, "second", new long[][]{{500, 1500}, {1500, 1500}, {4000, 3500}, {8000, 9000}});
+
+        layout = new SheetLayoutWeakTemporal(0);
+        layout.placeCells(columns, getWidths(), Long.MIN_VALUE);
+    }
+
+    private void addColumn(final DataStore dataStore, final String name, final long[][] times)
+            throws UserWarningException {
+        Variable variable = dataStore.createVariable(name, Argument.Type.TEXT);
+        for (long[] time : times) {
+            Cell cell = variable.createCell();
+            cell.setOnset(time[0]);
+            cell.setOffset(time[1]);
+            cell.getCellValue().set(name + time[0]);
+        }
+        ColumnDataPanel panel = new ColumnDataPanel(null, WIDTH, variable, null);
+        variables.add(variable);
+        panels.add(panel);
+        columns.add(new ArrayList<>(panel.getCellsTemporally()));
+    }
+
+    private List<Integer> getWidths() {
+        List<Integer> widths = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            widths.add(WIDTH);
+        }
+        return widths;
+    }
+
+    private void insert(final int column, final long onset, final long offset) {
+        Cell cell = variables.get(column).createCell();
+        cell.setOnset(onset);
+        cell.setOffset(offset);
+        columns.get(column).add(new SpreadsheetCell(panels.get(column), null, cell, null));
+        columns.get(column).sort(Comparator.comparingLong(SpreadsheetCell::getOnsetTicks));
+        layout.placeCells(columns, getWidths(), onset);
+    }
+
+    private void delete(final int column, final int index) {
+        SpreadsheetCell cell = columns.get(column).remove(index);
+        variables.get(column).removeCell(cell.getCell());
+        layout.placeCells(columns, getWidths(), cell.getOnsetTicks());
+    }
+
+    private void move(final int column, final int index, final long onset, final long offset) {
+        SpreadsheetCell cell = columns.get(column).get(index);
+        long from = Math.min(cell.getOnsetTicks(), onset);
+        // Selected cells update the find window
+        cell.getCell().setSelected(false);
+        cell.getCell().setOnset(onset);
+        cell.getCell().setOffset(offset);
+        columns.get(column).sort(Comparator.comparingLong(SpreadsheetCell::getOnsetTicks));
+        layout.placeCells(columns, getWidths(), from);
+    }
+
+    /**
+     * @return The bounds of every cell, column by column, followed by the working height of each column.
+     */
+    private List<Object> getPlacement(final SheetLayoutWeakTemporal placedBy) {
+        List<Object> placement = new ArrayList<>();
+        for (List<SpreadsheetCell> column : columns) {
+            for (SpreadsheetCell cell : column) {
+                placement.add(new Rectangle(cell.getBounds()));
+            }
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            placement.add(placedBy.getWorkingHeight(i));
+        }
+        return placement;
+    }
+
+    private void assertSameAsFullLayout() {
+        List<Object> placed = getPlacement(layout);
+        SheetLayoutWeakTemporal full = new SheetLayoutWeakTemporal(0);
+        full.placeCells(columns, getWidths(), Long.MIN_VALUE);
+        assertEquals(placed, getPlacement(full));
+    }
+
+    /**
+     * @return The bottom of the last cell of a column.
+     */
+    private int getLastBottom(final int column) {
+        List<SpreadsheetCell> cells = columns.get(column);
+        SpreadsheetCell last = cells.get(cells.size() - 1);
+        return last.getY() + last.getHeight();
+    }
+
+    @Test
+    public void testInsertAtEnd() {
+        int height = layout.getWorkingHeight(1);
+        insert(1, 10000, 11000);
+        assertSameAsFullLayout();
+        assertTrue(layout.getWorkingHeight(1) > height);
+        assertEquals(layout.getWorkingHeight(1), getLastBottom(1));
+    }
+
+    @Test
+    public void testDeleteLastCell() {
+        int height = layout.getWorkingHeight(1);
+        delete(1, columns.get(1).size() - 1);
+        assertSameAsFullLayout();
+        assertTrue(layout.getWorkingHeight(1) < height);
+        assertEquals(layout.getWorkingHeight(1), getLastBottom(1));
+
+        // Down to an empty column
+        while (!columns.get(1).isEmpty()) {
+            delete(1, columns.get(1).size() - 1);
+            assertSameAsFullLayout();
+        }
+        assertEquals(layout.getWorkingHeight(1), 0);
+    }
+
+    @Test
+    public void testInsertDeleteAndMove() {
+        insert(0, 3000, 4500);
+        assertSameAsFullLayout();
+        insert(1, 2000, 2000);
+        assertSameAsFullLayout();
+        delete(0, 2);
+        assertSameAsFullLayout();
+        delete(1, 0);
+        assertSameAsFullLayout();
+        move(0, 1, 7500, 8500);
+        assertSameAsFullLayout();
+        move(1, 2, 100, 400);
+        assertSameAsFullLayout();
+    }
+}